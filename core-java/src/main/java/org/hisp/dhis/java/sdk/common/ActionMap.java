@@ -0,0 +1,200 @@
+/*
+ * Copyright (c) 2015, University of Oslo
+ *
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.hisp.dhis.java.sdk.common;
+
+import org.hisp.dhis.java.sdk.models.common.state.Action;
+import org.hisp.dhis.java.sdk.utils.Preconditions;
+
+import java.util.Arrays;
+
+/**
+ * Map from local model id to {@link Action} which stores ids as primitive longs
+ * in open addressing hash table. In contrast to Map&lt;Long, Action&gt;,
+ * it does not allocate any objects per entry.
+ */
+public final class ActionMap {
+    private static final int MIN_CAPACITY = 16;
+
+    private long[] keys;
+    private Action[] values;
+    private int size;
+
+    public ActionMap() {
+        this(0);
+    }
+
+    public ActionMap(int expectedSize) {
+        int capacity = capacityFor(expectedSize);
+        keys = new long[capacity];
+        values = new Action[capacity];
+    }
+
+    public ActionMap(ActionMap actionMap) {
+        Preconditions.isNull(actionMap, "ActionMap must not be null");
+        keys = actionMap.keys.clone();
+        values = actionMap.values.clone();
+        size = actionMap.size;
+    }
+
+    /**
+     * @return action for given id or null if there is no such id in map.
+     */
+    public Action get(long key) {
+        int index = indexOf(key);
+        return index < 0 ? null : values[index];
+    }
+
+    public boolean containsKey(long key) {
+        return indexOf(key) >= 0;
+    }
+
+    /**
+     * @return previous action for given id or null.
+     */
+    public Action put(long key, Action value) {
+        Preconditions.isNull(value, "Action must not be null");
+
+        int mask = values.length - 1;
+        int index = hash(key, mask);
+        while (values[index] != null) {
+            if (keys[index] == key) {
+                Action previous = values[index];
+                values[index] = value;
+                return previous;
+            }
+            index = (index + 1) & mask;
+        }
+
+        keys[index] = key;
+        values[index] = value;
+        if (++size * 2 > values.length) {
+            resize(values.length * 2);
+        }
+        return null;
+    }
+
+    /**
+     * @return removed action or null if there was no such id in map.
+     */
+    public Action remove(long key) {
+        int index = indexOf(key);
+        if (index < 0) {
+            return null;
+        }
+
+        Action previous = values[index];
+        values[index] = null;
+        size--;
+
+        // shifting entries of the same probe sequence back,
+        // so lookups do not stop at the freed slot
+        int mask = values.length - 1;
+        int gap = index;
+        int next = (index + 1) & mask;
+        while (values[next] != null) {
+            int home = hash(keys[next], mask);
+            if (((next - home) & mask) >= ((next - gap) & mask)) {
+                keys[gap] = keys[next];
+                values[gap] = values[next];
+                values[next] = null;
+                gap = next;
+            }
+            next = (next + 1) & mask;
+        }
+        return previous;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * @return ids which are stored in map, in ascending order.
+     */
+    public long[] keys() {
+        long[] result = new long[size];
+        int position = 0;
+        for (int i = 0; i < values.length; i++) {
+            if (values[i] != null) {
+                result[position++] = keys[i];
+            }
+        }
+        Arrays.sort(result);
+        return result;
+    }
+
+    public void clear() {
+        Arrays.fill(values, null);
+        size = 0;
+    }
+
+    private int indexOf(long key) {
+        int mask = values.length - 1;
+        int index = hash(key, mask);
+        while (values[index] != null) {
+            if (keys[index] == key) {
+                return index;
+            }
+            index = (index + 1) & mask;
+        }
+        return -1;
+    }
+
+    private void resize(int capacity) {
+        long[] oldKeys = keys;
+        Action[] oldValues = values;
+
+        keys = new long[capacity];
+        values = new Action[capacity];
+        size = 0;
+
+        for (int i = 0; i < oldValues.length; i++) {
+            if (oldValues[i] != null) {
+                put(oldKeys[i], oldValues[i]);
+            }
+        }
+    }
+
+    private static int hash(long key, int mask) {
+        long hash = key * 0x9E3779B97F4A7C15L;
+        return (int) (hash ^ (hash >>> 32)) & mask;
+    }
+
+    private static int capacityFor(int expectedSize) {
+        int capacity = MIN_CAPACITY;
+        while (capacity < expectedSize * 2) {
+            capacity <<= 1;
+        }
+        return capacity;
+    }
+}
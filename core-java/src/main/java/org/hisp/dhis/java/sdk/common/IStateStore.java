@@ -33,8 +33,8 @@ import org.hisp.dhis.java.sdk.models.common.base.IModel;
 import org.hisp.dhis.java.sdk.models.common.state.Action;
 import org.hisp.dhis.java.sdk.models.common.state.State;
 
+import java.util.Collection;
 import java.util.List;
-import java.util.Map;
 
 public interface IStateStore extends IStore<State> {
 
@@ -77,6 +77,25 @@ public interface IStateStore extends IStore<State> {
      */
     <T extends IModel> Action queryActionForModel(T object);
 
+    /**
+     * Bulk version of {@link #queryActionForModel(IModel)}, which resolves actions
+     * for all given models at once instead of issuing one lookup per model.
+     *
+     * @param clazz   Class of given models.
+     * @param objects IModels which actions should be returned.
+     * @return Map where key is id and the value is action of model. Models without state are not present.
+     */
+    <T extends IModel> ActionMap queryActionsForModels(Class<T> clazz, Collection<? extends T> objects);
+
+    /**
+     * Bulk version of {@link #saveActionForModel(IModel, Action)}.
+     *
+     * @param objects IModels for which the action should be saved.
+     * @param action  Action to save.
+     * @return number of saved states.
+     */
+    <T extends IModel> int saveActionsForModels(Collection<T> objects, Action action);
+
     /**
      * @param clazz Class for which we want to retrieve all state models.
      * @return List of states for given class.
@@ -86,8 +105,9 @@ public interface IStateStore extends IStore<State> {
     /**
      * @param clazz Class for which we want to retrieve actions.
      * @return Map where key is id and the value is action for model of given Class.
+     * Ids are stored as primitives, so the map does not box an object per model.
      */
-    <T extends IModel> Map<Long, Action> queryActionsForModel(Class<T> clazz);
+    <T extends IModel> ActionMap queryActionsForModel(Class<T> clazz);
 
     /**
      * @param clazz  Class, instances of which we want to retrieve from database.
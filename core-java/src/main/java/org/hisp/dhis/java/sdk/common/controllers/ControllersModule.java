@@ -29,15 +29,25 @@
 package org.hisp.dhis.java.sdk.common.controllers;
 
 import org.hisp.dhis.java.sdk.common.preferences.IPreferencesModule;
+import org.hisp.dhis.java.sdk.common.preferences.WriteBehindLastUpdatedPreferences;
 import org.hisp.dhis.java.sdk.dashboard.DashboardController;
+import org.hisp.dhis.java.sdk.event.EventController;
+import org.hisp.dhis.java.sdk.event.IEventController;
 import org.hisp.dhis.java.sdk.models.dashboard.Dashboard;
+import org.hisp.dhis.java.sdk.systeminfo.IServerClock;
+import org.hisp.dhis.java.sdk.systeminfo.ServerClock;
 import org.hisp.dhis.java.sdk.utils.Preconditions;
 import org.hisp.dhis.java.sdk.common.network.INetworkModule;
 import org.hisp.dhis.java.sdk.common.persistence.IPersistenceModule;
+import org.hisp.dhis.java.sdk.common.persistence.ITransactionManager;
 import org.hisp.dhis.java.sdk.utils.IModelUtils;
 
 public class ControllersModule implements IControllersModule {
+    private final IServerClock serverClock;
+    private final WriteBehindLastUpdatedPreferences lastUpdatedPreferences;
+    private final ITransactionManager transactionManager;
     private final IDataController<Dashboard> dashboardController;
+    private final IEventController eventController;
 
     public ControllersModule(INetworkModule networkModule,
                              IPersistenceModule persistenceModule,
@@ -47,6 +57,15 @@ public class ControllersModule implements IControllersModule {
         Preconditions.isNull(preferencesModule, "preferencesModule must not be null");
         Preconditions.isNull(modelUtils, "modelUtils must not be null");
 
+        // controllers share one server clock instead of asking server for its time on every sync
+        serverClock = new ServerClock(networkModule.getSystemInfoApiClient());
+
+        // lastUpdated values are written in batches once following transaction is committed
+        lastUpdatedPreferences = new WriteBehindLastUpdatedPreferences(
+                preferencesModule.getLastUpdatedPreferences());
+        transactionManager = lastUpdatedPreferences.bind(
+                persistenceModule.getTransactionManager());
+
         dashboardController = new DashboardController(
                 persistenceModule.getDashboardStore(),
                 persistenceModule.getDashboardItemStore(),
@@ -54,13 +73,43 @@ public class ControllersModule implements IControllersModule {
                 persistenceModule.getDashboardContentStore(),
                 persistenceModule.getStateStore(),
                 networkModule.getDashboardApiClient(),
-                networkModule.getSystemInfoApiClient(),
-                preferencesModule.getLastUpdatedPreferences(),
-                persistenceModule.getTransactionManager(), modelUtils);
+                serverClock,
+                lastUpdatedPreferences, transactionManager, modelUtils);
+
+        eventController = new EventController(
+                networkModule.getEventApiClient(),
+                serverClock,
+                lastUpdatedPreferences, transactionManager,
+                persistenceModule.getStateStore(),
+                persistenceModule.getEventStore(),
+                persistenceModule.getTrackedEntityDataValueStore(),
+                persistenceModule.getOrganisationUnitStore(),
+                persistenceModule.getProgramStore(),
+                persistenceModule.getFailedItemStore(), modelUtils);
     }
 
     @Override
     public IDataController<Dashboard> getDashboardController() {
         return dashboardController;
     }
+
+    @Override
+    public IEventController getEventController() {
+        return eventController;
+    }
+
+    @Override
+    public IServerClock getServerClock() {
+        return serverClock;
+    }
+
+    @Override
+    public WriteBehindLastUpdatedPreferences getLastUpdatedPreferences() {
+        return lastUpdatedPreferences;
+    }
+
+    @Override
+    public ITransactionManager getTransactionManager() {
+        return transactionManager;
+    }
 }
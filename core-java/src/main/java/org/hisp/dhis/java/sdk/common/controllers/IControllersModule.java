@@ -28,8 +28,35 @@
 
 package org.hisp.dhis.java.sdk.common.controllers;
 
+import org.hisp.dhis.java.sdk.common.persistence.ITransactionManager;
+import org.hisp.dhis.java.sdk.common.preferences.WriteBehindLastUpdatedPreferences;
+import org.hisp.dhis.java.sdk.event.IEventController;
 import org.hisp.dhis.java.sdk.models.dashboard.Dashboard;
+import org.hisp.dhis.java.sdk.systeminfo.IServerClock;
 
 public interface IControllersModule {
     IDataController<Dashboard> getDashboardController();
+
+    IEventController getEventController();
+
+    /**
+     * Server clock shared by controllers of this module. Controllers created outside of
+     * the module (tracked entity instance, enrollment, program) should be given this
+     * instance, so server time is measured once per session for all of them.
+     */
+    IServerClock getServerClock();
+
+    /**
+     * Write-behind lastUpdated preferences shared by controllers of this module. Controllers
+     * created outside of the module should be given this instance together with
+     * {@link #getTransactionManager()}, so their per-uid lastUpdated values are batched and
+     * flushed only after the data they describe is committed. Call
+     * {@link WriteBehindLastUpdatedPreferences#flush()} before shutting down.
+     */
+    WriteBehindLastUpdatedPreferences getLastUpdatedPreferences();
+
+    /**
+     * Transaction manager which flushes {@link #getLastUpdatedPreferences()} after every commit.
+     */
+    ITransactionManager getTransactionManager();
 }
@@ -0,0 +1,203 @@
+/*
+ * Copyright (c) 2015, University of Oslo
+ *
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.hisp.dhis.java.sdk.common.controllers;
+
+import org.hisp.dhis.java.sdk.common.network.ApiException;
+import org.hisp.dhis.java.sdk.common.preferences.ResourceType;
+import org.hisp.dhis.java.sdk.utils.Preconditions;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * Synchronizes metadata of all registered controllers. Changes are fetched concurrently
+ * on given executor (which bounds the number of requests in flight), and committed on
+ * the calling thread in dependency order, so referenced metadata is always stored before
+ * metadata which refers to it. If fetching or committing of a resource fails, resources
+ * depending on it are not committed, and the first error is thrown when all other
+ * resources have been processed. Registered {@link IMetadataSyncListener}s are notified
+ * of the committed resources before that.
+ */
+public final class MetadataSyncOrchestrator {
+    private static final Map<ResourceType, Set<ResourceType>> DEPENDENCIES = new EnumMap<>(ResourceType.class);
+
+    static {
+        DEPENDENCIES.put(ResourceType.DATA_ELEMENTS, EnumSet.of(ResourceType.OPTION_SETS));
+        DEPENDENCIES.put(ResourceType.TRACKED_ENTITY_ATTRIBUTES, EnumSet.of(ResourceType.OPTION_SETS));
+        DEPENDENCIES.put(ResourceType.PROGRAMS, EnumSet.of(ResourceType.DATA_ELEMENTS,
+                ResourceType.TRACKED_ENTITY_ATTRIBUTES, ResourceType.RELATIONSHIP_TYPES));
+        DEPENDENCIES.put(ResourceType.PROGRAM_RULE_VARIABLES, EnumSet.of(ResourceType.PROGRAMS,
+                ResourceType.DATA_ELEMENTS, ResourceType.TRACKED_ENTITY_ATTRIBUTES));
+        DEPENDENCIES.put(ResourceType.PROGRAM_RULES, EnumSet.of(ResourceType.PROGRAMS));
+        DEPENDENCIES.put(ResourceType.PROGRAM_RULE_ACTIONS, EnumSet.of(ResourceType.PROGRAM_RULES,
+                ResourceType.DATA_ELEMENTS, ResourceType.TRACKED_ENTITY_ATTRIBUTES));
+    }
+
+    private final ExecutorService executorService;
+    private final Map<ResourceType, IMetadataController<?>> controllers;
+    private final List<IMetadataSyncListener> listeners;
+
+    public MetadataSyncOrchestrator(ExecutorService executorService) {
+        this.executorService = Preconditions.isNull(executorService, "executorService must not be null");
+        this.controllers = new EnumMap<>(ResourceType.class);
+        this.listeners = new CopyOnWriteArrayList<>();
+    }
+
+    public void add(IMetadataController<?> controller) {
+        Preconditions.isNull(controller, "controller must not be null");
+        Preconditions.isNull(controller.getResourceType(), "controller resource type must not be null");
+        controllers.put(controller.getResourceType(), controller);
+    }
+
+    public void addListener(IMetadataSyncListener listener) {
+        Preconditions.isNull(listener, "listener must not be null");
+        listeners.add(listener);
+    }
+
+    public void removeListener(IMetadataSyncListener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Returns resources which have to be committed before given one.
+     */
+    public static Set<ResourceType> getDependencies(ResourceType resourceType) {
+        Set<ResourceType> dependencies = DEPENDENCIES.get(resourceType);
+        return dependencies != null ? Collections.unmodifiableSet(dependencies) :
+                Collections.<ResourceType>emptySet();
+    }
+
+    public void sync() throws ApiException {
+        List<ResourceType> commitOrder = getCommitOrder();
+
+        Map<ResourceType, Future<IMetadataController.ICommit>> fetches = new EnumMap<>(ResourceType.class);
+        for (ResourceType resourceType : commitOrder) {
+            final IMetadataController<?> controller = controllers.get(resourceType);
+            fetches.put(resourceType, executorService.submit(new Callable<IMetadataController.ICommit>() {
+                @Override
+                public IMetadataController.ICommit call() throws Exception {
+                    return controller.fetch();
+                }
+            }));
+        }
+
+        Set<ResourceType> committed = EnumSet.noneOf(ResourceType.class);
+        Set<ResourceType> failed = EnumSet.noneOf(ResourceType.class);
+        RuntimeException error = null;
+        for (ResourceType resourceType : commitOrder) {
+            Future<IMetadataController.ICommit> fetch = fetches.get(resourceType);
+            if (!Collections.disjoint(getDependencies(resourceType), failed)) {
+                fetch.cancel(true);
+                failed.add(resourceType);
+                continue;
+            }
+
+            try {
+                fetch.get().commit();
+                committed.add(resourceType);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                for (Future<IMetadataController.ICommit> future : fetches.values()) {
+                    future.cancel(true);
+                }
+                throw ApiException.unexpectedError(null, e);
+            } catch (ExecutionException e) {
+                failed.add(resourceType);
+                if (error == null) {
+                    error = toRuntimeException(e.getCause());
+                }
+            } catch (RuntimeException e) {
+                failed.add(resourceType);
+                if (error == null) {
+                    error = e;
+                }
+            }
+        }
+
+        if (!committed.isEmpty()) {
+            Set<ResourceType> unmodifiableCommitted = Collections.unmodifiableSet(committed);
+            for (IMetadataSyncListener listener : listeners) {
+                listener.onSynced(unmodifiableCommitted);
+            }
+        }
+
+        if (error != null) {
+            throw error;
+        }
+    }
+
+    /**
+     * Orders registered resources so that every resource comes after its dependencies.
+     * Dependencies which are not registered are ignored.
+     */
+    private List<ResourceType> getCommitOrder() {
+        List<ResourceType> order = new ArrayList<>();
+        Set<ResourceType> pending = EnumSet.noneOf(ResourceType.class);
+        pending.addAll(controllers.keySet());
+
+        while (!pending.isEmpty()) {
+            List<ResourceType> ready = new ArrayList<>();
+            for (ResourceType resourceType : pending) {
+                Set<ResourceType> dependencies = EnumSet.noneOf(ResourceType.class);
+                dependencies.addAll(getDependencies(resourceType));
+                dependencies.retainAll(pending);
+                if (dependencies.isEmpty()) {
+                    ready.add(resourceType);
+                }
+            }
+
+            if (ready.isEmpty()) {
+                throw new IllegalStateException("Cyclic metadata dependencies: " + pending);
+            }
+            order.addAll(ready);
+            pending.removeAll(ready);
+        }
+        return order;
+    }
+
+    private static RuntimeException toRuntimeException(Throwable throwable) {
+        if (throwable instanceof RuntimeException) {
+            return (RuntimeException) throwable;
+        }
+        if (throwable instanceof Error) {
+            throw (Error) throwable;
+        }
+        return ApiException.unexpectedError(null, throwable);
+    }
+}
@@ -83,7 +83,10 @@ public abstract class PushableDataController {
                 FailedItem failedItem = new FailedItem();
                 if (apiException.getResponse() != null) {
                     failedItem.setHttpStatusCode(apiException.getResponse().getStatus());
-                    failedItem.setErrorMessage(new String(apiException.getResponse().getBody()));
+                    byte[] errorBody = apiException.getErrorBody();
+                    if (errorBody != null) {
+                        failedItem.setErrorMessage(new String(errorBody));
+                    }
                 }
                 failedItem.setItemId(id);
                 failedItem.setItemFailedItemType(type);
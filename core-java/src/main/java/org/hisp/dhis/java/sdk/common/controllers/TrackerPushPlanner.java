@@ -0,0 +1,199 @@
+/*
+ * Copyright (c) 2015, University of Oslo
+ *
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.hisp.dhis.java.sdk.common.controllers;
+
+import org.hisp.dhis.java.sdk.common.ActionMap;
+import org.hisp.dhis.java.sdk.common.IStateStore;
+import org.hisp.dhis.java.sdk.models.common.state.Action;
+import org.hisp.dhis.java.sdk.models.enrollment.Enrollment;
+import org.hisp.dhis.java.sdk.models.event.Event;
+import org.hisp.dhis.java.sdk.models.trackedentity.TrackedEntityInstance;
+import org.hisp.dhis.java.sdk.utils.Preconditions;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Splits locally changed tracker data into waves which can be sent to server in bulk.
+ * Tracked entity instances go first, then enrollments and events. Items are released
+ * into a wave only when their parent is already known by the server (its action is
+ * not {@link Action#TO_POST}), so once a parent wave is acknowledged and marked as
+ * synced, its children are unblocked by the next call to planner.
+ */
+public final class TrackerPushPlanner {
+    /**
+     * Largest number of uids sent in one timestamp request, which keeps its
+     * query string well below the URL length accepted by servers.
+     */
+    public static final int MAX_TIMESTAMP_UIDS = 100;
+
+    private final IStateStore stateStore;
+
+    public TrackerPushPlanner(IStateStore stateStore) {
+        this.stateStore = Preconditions.isNull(stateStore, "IStateStore must not be null");
+    }
+
+    public Wave<TrackedEntityInstance> planTrackedEntityInstances(
+            Collection<TrackedEntityInstance> trackedEntityInstances) {
+        Wave<TrackedEntityInstance> wave = new Wave<>();
+        if (trackedEntityInstances == null || trackedEntityInstances.isEmpty()) {
+            return wave;
+        }
+
+        ActionMap actionMap = stateStore.queryActionsForModels(
+                TrackedEntityInstance.class, trackedEntityInstances);
+        for (TrackedEntityInstance trackedEntityInstance : trackedEntityInstances) {
+            if (trackedEntityInstance != null) {
+                wave.add(trackedEntityInstance, actionMap.get(trackedEntityInstance.getId()));
+            }
+        }
+        return wave;
+    }
+
+    public Wave<Enrollment> planEnrollments(Collection<Enrollment> enrollments) {
+        Wave<Enrollment> wave = new Wave<>();
+        if (enrollments == null || enrollments.isEmpty()) {
+            return wave;
+        }
+
+        List<TrackedEntityInstance> trackedEntityInstances = new ArrayList<>();
+        for (Enrollment enrollment : enrollments) {
+            if (enrollment != null && enrollment.getTrackedEntityInstance() != null) {
+                trackedEntityInstances.add(enrollment.getTrackedEntityInstance());
+            }
+        }
+
+        ActionMap actionMap = stateStore.queryActionsForModels(Enrollment.class, enrollments);
+        ActionMap trackedEntityInstanceActionMap = stateStore
+                .queryActionsForModels(TrackedEntityInstance.class, trackedEntityInstances);
+        for (Enrollment enrollment : enrollments) {
+            if (enrollment == null) {
+                continue;
+            }
+
+            TrackedEntityInstance trackedEntityInstance = enrollment.getTrackedEntityInstance();
+            if (trackedEntityInstance == null || !Action.TO_POST.equals(
+                    trackedEntityInstanceActionMap.get(trackedEntityInstance.getId()))) {
+                wave.add(enrollment, actionMap.get(enrollment.getId()));
+            }
+        }
+        return wave;
+    }
+
+    public Wave<Event> planEvents(Collection<Event> events) {
+        Wave<Event> wave = new Wave<>();
+        if (events == null || events.isEmpty()) {
+            return wave;
+        }
+
+        List<Enrollment> enrollments = new ArrayList<>();
+        for (Event event : events) {
+            if (event != null && event.getEnrollment() != null) {
+                enrollments.add(event.getEnrollment());
+            }
+        }
+
+        ActionMap actionMap = stateStore.queryActionsForModels(Event.class, events);
+        ActionMap enrollmentActionMap = stateStore.queryActionsForModels(Enrollment.class, enrollments);
+        for (Event event : events) {
+            if (event == null) {
+                continue;
+            }
+
+            Enrollment enrollment = event.getEnrollment();
+            if (enrollment == null || !Action.TO_POST.equals(enrollmentActionMap.get(enrollment.getId()))) {
+                wave.add(event, actionMap.get(event.getId()));
+            }
+        }
+        return wave;
+    }
+
+    /**
+     * Splits given items into consecutive chunks of at most batchSize items.
+     */
+    public static <T> List<List<T>> chunks(List<T> items, int batchSize) {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("Batch size must be positive");
+        }
+
+        List<List<T>> chunks = new ArrayList<>();
+        for (int start = 0; start < items.size(); start += batchSize) {
+            chunks.add(items.subList(start, Math.min(start + batchSize, items.size())));
+        }
+        return chunks;
+    }
+
+    /**
+     * Splits given uids into sets of at most {@link #MAX_TIMESTAMP_UIDS}, one per timestamp request.
+     */
+    public static List<Set<String>> timestampChunks(Collection<String> uids) {
+        List<Set<String>> chunks = new ArrayList<>();
+        for (List<String> chunk : chunks(new ArrayList<String>(uids), MAX_TIMESTAMP_UIDS)) {
+            chunks.add(new LinkedHashSet<String>(chunk));
+        }
+        return chunks;
+    }
+
+    /**
+     * Items of one wave grouped by the request which has to be used to send them.
+     */
+    public static final class Wave<T> {
+        private final List<T> toPost;
+        private final List<T> toPut;
+
+        Wave() {
+            toPost = new ArrayList<>();
+            toPut = new ArrayList<>();
+        }
+
+        void add(T item, Action action) {
+            if (Action.TO_POST.equals(action)) {
+                toPost.add(item);
+            } else if (Action.TO_UPDATE.equals(action)) {
+                toPut.add(item);
+            }
+        }
+
+        public List<T> getToPost() {
+            return Collections.unmodifiableList(toPost);
+        }
+
+        public List<T> getToPut() {
+            return Collections.unmodifiableList(toPut);
+        }
+
+        public boolean isEmpty() {
+            return toPost.isEmpty() && toPut.isEmpty();
+        }
+    }
+}
@@ -0,0 +1,194 @@
+/*
+ * Copyright (c) 2015, University of Oslo
+ *
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.hisp.dhis.java.sdk.common.expression;
+
+import org.joda.time.Days;
+import org.joda.time.LocalDate;
+import org.joda.time.Months;
+import org.joda.time.Weeks;
+import org.joda.time.Years;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The d2: functions available to program rule and program indicator expressions.
+ * Every function evaluates its own arguments, so a call does not allocate an
+ * argument array on each evaluation.
+ */
+enum D2Function {
+    HAS_VALUE("d2:hasValue", 1, 1) {
+        @Override
+        Object apply(IExpression[] arguments, Object[] slots) {
+            return !Values.isEmpty(arguments[0].evaluate(slots));
+        }
+    },
+    DAYS_BETWEEN("d2:daysBetween", 2, 2) {
+        @Override
+        Object apply(IExpression[] arguments, Object[] slots) {
+            LocalDate start = Values.toDate(arguments[0].evaluate(slots));
+            LocalDate end = Values.toDate(arguments[1].evaluate(slots));
+            return start == null || end == null ? null :
+                    (Object) (double) Days.daysBetween(start, end).getDays();
+        }
+    },
+    WEEKS_BETWEEN("d2:weeksBetween", 2, 2) {
+        @Override
+        Object apply(IExpression[] arguments, Object[] slots) {
+            LocalDate start = Values.toDate(arguments[0].evaluate(slots));
+            LocalDate end = Values.toDate(arguments[1].evaluate(slots));
+            return start == null || end == null ? null :
+                    (Object) (double) Weeks.weeksBetween(start, end).getWeeks();
+        }
+    },
+    MONTHS_BETWEEN("d2:monthsBetween", 2, 2) {
+        @Override
+        Object apply(IExpression[] arguments, Object[] slots) {
+            LocalDate start = Values.toDate(arguments[0].evaluate(slots));
+            LocalDate end = Values.toDate(arguments[1].evaluate(slots));
+            return start == null || end == null ? null :
+                    (Object) (double) Months.monthsBetween(start, end).getMonths();
+        }
+    },
+    YEARS_BETWEEN("d2:yearsBetween", 2, 2) {
+        @Override
+        Object apply(IExpression[] arguments, Object[] slots) {
+            LocalDate start = Values.toDate(arguments[0].evaluate(slots));
+            LocalDate end = Values.toDate(arguments[1].evaluate(slots));
+            return start == null || end == null ? null :
+                    (Object) (double) Years.yearsBetween(start, end).getYears();
+        }
+    },
+    ADD_DAYS("d2:addDays", 2, 2) {
+        @Override
+        Object apply(IExpression[] arguments, Object[] slots) {
+            LocalDate date = Values.toDate(arguments[0].evaluate(slots));
+            double days = Values.toNumber(arguments[1].evaluate(slots));
+            return date == null || Double.isNaN(days) ? null : date.plusDays((int) days).toString();
+        }
+    },
+    FLOOR("d2:floor", 1, 1) {
+        @Override
+        Object apply(IExpression[] arguments, Object[] slots) {
+            return Math.floor(Values.toNumber(arguments[0].evaluate(slots)));
+        }
+    },
+    CEIL("d2:ceil", 1, 1) {
+        @Override
+        Object apply(IExpression[] arguments, Object[] slots) {
+            return Math.ceil(Values.toNumber(arguments[0].evaluate(slots)));
+        }
+    },
+    ROUND("d2:round", 1, 1) {
+        @Override
+        Object apply(IExpression[] arguments, Object[] slots) {
+            return (double) Math.round(Values.toNumber(arguments[0].evaluate(slots)));
+        }
+    },
+    MODULUS("d2:modulus", 2, 2) {
+        @Override
+        Object apply(IExpression[] arguments, Object[] slots) {
+            return Values.toNumber(arguments[0].evaluate(slots)) %
+                    Values.toNumber(arguments[1].evaluate(slots));
+        }
+    },
+    LENGTH("d2:length", 1, 1) {
+        @Override
+        Object apply(IExpression[] arguments, Object[] slots) {
+            return (double) Values.toString(arguments[0].evaluate(slots)).length();
+        }
+    },
+    CONCATENATE("d2:concatenate", 1, Integer.MAX_VALUE) {
+        @Override
+        Object apply(IExpression[] arguments, Object[] slots) {
+            StringBuilder builder = new StringBuilder();
+            for (IExpression argument : arguments) {
+                builder.append(Values.toString(argument.evaluate(slots)));
+            }
+            return builder.toString();
+        }
+    },
+    ZING("d2:zing", 1, 1) {
+        @Override
+        Object apply(IExpression[] arguments, Object[] slots) {
+            return Math.max(0.0, Values.toNumber(arguments[0].evaluate(slots)));
+        }
+    },
+    OIZP("d2:oizp", 1, 1) {
+        @Override
+        Object apply(IExpression[] arguments, Object[] slots) {
+            return Values.toNumber(arguments[0].evaluate(slots)) >= 0.0 ? 1.0 : 0.0;
+        }
+    },
+    ZPVC("d2:zpvc", 1, Integer.MAX_VALUE) {
+        @Override
+        Object apply(IExpression[] arguments, Object[] slots) {
+            double count = 0.0;
+            for (IExpression argument : arguments) {
+                Double value = Values.asNumber(argument.evaluate(slots));
+                if (value != null && value >= 0.0) {
+                    count++;
+                }
+            }
+            return count;
+        }
+    };
+
+    private static final Map<String, D2Function> FUNCTIONS = new HashMap<>();
+
+    static {
+        for (D2Function function : values()) {
+            FUNCTIONS.put(function.name, function);
+        }
+    }
+
+    private final String name;
+    private final int minArguments;
+    private final int maxArguments;
+
+    D2Function(String name, int minArguments, int maxArguments) {
+        this.name = name;
+        this.minArguments = minArguments;
+        this.maxArguments = maxArguments;
+    }
+
+    static D2Function forName(String name) {
+        return FUNCTIONS.get(name);
+    }
+
+    String getName() {
+        return name;
+    }
+
+    boolean accepts(int arguments) {
+        return arguments >= minArguments && arguments <= maxArguments;
+    }
+
+    abstract Object apply(IExpression[] arguments, Object[] slots);
+}
@@ -0,0 +1,141 @@
+/*
+ * Copyright (c) 2015, University of Oslo
+ *
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.hisp.dhis.java.sdk.common.expression;
+
+import org.hisp.dhis.java.sdk.utils.Preconditions;
+
+/**
+ * Pre-optimization pass over compiled expressions. Slots holding constants are
+ * replaced by their values, and every subexpression whose operands are all literals
+ * is evaluated once and replaced by its result. Short-circuit operators fold as soon
+ * as one side decides the outcome, e.g. false && #{x} becomes false.
+ */
+public final class ExpressionOptimizer {
+
+    /**
+     * Tells which slots hold values that are fixed at compile time.
+     */
+    public interface IConstantSlots {
+
+        /**
+         * @return value of the slot, or null if it is not a constant.
+         */
+        Object getConstant(int slot);
+    }
+
+    private static final Object[] NO_SLOTS = new Object[0];
+
+    private ExpressionOptimizer() {
+        // no instances
+    }
+
+    public static IExpression fold(IExpression expression, IConstantSlots constantSlots) {
+        Preconditions.isNull(expression, "expression must not be null");
+        Preconditions.isNull(constantSlots, "constantSlots must not be null");
+        return foldNode(expression, constantSlots);
+    }
+
+    /**
+     * @return true if the expression is a literal, so its value does not depend on any slot.
+     */
+    public static boolean isConstant(IExpression expression) {
+        return expression instanceof Nodes.Literal;
+    }
+
+    private static IExpression foldNode(IExpression expression, IConstantSlots constantSlots) {
+        if (expression instanceof Nodes.Slot) {
+            Object constant = constantSlots.getConstant(((Nodes.Slot) expression).getIndex());
+            return constant != null ? new Nodes.Literal(constant) : expression;
+        }
+        if (expression instanceof Nodes.Not) {
+            IExpression operand = foldNode(((Nodes.Not) expression).getOperand(), constantSlots);
+            return literalOrSelf(new Nodes.Not(operand), operand);
+        }
+        if (expression instanceof Nodes.Negate) {
+            IExpression operand = foldNode(((Nodes.Negate) expression).getOperand(), constantSlots);
+            return literalOrSelf(new Nodes.Negate(operand), operand);
+        }
+        if (expression instanceof Nodes.And) {
+            IExpression left = foldNode(((Nodes.And) expression).getLeft(), constantSlots);
+            IExpression right = foldNode(((Nodes.And) expression).getRight(), constantSlots);
+            if (isFalse(left) || isFalse(right)) {
+                return new Nodes.Literal(Boolean.FALSE);
+            }
+            return literalOrSelf(new Nodes.And(left, right), left, right);
+        }
+        if (expression instanceof Nodes.Or) {
+            IExpression left = foldNode(((Nodes.Or) expression).getLeft(), constantSlots);
+            IExpression right = foldNode(((Nodes.Or) expression).getRight(), constantSlots);
+            if (isTrue(left) || isTrue(right)) {
+                return new Nodes.Literal(Boolean.TRUE);
+            }
+            return literalOrSelf(new Nodes.Or(left, right), left, right);
+        }
+        if (expression instanceof Nodes.Binary) {
+            Nodes.Binary binary = (Nodes.Binary) expression;
+            IExpression left = foldNode(binary.getLeft(), constantSlots);
+            IExpression right = foldNode(binary.getRight(), constantSlots);
+            return literalOrSelf(new Nodes.Binary(binary.getOperator(), left, right), left, right);
+        }
+        if (expression instanceof Nodes.Call) {
+            Nodes.Call call = (Nodes.Call) expression;
+            IExpression[] arguments = new IExpression[call.getArguments().length];
+            for (int i = 0; i < arguments.length; i++) {
+                arguments[i] = foldNode(call.getArguments()[i], constantSlots);
+            }
+            return literalOrSelf(new Nodes.Call(call.getFunction(), arguments), arguments);
+        }
+        return expression;
+    }
+
+    /**
+     * Evaluates the node once if all of its operands are literals. Functions are pure,
+     * so this is safe for calls too.
+     */
+    private static IExpression literalOrSelf(IExpression node, IExpression... operands) {
+        for (IExpression operand : operands) {
+            if (!isConstant(operand)) {
+                return node;
+            }
+        }
+        return new Nodes.Literal(node.evaluate(NO_SLOTS));
+    }
+
+    private static boolean isTrue(IExpression expression) {
+        return isConstant(expression) && Values.toBoolean(expression.evaluate(NO_SLOTS));
+    }
+
+    /**
+     * @return true if the expression is a literal which evaluates to false, so a condition
+     * made of it can never hold.
+     */
+    public static boolean isFalse(IExpression expression) {
+        return isConstant(expression) && !Values.toBoolean(expression.evaluate(NO_SLOTS));
+    }
+}
@@ -0,0 +1,330 @@
+/*
+ * Copyright (c) 2015, University of Oslo
+ *
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.hisp.dhis.java.sdk.common.expression;
+
+import org.hisp.dhis.java.sdk.utils.Preconditions;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Recursive descent parser for DHIS2 rule and indicator expressions. Parsing happens
+ * once; references are bound to slots through an {@link ISymbolTable}, so evaluating
+ * the resulting tree involves no string scanning or pattern matching.
+ * <p/>
+ * Operator precedence, from lowest to highest: ||, &&, == !=, < <= > >=, + -, * / %,
+ * unary ! and -.
+ */
+public final class ExpressionParser {
+    private static final String REFERENCE_KEYS = "#AVC";
+
+    private final String expression;
+    private final ISymbolTable symbolTable;
+    private int position;
+
+    private ExpressionParser(String expression, ISymbolTable symbolTable) {
+        this.expression = expression;
+        this.symbolTable = symbolTable;
+    }
+
+    /**
+     * @throws IllegalArgumentException if the expression is malformed, calls an unknown
+     *                                  function or references something the symbol table cannot bind.
+     */
+    public static IExpression parse(String expression, ISymbolTable symbolTable) {
+        Preconditions.isNull(expression, "expression must not be null");
+        Preconditions.isNull(symbolTable, "symbolTable must not be null");
+
+        ExpressionParser parser = new ExpressionParser(expression, symbolTable);
+        IExpression root = parser.parseOr();
+        parser.skipWhitespace();
+        if (!parser.isAtEnd()) {
+            throw parser.error("unexpected '" + expression.charAt(parser.position) + "'");
+        }
+        return root;
+    }
+
+    private IExpression parseOr() {
+        IExpression left = parseAnd();
+        while (match("||")) {
+            left = new Nodes.Or(left, parseAnd());
+        }
+        return left;
+    }
+
+    private IExpression parseAnd() {
+        IExpression left = parseEquality();
+        while (match("&&")) {
+            left = new Nodes.And(left, parseEquality());
+        }
+        return left;
+    }
+
+    private IExpression parseEquality() {
+        IExpression left = parseRelational();
+        while (true) {
+            if (match(Operator.EQUAL.getSymbol())) {
+                left = new Nodes.Binary(Operator.EQUAL, left, parseRelational());
+            } else if (match(Operator.NOT_EQUAL.getSymbol())) {
+                left = new Nodes.Binary(Operator.NOT_EQUAL, left, parseRelational());
+            } else {
+                return left;
+            }
+        }
+    }
+
+    private IExpression parseRelational() {
+        IExpression left = parseAdditive();
+        while (true) {
+            // two character operators have to be tried first
+            if (match(Operator.LESS_OR_EQUAL.getSymbol())) {
+                left = new Nodes.Binary(Operator.LESS_OR_EQUAL, left, parseAdditive());
+            } else if (match(Operator.GREATER_OR_EQUAL.getSymbol())) {
+                left = new Nodes.Binary(Operator.GREATER_OR_EQUAL, left, parseAdditive());
+            } else if (match(Operator.LESS.getSymbol())) {
+                left = new Nodes.Binary(Operator.LESS, left, parseAdditive());
+            } else if (match(Operator.GREATER.getSymbol())) {
+                left = new Nodes.Binary(Operator.GREATER, left, parseAdditive());
+            } else {
+                return left;
+            }
+        }
+    }
+
+    private IExpression parseAdditive() {
+        IExpression left = parseMultiplicative();
+        while (true) {
+            if (match(Operator.PLUS.getSymbol())) {
+                left = new Nodes.Binary(Operator.PLUS, left, parseMultiplicative());
+            } else if (match(Operator.MINUS.getSymbol())) {
+                left = new Nodes.Binary(Operator.MINUS, left, parseMultiplicative());
+            } else {
+                return left;
+            }
+        }
+    }
+
+    private IExpression parseMultiplicative() {
+        IExpression left = parseUnary();
+        while (true) {
+            if (match(Operator.MULTIPLY.getSymbol())) {
+                left = new Nodes.Binary(Operator.MULTIPLY, left, parseUnary());
+            } else if (match(Operator.DIVIDE.getSymbol())) {
+                left = new Nodes.Binary(Operator.DIVIDE, left, parseUnary());
+            } else if (match(Operator.MODULUS.getSymbol())) {
+                left = new Nodes.Binary(Operator.MODULUS, left, parseUnary());
+            } else {
+                return left;
+            }
+        }
+    }
+
+    private IExpression parseUnary() {
+        if (match("!")) {
+            return new Nodes.Not(parseUnary());
+        }
+        if (match("-")) {
+            return new Nodes.Negate(parseUnary());
+        }
+        if (match("+")) {
+            return parseUnary();
+        }
+        return parsePrimary();
+    }
+
+    private IExpression parsePrimary() {
+        skipWhitespace();
+        if (isAtEnd()) {
+            throw error("unexpected end of expression");
+        }
+
+        char character = expression.charAt(position);
+        if (character == '(') {
+            position++;
+            IExpression inner = parseOr();
+            expect(')');
+            return inner;
+        }
+        if (character == '\'' || character == '"') {
+            return new Nodes.Literal(parseString(character));
+        }
+        if (isDigit(character) || (character == '.' && isDigit(peek(1)))) {
+            return new Nodes.Literal(parseNumber());
+        }
+        if (REFERENCE_KEYS.indexOf(character) >= 0 && peek(1) == '{') {
+            return parseReference();
+        }
+        if (isIdentifierStart(character)) {
+            return parseIdentifier();
+        }
+        throw error("unexpected '" + character + "'");
+    }
+
+    private IExpression parseReference() {
+        String key = String.valueOf(expression.charAt(position));
+        int end = expression.indexOf('}', position + 2);
+        if (end < 0) {
+            throw error("unterminated reference");
+        }
+
+        String name = expression.substring(position + 2, end).trim();
+        position = end + 1;
+        return bind(key, name);
+    }
+
+    private IExpression parseIdentifier() {
+        int start = position;
+        while (!isAtEnd() && isIdentifierPart(expression.charAt(position))) {
+            position++;
+        }
+
+        String identifier = expression.substring(start, position);
+        if ("true".equals(identifier)) {
+            return new Nodes.Literal(Boolean.TRUE);
+        }
+        if ("false".equals(identifier)) {
+            return new Nodes.Literal(Boolean.FALSE);
+        }
+
+        D2Function function = D2Function.forName(identifier);
+        if (function == null) {
+            throw error("unknown identifier '" + identifier + "'");
+        }
+        return parseCall(function);
+    }
+
+    private IExpression parseCall(D2Function function) {
+        expect('(');
+
+        List<IExpression> arguments = new ArrayList<>();
+        if (!match(")")) {
+            do {
+                arguments.add(parseOr());
+            } while (match(","));
+            expect(')');
+        }
+
+        if (!function.accepts(arguments.size())) {
+            throw error(function.getName() + " does not take " + arguments.size() + " argument(s)");
+        }
+
+        // d2:hasValue('name') refers to the program rule variable with that name
+        if (function == D2Function.HAS_VALUE && arguments.get(0) instanceof Nodes.Literal &&
+                ((Nodes.Literal) arguments.get(0)).getValue() instanceof String) {
+            arguments.set(0, bind("#", (String) ((Nodes.Literal) arguments.get(0)).getValue()));
+        }
+        return new Nodes.Call(function, arguments.toArray(new IExpression[arguments.size()]));
+    }
+
+    private IExpression bind(String key, String name) {
+        try {
+            return new Nodes.Slot(symbolTable.bind(key, name));
+        } catch (IllegalArgumentException e) {
+            throw error(e.getMessage());
+        }
+    }
+
+    private String parseString(char quote) {
+        StringBuilder builder = new StringBuilder();
+        position++;
+        while (!isAtEnd()) {
+            char character = expression.charAt(position++);
+            if (character == quote) {
+                return builder.toString();
+            }
+            if (character == '\\' && !isAtEnd()) {
+                character = expression.charAt(position++);
+            }
+            builder.append(character);
+        }
+        throw error("unterminated string");
+    }
+
+    private Double parseNumber() {
+        int start = position;
+        while (!isAtEnd() && (isDigit(expression.charAt(position)) || expression.charAt(position) == '.')) {
+            position++;
+        }
+
+        String number = expression.substring(start, position);
+        if (!Values.isNumeric(number)) {
+            throw error("malformed number '" + number + "'");
+        }
+        return Double.valueOf(number);
+    }
+
+    private boolean match(String token) {
+        skipWhitespace();
+        if (expression.startsWith(token, position)) {
+            position += token.length();
+            return true;
+        }
+        return false;
+    }
+
+    private void expect(char character) {
+        skipWhitespace();
+        if (isAtEnd() || expression.charAt(position) != character) {
+            throw error("expected '" + character + "'");
+        }
+        position++;
+    }
+
+    private void skipWhitespace() {
+        while (!isAtEnd() && Character.isWhitespace(expression.charAt(position))) {
+            position++;
+        }
+    }
+
+    private char peek(int offset) {
+        int index = position + offset;
+        return index < expression.length() ? expression.charAt(index) : '\0';
+    }
+
+    private boolean isAtEnd() {
+        return position >= expression.length();
+    }
+
+    private IllegalArgumentException error(String message) {
+        return new IllegalArgumentException("Invalid expression \"" + expression +
+                "\" at position " + position + ": " + message);
+    }
+
+    private static boolean isDigit(char character) {
+        return character >= '0' && character <= '9';
+    }
+
+    private static boolean isIdentifierStart(char character) {
+        return Character.isLetter(character) || character == '_';
+    }
+
+    private static boolean isIdentifierPart(char character) {
+        return Character.isLetterOrDigit(character) || character == '_' || character == ':';
+    }
+}
@@ -0,0 +1,205 @@
+/*
+ * Copyright (c) 2015, University of Oslo
+ *
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.hisp.dhis.java.sdk.common.expression;
+
+/**
+ * Node types of the expression tree built by {@link ExpressionParser}.
+ */
+final class Nodes {
+
+    private Nodes() {
+        // no instances
+    }
+
+    static final class Literal implements IExpression {
+        private final Object value;
+
+        Literal(Object value) {
+            this.value = value;
+        }
+
+        Object getValue() {
+            return value;
+        }
+
+        @Override
+        public Object evaluate(Object[] slots) {
+            return value;
+        }
+    }
+
+    static final class Slot implements IExpression {
+        private final int index;
+
+        Slot(int index) {
+            this.index = index;
+        }
+
+        int getIndex() {
+            return index;
+        }
+
+        @Override
+        public Object evaluate(Object[] slots) {
+            return slots[index];
+        }
+    }
+
+    static final class Not implements IExpression {
+        private final IExpression operand;
+
+        Not(IExpression operand) {
+            this.operand = operand;
+        }
+
+        IExpression getOperand() {
+            return operand;
+        }
+
+        @Override
+        public Object evaluate(Object[] slots) {
+            return !Values.toBoolean(operand.evaluate(slots));
+        }
+    }
+
+    static final class Negate implements IExpression {
+        private final IExpression operand;
+
+        Negate(IExpression operand) {
+            this.operand = operand;
+        }
+
+        IExpression getOperand() {
+            return operand;
+        }
+
+        @Override
+        public Object evaluate(Object[] slots) {
+            return -Values.toNumber(operand.evaluate(slots));
+        }
+    }
+
+    static final class And implements IExpression {
+        private final IExpression left;
+        private final IExpression right;
+
+        And(IExpression left, IExpression right) {
+            this.left = left;
+            this.right = right;
+        }
+
+        IExpression getLeft() {
+            return left;
+        }
+
+        IExpression getRight() {
+            return right;
+        }
+
+        @Override
+        public Object evaluate(Object[] slots) {
+            return Values.toBoolean(left.evaluate(slots)) && Values.toBoolean(right.evaluate(slots));
+        }
+    }
+
+    static final class Or implements IExpression {
+        private final IExpression left;
+        private final IExpression right;
+
+        Or(IExpression left, IExpression right) {
+            this.left = left;
+            this.right = right;
+        }
+
+        IExpression getLeft() {
+            return left;
+        }
+
+        IExpression getRight() {
+            return right;
+        }
+
+        @Override
+        public Object evaluate(Object[] slots) {
+            return Values.toBoolean(left.evaluate(slots)) || Values.toBoolean(right.evaluate(slots));
+        }
+    }
+
+    static final class Binary implements IExpression {
+        private final Operator operator;
+        private final IExpression left;
+        private final IExpression right;
+
+        Binary(Operator operator, IExpression left, IExpression right) {
+            this.operator = operator;
+            this.left = left;
+            this.right = right;
+        }
+
+        Operator getOperator() {
+            return operator;
+        }
+
+        IExpression getLeft() {
+            return left;
+        }
+
+        IExpression getRight() {
+            return right;
+        }
+
+        @Override
+        public Object evaluate(Object[] slots) {
+            return operator.apply(left.evaluate(slots), right.evaluate(slots));
+        }
+    }
+
+    static final class Call implements IExpression {
+        private final D2Function function;
+        private final IExpression[] arguments;
+
+        Call(D2Function function, IExpression[] arguments) {
+            this.function = function;
+            this.arguments = arguments;
+        }
+
+        D2Function getFunction() {
+            return function;
+        }
+
+        IExpression[] getArguments() {
+            return arguments;
+        }
+
+        @Override
+        public Object evaluate(Object[] slots) {
+            return function.apply(arguments, slots);
+        }
+    }
+}
@@ -0,0 +1,321 @@
+/*
+ * Copyright (c) 2015, University of Oslo
+ *
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.hisp.dhis.java.sdk.common.expression;
+
+import org.hisp.dhis.java.sdk.utils.Preconditions;
+
+/**
+ * Compiles an expression tree into an {@link INumericExpression} which evaluates rows
+ * of primitive columns without boxing or parsing. Only purely numeric expressions
+ * qualify; string literals and date or text functions make {@link #compile} return
+ * null, and callers fall back to {@link IExpression#evaluate(Object[])}.
+ * <p/>
+ * The numeric form follows the coercion rules of {@link Values}, with NaN standing
+ * for a missing value: arithmetic reads it as zero, comparisons with it are false,
+ * and two missing values are equal. Booleans become 1 and 0.
+ */
+public final class NumericCompiler {
+
+    /**
+     * Provides the numeric form of a slot, such as a column load or a constant.
+     */
+    public interface ISlotResolver {
+
+        /**
+         * @return null if the slot has no numeric form.
+         */
+        INumericExpression resolve(int slot);
+    }
+
+    private NumericCompiler() {
+        // no instances
+    }
+
+    /**
+     * @return the numeric form of the expression, or null if it has none.
+     */
+    public static INumericExpression compile(IExpression expression, ISlotResolver slotResolver) {
+        Preconditions.isNull(expression, "expression must not be null");
+        Preconditions.isNull(slotResolver, "slotResolver must not be null");
+        return toNumeric(expression, slotResolver);
+    }
+
+    public static INumericExpression constant(final double value) {
+        return new INumericExpression() {
+            @Override
+            public double evaluate(int row) {
+                return value;
+            }
+        };
+    }
+
+    public static INumericExpression column(final double[] column) {
+        return new INumericExpression() {
+            @Override
+            public double evaluate(int row) {
+                return column[row];
+            }
+        };
+    }
+
+    private static INumericExpression toNumeric(IExpression expression, ISlotResolver slotResolver) {
+        if (expression instanceof Nodes.Literal) {
+            Object value = ((Nodes.Literal) expression).getValue();
+            Double number = Values.asNumber(value);
+            return number != null ? constant(number) : null;
+        }
+        if (expression instanceof Nodes.Slot) {
+            return slotResolver.resolve(((Nodes.Slot) expression).getIndex());
+        }
+        if (expression instanceof Nodes.Not) {
+            final INumericExpression operand = toNumeric(((Nodes.Not) expression).getOperand(), slotResolver);
+            return operand == null ? null : new INumericExpression() {
+                @Override
+                public double evaluate(int row) {
+                    return isTrue(operand.evaluate(row)) ? 0.0 : 1.0;
+                }
+            };
+        }
+        if (expression instanceof Nodes.Negate) {
+            final INumericExpression operand = toNumeric(((Nodes.Negate) expression).getOperand(), slotResolver);
+            return operand == null ? null : new INumericExpression() {
+                @Override
+                public double evaluate(int row) {
+                    return -orZero(operand.evaluate(row));
+                }
+            };
+        }
+        if (expression instanceof Nodes.And) {
+            final INumericExpression left = toNumeric(((Nodes.And) expression).getLeft(), slotResolver);
+            final INumericExpression right = toNumeric(((Nodes.And) expression).getRight(), slotResolver);
+            return left == null || right == null ? null : new INumericExpression() {
+                @Override
+                public double evaluate(int row) {
+                    return isTrue(left.evaluate(row)) && isTrue(right.evaluate(row)) ? 1.0 : 0.0;
+                }
+            };
+        }
+        if (expression instanceof Nodes.Or) {
+            final INumericExpression left = toNumeric(((Nodes.Or) expression).getLeft(), slotResolver);
+            final INumericExpression right = toNumeric(((Nodes.Or) expression).getRight(), slotResolver);
+            return left == null || right == null ? null : new INumericExpression() {
+                @Override
+                public double evaluate(int row) {
+                    return isTrue(left.evaluate(row)) || isTrue(right.evaluate(row)) ? 1.0 : 0.0;
+                }
+            };
+        }
+        if (expression instanceof Nodes.Binary) {
+            Nodes.Binary binary = (Nodes.Binary) expression;
+            INumericExpression left = toNumeric(binary.getLeft(), slotResolver);
+            INumericExpression right = toNumeric(binary.getRight(), slotResolver);
+            return left == null || right == null ? null : toNumeric(binary.getOperator(), left, right);
+        }
+        if (expression instanceof Nodes.Call) {
+            Nodes.Call call = (Nodes.Call) expression;
+            INumericExpression[] arguments = new INumericExpression[call.getArguments().length];
+            for (int i = 0; i < arguments.length; i++) {
+                arguments[i] = toNumeric(call.getArguments()[i], slotResolver);
+                if (arguments[i] == null) {
+                    return null;
+                }
+            }
+            return toNumeric(call.getFunction(), arguments);
+        }
+        return null;
+    }
+
+    private static INumericExpression toNumeric(Operator operator, final INumericExpression left,
+                                                final INumericExpression right) {
+        switch (operator) {
+            case EQUAL:
+                return new INumericExpression() {
+                    @Override
+                    public double evaluate(int row) {
+                        return isEqual(left.evaluate(row), right.evaluate(row)) ? 1.0 : 0.0;
+                    }
+                };
+            case NOT_EQUAL:
+                return new INumericExpression() {
+                    @Override
+                    public double evaluate(int row) {
+                        return isEqual(left.evaluate(row), right.evaluate(row)) ? 0.0 : 1.0;
+                    }
+                };
+            // comparisons involving NaN are false, just like comparisons with missing values
+            case LESS:
+                return new INumericExpression() {
+                    @Override
+                    public double evaluate(int row) {
+                        return left.evaluate(row) < right.evaluate(row) ? 1.0 : 0.0;
+                    }
+                };
+            case LESS_OR_EQUAL:
+                return new INumericExpression() {
+                    @Override
+                    public double evaluate(int row) {
+                        return left.evaluate(row) <= right.evaluate(row) ? 1.0 : 0.0;
+                    }
+                };
+            case GREATER:
+                return new INumericExpression() {
+                    @Override
+                    public double evaluate(int row) {
+                        return left.evaluate(row) > right.evaluate(row) ? 1.0 : 0.0;
+                    }
+                };
+            case GREATER_OR_EQUAL:
+                return new INumericExpression() {
+                    @Override
+                    public double evaluate(int row) {
+                        return left.evaluate(row) >= right.evaluate(row) ? 1.0 : 0.0;
+                    }
+                };
+            case PLUS:
+                return new INumericExpression() {
+                    @Override
+                    public double evaluate(int row) {
+                        return orZero(left.evaluate(row)) + orZero(right.evaluate(row));
+                    }
+                };
+            case MINUS:
+                return new INumericExpression() {
+                    @Override
+                    public double evaluate(int row) {
+                        return orZero(left.evaluate(row)) - orZero(right.evaluate(row));
+                    }
+                };
+            case MULTIPLY:
+                return new INumericExpression() {
+                    @Override
+                    public double evaluate(int row) {
+                        return orZero(left.evaluate(row)) * orZero(right.evaluate(row));
+                    }
+                };
+            case DIVIDE:
+                return new INumericExpression() {
+                    @Override
+                    public double evaluate(int row) {
+                        return orZero(left.evaluate(row)) / orZero(right.evaluate(row));
+                    }
+                };
+            case MODULUS:
+                return new INumericExpression() {
+                    @Override
+                    public double evaluate(int row) {
+                        return orZero(left.evaluate(row)) % orZero(right.evaluate(row));
+                    }
+                };
+            default:
+                return null;
+        }
+    }
+
+    private static INumericExpression toNumeric(D2Function function, final INumericExpression[] arguments) {
+        switch (function) {
+            case HAS_VALUE:
+                return new INumericExpression() {
+                    @Override
+                    public double evaluate(int row) {
+                        return Double.isNaN(arguments[0].evaluate(row)) ? 0.0 : 1.0;
+                    }
+                };
+            case FLOOR:
+                return new INumericExpression() {
+                    @Override
+                    public double evaluate(int row) {
+                        return Math.floor(orZero(arguments[0].evaluate(row)));
+                    }
+                };
+            case CEIL:
+                return new INumericExpression() {
+                    @Override
+                    public double evaluate(int row) {
+                        return Math.ceil(orZero(arguments[0].evaluate(row)));
+                    }
+                };
+            case ROUND:
+                return new INumericExpression() {
+                    @Override
+                    public double evaluate(int row) {
+                        return Math.round(orZero(arguments[0].evaluate(row)));
+                    }
+                };
+            case MODULUS:
+                return new INumericExpression() {
+                    @Override
+                    public double evaluate(int row) {
+                        return orZero(arguments[0].evaluate(row)) % orZero(arguments[1].evaluate(row));
+                    }
+                };
+            case ZING:
+                return new INumericExpression() {
+                    @Override
+                    public double evaluate(int row) {
+                        return Math.max(0.0, orZero(arguments[0].evaluate(row)));
+                    }
+                };
+            case OIZP:
+                return new INumericExpression() {
+                    @Override
+                    public double evaluate(int row) {
+                        return orZero(arguments[0].evaluate(row)) >= 0.0 ? 1.0 : 0.0;
+                    }
+                };
+            case ZPVC:
+                return new INumericExpression() {
+                    @Override
+                    public double evaluate(int row) {
+                        double count = 0.0;
+                        for (INumericExpression argument : arguments) {
+                            if (argument.evaluate(row) >= 0.0) {
+                                count++;
+                            }
+                        }
+                        return count;
+                    }
+                };
+            default:
+                // dates and text have no numeric form
+                return null;
+        }
+    }
+
+    private static double orZero(double value) {
+        return Double.isNaN(value) ? 0.0 : value;
+    }
+
+    private static boolean isTrue(double value) {
+        return value != 0.0 && !Double.isNaN(value);
+    }
+
+    private static boolean isEqual(double left, double right) {
+        return Double.isNaN(left) ? Double.isNaN(right) : left == right;
+    }
+}
@@ -0,0 +1,119 @@
+/*
+ * Copyright (c) 2015, University of Oslo
+ *
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.hisp.dhis.java.sdk.common.expression;
+
+enum Operator {
+    EQUAL("==") {
+        @Override
+        Object apply(Object left, Object right) {
+            return Values.isEqual(left, right);
+        }
+    },
+    NOT_EQUAL("!=") {
+        @Override
+        Object apply(Object left, Object right) {
+            return !Values.isEqual(left, right);
+        }
+    },
+    LESS("<") {
+        @Override
+        Object apply(Object left, Object right) {
+            Integer comparison = Values.compare(left, right);
+            return comparison != null && comparison < 0;
+        }
+    },
+    LESS_OR_EQUAL("<=") {
+        @Override
+        Object apply(Object left, Object right) {
+            Integer comparison = Values.compare(left, right);
+            return comparison != null && comparison <= 0;
+        }
+    },
+    GREATER(">") {
+        @Override
+        Object apply(Object left, Object right) {
+            Integer comparison = Values.compare(left, right);
+            return comparison != null && comparison > 0;
+        }
+    },
+    GREATER_OR_EQUAL(">=") {
+        @Override
+        Object apply(Object left, Object right) {
+            Integer comparison = Values.compare(left, right);
+            return comparison != null && comparison >= 0;
+        }
+    },
+    PLUS("+") {
+        @Override
+        Object apply(Object left, Object right) {
+            // numbers are added, anything else which is not a number is concatenated
+            if ((Values.isEmpty(left) || Values.asNumber(left) != null) &&
+                    (Values.isEmpty(right) || Values.asNumber(right) != null)) {
+                return Values.toNumber(left) + Values.toNumber(right);
+            }
+            return Values.toString(left) + Values.toString(right);
+        }
+    },
+    MINUS("-") {
+        @Override
+        Object apply(Object left, Object right) {
+            return Values.toNumber(left) - Values.toNumber(right);
+        }
+    },
+    MULTIPLY("*") {
+        @Override
+        Object apply(Object left, Object right) {
+            return Values.toNumber(left) * Values.toNumber(right);
+        }
+    },
+    DIVIDE("/") {
+        @Override
+        Object apply(Object left, Object right) {
+            return Values.toNumber(left) / Values.toNumber(right);
+        }
+    },
+    MODULUS("%") {
+        @Override
+        Object apply(Object left, Object right) {
+            return Values.toNumber(left) % Values.toNumber(right);
+        }
+    };
+
+    private final String symbol;
+
+    Operator(String symbol) {
+        this.symbol = symbol;
+    }
+
+    String getSymbol() {
+        return symbol;
+    }
+
+    abstract Object apply(Object left, Object right);
+}
@@ -0,0 +1,188 @@
+/*
+ * Copyright (c) 2015, University of Oslo
+ *
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.hisp.dhis.java.sdk.common.expression;
+
+import org.joda.time.LocalDate;
+
+/**
+ * Coercion rules shared by expression operators and functions. Values are either
+ * null, Double, String or Boolean. Data values arrive as raw strings and are only
+ * converted when an operator needs a number, a boolean or a date.
+ */
+public final class Values {
+
+    private Values() {
+        // no instances
+    }
+
+    public static boolean isEmpty(Object value) {
+        return value == null || (value instanceof String && ((String) value).isEmpty());
+    }
+
+    /**
+     * Returns the value as a Double, or null when it cannot be read as a number.
+     */
+    public static Double asNumber(Object value) {
+        if (value instanceof Double) {
+            return (Double) value;
+        }
+        if (value instanceof Boolean) {
+            return (Boolean) value ? 1.0 : 0.0;
+        }
+        if (value instanceof String && isNumeric((String) value)) {
+            return Double.valueOf((String) value);
+        }
+        return null;
+    }
+
+    /**
+     * Arithmetic view of a value: missing values count as zero, non-numeric ones as NaN.
+     */
+    public static double toNumber(Object value) {
+        if (isEmpty(value)) {
+            return 0.0;
+        }
+        Double number = asNumber(value);
+        return number != null ? number : Double.NaN;
+    }
+
+    public static boolean toBoolean(Object value) {
+        if (value == null) {
+            return false;
+        }
+        if (value instanceof Boolean) {
+            return (Boolean) value;
+        }
+        if (value instanceof Double) {
+            double number = (Double) value;
+            return number != 0.0 && !Double.isNaN(number);
+        }
+
+        String string = value.toString();
+        if (string.isEmpty() || "false".equals(string)) {
+            return false;
+        }
+        if (isNumeric(string)) {
+            return Double.parseDouble(string) != 0.0;
+        }
+        return true;
+    }
+
+    public static String toString(Object value) {
+        if (value == null) {
+            return "";
+        }
+        if (value instanceof Double) {
+            double number = (Double) value;
+            if (number == Math.rint(number) && !Double.isInfinite(number)
+                    && Math.abs(number) < Long.MAX_VALUE) {
+                return Long.toString((long) number);
+            }
+        }
+        return value.toString();
+    }
+
+    /**
+     * Parses the leading yyyy-MM-dd part of a value, or returns null if it is not a date.
+     */
+    public static LocalDate toDate(Object value) {
+        if (!(value instanceof String) || ((String) value).length() < 10) {
+            return null;
+        }
+        try {
+            return LocalDate.parse(((String) value).substring(0, 10));
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    public static boolean isEqual(Object left, Object right) {
+        if (isEmpty(left) || isEmpty(right)) {
+            return isEmpty(left) && isEmpty(right);
+        }
+        if (left instanceof Boolean || right instanceof Boolean) {
+            return toBoolean(left) == toBoolean(right);
+        }
+
+        Double leftNumber = asNumber(left);
+        Double rightNumber = asNumber(right);
+        if (leftNumber != null && rightNumber != null) {
+            return leftNumber.doubleValue() == rightNumber.doubleValue();
+        }
+        if (left instanceof Double || right instanceof Double) {
+            return false;
+        }
+        return left.toString().equals(right.toString());
+    }
+
+    /**
+     * Compares numerically when both values are numbers and lexically otherwise,
+     * which also orders ISO dates correctly.
+     *
+     * @return null if either value is missing.
+     */
+    public static Integer compare(Object left, Object right) {
+        if (isEmpty(left) || isEmpty(right)) {
+            return null;
+        }
+
+        Double leftNumber = asNumber(left);
+        Double rightNumber = asNumber(right);
+        if (leftNumber != null && rightNumber != null) {
+            return Double.compare(leftNumber, rightNumber);
+        }
+        return toString(left).compareTo(toString(right));
+    }
+
+    /**
+     * Checks for an optionally signed decimal number without going through
+     * NumberFormatException, which is far too expensive on a per-keystroke path.
+     */
+    static boolean isNumeric(String string) {
+        int length = string.length();
+        int index = 0;
+        if (length > 0 && (string.charAt(0) == '-' || string.charAt(0) == '+')) {
+            index++;
+        }
+
+        boolean digits = false;
+        boolean point = false;
+        for (; index < length; index++) {
+            char character = string.charAt(index);
+            if (character >= '0' && character <= '9') {
+                digits = true;
+            } else if (character == '.' && !point) {
+                point = true;
+            } else {
+                return false;
+            }
+        }
+        return digits;
+    }
+}
@@ -32,6 +32,11 @@ import java.io.IOException;
 
 public class ApiException extends RuntimeException {
 
+    /**
+     * Upper bound for the part of an error body kept by {@link #getErrorBody()}.
+     */
+    public static final int MAX_ERROR_BODY_SIZE = 64 * 1024;
+
     public static ApiException networkError(String url, IOException exception) {
         return new ApiException(exception.getMessage(), url,
                 null, Kind.NETWORK, exception);
@@ -79,6 +84,8 @@ public class ApiException extends RuntimeException {
     private final String url;
     private final Response response;
     private final Kind kind;
+    private byte[] errorBody;
+    private boolean errorBodyCaptured;
 
     ApiException(String message, String url, Response response,
                  Kind kind, Throwable exception) {
@@ -108,4 +115,23 @@ public class ApiException extends RuntimeException {
     public Kind getKind() {
         return kind;
     }
+
+    /**
+     * The first {@link #MAX_ERROR_BODY_SIZE} bytes of the response body or {@code null}
+     * if there is no body. The body is read only when this method is first called, so
+     * errors which are never inspected do not pay for buffering it.
+     */
+    public synchronized byte[] getErrorBody() {
+        if (!errorBodyCaptured) {
+            errorBodyCaptured = true;
+            if (response != null && response.getResponseBody() != null) {
+                try {
+                    errorBody = response.getResponseBody().bytes(MAX_ERROR_BODY_SIZE);
+                } catch (IOException | IllegalStateException e) {
+                    errorBody = null;
+                }
+            }
+        }
+        return errorBody;
+    }
 }
@@ -0,0 +1,251 @@
+/*
+ * Copyright (c) 2015, University of Oslo
+ *
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.hisp.dhis.java.sdk.common.network;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import org.hisp.dhis.java.sdk.utils.Preconditions;
+
+import java.beans.Introspector;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Typed projection for the {@code fields} query parameter of DHIS2 Web API. Property
+ * names are taken from {@link JsonProperty} annotations of the model class, so a projection
+ * can only name properties which the model is able to deserialize.
+ *
+ * <pre>
+ * Fields&lt;Program&gt; fields = Fields.builder(Program.class)
+ *         .allFields()
+ *         .nested("programStages", Fields.basic(ProgramStage.class))
+ *         .build();
+ * </pre>
+ *
+ * @param <T> model class which is described by projection.
+ */
+public final class Fields<T> {
+    private static final String LAST_UPDATED = "lastUpdated";
+    private static final String ID = "id";
+    private static final Map<Class<?>, Set<String>> PROPERTIES = new ConcurrentHashMap<>();
+
+    private final Class<T> modelClass;
+    private final String value;
+
+    private Fields(Class<T> modelClass, String value) {
+        this.modelClass = modelClass;
+        this.value = value;
+    }
+
+    /**
+     * Identifier and {@code lastUpdated}, which is enough to find out
+     * which models exist on server and which of them were changed.
+     */
+    public static <T> Fields<T> basic(Class<T> modelClass) {
+        Builder<T> builder = builder(modelClass).field(identifier(modelClass));
+        if (properties(modelClass).contains(LAST_UPDATED)) {
+            builder.field(LAST_UPDATED);
+        }
+        return builder.build();
+    }
+
+    /**
+     * Identifier only. Used for references to other models.
+     */
+    public static <T> Fields<T> reference(Class<T> modelClass) {
+        return builder(modelClass).field(identifier(modelClass)).build();
+    }
+
+    /**
+     * All properties of the model. Nested models are returned by server
+     * in their default (reference) form.
+     */
+    public static <T> Fields<T> all(Class<T> modelClass) {
+        return builder(modelClass).allFields().build();
+    }
+
+    public static <T> Builder<T> builder(Class<T> modelClass) {
+        return new Builder<>(modelClass);
+    }
+
+    /**
+     * Names of all {@link JsonProperty} properties declared by the class and its super classes.
+     */
+    public static Set<String> properties(Class<?> modelClass) {
+        Preconditions.isNull(modelClass, "modelClass must not be null");
+
+        Set<String> properties = PROPERTIES.get(modelClass);
+        if (properties == null) {
+            Set<String> names = new LinkedHashSet<>();
+            collectProperties(modelClass, names);
+            properties = Collections.unmodifiableSet(names);
+            PROPERTIES.put(modelClass, properties);
+        }
+        return properties;
+    }
+
+    public Class<T> getModelClass() {
+        return modelClass;
+    }
+
+    /**
+     * Value of the {@code fields} query parameter.
+     */
+    @Override
+    public String toString() {
+        return value;
+    }
+
+    private static String identifier(Class<?> modelClass) {
+        Set<String> properties = properties(modelClass);
+        if (properties.contains(ID)) {
+            return ID;
+        }
+        // tracker models (event, enrollment) are identified by property named after them
+        String name = Introspector.decapitalize(modelClass.getSimpleName());
+        if (properties.contains(name)) {
+            return name;
+        }
+        throw new IllegalArgumentException("No identifier property in " + modelClass.getName());
+    }
+
+    private static void collectProperties(Class<?> modelClass, Set<String> names) {
+        if (modelClass == null || Object.class.equals(modelClass)) {
+            return;
+        }
+        // properties of super classes come first, as they do in responses of server
+        collectProperties(modelClass.getSuperclass(), names);
+
+        for (Field field : modelClass.getDeclaredFields()) {
+            addProperty(field.getAnnotation(JsonProperty.class), field.getName(), names);
+        }
+        for (Method method : modelClass.getDeclaredMethods()) {
+            addProperty(method.getAnnotation(JsonProperty.class), toPropertyName(method.getName()), names);
+        }
+    }
+
+    private static void addProperty(JsonProperty property, String memberName, Set<String> names) {
+        if (property == null) {
+            return;
+        }
+        names.add(property.value().isEmpty() ? memberName : property.value());
+    }
+
+    /**
+     * Derives bean property name from accessor name the way Jackson does:
+     * getFoo, isFoo and setFoo all become foo, getURL becomes url.
+     */
+    private static String toPropertyName(String methodName) {
+        String name = methodName;
+        for (String prefix : new String[]{"get", "is", "set"}) {
+            if (methodName.startsWith(prefix) && methodName.length() > prefix.length()) {
+                name = methodName.substring(prefix.length());
+                break;
+            }
+        }
+
+        StringBuilder builder = new StringBuilder(name);
+        for (int i = 0; i < builder.length() && Character.isUpperCase(builder.charAt(i)); i++) {
+            builder.setCharAt(i, Character.toLowerCase(builder.charAt(i)));
+        }
+        return builder.toString();
+    }
+
+    public static final class Builder<T> {
+        private final Class<T> modelClass;
+        private final Map<String, String> fields;
+
+        private Builder(Class<T> modelClass) {
+            Preconditions.isNull(modelClass, "modelClass must not be null");
+
+            this.modelClass = modelClass;
+            this.fields = new LinkedHashMap<>();
+        }
+
+        public Builder<T> field(String... names) {
+            for (String name : names) {
+                fields.put(checkProperty(name), name);
+            }
+            return this;
+        }
+
+        public Builder<T> allFields() {
+            for (String name : properties(modelClass)) {
+                if (!fields.containsKey(name)) {
+                    fields.put(name, name);
+                }
+            }
+            return this;
+        }
+
+        /**
+         * Selects property together with the given projection of nested model.
+         */
+        public Builder<T> nested(String name, Fields<?> nestedFields) {
+            Preconditions.isNull(nestedFields, "nestedFields must not be null");
+            fields.put(checkProperty(name), name + "[" + nestedFields + "]");
+            return this;
+        }
+
+        public Builder<T> exclude(String... names) {
+            for (String name : names) {
+                fields.remove(checkProperty(name));
+            }
+            return this;
+        }
+
+        public Fields<T> build() {
+            if (fields.isEmpty()) {
+                throw new IllegalStateException("Projection must contain at least one field");
+            }
+
+            StringBuilder value = new StringBuilder();
+            for (String field : fields.values()) {
+                if (value.length() > 0) {
+                    value.append(',');
+                }
+                value.append(field);
+            }
+            return new Fields<>(modelClass, value.toString());
+        }
+
+        private String checkProperty(String name) {
+            if (!properties(modelClass).contains(name)) {
+                throw new IllegalArgumentException(modelClass.getSimpleName() +
+                        " has no property named " + name);
+            }
+            return name;
+        }
+    }
+}
@@ -28,6 +28,7 @@
 
 package org.hisp.dhis.java.sdk.common.network;
 
+import org.hisp.dhis.java.sdk.event.IEventApiClient;
 import org.hisp.dhis.java.sdk.systeminfo.ISystemInfoApiClient;
 import org.hisp.dhis.java.sdk.user.IUserApiClient;
 import org.hisp.dhis.java.sdk.dashboard.IDashboardApiClient;
@@ -38,4 +39,6 @@ public interface INetworkModule {
     ISystemInfoApiClient getSystemInfoApiClient();
 
     IUserApiClient getUserApiClient();
+
+    IEventApiClient getEventApiClient();
 }
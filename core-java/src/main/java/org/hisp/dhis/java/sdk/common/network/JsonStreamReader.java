@@ -0,0 +1,124 @@
+/*
+ * Copyright (c) 2015, University of Oslo
+ *
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.hisp.dhis.java.sdk.common.network;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.hisp.dhis.java.sdk.utils.Preconditions;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reads arrays of models from JSON with the Jackson streaming API. Only one
+ * chunk of models is materialized at a time, the rest of the body stays in the stream.
+ */
+public final class JsonStreamReader {
+    private final ObjectMapper objectMapper;
+
+    public JsonStreamReader(ObjectMapper objectMapper) {
+        this.objectMapper = Preconditions.isNull(objectMapper, "objectMapper must not be null");
+    }
+
+    /**
+     * Reads models from array in the given field of the root object (for example "events"
+     * in {"pager": {...}, "events": [...]}), or from the root array if the body is an array.
+     * Other fields of the root object are skipped without being parsed into objects.
+     *
+     * @param inputStream response body, it is not closed by this method.
+     * @param arrayField  name of the field which contains models.
+     * @param clazz       class of models.
+     * @param chunkSize   maximum number of models passed to consumer at once.
+     * @param consumer    receives models in chunks.
+     * @return total number of models read.
+     */
+    public <T> int readArray(InputStream inputStream, String arrayField, Class<T> clazz,
+                             int chunkSize, IChunkConsumer<T> consumer) throws IOException {
+        Preconditions.isNull(inputStream, "inputStream must not be null");
+        Preconditions.isNull(clazz, "clazz must not be null");
+        Preconditions.isNull(consumer, "consumer must not be null");
+        if (chunkSize < 1) {
+            throw new IllegalArgumentException("chunkSize must be positive");
+        }
+
+        JsonParser parser = objectMapper.getFactory().createParser(inputStream);
+        parser.disable(JsonParser.Feature.AUTO_CLOSE_SOURCE);
+        try {
+            JsonToken token = parser.nextToken();
+            if (token == JsonToken.START_ARRAY) {
+                return readElements(parser, clazz, chunkSize, consumer);
+            }
+            if (token != JsonToken.START_OBJECT) {
+                return 0;
+            }
+
+            int count = 0;
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String fieldName = parser.getCurrentName();
+                token = parser.nextToken();
+                if (token == JsonToken.START_ARRAY && fieldName.equals(arrayField)) {
+                    count += readElements(parser, clazz, chunkSize, consumer);
+                } else {
+                    parser.skipChildren();
+                }
+            }
+            return count;
+        } finally {
+            parser.close();
+        }
+    }
+
+    private <T> int readElements(JsonParser parser, Class<T> clazz, int chunkSize,
+                                 IChunkConsumer<T> consumer) throws IOException {
+        int count = 0;
+        List<T> chunk = new ArrayList<>(chunkSize);
+        JsonToken token;
+        while ((token = parser.nextToken()) != JsonToken.END_ARRAY) {
+            if (token == null) {
+                throw new IOException("Unexpected end of input inside of array");
+            }
+
+            chunk.add(objectMapper.readValue(parser, clazz));
+            count++;
+
+            if (chunk.size() == chunkSize) {
+                consumer.consume(chunk);
+                chunk = new ArrayList<>(chunkSize);
+            }
+        }
+
+        if (!chunk.isEmpty()) {
+            consumer.consume(chunk);
+        }
+        return count;
+    }
+}
@@ -28,6 +28,9 @@
 
 package org.hisp.dhis.java.sdk.common.network;
 
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
@@ -40,8 +43,19 @@ public final class Request {
     private final String mUrl;
     private final List<Header> mHeaders;
     private final byte[] mBody;
+    private final IRequestBodyWriter mBodyWriter;
 
-    public Request(HttpMethod method, String url, List<Header> headers, byte[] body) {
+    public Request(HttpMethod method, String url, List<Header> headers, final byte[] body) {
+        this(method, url, headers, body, body == null ? null : new IRequestBodyWriter() {
+            @Override
+            public void writeTo(OutputStream outputStream) throws IOException {
+                outputStream.write(body);
+            }
+        });
+    }
+
+    private Request(HttpMethod method, String url, List<Header> headers,
+                    byte[] body, IRequestBodyWriter bodyWriter) {
         if (method == null) {
             throw new IllegalArgumentException("Method must not be null.");
         }
@@ -58,6 +72,15 @@ public final class Request {
         }
 
         mBody = body;
+        mBodyWriter = bodyWriter;
+    }
+
+    /**
+     * Creates a request whose body is written straight to the connection by the given writer.
+     */
+    public static Request streamed(HttpMethod method, String url, List<Header> headers,
+                                   IRequestBodyWriter bodyWriter) {
+        return new Request(method, url, headers, null, bodyWriter);
     }
 
     /**
@@ -82,9 +105,37 @@ public final class Request {
     }
 
     /**
-     * Returns the request body or {@code null}.
+     * Returns the request body or {@code null}. Bodies which were given
+     * as a writer are serialized into memory on each call.
      */
     public byte[] getBody() {
-        return mBody;
+        if (mBody != null || mBodyWriter == null) {
+            return mBody;
+        }
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        try {
+            mBodyWriter.writeTo(outputStream);
+        } catch (IOException e) {
+            throw ApiException.unexpectedError(mUrl, e);
+        }
+        return outputStream.toByteArray();
+    }
+
+    /**
+     * Length of the request body in bytes, 0 if there is no body
+     * or -1 if the body is streamed and its length is not known.
+     */
+    public long getContentLength() {
+        if (mBody != null) {
+            return mBody.length;
+        }
+        return mBodyWriter == null ? 0 : -1;
+    }
+
+    /**
+     * Returns a writer which streams the request body or {@code null} if there is no body.
+     */
+    public IRequestBodyWriter getBodyWriter() {
+        return mBodyWriter;
     }
 }
@@ -28,6 +28,7 @@
 
 package org.hisp.dhis.java.sdk.common.network;
 
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
@@ -40,9 +41,13 @@ public final class Response {
     private final int mStatus;
     private final String mReason;
     private final List<Header> mHeaders;
-    private final byte[] mBody;
+    private final ResponseBody mBody;
 
     public Response(String url, int status, String reason, List<Header> headers, byte[] body) {
+        this(url, status, reason, headers, body == null ? null : ResponseBody.create(body));
+    }
+
+    private Response(String url, int status, String reason, List<Header> headers, ResponseBody body) {
         if (url == null) {
             throw new IllegalArgumentException("url == null");
         }
@@ -63,6 +68,14 @@ public final class Response {
         mBody = body;
     }
 
+    /**
+     * Creates a response whose body is read lazily from the given {@link ResponseBody}.
+     */
+    public static Response streamed(String url, int status, String reason,
+                                    List<Header> headers, ResponseBody body) {
+        return new Response(url, status, reason, headers, body);
+    }
+
     /**
      * Request URL.
      */
@@ -92,9 +105,24 @@ public final class Response {
     }
 
     /**
-     * Response body. May be {@code null}.
+     * Response body. May be {@code null}. Streamed bodies are buffered
+     * into memory on the first call.
      */
     public byte[] getBody() {
+        if (mBody == null) {
+            return null;
+        }
+        try {
+            return mBody.bytes();
+        } catch (IOException e) {
+            throw ApiException.networkError(mUrl, e);
+        }
+    }
+
+    /**
+     * Response body which can be read as a stream without buffering. May be {@code null}.
+     */
+    public ResponseBody getResponseBody() {
         return mBody;
     }
 }
\ No newline at end of file
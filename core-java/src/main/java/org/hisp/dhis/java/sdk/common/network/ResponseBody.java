@@ -0,0 +1,169 @@
+/*
+ * Copyright (c) 2015, University of Oslo
+ *
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.hisp.dhis.java.sdk.common.network;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.util.Arrays;
+
+/**
+ * An HTTP response body. Backed either by a byte array or by a one-shot stream
+ * which is read directly from the connection. A streamed body can be consumed
+ * only once, either through {@link #byteStream()}, {@link #channel()} or by
+ * buffering it with {@link #bytes()}.
+ */
+public final class ResponseBody implements Closeable {
+    private static final int BUFFER_SIZE = 8192;
+
+    private final long mContentLength;
+    private final InputStream mSource;
+    private byte[] mBytes;
+    private boolean mConsumed;
+
+    private ResponseBody(InputStream source, byte[] bytes, long contentLength) {
+        mSource = source;
+        mBytes = bytes;
+        mContentLength = contentLength;
+    }
+
+    public static ResponseBody create(byte[] bytes) {
+        if (bytes == null) {
+            throw new IllegalArgumentException("bytes == null");
+        }
+        return new ResponseBody(null, bytes, bytes.length);
+    }
+
+    /**
+     * @param source        stream to read the body from.
+     * @param contentLength length of the body in bytes or -1 if unknown.
+     */
+    public static ResponseBody create(InputStream source, long contentLength) {
+        if (source == null) {
+            throw new IllegalArgumentException("source == null");
+        }
+        return new ResponseBody(source, null, contentLength);
+    }
+
+    /**
+     * Length of the body in bytes or -1 if unknown.
+     */
+    public synchronized long contentLength() {
+        return mBytes != null ? mBytes.length : mContentLength;
+    }
+
+    /**
+     * Returns the body as a stream. For streamed bodies the caller is responsible
+     * for closing it.
+     *
+     * @throws IllegalStateException if the streamed body was already consumed.
+     */
+    public synchronized InputStream byteStream() {
+        if (mBytes != null) {
+            return new ByteArrayInputStream(mBytes);
+        }
+        if (mConsumed) {
+            throw new IllegalStateException("Body has already been consumed");
+        }
+        mConsumed = true;
+        return mSource;
+    }
+
+    /**
+     * Returns the body as a channel. Same rules as for {@link #byteStream()} apply.
+     */
+    public ReadableByteChannel channel() {
+        return Channels.newChannel(byteStream());
+    }
+
+    /**
+     * Reads the whole body into memory. The result is cached, so subsequent
+     * calls return the same array.
+     */
+    public synchronized byte[] bytes() throws IOException {
+        if (mBytes == null) {
+            InputStream inputStream = byteStream();
+            try {
+                mBytes = read(inputStream, Integer.MAX_VALUE);
+            } finally {
+                inputStream.close();
+            }
+        }
+        return mBytes;
+    }
+
+    /**
+     * Reads at most {@code maxBytes} of the body. Streamed bodies are consumed
+     * and closed by this call, even when they were longer than the limit.
+     */
+    public synchronized byte[] bytes(int maxBytes) throws IOException {
+        if (maxBytes < 0) {
+            throw new IllegalArgumentException("maxBytes < 0");
+        }
+        if (mBytes != null) {
+            return mBytes.length <= maxBytes ? mBytes : Arrays.copyOf(mBytes, maxBytes);
+        }
+        InputStream inputStream = byteStream();
+        try {
+            return read(inputStream, maxBytes);
+        } finally {
+            inputStream.close();
+        }
+    }
+
+    /**
+     * Releases the underlying stream if the body was not consumed.
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if (mSource != null && !mConsumed) {
+            mConsumed = true;
+            mSource.close();
+        }
+    }
+
+    private byte[] read(InputStream inputStream, int maxBytes) throws IOException {
+        int initialSize = mContentLength > 0 ?
+                (int) Math.min(mContentLength, maxBytes) : Math.min(BUFFER_SIZE, maxBytes);
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream(initialSize);
+        byte[] buffer = new byte[BUFFER_SIZE];
+        int remaining = maxBytes;
+        int read;
+        while (remaining > 0 &&
+                (read = inputStream.read(buffer, 0, Math.min(buffer.length, remaining))) != -1) {
+            outputStream.write(buffer, 0, read);
+            remaining -= read;
+        }
+        return outputStream.toByteArray();
+    }
+}
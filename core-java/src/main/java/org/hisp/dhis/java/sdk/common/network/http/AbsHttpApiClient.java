@@ -0,0 +1,251 @@
+/*
+ * Copyright (c) 2015, University of Oslo
+ *
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.hisp.dhis.java.sdk.common.network.http;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.hisp.dhis.java.sdk.common.network.ApiException;
+import org.hisp.dhis.java.sdk.common.network.Configuration;
+import org.hisp.dhis.java.sdk.common.network.Fields;
+import org.hisp.dhis.java.sdk.common.network.Header;
+import org.hisp.dhis.java.sdk.common.network.HttpMethod;
+import org.hisp.dhis.java.sdk.common.network.IChunkConsumer;
+import org.hisp.dhis.java.sdk.common.network.IRequestBodyWriter;
+import org.hisp.dhis.java.sdk.common.network.JsonStreamReader;
+import org.hisp.dhis.java.sdk.common.network.Request;
+import org.hisp.dhis.java.sdk.common.network.Response;
+import org.hisp.dhis.java.sdk.utils.Preconditions;
+import org.joda.time.DateTime;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.URLEncoder;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Base class for API clients which talk to DHIS2 Web API over {@link HttpClient}.
+ * Query parameters are passed as name/value pairs; pairs with {@code null} value are skipped.
+ */
+public abstract class AbsHttpApiClient {
+    protected static final String PARAM_FIELDS = "fields";
+    protected static final String PARAM_FILTER = "filter";
+    protected static final String PARAM_PAGING = "paging";
+
+    private static final String API_PATH = "/api/";
+    private static final int LIST_CHUNK_SIZE = 256;
+
+    private final HttpClient httpClient;
+    private final Configuration configuration;
+    private final ObjectMapper objectMapper;
+    private final JsonStreamReader jsonStreamReader;
+
+    protected AbsHttpApiClient(HttpClient httpClient, Configuration configuration,
+                               ObjectMapper objectMapper) {
+        Preconditions.isNull(httpClient, "httpClient must not be null");
+        Preconditions.isNull(configuration, "configuration must not be null");
+        Preconditions.isNull(objectMapper, "objectMapper must not be null");
+
+        this.httpClient = httpClient;
+        this.configuration = configuration;
+        this.objectMapper = objectMapper;
+        this.jsonStreamReader = new JsonStreamReader(objectMapper);
+    }
+
+    /**
+     * Builds {@code filter=lastUpdated:gt:<date>} value or returns {@code null} if there is no date.
+     */
+    protected static String lastUpdatedFilter(DateTime lastUpdated) {
+        return lastUpdated == null ? null : "lastUpdated:gt:" + lastUpdated.toString();
+    }
+
+    protected <T> T getObject(Class<T> type, String path, String... query) {
+        return readBody(execute(HttpMethod.GET, path, null, query), type);
+    }
+
+    /**
+     * Reads single model restricted to the given projection.
+     */
+    protected <T> T getObject(Fields<T> fields, String path, String... query) {
+        return getObject(fields.getModelClass(), path, withFields(fields, query));
+    }
+
+    /**
+     * Reads models from array stored in the given field of response object.
+     */
+    protected <T> List<T> getList(Class<T> type, String field, String path, String... query) {
+        final List<T> models = new ArrayList<>();
+        getChunks(type, field, LIST_CHUNK_SIZE, new IChunkConsumer<T>() {
+            @Override
+            public void consume(List<T> chunk) {
+                models.addAll(chunk);
+            }
+        }, path, query);
+        return models;
+    }
+
+    /**
+     * Reads models restricted to the given projection from array stored in the given field.
+     */
+    protected <T> List<T> getList(Fields<T> fields, String field, String path, String... query) {
+        return getList(fields.getModelClass(), field, path, withFields(fields, query));
+    }
+
+    /**
+     * Streams models from array stored in the given field of response object
+     * to consumer without buffering the whole response.
+     */
+    protected <T> void getChunks(Class<T> type, String field, int chunkSize, IChunkConsumer<T> consumer,
+                                 String path, String... query) {
+        Response response = execute(HttpMethod.GET, path, null, query);
+        if (response.getResponseBody() == null) {
+            throw ApiException.conversionError(response.getUrl(), response,
+                    new IOException("Response has no body to read " + field + " from"));
+        }
+        InputStream inputStream = response.getResponseBody().byteStream();
+        try {
+            try {
+                jsonStreamReader.readArray(inputStream, field, type, chunkSize, consumer);
+            } finally {
+                inputStream.close();
+            }
+        } catch (IOException e) {
+            throw ApiException.conversionError(response.getUrl(), response, e);
+        }
+    }
+
+    protected <T> T readBody(Response response, Class<T> type) {
+        if (response.getResponseBody() == null) {
+            return null;
+        }
+        InputStream inputStream = response.getResponseBody().byteStream();
+        try {
+            try {
+                return objectMapper.readValue(inputStream, type);
+            } finally {
+                inputStream.close();
+            }
+        } catch (IOException e) {
+            throw ApiException.conversionError(response.getUrl(), response, e);
+        }
+    }
+
+    /**
+     * Sends request and returns response with streamed body. Body of given object
+     * is serialized directly into the connection.
+     */
+    protected Response execute(HttpMethod method, String path, final Object body, String... query) {
+        String url = url(path, query);
+        List<Header> headers = Collections.emptyList();
+        Request request;
+        if (body == null) {
+            request = new Request(method, url, headers, (byte[]) null);
+        } else {
+            request = Request.streamed(method, url, headers, new IRequestBodyWriter() {
+                @Override
+                public void writeTo(OutputStream outputStream) throws IOException {
+                    objectMapper.writeValue(new NonClosingOutputStream(outputStream), body);
+                }
+            });
+        }
+        return httpClient.execute(request);
+    }
+
+    /**
+     * Same as {@link #execute(HttpMethod, String, Object, String...)}, but the body
+     * is buffered and the connection is released before returning.
+     */
+    protected Response executeAndBuffer(HttpMethod method, String path, Object body, String... query) {
+        Response response = execute(method, path, body, query);
+        response.getBody();
+        return response;
+    }
+
+    private static String[] withFields(Fields<?> fields, String... query) {
+        String[] fieldsQuery = new String[query.length + 2];
+        fieldsQuery[0] = PARAM_FIELDS;
+        fieldsQuery[1] = fields.toString();
+        System.arraycopy(query, 0, fieldsQuery, 2, query.length);
+        return fieldsQuery;
+    }
+
+    private String url(String path, String... query) {
+        if (query.length % 2 != 0) {
+            throw new IllegalArgumentException("Query must consist of name and value pairs");
+        }
+
+        String serverUrl = configuration.getServerUrl();
+        StringBuilder builder = new StringBuilder(serverUrl.endsWith("/") ?
+                serverUrl.substring(0, serverUrl.length() - 1) : serverUrl)
+                .append(API_PATH).append(path);
+
+        char separator = '?';
+        for (int i = 0; i < query.length; i += 2) {
+            if (query[i + 1] == null) {
+                continue;
+            }
+            builder.append(separator).append(encode(query[i]))
+                    .append('=').append(encode(query[i + 1]));
+            separator = '&';
+        }
+        return builder.toString();
+    }
+
+    private static String encode(String value) {
+        try {
+            return URLEncoder.encode(value, "UTF-8");
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Jackson closes target stream after writing value,
+     * while closing is left to {@link HttpClient}.
+     */
+    private static final class NonClosingOutputStream extends FilterOutputStream {
+
+        NonClosingOutputStream(OutputStream outputStream) {
+            super(outputStream);
+        }
+
+        @Override
+        public void write(byte[] buffer, int offset, int length) throws IOException {
+            out.write(buffer, offset, length);
+        }
+
+        @Override
+        public void close() throws IOException {
+            flush();
+        }
+    }
+}
@@ -0,0 +1,248 @@
+/*
+ * Copyright (c) 2015, University of Oslo
+ *
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.hisp.dhis.java.sdk.common.network.http;
+
+import com.fasterxml.jackson.core.Base64Variants;
+import org.hisp.dhis.java.sdk.common.network.ApiException;
+import org.hisp.dhis.java.sdk.common.network.AuthHandler;
+import org.hisp.dhis.java.sdk.common.network.Header;
+import org.hisp.dhis.java.sdk.common.network.Request;
+import org.hisp.dhis.java.sdk.common.network.Response;
+import org.hisp.dhis.java.sdk.common.network.ResponseBody;
+import org.hisp.dhis.java.sdk.common.network.UserCredentials;
+import org.hisp.dhis.java.sdk.utils.Preconditions;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Executes {@link Request}s on top of {@link HttpURLConnection}.
+ *
+ * <p>JDK keeps idle connections alive and reuses them for subsequent requests to the same
+ * host (the size of that pool is controlled by the {@code http.maxConnections} system property).
+ * A connection is returned to the pool only when its response stream was read to the end and
+ * closed, so bodies handed out by this client drain remaining bytes on close. Draining is
+ * capped at 64 KiB: a body abandoned with more left than that (e.g. an aborted download)
+ * is cut off by disconnecting, as reading it to the end would cost more than a new connection.</p>
+ *
+ * <p>Responses are requested gzip compressed and are decompressed transparently.
+ * Bodies are not buffered: {@link Response#getResponseBody()} reads straight from
+ * the connection.</p>
+ */
+public class HttpClient {
+    public static final int DEFAULT_CONNECT_TIMEOUT_MILLIS = 15 * 1000;
+    public static final int DEFAULT_READ_TIMEOUT_MILLIS = 60 * 1000;
+
+    private static final int CHUNK_LENGTH = 8 * 1024;
+    private static final int MAX_DRAIN_LENGTH = 64 * 1024;
+    private static final String HEADER_AUTHORIZATION = "Authorization";
+    private static final String HEADER_ACCEPT = "Accept";
+    private static final String HEADER_ACCEPT_ENCODING = "Accept-Encoding";
+    private static final String HEADER_CONTENT_TYPE = "Content-Type";
+    private static final String HEADER_CONTENT_ENCODING = "Content-Encoding";
+    private static final String MEDIA_TYPE_JSON = "application/json";
+    private static final String ENCODING_GZIP = "gzip";
+
+    private final AuthHandler authHandler;
+    private final int connectTimeoutMillis;
+    private final int readTimeoutMillis;
+
+    public HttpClient(AuthHandler authHandler) {
+        this(authHandler, DEFAULT_CONNECT_TIMEOUT_MILLIS, DEFAULT_READ_TIMEOUT_MILLIS);
+    }
+
+    public HttpClient(AuthHandler authHandler, int connectTimeoutMillis, int readTimeoutMillis) {
+        Preconditions.isNull(authHandler, "authHandler must not be null");
+
+        if (connectTimeoutMillis < 0 || readTimeoutMillis < 0) {
+            throw new IllegalArgumentException("Timeouts must not be negative");
+        }
+
+        this.authHandler = authHandler;
+        this.connectTimeoutMillis = connectTimeoutMillis;
+        this.readTimeoutMillis = readTimeoutMillis;
+    }
+
+    /**
+     * Sends the request and returns response with a streamed body, which has to be consumed
+     * or closed by the caller.
+     *
+     * @throws ApiException of kind {@link ApiException.Kind#HTTP} if server responded
+     *                      with status code other than 2xx, or of kind
+     *                      {@link ApiException.Kind#NETWORK} if communication failed.
+     */
+    public Response execute(Request request) {
+        Preconditions.isNull(request, "request must not be null");
+
+        HttpURLConnection connection = null;
+        try {
+            connection = (HttpURLConnection) new URL(request.getUrl()).openConnection();
+            connection.setRequestMethod(request.getMethod().name());
+            connection.setConnectTimeout(connectTimeoutMillis);
+            connection.setReadTimeout(readTimeoutMillis);
+            connection.setUseCaches(false);
+            connection.setRequestProperty(HEADER_ACCEPT, MEDIA_TYPE_JSON);
+            connection.setRequestProperty(HEADER_ACCEPT_ENCODING, ENCODING_GZIP);
+
+            UserCredentials credentials = authHandler.getUserCredentials();
+            if (credentials != null) {
+                connection.setRequestProperty(HEADER_AUTHORIZATION, basic(credentials));
+            }
+
+            for (Header header : request.getHeaders()) {
+                connection.setRequestProperty(header.getName(), header.getValue());
+            }
+
+            writeBody(connection, request);
+
+            Response response = readResponse(connection, request.getUrl());
+            if (response.getStatus() < 200 || response.getStatus() >= 300) {
+                throw ApiException.httpError(request.getUrl(), response);
+            }
+            return response;
+        } catch (IOException e) {
+            if (connection != null) {
+                connection.disconnect();
+            }
+            throw ApiException.networkError(request.getUrl(), e);
+        }
+    }
+
+    private static void writeBody(HttpURLConnection connection, Request request) throws IOException {
+        if (request.getBodyWriter() == null) {
+            return;
+        }
+
+        if (connection.getRequestProperty(HEADER_CONTENT_TYPE) == null) {
+            connection.setRequestProperty(HEADER_CONTENT_TYPE, MEDIA_TYPE_JSON);
+        }
+
+        long contentLength = request.getContentLength();
+        if (contentLength >= 0) {
+            connection.setFixedLengthStreamingMode(contentLength);
+        } else {
+            connection.setChunkedStreamingMode(CHUNK_LENGTH);
+        }
+
+        connection.setDoOutput(true);
+        OutputStream outputStream = connection.getOutputStream();
+        try {
+            request.getBodyWriter().writeTo(outputStream);
+        } finally {
+            outputStream.close();
+        }
+    }
+
+    private static Response readResponse(HttpURLConnection connection, String url) throws IOException {
+        int status = connection.getResponseCode();
+        String reason = connection.getResponseMessage();
+
+        List<Header> headers = new ArrayList<>();
+        for (Map.Entry<String, List<String>> field : connection.getHeaderFields().entrySet()) {
+            // status line is reported under null key
+            if (field.getKey() == null) {
+                continue;
+            }
+            for (String value : field.getValue()) {
+                headers.add(new Header(field.getKey(), value));
+            }
+        }
+
+        InputStream inputStream = status >= 400 ?
+                connection.getErrorStream() : connection.getInputStream();
+
+        ResponseBody body = null;
+        if (inputStream != null) {
+            long contentLength = connection.getContentLengthLong();
+            if (ENCODING_GZIP.equalsIgnoreCase(connection.getContentEncoding())) {
+                inputStream = new GZIPInputStream(inputStream);
+                contentLength = -1;
+            }
+            body = ResponseBody.create(new DrainingInputStream(inputStream, connection), contentLength);
+        }
+
+        return Response.streamed(url, status, reason != null ? reason : "", headers, body);
+    }
+
+    private static String basic(UserCredentials credentials) {
+        String pair = credentials.getUsername() + ":" + credentials.getPassword();
+        return "Basic " + Base64Variants.MIME_NO_LINEFEEDS.encode(
+                pair.getBytes(Charset.forName("UTF-8")));
+    }
+
+    /**
+     * Reads what is left of the body before closing, so the connection can be kept alive.
+     * If more than {@link #MAX_DRAIN_LENGTH} bytes are left, the connection is dropped instead.
+     */
+    private static final class DrainingInputStream extends FilterInputStream {
+        private final HttpURLConnection connection;
+        private boolean closed;
+
+        DrainingInputStream(InputStream inputStream, HttpURLConnection connection) {
+            super(inputStream);
+            this.connection = connection;
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (closed) {
+                return;
+            }
+            closed = true;
+
+            boolean drained = false;
+            try {
+                byte[] skipBuffer = new byte[CHUNK_LENGTH];
+                int remaining = MAX_DRAIN_LENGTH;
+                int read;
+                while ((read = in.read(skipBuffer, 0, Math.min(skipBuffer.length, remaining + 1))) != -1) {
+                    remaining -= read;
+                    if (remaining < 0) {
+                        break;
+                    }
+                }
+                drained = read == -1;
+            } finally {
+                if (!drained) {
+                    connection.disconnect();
+                }
+                super.close();
+            }
+        }
+    }
+}
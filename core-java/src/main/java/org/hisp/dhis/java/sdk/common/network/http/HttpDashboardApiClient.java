@@ -0,0 +1,192 @@
+/*
+ * Copyright (c) 2015, University of Oslo
+ *
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.hisp.dhis.java.sdk.common.network.http;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.hisp.dhis.java.sdk.common.network.Configuration;
+import org.hisp.dhis.java.sdk.common.network.Fields;
+import org.hisp.dhis.java.sdk.common.network.HttpMethod;
+import org.hisp.dhis.java.sdk.common.network.Response;
+import org.hisp.dhis.java.sdk.dashboard.IDashboardApiClient;
+import org.hisp.dhis.java.sdk.models.dashboard.Dashboard;
+import org.hisp.dhis.java.sdk.models.dashboard.DashboardContent;
+import org.hisp.dhis.java.sdk.models.dashboard.DashboardElement;
+import org.hisp.dhis.java.sdk.models.dashboard.DashboardItem;
+import org.joda.time.DateTime;
+
+import java.util.Collections;
+import java.util.List;
+
+public class HttpDashboardApiClient extends AbsHttpApiClient implements IDashboardApiClient {
+    private static final Fields<DashboardElement> ELEMENT_FIELDS = Fields.builder(DashboardElement.class)
+            .field("id", "created", "lastUpdated", "name", "displayName").build();
+    private static final Fields<DashboardContent> CONTENT_FIELDS = Fields.builder(DashboardContent.class)
+            .field("id", "created", "lastUpdated", "name", "displayName").build();
+    private static final Fields<DashboardItem> ITEM_FIELDS = Fields.builder(DashboardItem.class)
+            .field("id", "created", "lastUpdated", "access", "type", "shape", "messages")
+            .nested("chart", ELEMENT_FIELDS).nested("eventChart", ELEMENT_FIELDS)
+            .nested("map", ELEMENT_FIELDS).nested("reportTable", ELEMENT_FIELDS)
+            .nested("eventReport", ELEMENT_FIELDS).nested("users", ELEMENT_FIELDS)
+            .nested("reports", ELEMENT_FIELDS).nested("resources", ELEMENT_FIELDS)
+            .build();
+    private static final Fields<Dashboard> DASHBOARD_FIELDS = Fields.builder(Dashboard.class)
+            .field("id", "created", "lastUpdated", "name", "displayName", "access")
+            .nested("dashboardItems", ITEM_FIELDS).build();
+
+    // basic models are used only to find out what was removed on server
+    // and to pick up timestamps (and shape of items) after local changes
+    private static final Fields<Dashboard> DASHBOARD_TIMESTAMP_FIELDS = Fields.builder(Dashboard.class)
+            .field("id", "created", "lastUpdated").build();
+    private static final Fields<DashboardItem> ITEM_TIMESTAMP_FIELDS = Fields.builder(DashboardItem.class)
+            .field("id", "created", "lastUpdated", "shape").build();
+
+    public HttpDashboardApiClient(HttpClient httpClient, Configuration configuration,
+                                  ObjectMapper objectMapper) {
+        super(httpClient, configuration, objectMapper);
+    }
+
+    @Override
+    public List<Dashboard> getBasicDashboards(DateTime lastUpdated) {
+        return getList(Fields.basic(Dashboard.class), "dashboards", "dashboards",
+                PARAM_FILTER, lastUpdatedFilter(lastUpdated), PARAM_PAGING, "false");
+    }
+
+    @Override
+    public List<Dashboard> getFullDashboards(DateTime lastUpdated) {
+        return getList(DASHBOARD_FIELDS, "dashboards", "dashboards",
+                PARAM_FILTER, lastUpdatedFilter(lastUpdated), PARAM_PAGING, "false");
+    }
+
+    @Override
+    public List<DashboardItem> getBasicDashboardItems(DateTime lastUpdated) {
+        return getList(ITEM_TIMESTAMP_FIELDS, "dashboardItems", "dashboardItems", PARAM_FILTER, lastUpdatedFilter(lastUpdated),
+                PARAM_PAGING, "false");
+    }
+
+    @Override
+    public Dashboard getBasicDashboardByUid(String uid) {
+        return getObject(DASHBOARD_TIMESTAMP_FIELDS, "dashboards/" + uid);
+    }
+
+    @Override
+    public Response postDashboard(Dashboard dashboard) {
+        return executeAndBuffer(HttpMethod.POST, "dashboards",
+                Collections.singletonMap("name", dashboard.getName()));
+    }
+
+    @Override
+    public Response postDashboardItem(DashboardItem dashboardItem) {
+        List<DashboardElement> elements = dashboardItem.getDashboardElements();
+        if (elements.isEmpty()) {
+            throw new IllegalArgumentException("DashboardItem must contain content to be posted");
+        }
+        return executeAndBuffer(HttpMethod.POST, "dashboards/" +
+                        dashboardItem.getDashboard().getUId() + "/items/content", null,
+                "type", dashboardItem.getType(), "id", elements.get(0).getUId());
+    }
+
+    @Override
+    public Response putDashboard(Dashboard dashboard) {
+        return executeAndBuffer(HttpMethod.PUT, "dashboards/" + dashboard.getUId(),
+                Collections.singletonMap("name", dashboard.getName()));
+    }
+
+    @Override
+    public Response deleteDashboard(Dashboard dashboard) {
+        return executeAndBuffer(HttpMethod.DELETE, "dashboards/" + dashboard.getUId(), null);
+    }
+
+    @Override
+    public Response deleteDashboardItem(DashboardItem dashboardItem) {
+        return executeAndBuffer(HttpMethod.DELETE, "dashboards/" +
+                dashboardItem.getDashboard().getUId() + "/items/" + dashboardItem.getUId(), null);
+    }
+
+    @Override
+    public Response deleteDashboardItemContent(DashboardElement dashboardElement) {
+        DashboardItem dashboardItem = dashboardElement.getDashboardItem();
+        return executeAndBuffer(HttpMethod.DELETE, "dashboards/" +
+                dashboardItem.getDashboard().getUId() + "/items/" + dashboardItem.getUId() +
+                "/content/" + dashboardElement.getUId(), null);
+    }
+
+    @Override
+    public List<DashboardContent> getBasicCharts() {
+        return getBasicContent("charts", DashboardContent.TYPE_CHART);
+    }
+
+    @Override
+    public List<DashboardContent> getBasicEventCharts() {
+        return getBasicContent("eventCharts", DashboardContent.TYPE_EVENT_CHART);
+    }
+
+    @Override
+    public List<DashboardContent> getBasicMaps() {
+        return getBasicContent("maps", DashboardContent.TYPE_MAP);
+    }
+
+    @Override
+    public List<DashboardContent> getBasicReportTables() {
+        return getBasicContent("reportTables", DashboardContent.TYPE_REPORT_TABLE);
+    }
+
+    @Override
+    public List<DashboardContent> getBasicEventReports() {
+        return getBasicContent("eventReports", DashboardContent.TYPE_EVENT_REPORT);
+    }
+
+    @Override
+    public List<DashboardContent> getBasicUsers() {
+        return getBasicContent("users", DashboardContent.TYPE_USERS);
+    }
+
+    @Override
+    public List<DashboardContent> getBasicReports() {
+        return getBasicContent("reports", DashboardContent.TYPE_REPORTS);
+    }
+
+    @Override
+    public List<DashboardContent> getBasicResources() {
+        return getBasicContent("documents", DashboardContent.TYPE_RESOURCES);
+    }
+
+    @Override
+    public Response getReportTableDataByUid(String uid) {
+        return execute(HttpMethod.GET, "reportTables/" + uid + "/data", null);
+    }
+
+    private List<DashboardContent> getBasicContent(String resource, String type) {
+        List<DashboardContent> contents = getList(CONTENT_FIELDS, resource, resource,
+                PARAM_PAGING, "false");
+        for (DashboardContent content : contents) {
+            content.setType(type);
+        }
+        return contents;
+    }
+}
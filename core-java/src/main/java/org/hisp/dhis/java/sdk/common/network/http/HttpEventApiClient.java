@@ -0,0 +1,174 @@
+/*
+ * Copyright (c) 2015, University of Oslo
+ *
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.hisp.dhis.java.sdk.common.network.http;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.hisp.dhis.java.sdk.common.network.Configuration;
+import org.hisp.dhis.java.sdk.common.network.Fields;
+import org.hisp.dhis.java.sdk.common.network.HttpMethod;
+import org.hisp.dhis.java.sdk.common.network.IChunkConsumer;
+import org.hisp.dhis.java.sdk.event.IEventApiClient;
+import org.hisp.dhis.java.sdk.models.common.importsummary.ImportSummaries;
+import org.hisp.dhis.java.sdk.models.common.importsummary.ImportSummary;
+import org.hisp.dhis.java.sdk.models.event.Event;
+import org.joda.time.DateTime;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+
+public class HttpEventApiClient extends AbsHttpApiClient implements IEventApiClient {
+    private static final String EVENTS = "events";
+    private static final Fields<Event> BASIC_EVENT_FIELDS = Fields.basic(Event.class);
+    private static final Fields<Event> FULL_EVENT_FIELDS = Fields.all(Event.class);
+    private static final Fields<Event> TIMESTAMP_FIELDS = Fields.builder(Event.class)
+            .field("event", "created", "lastUpdated").build();
+
+    public HttpEventApiClient(HttpClient httpClient, Configuration configuration,
+                              ObjectMapper objectMapper) {
+        super(httpClient, configuration, objectMapper);
+    }
+
+    @Override
+    public List<Event> getFullEvents(String programUid, String organisationUnitId,
+                                     int count, DateTime lastUpdated) {
+        return getList(FULL_EVENT_FIELDS, EVENTS, EVENTS,
+                "program", programUid, "orgUnit", organisationUnitId, "page", "1",
+                "pageSize", String.valueOf(count), "lastUpdated", date(lastUpdated));
+    }
+
+    @Override
+    public void getFullEvents(String programUid, String organisationUnitId, int count,
+                              DateTime lastUpdated, int chunkSize, IChunkConsumer<Event> consumer) {
+        getChunks(Event.class, EVENTS, chunkSize, consumer, EVENTS,
+                PARAM_FIELDS, FULL_EVENT_FIELDS.toString(),
+                "program", programUid, "orgUnit", organisationUnitId, "page", "1",
+                "pageSize", String.valueOf(count), "lastUpdated", date(lastUpdated));
+    }
+
+    @Override
+    public int getEventCount(String programUid, String organisationUnitId,
+                             DateTime lastUpdated, DateTime lastUpdatedEndDate) {
+        JsonNode response = getObject(JsonNode.class, EVENTS, PARAM_FIELDS,
+                Fields.reference(Event.class).toString(), "program", programUid,
+                "orgUnit", organisationUnitId, "lastUpdated", date(lastUpdated),
+                "lastUpdatedEndDate", date(lastUpdatedEndDate),
+                "page", "1", "pageSize", "1", "totalPages", "true");
+        return response.path("pager").path("total").asInt(0);
+    }
+
+    @Override
+    public void getFullEventsPage(String programUid, String organisationUnitId, DateTime lastUpdated,
+                                  DateTime lastUpdatedEndDate, int page, int pageSize, int chunkSize,
+                                  IChunkConsumer<Event> consumer) {
+        getChunks(Event.class, EVENTS, chunkSize, consumer, EVENTS,
+                PARAM_FIELDS, FULL_EVENT_FIELDS.toString(),
+                "program", programUid, "orgUnit", organisationUnitId, "lastUpdated", date(lastUpdated),
+                "lastUpdatedEndDate", date(lastUpdatedEndDate), "order", "lastUpdated:asc", "page", String.valueOf(page),
+                "pageSize", String.valueOf(pageSize), "totalPages", "false");
+    }
+
+    @Override
+    public List<Event> getBasicEvents(String programUid, String enrollmentStatus,
+                                      String trackedEntityInstanceUid, DateTime lastUpdated) {
+        return getEvents(BASIC_EVENT_FIELDS, programUid, enrollmentStatus,
+                trackedEntityInstanceUid, lastUpdated);
+    }
+
+    @Override
+    public List<Event> getFullEvents(String programUid, String enrollmentStatus,
+                                     String trackedEntityInstanceUid, DateTime lastUpdated) {
+        return getEvents(FULL_EVENT_FIELDS, programUid, enrollmentStatus,
+                trackedEntityInstanceUid, lastUpdated);
+    }
+
+    @Override
+    public Event getFullEvent(String uid, DateTime lastUpdated) {
+        return getObject(FULL_EVENT_FIELDS, EVENTS + "/" + uid);
+    }
+
+    @Override
+    public Event getBasicEvent(String uid, DateTime lastUpdated) {
+        return getObject(BASIC_EVENT_FIELDS, EVENTS + "/" + uid);
+    }
+
+    @Override
+    public ImportSummary postEvent(Event event) {
+        ImportSummaries importSummaries = readBody(execute(HttpMethod.POST, EVENTS, event),
+                ImportSummaries.class);
+        if (importSummaries == null || importSummaries.getImportSummaries() == null ||
+                importSummaries.getImportSummaries().isEmpty()) {
+            return null;
+        }
+        return importSummaries.getImportSummaries().get(0);
+    }
+
+    @Override
+    public ImportSummary putEvent(Event event) {
+        return readBody(execute(HttpMethod.PUT, EVENTS + "/" + event.getUId(), event),
+                ImportSummary.class);
+    }
+
+    @Override
+    public ImportSummaries postEvents(List<Event> events) {
+        return readBody(execute(HttpMethod.POST, EVENTS,
+                Collections.singletonMap(EVENTS, events)), ImportSummaries.class);
+    }
+
+    @Override
+    public ImportSummaries putEvents(List<Event> events) {
+        return readBody(execute(HttpMethod.POST, EVENTS,
+                Collections.singletonMap(EVENTS, events), "strategy", "UPDATE"), ImportSummaries.class);
+    }
+
+    @Override
+    public List<Event> getEventTimestamps(Set<String> uids) {
+        StringBuilder builder = new StringBuilder();
+        for (String uid : uids) {
+            if (builder.length() > 0) {
+                builder.append(';');
+            }
+            builder.append(uid);
+        }
+        return getList(TIMESTAMP_FIELDS, EVENTS, EVENTS, "event", builder.toString(), PARAM_PAGING, "false");
+    }
+
+    private List<Event> getEvents(Fields<Event> fields, String programUid, String enrollmentStatus,
+                                  String trackedEntityInstanceUid, DateTime lastUpdated) {
+        return getList(fields, EVENTS, EVENTS,
+                "program", programUid, "programStatus", enrollmentStatus,
+                "trackedEntityInstance", trackedEntityInstanceUid,
+                "lastUpdated", date(lastUpdated), PARAM_PAGING, "false");
+    }
+
+    private static String date(DateTime dateTime) {
+        return dateTime == null ? null : dateTime.toString();
+    }
+}
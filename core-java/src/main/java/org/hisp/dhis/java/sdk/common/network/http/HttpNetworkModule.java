@@ -0,0 +1,102 @@
+/*
+ * Copyright (c) 2015, University of Oslo
+ *
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.hisp.dhis.java.sdk.common.network.http;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.datatype.joda.JodaModule;
+import org.hisp.dhis.java.sdk.common.network.AuthHandler;
+import org.hisp.dhis.java.sdk.common.network.Configuration;
+import org.hisp.dhis.java.sdk.common.network.INetworkModule;
+import org.hisp.dhis.java.sdk.dashboard.IDashboardApiClient;
+import org.hisp.dhis.java.sdk.event.IEventApiClient;
+import org.hisp.dhis.java.sdk.systeminfo.ISystemInfoApiClient;
+import org.hisp.dhis.java.sdk.user.IUserApiClient;
+import org.hisp.dhis.java.sdk.utils.Preconditions;
+
+/**
+ * Implementation of {@link INetworkModule} which talks to DHIS2 Web API over plain
+ * JDK HTTP stack, so it does not need any third party HTTP library.
+ *
+ * <p>All API clients share one {@link HttpClient}, which keeps connections alive
+ * between requests and asks the server for gzip compressed responses. Lists are read
+ * from the response stream as it arrives, without buffering the whole body.</p>
+ */
+public class HttpNetworkModule implements INetworkModule {
+    private final IDashboardApiClient dashboardApiClient;
+    private final ISystemInfoApiClient systemInfoApiClient;
+    private final IUserApiClient userApiClient;
+    private final IEventApiClient eventApiClient;
+
+    public HttpNetworkModule(Configuration configuration, AuthHandler authHandler) {
+        this(configuration, authHandler, HttpClient.DEFAULT_CONNECT_TIMEOUT_MILLIS,
+                HttpClient.DEFAULT_READ_TIMEOUT_MILLIS);
+    }
+
+    public HttpNetworkModule(Configuration configuration, AuthHandler authHandler,
+                             int connectTimeoutMillis, int readTimeoutMillis) {
+        Preconditions.isNull(configuration, "configuration must not be null");
+        Preconditions.isNull(authHandler, "authHandler must not be null");
+
+        HttpClient httpClient = new HttpClient(authHandler, connectTimeoutMillis, readTimeoutMillis);
+        ObjectMapper objectMapper = new ObjectMapper();
+        objectMapper.registerModule(new JodaModule());
+        objectMapper.setSerializationInclusion(JsonInclude.Include.NON_NULL);
+        objectMapper.disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+        objectMapper.disable(SerializationFeature.FAIL_ON_EMPTY_BEANS);
+        objectMapper.disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES);
+
+        dashboardApiClient = new HttpDashboardApiClient(httpClient, configuration, objectMapper);
+        systemInfoApiClient = new HttpSystemInfoApiClient(httpClient, configuration, objectMapper);
+        userApiClient = new HttpUserApiClient(httpClient, configuration, objectMapper);
+        eventApiClient = new HttpEventApiClient(httpClient, configuration, objectMapper);
+    }
+
+    @Override
+    public IDashboardApiClient getDashboardApiClient() {
+        return dashboardApiClient;
+    }
+
+    @Override
+    public ISystemInfoApiClient getSystemInfoApiClient() {
+        return systemInfoApiClient;
+    }
+
+    @Override
+    public IUserApiClient getUserApiClient() {
+        return userApiClient;
+    }
+
+    @Override
+    public IEventApiClient getEventApiClient() {
+        return eventApiClient;
+    }
+}
@@ -31,6 +31,10 @@ package org.hisp.dhis.java.sdk.common.persistence;
 import org.hisp.dhis.java.sdk.models.common.base.IModel;
 import org.hisp.dhis.java.sdk.utils.Preconditions;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
 /**
  * This class is intended to implement partial
  * functionality of ContentProviderOperation for DbFlow.
@@ -86,6 +90,77 @@ public final class DbOperation<T extends IModel> implements IDbOperation<T> {
         return mModelStore;
     }
 
+    /**
+     * Executes given operations in order. Consecutive DbOperations which share
+     * the same store and action are coalesced into one bulk call to the store
+     * (for example, {@link IStore#insertAll(Collection)}). Since only consecutive
+     * operations are coalesced, the order in which operations are applied is preserved.
+     */
+    @SuppressWarnings("unchecked")
+    public static void executeAll(Collection<? extends IDbOperation> operations) {
+        if (operations == null || operations.isEmpty()) {
+            return;
+        }
+
+        IStore<IModel> batchStore = null;
+        DbAction batchAction = null;
+        List<IModel> batch = new ArrayList<>();
+
+        for (IDbOperation operation : operations) {
+            if (!(operation instanceof DbOperation)) {
+                executeBatch(batchStore, batchAction, batch);
+                operation.execute();
+                continue;
+            }
+
+            DbOperation<IModel> dbOperation = (DbOperation<IModel>) operation;
+            if (dbOperation.getStore() != batchStore || dbOperation.getAction() != batchAction) {
+                executeBatch(batchStore, batchAction, batch);
+                batchStore = dbOperation.getStore();
+                batchAction = dbOperation.getAction();
+            }
+            batch.add(dbOperation.getModel());
+        }
+
+        executeBatch(batchStore, batchAction, batch);
+    }
+
+    private static void executeBatch(IStore<IModel> store, DbAction action, List<IModel> batch) {
+        if (batch.isEmpty()) {
+            return;
+        }
+
+        // the single-model path is kept for batches of one,
+        // since bulk methods do not bring any benefit there
+        if (batch.size() == 1) {
+            new DbOperation<>(action, batch.get(0), store).execute();
+            batch.clear();
+            return;
+        }
+
+        List<IModel> models = new ArrayList<>(batch);
+        batch.clear();
+
+        switch (action) {
+            case INSERT: {
+                store.insertAll(models);
+                break;
+            }
+            case UPDATE: {
+                store.updateAll(models);
+                break;
+            }
+            case SAVE: {
+                store.saveAll(models);
+                break;
+            }
+            case DELETE: {
+                store.deleteAll(models);
+                break;
+            }
+        }
+    }
+
     public static class DbOperationBuilder<T extends IModel> {
         private final IStore<T> mStore;
 
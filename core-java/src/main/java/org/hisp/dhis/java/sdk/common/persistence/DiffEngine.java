@@ -0,0 +1,316 @@
+/*
+ * Copyright (c) 2015, University of Oslo
+ *
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.hisp.dhis.java.sdk.common.persistence;
+
+import org.hisp.dhis.java.sdk.common.ActionMap;
+import org.hisp.dhis.java.sdk.common.IStateStore;
+import org.hisp.dhis.java.sdk.models.common.base.IModel;
+import org.hisp.dhis.java.sdk.models.common.base.IdentifiableObject;
+import org.hisp.dhis.java.sdk.models.common.state.Action;
+import org.hisp.dhis.java.sdk.utils.Preconditions;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compares persisted models with models received from server and produces
+ * operations which bring local storage up to date. Operations are returned grouped
+ * by kind (deletions, updates, insertions), so transaction manager can coalesce
+ * them into bulk calls.
+ */
+public final class DiffEngine<T extends IModel> {
+    private final IStore<T> store;
+    private IKeyExtractor<? super T> keyExtractor;
+    private IVersionComparator<? super T> versionComparator;
+    private IDeleteGuard<T> deleteGuard;
+    private boolean keepIds;
+
+    private DiffEngine(IStore<T> store) {
+        this.store = Preconditions.isNull(store, "IStore object must not be null");
+    }
+
+    public static <T extends IModel> DiffEngine<T> with(IStore<T> store) {
+        return new DiffEngine<>(store);
+    }
+
+    /**
+     * Models are matched by given key. Models without key are ignored.
+     */
+    public DiffEngine<T> key(IKeyExtractor<? super T> keyExtractor) {
+        this.keyExtractor = keyExtractor;
+        return this;
+    }
+
+    /**
+     * Matched models are updated only if comparator reports that the model from server
+     * is newer. Without comparator matched models are always updated.
+     */
+    public DiffEngine<T> version(IVersionComparator<? super T> versionComparator) {
+        this.versionComparator = versionComparator;
+        return this;
+    }
+
+    /**
+     * Persisted models which are missing on server are passed to guard,
+     * and only models returned by it are deleted.
+     */
+    public DiffEngine<T> deleteGuard(IDeleteGuard<T> deleteGuard) {
+        this.deleteGuard = deleteGuard;
+        return this;
+    }
+
+    /**
+     * Database id of persisted model is passed to updated model,
+     * in order to avoid creation of new object.
+     */
+    public DiffEngine<T> keepIds() {
+        this.keepIds = true;
+        return this;
+    }
+
+    /**
+     * Matches models by key using one hash map. If server sends several
+     * models with the same key, the last one wins.
+     *
+     * @param oldModels List of models from local storage.
+     * @param newModels List of models of distance instance of DHIS.
+     */
+    public List<IDbOperation> diff(List<T> oldModels, List<T> newModels) {
+        Preconditions.isNull(keyExtractor, "keyExtractor must not be null");
+
+        int newSize = newModels != null ? newModels.size() : 0;
+        Map<String, T> newModelsMap = new HashMap<>(capacity(newSize));
+        if (newModels != null) {
+            for (T newModel : newModels) {
+                String key = keyExtractor.getKey(newModel);
+                if (key != null) {
+                    newModelsMap.put(key, newModel);
+                }
+            }
+        }
+
+        List<T> removedModels = new ArrayList<>();
+        List<T> updatedModels = new ArrayList<>();
+        if (oldModels != null) {
+            for (T oldModel : oldModels) {
+                String key = keyExtractor.getKey(oldModel);
+                if (key == null) {
+                    continue;
+                }
+
+                // matched models are removed from map, so the remaining
+                // ones are those which have to be inserted
+                T newModel = newModelsMap.remove(key);
+                if (newModel == null) {
+                    removedModels.add(oldModel);
+                } else {
+                    update(oldModel, newModel, updatedModels);
+                }
+            }
+        }
+
+        List<T> insertedModels = new ArrayList<>(newModelsMap.size());
+        if (!newModelsMap.isEmpty()) {
+            for (T newModel : newModels) {
+                String key = keyExtractor.getKey(newModel);
+                if (key != null && newModelsMap.get(key) == newModel) {
+                    insertedModels.add(newModel);
+                }
+            }
+        }
+
+        return toOperations(removedModels, updatedModels, insertedModels);
+    }
+
+    /**
+     * Walks both lists at once without building any maps. Both lists have to be sorted
+     * by key in ascending order with unique keys, which suits large inputs read from
+     * storage or server in key order.
+     *
+     * @param oldModels List of models from local storage.
+     * @param newModels List of models of distance instance of DHIS.
+     * @throws IllegalArgumentException if lists are not sorted by key.
+     */
+    public List<IDbOperation> diffSorted(List<T> oldModels, List<T> newModels) {
+        Preconditions.isNull(keyExtractor, "keyExtractor must not be null");
+
+        List<T> oldList = oldModels != null ? oldModels : new ArrayList<T>();
+        List<T> newList = newModels != null ? newModels : new ArrayList<T>();
+
+        List<T> removedModels = new ArrayList<>();
+        List<T> updatedModels = new ArrayList<>();
+        List<T> insertedModels = new ArrayList<>();
+
+        int oldIndex = 0;
+        int newIndex = 0;
+        String previousOldKey = null;
+        String previousNewKey = null;
+
+        while (oldIndex < oldList.size() || newIndex < newList.size()) {
+            T oldModel = oldIndex < oldList.size() ? oldList.get(oldIndex) : null;
+            T newModel = newIndex < newList.size() ? newList.get(newIndex) : null;
+            String oldKey = oldModel != null ? keyExtractor.getKey(oldModel) : null;
+            String newKey = newModel != null ? keyExtractor.getKey(newModel) : null;
+
+            if (oldModel != null && oldKey == null) {
+                oldIndex++;
+                continue;
+            }
+            if (newModel != null && newKey == null) {
+                newIndex++;
+                continue;
+            }
+
+            int comparison = oldKey == null ? 1 : newKey == null ? -1 : oldKey.compareTo(newKey);
+            if (comparison <= 0) {
+                previousOldKey = checkOrder(previousOldKey, oldKey);
+                oldIndex++;
+            }
+            if (comparison >= 0) {
+                previousNewKey = checkOrder(previousNewKey, newKey);
+                newIndex++;
+            }
+
+            if (comparison < 0) {
+                removedModels.add(oldModel);
+            } else if (comparison > 0) {
+                insertedModels.add(newModel);
+            } else {
+                update(oldModel, newModel, updatedModels);
+            }
+        }
+
+        return toOperations(removedModels, updatedModels, insertedModels);
+    }
+
+    private void update(T oldModel, T newModel, List<T> updatedModels) {
+        if (versionComparator == null || versionComparator.isNewer(oldModel, newModel)) {
+            if (keepIds) {
+                newModel.setId(oldModel.getId());
+            }
+            updatedModels.add(newModel);
+        }
+    }
+
+    private List<IDbOperation> toOperations(List<T> removedModels, List<T> updatedModels,
+                                            List<T> insertedModels) {
+        if (deleteGuard != null && !removedModels.isEmpty()) {
+            removedModels = deleteGuard.filter(removedModels);
+        }
+
+        List<IDbOperation> operations = new ArrayList<>(
+                removedModels.size() + updatedModels.size() + insertedModels.size());
+        for (T model : removedModels) {
+            operations.add(DbOperation.with(store).delete(model));
+        }
+        for (T model : updatedModels) {
+            operations.add(DbOperation.with(store).update(model));
+        }
+        for (T model : insertedModels) {
+            operations.add(DbOperation.with(store).insert(model));
+        }
+        return operations;
+    }
+
+    private static String checkOrder(String previousKey, String key) {
+        if (previousKey != null && previousKey.compareTo(key) >= 0) {
+            throw new IllegalArgumentException("Models must be sorted by unique keys: "
+                    + previousKey + " is followed by " + key);
+        }
+        return key;
+    }
+
+    private static int capacity(int size) {
+        return size < 3 ? size + 1 : (int) (size / 0.75f) + 1;
+    }
+
+    /**
+     * Matches identifiable objects by uid.
+     */
+    public static <T extends IdentifiableObject> IKeyExtractor<T> byUid() {
+        return new IKeyExtractor<T>() {
+            @Override
+            public String getKey(T model) {
+                return model.getUId();
+            }
+        };
+    }
+
+    /**
+     * Updates identifiable objects only if they were updated on server
+     * after they were persisted.
+     */
+    public static <T extends IdentifiableObject> IVersionComparator<T> byLastUpdated() {
+        return new IVersionComparator<T>() {
+            @Override
+            public boolean isNewer(T oldModel, T newModel) {
+                return newModel.getLastUpdated().isAfter(oldModel.getLastUpdated());
+            }
+        };
+    }
+
+    /**
+     * Keeps models which were created or changed locally and have not been sent
+     * to server yet. Actions for all candidates are resolved with one lookup.
+     */
+    public static <T extends IModel> IDeleteGuard<T> unlessChangedLocally(final IStateStore stateStore,
+                                                                          final Class<T> clazz) {
+        Preconditions.isNull(stateStore, "stateStore must not be null");
+        Preconditions.isNull(clazz, "clazz must not be null");
+
+        return new IDeleteGuard<T>() {
+            @Override
+            public List<T> filter(List<T> removedModels) {
+                ActionMap actionMap = stateStore.queryActionsForModels(clazz, removedModels);
+                List<T> deletableModels = new ArrayList<>(removedModels.size());
+                for (T removedModel : removedModels) {
+                    Action action = actionMap.get(removedModel.getId());
+                    if (!Action.TO_UPDATE.equals(action) && !Action.TO_POST.equals(action)) {
+                        deletableModels.add(removedModel);
+                    }
+                }
+                return deletableModels;
+            }
+        };
+    }
+
+    public interface IKeyExtractor<T> {
+        String getKey(T model);
+    }
+
+    public interface IVersionComparator<T> {
+        boolean isNewer(T oldModel, T newModel);
+    }
+
+    public interface IDeleteGuard<T> {
+        List<T> filter(List<T> removedModels);
+    }
+}
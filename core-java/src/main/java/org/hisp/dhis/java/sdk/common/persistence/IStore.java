@@ -30,6 +30,7 @@ package org.hisp.dhis.java.sdk.common.persistence;
 
 import org.hisp.dhis.java.sdk.models.common.base.IModel;
 
+import java.util.Collection;
 import java.util.List;
 
 public interface IStore<T extends IModel> {
@@ -42,6 +43,20 @@ public interface IStore<T extends IModel> {
 
     boolean delete(T object);
 
+    /**
+     * Bulk counterparts of single-model operations. Stores can apply
+     * the whole collection at once in order to amortize index maintenance and I/O.
+     *
+     * @return number of models which were affected.
+     */
+    int insertAll(Collection<T> objects);
+
+    int updateAll(Collection<T> objects);
+
+    int saveAll(Collection<T> objects);
+
+    int deleteAll(Collection<T> objects);
+
     T queryById(long id);
 
     List<T> queryAll();
@@ -0,0 +1,130 @@
+/*
+ * Copyright (c) 2015, University of Oslo
+ *
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.hisp.dhis.java.sdk.common.persistence.jdbc;
+
+import com.fasterxml.jackson.annotation.JsonAutoDetect;
+import com.fasterxml.jackson.annotation.PropertyAccessor;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.introspect.Annotated;
+import com.fasterxml.jackson.databind.introspect.AnnotatedClass;
+import com.fasterxml.jackson.databind.introspect.NopAnnotationIntrospector;
+import com.fasterxml.jackson.databind.ser.impl.SimpleBeanPropertyFilter;
+import com.fasterxml.jackson.databind.ser.impl.SimpleFilterProvider;
+import com.fasterxml.jackson.datatype.joda.JodaModule;
+import org.hisp.dhis.java.sdk.models.common.base.IModel;
+import org.hisp.dhis.java.sdk.utils.Preconditions;
+
+import java.io.IOException;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * Store which keeps JSON representation of model in payload column, next to columns
+ * which are used in queries. Payload is built from fields of model and not from
+ * its API annotations, since models are not symmetric in the way they are read from
+ * and written to DHIS 2 API. Fields which reference other models kept in their
+ * own tables (children collections, parents) should be excluded from payload and,
+ * if needed, restored from columns in {@link #restoreModel(IModel, ResultSet)}.
+ */
+public abstract class AbsJdbcDocumentStore<T extends IModel> extends AbsJdbcStore<T> {
+    protected static final String COLUMN_PAYLOAD = "payload";
+    private static final String FILTER_ID = "jdbcDocumentFilter";
+
+    private final ObjectReader reader;
+    private final ObjectWriter writer;
+
+    protected AbsJdbcDocumentStore(JdbcDatabase database, String tableName,
+                                   Class<T> modelClass, String... excludedFields) {
+        super(database, tableName);
+        Preconditions.isNull(modelClass, "Class must not be null");
+
+        ObjectMapper objectMapper = new ObjectMapper();
+        objectMapper.setAnnotationIntrospector(new DocumentAnnotationIntrospector());
+        objectMapper.setVisibility(PropertyAccessor.ALL, JsonAutoDetect.Visibility.NONE);
+        objectMapper.setVisibility(PropertyAccessor.FIELD, JsonAutoDetect.Visibility.ANY);
+        objectMapper.registerModule(new JodaModule());
+        objectMapper.disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+        objectMapper.disable(SerializationFeature.FAIL_ON_EMPTY_BEANS);
+        objectMapper.disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES);
+
+        reader = objectMapper.readerFor(modelClass);
+        writer = objectMapper.writer(new SimpleFilterProvider().addFilter(FILTER_ID,
+                SimpleBeanPropertyFilter.serializeAllExcept(excludedFields)));
+
+        addColumn(COLUMN_PAYLOAD, JdbcColumn.TYPE_CLOB, new JdbcColumn.IValueExtractor<T>() {
+            @Override
+            public Object getValue(T model) {
+                try {
+                    return writer.writeValueAsString(model);
+                } catch (JsonProcessingException e) {
+                    throw new JdbcException("Unable to serialize " + model, e);
+                }
+            }
+        });
+    }
+
+    @Override
+    protected final T readModel(ResultSet resultSet) throws SQLException {
+        T model;
+        try {
+            model = reader.readValue(resultSet.getString(COLUMN_PAYLOAD));
+        } catch (IOException e) {
+            throw new SQLException("Unable to deserialize row of " + getTableName(), e);
+        }
+
+        model.setId(resultSet.getLong(COLUMN_ID));
+        restoreModel(model, resultSet);
+        return model;
+    }
+
+    /**
+     * Restores properties which are not part of payload. Does nothing by default.
+     */
+    protected void restoreModel(T model, ResultSet resultSet) throws SQLException {
+        // no-op
+    }
+
+    /**
+     * Ignores API annotations of models and applies filter
+     * of excluded fields to all beans in payload.
+     */
+    private static final class DocumentAnnotationIntrospector extends NopAnnotationIntrospector {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        public Object findFilterId(Annotated annotated) {
+            return annotated instanceof AnnotatedClass ? FILTER_ID : null;
+        }
+    }
+}
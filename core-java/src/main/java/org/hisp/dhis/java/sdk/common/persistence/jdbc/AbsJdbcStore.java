@@ -0,0 +1,551 @@
+/*
+ * Copyright (c) 2015, University of Oslo
+ *
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.hisp.dhis.java.sdk.common.persistence.jdbc;
+
+import org.hisp.dhis.java.sdk.common.persistence.DbAction;
+import org.hisp.dhis.java.sdk.common.persistence.IStore;
+import org.hisp.dhis.java.sdk.models.common.base.IModel;
+import org.hisp.dhis.java.sdk.utils.Preconditions;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Base class for stores which keep models in table of embedded SQL database.
+ * Subclasses describe columns with {@link #addColumn(String, String, JdbcColumn.IValueExtractor)}
+ * and map rows back to models in {@link #readModel(ResultSet)}.
+ *
+ * <p>Primary keys are assigned by the store itself (and not by database), which allows
+ * inserting models with JDBC batches on any database. This assumes that database
+ * is owned by one instance of the store.</p>
+ */
+public abstract class AbsJdbcStore<T extends IModel> implements IStore<T> {
+    protected static final String COLUMN_ID = "id";
+
+    /* maximum number of parameters in one IN (..) clause */
+    private static final int MAX_PARAMETERS = 500;
+
+    /* number of rows which are sent to database in one batch */
+    private static final int BATCH_SIZE = 1000;
+
+    private final JdbcDatabase database;
+    private final String tableName;
+    private final List<JdbcColumn<T>> columns;
+    private final List<List<String>> indexes;
+    private final List<JdbcColumn<T>> naturalKey;
+    private final AtomicLong sequence;
+
+    protected AbsJdbcStore(JdbcDatabase database, String tableName) {
+        this.database = Preconditions.isNull(database, "JdbcDatabase must not be null");
+        this.tableName = Preconditions.isNull(tableName, "Table name must not be null");
+        this.columns = new ArrayList<>();
+        this.indexes = new ArrayList<>();
+        this.naturalKey = new ArrayList<>();
+        this.sequence = new AtomicLong();
+    }
+
+    /**
+     * Maps current row of result set to model.
+     */
+    protected abstract T readModel(ResultSet resultSet) throws SQLException;
+
+    /**
+     * Adds column to table. Should be called only from constructor of subclass.
+     */
+    protected final void addColumn(String name, String type, JdbcColumn.IValueExtractor<T> valueExtractor) {
+        columns.add(new JdbcColumn<>(name, type, valueExtractor));
+    }
+
+    /**
+     * Adds index over given columns. Should be called only from constructor of subclass.
+     */
+    protected final void addIndex(String... columnNames) {
+        indexes.add(Arrays.asList(columnNames));
+    }
+
+    /**
+     * Sets columns which identify models which do not carry local id
+     * (for example, uid of identifiable object). Natural key is used
+     * to resolve local id of model on update, save and delete.
+     */
+    protected final void setNaturalKey(String... columnNames) {
+        naturalKey.clear();
+        for (String columnName : columnNames) {
+            naturalKey.add(getColumn(columnName));
+        }
+        addIndex(columnNames);
+    }
+
+    /**
+     * Creates table and indexes if they do not exist yet.
+     */
+    public void createTable() {
+        StringBuilder builder = new StringBuilder("CREATE TABLE IF NOT EXISTS ")
+                .append(tableName).append(" (").append(COLUMN_ID).append(" BIGINT PRIMARY KEY");
+        for (JdbcColumn<T> column : columns) {
+            builder.append(", ").append(column.getName()).append(' ').append(column.getType());
+        }
+        database.update(builder.append(')').toString());
+
+        for (List<String> index : indexes) {
+            StringBuilder indexName = new StringBuilder(tableName);
+            for (String columnName : index) {
+                indexName.append('_').append(columnName);
+            }
+            database.update("CREATE INDEX IF NOT EXISTS " + indexName + " ON " +
+                    tableName + " (" + join(index) + ")");
+        }
+
+        List<Long> maxId = database.query("SELECT MAX(" + COLUMN_ID + ") FROM " + tableName,
+                new JdbcDatabase.IRowMapper<Long>() {
+                    @Override
+                    public Long map(ResultSet resultSet) throws SQLException {
+                        return resultSet.getLong(1);
+                    }
+                });
+        sequence.set(maxId.isEmpty() ? 0 : maxId.get(0));
+    }
+
+    @Override
+    public boolean insert(T object) {
+        Preconditions.isNull(object, "Object to insert must not be null");
+        return executeBatch(DbAction.INSERT, Collections.singletonList(object)) > 0;
+    }
+
+    @Override
+    public boolean update(T object) {
+        Preconditions.isNull(object, "Object to update must not be null");
+        return executeBatch(DbAction.UPDATE, Collections.singletonList(object)) > 0;
+    }
+
+    @Override
+    public boolean save(T object) {
+        Preconditions.isNull(object, "Object to save must not be null");
+        return executeBatch(DbAction.SAVE, Collections.singletonList(object)) > 0;
+    }
+
+    @Override
+    public boolean delete(T object) {
+        Preconditions.isNull(object, "Object to delete must not be null");
+        return executeBatch(DbAction.DELETE, Collections.singletonList(object)) > 0;
+    }
+
+    @Override
+    public int insertAll(Collection<T> objects) {
+        Preconditions.isNull(objects, "Collection of objects must not be null");
+        return executeBatch(DbAction.INSERT, new ArrayList<>(objects));
+    }
+
+    @Override
+    public int updateAll(Collection<T> objects) {
+        Preconditions.isNull(objects, "Collection of objects must not be null");
+        return executeBatch(DbAction.UPDATE, new ArrayList<>(objects));
+    }
+
+    @Override
+    public int saveAll(Collection<T> objects) {
+        Preconditions.isNull(objects, "Collection of objects must not be null");
+        return executeBatch(DbAction.SAVE, new ArrayList<>(objects));
+    }
+
+    @Override
+    public int deleteAll(Collection<T> objects) {
+        Preconditions.isNull(objects, "Collection of objects must not be null");
+        return executeBatch(DbAction.DELETE, new ArrayList<>(objects));
+    }
+
+    @Override
+    public T queryById(long id) {
+        return queryFirst(COLUMN_ID + " = ?", id);
+    }
+
+    @Override
+    public List<T> queryAll() {
+        return query(null);
+    }
+
+    /**
+     * Removes all rows from table.
+     */
+    public void clear() {
+        database.update("DELETE FROM " + tableName);
+    }
+
+    /**
+     * Applies given action to all models using JDBC batches. Local ids of models
+     * are resolved with one query per chunk of models, instead of one query per model.
+     * Semantics of each action match the single-model methods of {@link IStore}.
+     *
+     * @return number of models which were affected.
+     */
+    private int executeBatch(final DbAction action, final List<T> models) {
+        if (models == null || models.isEmpty()) {
+            return 0;
+        }
+
+        return database.transact(new JdbcDatabase.IConnectionCallback<Integer>() {
+            @Override
+            public Integer execute(Connection connection) throws SQLException {
+                long[] existingIds = resolveIds(connection, models);
+
+                List<T> inserts = new ArrayList<>();
+                List<T> updates = new ArrayList<>();
+                Set<Long> deletes = new LinkedHashSet<>();
+
+                // models which are inserted within this batch, in order to
+                // avoid inserting the same natural key twice
+                Map<List<Object>, Long> insertedKeys = new HashMap<>();
+                Set<Long> insertedIds = new HashSet<>();
+
+                for (int i = 0; i < models.size(); i++) {
+                    T model = models.get(i);
+                    long id = existingIds[i];
+
+                    List<Object> key = getNaturalKey(model);
+                    if (id <= 0 && model.getId() <= 0 && key != null && insertedKeys.containsKey(key)) {
+                        id = insertedKeys.get(key);
+                    } else if (id <= 0 && insertedIds.contains(model.getId())) {
+                        id = model.getId();
+                    }
+
+                    boolean exists = id > 0;
+                    switch (action) {
+                        case INSERT: {
+                            if (!exists) {
+                                inserts.add(assignId(model, key, insertedKeys, insertedIds));
+                            }
+                            break;
+                        }
+                        case UPDATE: {
+                            if (exists) {
+                                model.setId(id);
+                                updates.add(model);
+                            }
+                            break;
+                        }
+                        case SAVE: {
+                            if (exists) {
+                                model.setId(id);
+                                updates.add(model);
+                            } else {
+                                inserts.add(assignId(model, key, insertedKeys, insertedIds));
+                            }
+                            break;
+                        }
+                        case DELETE: {
+                            if (exists) {
+                                deletes.add(id);
+                            }
+                            break;
+                        }
+                    }
+                }
+
+                executeInserts(connection, inserts);
+                executeUpdates(connection, updates);
+                executeDeletes(connection, new ArrayList<>(deletes));
+                return inserts.size() + updates.size() + deletes.size();
+            }
+        });
+    }
+
+    /**
+     * Returns models which match given SQL condition, ordered by local id.
+     *
+     * @param where condition or null in order to return all rows.
+     */
+    protected final List<T> query(String where, Object... args) {
+        String sql = "SELECT * FROM " + tableName + (where != null ? " WHERE " + where : "") +
+                " ORDER BY " + COLUMN_ID;
+        return database.query(sql, new JdbcDatabase.IRowMapper<T>() {
+            @Override
+            public T map(ResultSet resultSet) throws SQLException {
+                return readModel(resultSet);
+            }
+        }, args);
+    }
+
+    /**
+     * Returns first model which matches given SQL condition, or null.
+     */
+    protected final T queryFirst(String where, Object... args) {
+        List<T> models = query(where, args);
+        return models.isEmpty() ? null : models.get(0);
+    }
+
+    protected final JdbcDatabase getDatabase() {
+        return database;
+    }
+
+    protected final String getTableName() {
+        return tableName;
+    }
+
+    private T assignId(T model, List<Object> key, Map<List<Object>, Long> insertedKeys, Set<Long> insertedIds) {
+        if (model.getId() <= 0) {
+            model.setId(sequence.incrementAndGet());
+        } else {
+            long current;
+            while ((current = sequence.get()) < model.getId()) {
+                sequence.compareAndSet(current, model.getId());
+            }
+        }
+
+        if (key != null) {
+            insertedKeys.put(key, model.getId());
+        }
+        insertedIds.add(model.getId());
+        return model;
+    }
+
+    /**
+     * Returns ids of rows which correspond to given models, or 0 for models
+     * which are not persisted. Models which carry local id are looked up by
+     * id, while the rest are looked up by natural key.
+     */
+    private long[] resolveIds(Connection connection, List<T> models) throws SQLException {
+        long[] ids = new long[models.size()];
+
+        Set<Object> localIds = new LinkedHashSet<>();
+        Set<Object> firstKeyValues = new LinkedHashSet<>();
+        for (T model : models) {
+            if (model.getId() > 0) {
+                localIds.add(model.getId());
+            } else {
+                List<Object> key = getNaturalKey(model);
+                if (key != null) {
+                    firstKeyValues.add(key.get(0));
+                }
+            }
+        }
+
+        Set<Long> existingIds = new HashSet<>();
+        for (List<Object> chunk : chunks(localIds)) {
+            String sql = "SELECT " + COLUMN_ID + " FROM " + tableName +
+                    " WHERE " + COLUMN_ID + " IN (" + placeholders(chunk.size()) + ")";
+            try (PreparedStatement statement = connection.prepareStatement(sql)) {
+                JdbcDatabase.bind(statement, chunk.toArray());
+                try (ResultSet resultSet = statement.executeQuery()) {
+                    while (resultSet.next()) {
+                        existingIds.add(resultSet.getLong(1));
+                    }
+                }
+            }
+        }
+
+        Map<List<Object>, Long> existingKeys = new HashMap<>();
+        if (!naturalKey.isEmpty()) {
+            List<String> keyColumns = new ArrayList<>();
+            for (JdbcColumn<T> column : naturalKey) {
+                keyColumns.add(column.getName());
+            }
+
+            for (List<Object> chunk : chunks(firstKeyValues)) {
+                String sql = "SELECT " + COLUMN_ID + ", " + join(keyColumns) + " FROM " + tableName +
+                        " WHERE " + keyColumns.get(0) + " IN (" + placeholders(chunk.size()) + ")";
+                try (PreparedStatement statement = connection.prepareStatement(sql)) {
+                    JdbcDatabase.bind(statement, chunk.toArray());
+                    try (ResultSet resultSet = statement.executeQuery()) {
+                        while (resultSet.next()) {
+                            List<Object> key = new ArrayList<>(keyColumns.size());
+                            for (int i = 0; i < keyColumns.size(); i++) {
+                                key.add(normalize(resultSet.getObject(i + 2)));
+                            }
+                            existingKeys.put(key, resultSet.getLong(1));
+                        }
+                    }
+                }
+            }
+        }
+
+        for (int i = 0; i < models.size(); i++) {
+            T model = models.get(i);
+            if (model.getId() > 0) {
+                ids[i] = existingIds.contains(model.getId()) ? model.getId() : 0;
+            } else {
+                Long id = existingKeys.get(getNaturalKey(model));
+                ids[i] = id != null ? id : 0;
+            }
+        }
+        return ids;
+    }
+
+    private void executeInserts(Connection connection, List<T> models) throws SQLException {
+        if (models.isEmpty()) {
+            return;
+        }
+
+        List<String> columnNames = new ArrayList<>();
+        columnNames.add(COLUMN_ID);
+        for (JdbcColumn<T> column : columns) {
+            columnNames.add(column.getName());
+        }
+
+        String sql = "INSERT INTO " + tableName + " (" + join(columnNames) +
+                ") VALUES (" + placeholders(columnNames.size()) + ")";
+        try (PreparedStatement statement = connection.prepareStatement(sql)) {
+            int pending = 0;
+            for (T model : models) {
+                statement.setObject(1, model.getId());
+                for (int i = 0; i < columns.size(); i++) {
+                    statement.setObject(i + 2, columns.get(i).getValue(model));
+                }
+                statement.addBatch();
+
+                if (++pending == BATCH_SIZE) {
+                    statement.executeBatch();
+                    pending = 0;
+                }
+            }
+            if (pending > 0) {
+                statement.executeBatch();
+            }
+        }
+    }
+
+    private void executeUpdates(Connection connection, List<T> models) throws SQLException {
+        if (models.isEmpty() || columns.isEmpty()) {
+            return;
+        }
+
+        StringBuilder builder = new StringBuilder("UPDATE ").append(tableName).append(" SET ");
+        for (int i = 0; i < columns.size(); i++) {
+            builder.append(i > 0 ? ", " : "").append(columns.get(i).getName()).append(" = ?");
+        }
+        builder.append(" WHERE ").append(COLUMN_ID).append(" = ?");
+
+        try (PreparedStatement statement = connection.prepareStatement(builder.toString())) {
+            int pending = 0;
+            for (T model : models) {
+                for (int i = 0; i < columns.size(); i++) {
+                    statement.setObject(i + 1, columns.get(i).getValue(model));
+                }
+                statement.setObject(columns.size() + 1, model.getId());
+                statement.addBatch();
+
+                if (++pending == BATCH_SIZE) {
+                    statement.executeBatch();
+                    pending = 0;
+                }
+            }
+            if (pending > 0) {
+                statement.executeBatch();
+            }
+        }
+    }
+
+    private void executeDeletes(Connection connection, List<Long> ids) throws SQLException {
+        for (List<Object> chunk : chunks(ids)) {
+            String sql = "DELETE FROM " + tableName + " WHERE " +
+                    COLUMN_ID + " IN (" + placeholders(chunk.size()) + ")";
+            try (PreparedStatement statement = connection.prepareStatement(sql)) {
+                JdbcDatabase.bind(statement, chunk.toArray());
+                statement.executeUpdate();
+            }
+        }
+    }
+
+    private List<Object> getNaturalKey(T model) {
+        if (naturalKey.isEmpty()) {
+            return null;
+        }
+
+        List<Object> key = new ArrayList<>(naturalKey.size());
+        for (JdbcColumn<T> column : naturalKey) {
+            Object value = column.getValue(model);
+            if (value == null) {
+                return null;
+            }
+            key.add(normalize(value));
+        }
+        return key;
+    }
+
+    private JdbcColumn<T> getColumn(String name) {
+        for (JdbcColumn<T> column : columns) {
+            if (column.getName().equals(name)) {
+                return column;
+            }
+        }
+        throw new IllegalArgumentException("Unknown column: " + name);
+    }
+
+    /* drivers can return integer columns as Integer or Long */
+    private static Object normalize(Object value) {
+        if (value instanceof Number) {
+            return ((Number) value).longValue();
+        }
+        return value;
+    }
+
+    static List<List<Object>> chunks(Collection<?> values) {
+        List<List<Object>> chunks = new ArrayList<>();
+        List<Object> chunk = new ArrayList<>();
+        for (Object value : values) {
+            chunk.add(value);
+            if (chunk.size() == MAX_PARAMETERS) {
+                chunks.add(chunk);
+                chunk = new ArrayList<>();
+            }
+        }
+        if (!chunk.isEmpty()) {
+            chunks.add(chunk);
+        }
+        return chunks;
+    }
+
+    static String placeholders(int count) {
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            builder.append(i > 0 ? ", ?" : "?");
+        }
+        return builder.toString();
+    }
+
+    private static String join(List<String> values) {
+        StringBuilder builder = new StringBuilder();
+        for (String value : values) {
+            builder.append(builder.length() > 0 ? ", " : "").append(value);
+        }
+        return builder.toString();
+    }
+}
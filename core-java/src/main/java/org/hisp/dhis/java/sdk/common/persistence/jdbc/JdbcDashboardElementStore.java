@@ -0,0 +1,70 @@
+/*
+ * Copyright (c) 2015, University of Oslo
+ *
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.hisp.dhis.java.sdk.common.persistence.jdbc;
+
+import org.hisp.dhis.java.sdk.dashboard.IDashboardElementStore;
+import org.hisp.dhis.java.sdk.models.dashboard.DashboardElement;
+import org.hisp.dhis.java.sdk.models.dashboard.DashboardItem;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.List;
+
+public class JdbcDashboardElementStore extends JdbcIdentifiableObjectStore<DashboardElement>
+        implements IDashboardElementStore {
+    private static final String COLUMN_DASHBOARD_ITEM = "dashboard_item";
+
+    public JdbcDashboardElementStore(JdbcDatabase database) {
+        super(database, "dashboard_elements", DashboardElement.class, "dashboardItem");
+
+        addColumn(COLUMN_DASHBOARD_ITEM, JdbcColumn.TYPE_TEXT, new JdbcColumn.IValueExtractor<DashboardElement>() {
+            @Override
+            public Object getValue(DashboardElement dashboardElement) {
+                return dashboardElement.getDashboardItem() != null ?
+                        dashboardElement.getDashboardItem().getUId() : null;
+            }
+        });
+        addIndex(COLUMN_DASHBOARD_ITEM);
+    }
+
+    @Override
+    protected void restoreModel(DashboardElement dashboardElement, ResultSet resultSet) throws SQLException {
+        String dashboardItemUid = resultSet.getString(COLUMN_DASHBOARD_ITEM);
+        if (dashboardItemUid != null) {
+            DashboardItem dashboardItem = new DashboardItem();
+            dashboardItem.setUId(dashboardItemUid);
+            dashboardElement.setDashboardItem(dashboardItem);
+        }
+    }
+
+    @Override
+    public List<DashboardElement> queryByDashboardItem(DashboardItem dashboardItem) {
+        return query(COLUMN_DASHBOARD_ITEM + " = ?", dashboardItem != null ? dashboardItem.getUId() : null);
+    }
+}
@@ -0,0 +1,77 @@
+/*
+ * Copyright (c) 2015, University of Oslo
+ *
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.hisp.dhis.java.sdk.common.persistence.jdbc;
+
+import org.hisp.dhis.java.sdk.dataset.IDataSetStore;
+import org.hisp.dhis.java.sdk.models.dataset.DataSet;
+import org.hisp.dhis.java.sdk.models.organisationunit.OrganisationUnit;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class JdbcDataSetStore extends JdbcIdentifiableObjectStore<DataSet> implements IDataSetStore {
+
+    public JdbcDataSetStore(JdbcDatabase database) {
+        super(database, "data_sets", DataSet.class);
+    }
+
+    @Override
+    public List<OrganisationUnit> query(DataSet dataSet) {
+        DataSet persistedDataSet = dataSet != null ? queryByUid(dataSet.getUId()) : null;
+        if (persistedDataSet == null || persistedDataSet.getOrganisationUnits() == null) {
+            return new ArrayList<>();
+        }
+        return new ArrayList<>(persistedDataSet.getOrganisationUnits());
+    }
+
+    /**
+     * Returns data sets which are assigned to given organisation unit. Assignments
+     * are part of data set payload, and number of data sets is small, so they
+     * are filtered in memory.
+     */
+    public List<DataSet> queryByOrganisationUnit(OrganisationUnit organisationUnit) {
+        List<DataSet> dataSets = new ArrayList<>();
+        if (organisationUnit == null) {
+            return dataSets;
+        }
+
+        for (DataSet dataSet : queryAll()) {
+            if (dataSet.getOrganisationUnits() == null) {
+                continue;
+            }
+            for (OrganisationUnit assignedUnit : dataSet.getOrganisationUnits()) {
+                if (organisationUnit.getUId().equals(assignedUnit.getUId())) {
+                    dataSets.add(dataSet);
+                    break;
+                }
+            }
+        }
+        return dataSets;
+    }
+}
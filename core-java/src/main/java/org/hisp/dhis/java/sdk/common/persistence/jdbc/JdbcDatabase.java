@@ -0,0 +1,150 @@
+/*
+ * Copyright (c) 2015, University of Oslo
+ *
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.hisp.dhis.java.sdk.common.persistence.jdbc;
+
+import org.hisp.dhis.java.sdk.utils.Preconditions;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Thin wrapper around {@link DataSource}. While transaction is in progress, connection
+ * is bound to the calling thread, so all store calls which are made from the same thread
+ * take part in the same transaction. Outside of transaction each call runs
+ * on separate connection in auto-commit mode.
+ */
+public class JdbcDatabase {
+    private final DataSource dataSource;
+    private final ThreadLocal<Connection> transactionConnection;
+
+    public JdbcDatabase(DataSource dataSource) {
+        this.dataSource = Preconditions.isNull(dataSource, "DataSource must not be null");
+        this.transactionConnection = new ThreadLocal<>();
+    }
+
+    public <R> R execute(IConnectionCallback<R> callback) {
+        Connection connection = transactionConnection.get();
+        if (connection != null) {
+            try {
+                return callback.execute(connection);
+            } catch (SQLException e) {
+                throw new JdbcException(e.getMessage(), e);
+            }
+        }
+
+        try (Connection newConnection = dataSource.getConnection()) {
+            return callback.execute(newConnection);
+        } catch (SQLException e) {
+            throw new JdbcException(e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Executes callback in transaction. Nested calls join the transaction
+     * which is already in progress on the calling thread.
+     */
+    public <R> R transact(IConnectionCallback<R> callback) {
+        if (transactionConnection.get() != null) {
+            return execute(callback);
+        }
+
+        try (Connection connection = dataSource.getConnection()) {
+            boolean autoCommit = connection.getAutoCommit();
+            connection.setAutoCommit(false);
+            transactionConnection.set(connection);
+
+            try {
+                R result = callback.execute(connection);
+                connection.commit();
+                return result;
+            } catch (SQLException | RuntimeException e) {
+                connection.rollback();
+                throw e;
+            } finally {
+                transactionConnection.remove();
+                connection.setAutoCommit(autoCommit);
+            }
+        } catch (SQLException e) {
+            throw new JdbcException(e.getMessage(), e);
+        }
+    }
+
+    public int update(final String sql, final Object... args) {
+        return execute(new IConnectionCallback<Integer>() {
+            @Override
+            public Integer execute(Connection connection) throws SQLException {
+                try (PreparedStatement statement = connection.prepareStatement(sql)) {
+                    bind(statement, args);
+                    return statement.executeUpdate();
+                }
+            }
+        });
+    }
+
+    public <R> List<R> query(final String sql, final IRowMapper<R> mapper, final Object... args) {
+        return execute(new IConnectionCallback<List<R>>() {
+            @Override
+            public List<R> execute(Connection connection) throws SQLException {
+                try (PreparedStatement statement = connection.prepareStatement(sql)) {
+                    bind(statement, args);
+
+                    List<R> rows = new ArrayList<>();
+                    try (ResultSet resultSet = statement.executeQuery()) {
+                        while (resultSet.next()) {
+                            rows.add(mapper.map(resultSet));
+                        }
+                    }
+                    return rows;
+                }
+            }
+        });
+    }
+
+    static void bind(PreparedStatement statement, Object... args) throws SQLException {
+        if (args == null) {
+            return;
+        }
+        for (int i = 0; i < args.length; i++) {
+            statement.setObject(i + 1, args[i]);
+        }
+    }
+
+    public interface IConnectionCallback<R> {
+        R execute(Connection connection) throws SQLException;
+    }
+
+    public interface IRowMapper<R> {
+        R map(ResultSet resultSet) throws SQLException;
+    }
+}
@@ -0,0 +1,120 @@
+/*
+ * Copyright (c) 2015, University of Oslo
+ *
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.hisp.dhis.java.sdk.common.persistence.jdbc;
+
+import org.hisp.dhis.java.sdk.enrollment.IEnrollmentStore;
+import org.hisp.dhis.java.sdk.models.enrollment.Enrollment;
+import org.hisp.dhis.java.sdk.models.organisationunit.OrganisationUnit;
+import org.hisp.dhis.java.sdk.models.program.Program;
+import org.hisp.dhis.java.sdk.models.trackedentity.TrackedEntityInstance;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.List;
+
+public class JdbcEnrollmentStore extends JdbcIdentifiableObjectStore<Enrollment> implements IEnrollmentStore {
+    private static final String COLUMN_TRACKED_ENTITY_INSTANCE = "tracked_entity_instance";
+    private static final String COLUMN_ORGANISATION_UNIT = "organisation_unit";
+    private static final String COLUMN_PROGRAM = "program";
+    private static final String COLUMN_STATUS = "status";
+
+    public JdbcEnrollmentStore(JdbcDatabase database) {
+        super(database, "enrollments", Enrollment.class,
+                "trackedEntityAttributeValues", "events", "trackedEntityInstance");
+
+        addColumn(COLUMN_TRACKED_ENTITY_INSTANCE, JdbcColumn.TYPE_TEXT, new JdbcColumn.IValueExtractor<Enrollment>() {
+            @Override
+            public Object getValue(Enrollment enrollment) {
+                return getTrackedEntityInstanceUid(enrollment.getTrackedEntityInstance());
+            }
+        });
+        addColumn(COLUMN_ORGANISATION_UNIT, JdbcColumn.TYPE_TEXT, new JdbcColumn.IValueExtractor<Enrollment>() {
+            @Override
+            public Object getValue(Enrollment enrollment) {
+                return enrollment.getOrgUnit();
+            }
+        });
+        addColumn(COLUMN_PROGRAM, JdbcColumn.TYPE_TEXT, new JdbcColumn.IValueExtractor<Enrollment>() {
+            @Override
+            public Object getValue(Enrollment enrollment) {
+                return enrollment.getProgram();
+            }
+        });
+        addColumn(COLUMN_STATUS, JdbcColumn.TYPE_TEXT, new JdbcColumn.IValueExtractor<Enrollment>() {
+            @Override
+            public Object getValue(Enrollment enrollment) {
+                return enrollment.getStatus();
+            }
+        });
+        addIndex(COLUMN_TRACKED_ENTITY_INSTANCE, COLUMN_PROGRAM);
+        addIndex(COLUMN_PROGRAM, COLUMN_ORGANISATION_UNIT);
+    }
+
+    @Override
+    protected void restoreModel(Enrollment enrollment, ResultSet resultSet) throws SQLException {
+        String trackedEntityInstanceUid = resultSet.getString(COLUMN_TRACKED_ENTITY_INSTANCE);
+        if (trackedEntityInstanceUid != null) {
+            enrollment.setTrackedEntityInstanceUid(trackedEntityInstanceUid);
+        }
+    }
+
+    @Override
+    public List<Enrollment> query(Program program, TrackedEntityInstance trackedEntityInstance) {
+        return query(COLUMN_PROGRAM + " = ? AND " + COLUMN_TRACKED_ENTITY_INSTANCE + " = ?",
+                program != null ? program.getUId() : null, getTrackedEntityInstanceUid(trackedEntityInstance));
+    }
+
+    @Override
+    public Enrollment queryActiveEnrollment(TrackedEntityInstance trackedEntityInstance,
+                                            OrganisationUnit organisationUnit, Program program) {
+        if (organisationUnit == null || program == null) {
+            return null;
+        }
+        return queryFirst(COLUMN_TRACKED_ENTITY_INSTANCE + " = ? AND " + COLUMN_ORGANISATION_UNIT +
+                        " = ? AND " + COLUMN_PROGRAM + " = ? AND " + COLUMN_STATUS + " = ?",
+                getTrackedEntityInstanceUid(trackedEntityInstance), organisationUnit.getUId(),
+                program.getUId(), Enrollment.ACTIVE);
+    }
+
+    @Override
+    public List<Enrollment> query(TrackedEntityInstance trackedEntityInstance) {
+        return query(COLUMN_TRACKED_ENTITY_INSTANCE + " = ?", getTrackedEntityInstanceUid(trackedEntityInstance));
+    }
+
+    @Override
+    public List<Enrollment> query(Program program, OrganisationUnit organisationUnit) {
+        return query(COLUMN_PROGRAM + " = ? AND " + COLUMN_ORGANISATION_UNIT + " = ?",
+                program != null ? program.getUId() : null,
+                organisationUnit != null ? organisationUnit.getUId() : null);
+    }
+
+    private static String getTrackedEntityInstanceUid(TrackedEntityInstance trackedEntityInstance) {
+        return trackedEntityInstance != null ? trackedEntityInstance.getTrackedEntityInstanceUid() : null;
+    }
+}
@@ -0,0 +1,113 @@
+/*
+ * Copyright (c) 2015, University of Oslo
+ *
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.hisp.dhis.java.sdk.common.persistence.jdbc;
+
+import org.hisp.dhis.java.sdk.event.IEventStore;
+import org.hisp.dhis.java.sdk.models.enrollment.Enrollment;
+import org.hisp.dhis.java.sdk.models.event.Event;
+import org.hisp.dhis.java.sdk.models.organisationunit.OrganisationUnit;
+import org.hisp.dhis.java.sdk.models.program.Program;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+public class JdbcEventStore extends JdbcIdentifiableObjectStore<Event> implements IEventStore {
+    private static final String COLUMN_ENROLLMENT = "enrollment";
+    private static final String COLUMN_TRACKED_ENTITY_INSTANCE = "tracked_entity_instance";
+    private static final String COLUMN_ORGANISATION_UNIT = "organisation_unit";
+    private static final String COLUMN_PROGRAM = "program";
+
+    public JdbcEventStore(JdbcDatabase database) {
+        super(database, "events", Event.class, "trackedEntityDataValues",
+                "enrollment", "trackedEntityInstance");
+
+        addColumn(COLUMN_ENROLLMENT, JdbcColumn.TYPE_TEXT, new JdbcColumn.IValueExtractor<Event>() {
+            @Override
+            public Object getValue(Event event) {
+                return event.getEnrollment() != null ? event.getEnrollment().getUId() : null;
+            }
+        });
+        addColumn(COLUMN_TRACKED_ENTITY_INSTANCE, JdbcColumn.TYPE_TEXT, new JdbcColumn.IValueExtractor<Event>() {
+            @Override
+            public Object getValue(Event event) {
+                return event.getTrackedEntityInstance() != null ?
+                        event.getTrackedEntityInstance().getTrackedEntityInstanceUid() : null;
+            }
+        });
+        addColumn(COLUMN_ORGANISATION_UNIT, JdbcColumn.TYPE_TEXT, new JdbcColumn.IValueExtractor<Event>() {
+            @Override
+            public Object getValue(Event event) {
+                return event.getOrganisationUnitId();
+            }
+        });
+        addColumn(COLUMN_PROGRAM, JdbcColumn.TYPE_TEXT, new JdbcColumn.IValueExtractor<Event>() {
+            @Override
+            public Object getValue(Event event) {
+                return event.getProgramId();
+            }
+        });
+        addIndex(COLUMN_ENROLLMENT);
+        addIndex(COLUMN_ORGANISATION_UNIT, COLUMN_PROGRAM);
+        addIndex(COLUMN_PROGRAM);
+    }
+
+    @Override
+    protected void restoreModel(Event event, ResultSet resultSet) throws SQLException {
+        String enrollmentUid = resultSet.getString(COLUMN_ENROLLMENT);
+        if (enrollmentUid != null) {
+            event.setEnrollmentUid(enrollmentUid);
+        }
+
+        String trackedEntityInstanceUid = resultSet.getString(COLUMN_TRACKED_ENTITY_INSTANCE);
+        if (trackedEntityInstanceUid != null) {
+            event.setTrackedEntityInstanceUid(trackedEntityInstanceUid);
+        }
+    }
+
+    @Override
+    public List<Event> query(Enrollment enrollment) {
+        return query(COLUMN_ENROLLMENT + " = ?", enrollment != null ? enrollment.getUId() : null);
+    }
+
+    @Override
+    public List<Event> query(OrganisationUnit organisationUnit, Program program) {
+        if (organisationUnit == null || program == null) {
+            return new ArrayList<>();
+        }
+        return query(COLUMN_ORGANISATION_UNIT + " = ? AND " + COLUMN_PROGRAM + " = ?",
+                organisationUnit.getUId(), program.getUId());
+    }
+
+    @Override
+    public List<Event> query(Program program) {
+        return query(COLUMN_PROGRAM + " = ?", program != null ? program.getUId() : null);
+    }
+}
@@ -0,0 +1,70 @@
+/*
+ * Copyright (c) 2015, University of Oslo
+ *
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.hisp.dhis.java.sdk.common.persistence.jdbc;
+
+import org.hisp.dhis.java.sdk.common.IFailedItemStore;
+import org.hisp.dhis.java.sdk.models.common.faileditem.FailedItem;
+import org.hisp.dhis.java.sdk.models.common.faileditem.FailedItemType;
+
+import java.util.List;
+
+public class JdbcFailedItemStore extends AbsJdbcDocumentStore<FailedItem> implements IFailedItemStore {
+    private static final String COLUMN_ITEM_TYPE = "item_type";
+    private static final String COLUMN_ITEM_ID = "item_id";
+
+    public JdbcFailedItemStore(JdbcDatabase database) {
+        super(database, "failed_items", FailedItem.class);
+
+        addColumn(COLUMN_ITEM_TYPE, JdbcColumn.TYPE_TEXT, new JdbcColumn.IValueExtractor<FailedItem>() {
+            @Override
+            public Object getValue(FailedItem failedItem) {
+                return failedItem.getItemFailedItemType() != null ?
+                        failedItem.getItemFailedItemType().name() : null;
+            }
+        });
+        addColumn(COLUMN_ITEM_ID, JdbcColumn.TYPE_INTEGER, new JdbcColumn.IValueExtractor<FailedItem>() {
+            @Override
+            public Object getValue(FailedItem failedItem) {
+                return failedItem.getItemId();
+            }
+        });
+        setNaturalKey(COLUMN_ITEM_TYPE, COLUMN_ITEM_ID);
+    }
+
+    @Override
+    public List<FailedItem> query(FailedItemType type) {
+        return query(COLUMN_ITEM_TYPE + " = ?", type != null ? type.name() : null);
+    }
+
+    @Override
+    public FailedItem query(FailedItemType type, long itemId) {
+        return queryFirst(COLUMN_ITEM_TYPE + " = ? AND " + COLUMN_ITEM_ID + " = ?",
+                type != null ? type.name() : null, itemId);
+    }
+}
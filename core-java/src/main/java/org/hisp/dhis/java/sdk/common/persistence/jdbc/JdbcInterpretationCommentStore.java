@@ -0,0 +1,69 @@
+/*
+ * Copyright (c) 2015, University of Oslo
+ *
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.hisp.dhis.java.sdk.common.persistence.jdbc;
+
+import org.hisp.dhis.java.sdk.interpretation.IInterpretationCommentStore;
+import org.hisp.dhis.java.sdk.models.interpretation.Interpretation;
+import org.hisp.dhis.java.sdk.models.interpretation.InterpretationComment;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.List;
+
+public class JdbcInterpretationCommentStore extends JdbcIdentifiableObjectStore<InterpretationComment>
+        implements IInterpretationCommentStore {
+    private static final String COLUMN_INTERPRETATION = "interpretation";
+
+    public JdbcInterpretationCommentStore(JdbcDatabase database) {
+        super(database, "interpretation_comments", InterpretationComment.class, "interpretation");
+
+        addColumn(COLUMN_INTERPRETATION, JdbcColumn.TYPE_TEXT, new JdbcColumn.IValueExtractor<InterpretationComment>() {
+            @Override
+            public Object getValue(InterpretationComment comment) {
+                return comment.getInterpretation() != null ? comment.getInterpretation().getUId() : null;
+            }
+        });
+        addIndex(COLUMN_INTERPRETATION);
+    }
+
+    @Override
+    protected void restoreModel(InterpretationComment comment, ResultSet resultSet) throws SQLException {
+        String interpretationUid = resultSet.getString(COLUMN_INTERPRETATION);
+        if (interpretationUid != null) {
+            Interpretation interpretation = new Interpretation();
+            interpretation.setUId(interpretationUid);
+            comment.setInterpretation(interpretation);
+        }
+    }
+
+    @Override
+    public List<InterpretationComment> queryByInterpretation(Interpretation interpretation) {
+        return query(COLUMN_INTERPRETATION + " = ?", interpretation != null ? interpretation.getUId() : null);
+    }
+}
@@ -0,0 +1,74 @@
+/*
+ * Copyright (c) 2015, University of Oslo
+ *
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.hisp.dhis.java.sdk.common.persistence.jdbc;
+
+import org.hisp.dhis.java.sdk.models.dataelement.DataElement;
+import org.hisp.dhis.java.sdk.models.program.Program;
+import org.hisp.dhis.java.sdk.models.program.ProgramRuleVariable;
+import org.hisp.dhis.java.sdk.program.IProgramRuleVariableStore;
+
+import java.util.List;
+
+public class JdbcProgramRuleVariableStore extends JdbcIdentifiableObjectStore<ProgramRuleVariable>
+        implements IProgramRuleVariableStore {
+    private static final String COLUMN_PROGRAM = "program";
+    private static final String COLUMN_DATA_ELEMENT = "data_element";
+
+    public JdbcProgramRuleVariableStore(JdbcDatabase database) {
+        super(database, "program_rule_variables", ProgramRuleVariable.class);
+
+        addColumn(COLUMN_PROGRAM, JdbcColumn.TYPE_TEXT, new JdbcColumn.IValueExtractor<ProgramRuleVariable>() {
+            @Override
+            public Object getValue(ProgramRuleVariable programRuleVariable) {
+                return programRuleVariable.getProgram();
+            }
+        });
+        addColumn(COLUMN_DATA_ELEMENT, JdbcColumn.TYPE_TEXT, new JdbcColumn.IValueExtractor<ProgramRuleVariable>() {
+            @Override
+            public Object getValue(ProgramRuleVariable programRuleVariable) {
+                return programRuleVariable.getDataElement();
+            }
+        });
+        addIndex(COLUMN_PROGRAM, COLUMN_DATA_ELEMENT);
+    }
+
+    @Override
+    public ProgramRuleVariable query(Program program, DataElement dataElement) {
+        if (program == null || dataElement == null) {
+            return null;
+        }
+        return queryFirst(COLUMN_PROGRAM + " = ? AND " + COLUMN_DATA_ELEMENT + " = ?",
+                program.getUId(), dataElement.getUId());
+    }
+
+    @Override
+    public List<ProgramRuleVariable> query(Program program) {
+        return query(COLUMN_PROGRAM + " = ?", program != null ? program.getUId() : null);
+    }
+}
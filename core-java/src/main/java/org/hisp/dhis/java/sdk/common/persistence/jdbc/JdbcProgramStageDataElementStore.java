@@ -0,0 +1,92 @@
+/*
+ * Copyright (c) 2015, University of Oslo
+ *
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.hisp.dhis.java.sdk.common.persistence.jdbc;
+
+import org.hisp.dhis.java.sdk.models.dataelement.DataElement;
+import org.hisp.dhis.java.sdk.models.program.ProgramStage;
+import org.hisp.dhis.java.sdk.models.program.ProgramStageDataElement;
+import org.hisp.dhis.java.sdk.models.program.ProgramStageSection;
+import org.hisp.dhis.java.sdk.program.IProgramStageDataElementStore;
+
+import java.util.List;
+
+public class JdbcProgramStageDataElementStore extends AbsJdbcDocumentStore<ProgramStageDataElement>
+        implements IProgramStageDataElementStore {
+    private static final String COLUMN_PROGRAM_STAGE = "program_stage";
+    private static final String COLUMN_PROGRAM_STAGE_SECTION = "program_stage_section";
+    private static final String COLUMN_DATA_ELEMENT = "data_element";
+
+    public JdbcProgramStageDataElementStore(JdbcDatabase database) {
+        super(database, "program_stage_data_elements", ProgramStageDataElement.class);
+
+        addColumn(COLUMN_PROGRAM_STAGE, JdbcColumn.TYPE_TEXT,
+                new JdbcColumn.IValueExtractor<ProgramStageDataElement>() {
+                    @Override
+                    public Object getValue(ProgramStageDataElement programStageDataElement) {
+                        return programStageDataElement.getProgramStage();
+                    }
+                });
+        addColumn(COLUMN_PROGRAM_STAGE_SECTION, JdbcColumn.TYPE_TEXT,
+                new JdbcColumn.IValueExtractor<ProgramStageDataElement>() {
+                    @Override
+                    public Object getValue(ProgramStageDataElement programStageDataElement) {
+                        return programStageDataElement.getProgramStageSection();
+                    }
+                });
+        addColumn(COLUMN_DATA_ELEMENT, JdbcColumn.TYPE_TEXT,
+                new JdbcColumn.IValueExtractor<ProgramStageDataElement>() {
+                    @Override
+                    public Object getValue(ProgramStageDataElement programStageDataElement) {
+                        return programStageDataElement.getDataElement();
+                    }
+                });
+        setNaturalKey(COLUMN_PROGRAM_STAGE, COLUMN_DATA_ELEMENT);
+        addIndex(COLUMN_PROGRAM_STAGE_SECTION);
+    }
+
+    @Override
+    public List<ProgramStageDataElement> query(ProgramStage programStage) {
+        return query(COLUMN_PROGRAM_STAGE + " = ?", programStage != null ? programStage.getUId() : null);
+    }
+
+    @Override
+    public List<ProgramStageDataElement> query(ProgramStageSection programStageSection) {
+        return query(COLUMN_PROGRAM_STAGE_SECTION + " = ?",
+                programStageSection != null ? programStageSection.getUId() : null);
+    }
+
+    @Override
+    public ProgramStageDataElement query(ProgramStage programStage, DataElement dataElement) {
+        if (programStage == null || dataElement == null) {
+            return null;
+        }
+        return queryFirst(COLUMN_PROGRAM_STAGE + " = ? AND " + COLUMN_DATA_ELEMENT + " = ?",
+                programStage.getUId(), dataElement.getUId());
+    }
+}
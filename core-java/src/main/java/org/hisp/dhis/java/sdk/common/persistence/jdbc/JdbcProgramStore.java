@@ -0,0 +1,134 @@
+/*
+ * Copyright (c) 2015, University of Oslo
+ *
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.hisp.dhis.java.sdk.common.persistence.jdbc;
+
+import org.hisp.dhis.java.sdk.models.organisationunit.OrganisationUnit;
+import org.hisp.dhis.java.sdk.models.program.Program;
+import org.hisp.dhis.java.sdk.program.IProgramStore;
+import org.hisp.dhis.java.sdk.utils.Preconditions;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Assignments of programs to organisation units are kept in separate link table.
+ */
+public class JdbcProgramStore extends JdbcIdentifiableObjectStore<Program> implements IProgramStore {
+    private static final String TABLE_ASSIGNMENTS = "program_organisation_units";
+    private static final String COLUMN_PROGRAM = "program";
+    private static final String COLUMN_ORGANISATION_UNIT = "organisation_unit";
+    private static final String COLUMN_KIND = "kind";
+
+    public JdbcProgramStore(JdbcDatabase database) {
+        super(database, "programs", Program.class, "programStages", "programTrackedEntityAttributes");
+
+        addColumn(COLUMN_KIND, JdbcColumn.TYPE_TEXT, new JdbcColumn.IValueExtractor<Program>() {
+            @Override
+            public Object getValue(Program program) {
+                return program.getKind();
+            }
+        });
+    }
+
+    @Override
+    public void createTable() {
+        super.createTable();
+
+        getDatabase().update("CREATE TABLE IF NOT EXISTS " + TABLE_ASSIGNMENTS + " (" +
+                COLUMN_PROGRAM + " " + JdbcColumn.TYPE_TEXT + ", " +
+                COLUMN_ORGANISATION_UNIT + " " + JdbcColumn.TYPE_TEXT + ")");
+        getDatabase().update("CREATE INDEX IF NOT EXISTS " + TABLE_ASSIGNMENTS + "_" +
+                COLUMN_ORGANISATION_UNIT + " ON " + TABLE_ASSIGNMENTS + " (" + COLUMN_ORGANISATION_UNIT + ")");
+        getDatabase().update("CREATE INDEX IF NOT EXISTS " + TABLE_ASSIGNMENTS + "_" +
+                COLUMN_PROGRAM + " ON " + TABLE_ASSIGNMENTS + " (" + COLUMN_PROGRAM + ")");
+    }
+
+    @Override
+    public List<Program> query(OrganisationUnit organisationUnit) {
+        return query(COLUMN_UID + " IN (SELECT " + COLUMN_PROGRAM + " FROM " + TABLE_ASSIGNMENTS +
+                " WHERE " + COLUMN_ORGANISATION_UNIT + " = ?)", getUid(organisationUnit));
+    }
+
+    @Override
+    public List<Program> query(OrganisationUnit organisationUnit, Program.ProgramType... programTypes) {
+        if (programTypes == null || programTypes.length == 0) {
+            return new ArrayList<>();
+        }
+
+        Object[] args = new Object[programTypes.length + 1];
+        args[0] = getUid(organisationUnit);
+        for (int i = 0; i < programTypes.length; i++) {
+            args[i + 1] = programTypes[i].toString();
+        }
+
+        return query(COLUMN_UID + " IN (SELECT " + COLUMN_PROGRAM + " FROM " + TABLE_ASSIGNMENTS +
+                " WHERE " + COLUMN_ORGANISATION_UNIT + " = ?) AND " + COLUMN_KIND +
+                " IN (" + placeholders(programTypes.length) + ")", args);
+    }
+
+    @Override
+    public void assign(final Program program, final Set<OrganisationUnit> organisationUnits) {
+        Preconditions.isNull(program, "Program must not be null");
+
+        getDatabase().transact(new JdbcDatabase.IConnectionCallback<Void>() {
+            @Override
+            public Void execute(Connection connection) throws SQLException {
+                try (PreparedStatement statement = connection.prepareStatement("DELETE FROM " +
+                        TABLE_ASSIGNMENTS + " WHERE " + COLUMN_PROGRAM + " = ?")) {
+                    statement.setString(1, program.getUId());
+                    statement.executeUpdate();
+                }
+
+                if (organisationUnits == null || organisationUnits.isEmpty()) {
+                    return null;
+                }
+
+                try (PreparedStatement statement = connection.prepareStatement("INSERT INTO " +
+                        TABLE_ASSIGNMENTS + " (" + COLUMN_PROGRAM + ", " + COLUMN_ORGANISATION_UNIT +
+                        ") VALUES (?, ?)")) {
+                    for (OrganisationUnit organisationUnit : organisationUnits) {
+                        statement.setString(1, program.getUId());
+                        statement.setString(2, organisationUnit.getUId());
+                        statement.addBatch();
+                    }
+                    statement.executeBatch();
+                }
+                return null;
+            }
+        });
+    }
+
+    private static String getUid(OrganisationUnit organisationUnit) {
+        return organisationUnit != null ? organisationUnit.getUId() : null;
+    }
+}
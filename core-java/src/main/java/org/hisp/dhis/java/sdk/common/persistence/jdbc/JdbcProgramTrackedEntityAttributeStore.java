@@ -0,0 +1,76 @@
+/*
+ * Copyright (c) 2015, University of Oslo
+ *
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.hisp.dhis.java.sdk.common.persistence.jdbc;
+
+import org.hisp.dhis.java.sdk.models.program.Program;
+import org.hisp.dhis.java.sdk.models.program.ProgramTrackedEntityAttribute;
+import org.hisp.dhis.java.sdk.models.trackedentity.TrackedEntityAttribute;
+import org.hisp.dhis.java.sdk.program.IProgramTrackedEntityAttributeStore;
+
+import java.util.List;
+
+public class JdbcProgramTrackedEntityAttributeStore extends AbsJdbcDocumentStore<ProgramTrackedEntityAttribute>
+        implements IProgramTrackedEntityAttributeStore {
+    private static final String COLUMN_PROGRAM = "program";
+    private static final String COLUMN_TRACKED_ENTITY_ATTRIBUTE = "tracked_entity_attribute";
+
+    public JdbcProgramTrackedEntityAttributeStore(JdbcDatabase database) {
+        super(database, "program_tracked_entity_attributes", ProgramTrackedEntityAttribute.class);
+
+        addColumn(COLUMN_PROGRAM, JdbcColumn.TYPE_TEXT,
+                new JdbcColumn.IValueExtractor<ProgramTrackedEntityAttribute>() {
+                    @Override
+                    public Object getValue(ProgramTrackedEntityAttribute attribute) {
+                        return attribute.getProgram();
+                    }
+                });
+        addColumn(COLUMN_TRACKED_ENTITY_ATTRIBUTE, JdbcColumn.TYPE_TEXT,
+                new JdbcColumn.IValueExtractor<ProgramTrackedEntityAttribute>() {
+                    @Override
+                    public Object getValue(ProgramTrackedEntityAttribute attribute) {
+                        return attribute.getTrackedEntityAttribute();
+                    }
+                });
+        setNaturalKey(COLUMN_PROGRAM, COLUMN_TRACKED_ENTITY_ATTRIBUTE);
+    }
+
+    @Override
+    public List<ProgramTrackedEntityAttribute> query(Program program) {
+        return query(COLUMN_PROGRAM + " = ?", program != null ? program.getUId() : null);
+    }
+
+    @Override
+    public ProgramTrackedEntityAttribute query(Program program, TrackedEntityAttribute trackedEntityAttribute) {
+        if (program == null || trackedEntityAttribute == null) {
+            return null;
+        }
+        return queryFirst(COLUMN_PROGRAM + " = ? AND " + COLUMN_TRACKED_ENTITY_ATTRIBUTE + " = ?",
+                program.getUId(), trackedEntityAttribute.getUId());
+    }
+}
@@ -0,0 +1,87 @@
+/*
+ * Copyright (c) 2015, University of Oslo
+ *
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.hisp.dhis.java.sdk.common.persistence.jdbc;
+
+import org.hisp.dhis.java.sdk.models.relationship.Relationship;
+import org.hisp.dhis.java.sdk.models.trackedentity.TrackedEntityInstance;
+import org.hisp.dhis.java.sdk.relationship.IRelationshipStore;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.List;
+
+public class JdbcRelationshipStore extends AbsJdbcDocumentStore<Relationship> implements IRelationshipStore {
+    private static final String COLUMN_TRACKED_ENTITY_INSTANCE_A = "tracked_entity_instance_a";
+    private static final String COLUMN_TRACKED_ENTITY_INSTANCE_B = "tracked_entity_instance_b";
+
+    public JdbcRelationshipStore(JdbcDatabase database) {
+        super(database, "relationships", Relationship.class, "trackedEntityInstanceA", "trackedEntityInstanceB");
+
+        addColumn(COLUMN_TRACKED_ENTITY_INSTANCE_A, JdbcColumn.TYPE_TEXT,
+                new JdbcColumn.IValueExtractor<Relationship>() {
+                    @Override
+                    public Object getValue(Relationship relationship) {
+                        return getTrackedEntityInstanceUid(relationship.getTrackedEntityInstanceA());
+                    }
+                });
+        addColumn(COLUMN_TRACKED_ENTITY_INSTANCE_B, JdbcColumn.TYPE_TEXT,
+                new JdbcColumn.IValueExtractor<Relationship>() {
+                    @Override
+                    public Object getValue(Relationship relationship) {
+                        return getTrackedEntityInstanceUid(relationship.getTrackedEntityInstanceB());
+                    }
+                });
+        addIndex(COLUMN_TRACKED_ENTITY_INSTANCE_A);
+        addIndex(COLUMN_TRACKED_ENTITY_INSTANCE_B);
+    }
+
+    @Override
+    protected void restoreModel(Relationship relationship, ResultSet resultSet) throws SQLException {
+        String trackedEntityInstanceA = resultSet.getString(COLUMN_TRACKED_ENTITY_INSTANCE_A);
+        if (trackedEntityInstanceA != null) {
+            relationship.setTrackedEntityInstanceA(trackedEntityInstanceA);
+        }
+
+        String trackedEntityInstanceB = resultSet.getString(COLUMN_TRACKED_ENTITY_INSTANCE_B);
+        if (trackedEntityInstanceB != null) {
+            relationship.setTrackedEntityInstanceB(trackedEntityInstanceB);
+        }
+    }
+
+    @Override
+    public List<Relationship> query(TrackedEntityInstance trackedEntityInstance) {
+        String uid = getTrackedEntityInstanceUid(trackedEntityInstance);
+        return query(COLUMN_TRACKED_ENTITY_INSTANCE_A + " = ? OR " +
+                COLUMN_TRACKED_ENTITY_INSTANCE_B + " = ?", uid, uid);
+    }
+
+    private static String getTrackedEntityInstanceUid(TrackedEntityInstance trackedEntityInstance) {
+        return trackedEntityInstance != null ? trackedEntityInstance.getTrackedEntityInstanceUid() : null;
+    }
+}
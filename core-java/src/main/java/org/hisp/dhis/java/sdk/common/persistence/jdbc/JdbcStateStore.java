@@ -0,0 +1,270 @@
+/*
+ * Copyright (c) 2015, University of Oslo
+ *
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.hisp.dhis.java.sdk.common.persistence.jdbc;
+
+import org.hisp.dhis.java.sdk.common.ActionMap;
+import org.hisp.dhis.java.sdk.common.IStateStore;
+import org.hisp.dhis.java.sdk.models.common.base.IModel;
+import org.hisp.dhis.java.sdk.models.common.state.Action;
+import org.hisp.dhis.java.sdk.models.common.state.State;
+import org.hisp.dhis.java.sdk.utils.Preconditions;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * JDBC implementation of {@link IStateStore}. In order to resolve models with given actions,
+ * store of corresponding model type has to be registered with {@link #register(Class, AbsJdbcStore)}.
+ */
+public class JdbcStateStore extends AbsJdbcStore<State> implements IStateStore {
+    private static final String COLUMN_ITEM_TYPE = "item_type";
+    private static final String COLUMN_ITEM_ID = "item_id";
+    private static final String COLUMN_ACTION = "action";
+
+    private final Map<Class<? extends IModel>, AbsJdbcStore<? extends IModel>> modelStores;
+
+    public JdbcStateStore(JdbcDatabase database) {
+        super(database, "states");
+
+        modelStores = new HashMap<>();
+        addColumn(COLUMN_ITEM_TYPE, JdbcColumn.TYPE_TEXT, new JdbcColumn.IValueExtractor<State>() {
+            @Override
+            public Object getValue(State state) {
+                return state.getItemType() != null ? state.getItemType().getName() : null;
+            }
+        });
+        addColumn(COLUMN_ITEM_ID, JdbcColumn.TYPE_INTEGER, new JdbcColumn.IValueExtractor<State>() {
+            @Override
+            public Object getValue(State state) {
+                return state.getItemId();
+            }
+        });
+        addColumn(COLUMN_ACTION, JdbcColumn.TYPE_TEXT, new JdbcColumn.IValueExtractor<State>() {
+            @Override
+            public Object getValue(State state) {
+                return state.getAction() != null ? state.getAction().name() : null;
+            }
+        });
+        setNaturalKey(COLUMN_ITEM_TYPE, COLUMN_ITEM_ID);
+        addIndex(COLUMN_ITEM_TYPE, COLUMN_ACTION);
+    }
+
+    /**
+     * Registers store which is used to resolve models of given type.
+     */
+    public <T extends IModel> void register(Class<T> clazz, AbsJdbcStore<T> store) {
+        Preconditions.isNull(clazz, "Class must not be null");
+        Preconditions.isNull(store, "AbsJdbcStore must not be null");
+        modelStores.put(clazz, store);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    protected State readModel(ResultSet resultSet) throws SQLException {
+        State state = new State();
+        state.setId(resultSet.getLong(COLUMN_ID));
+        state.setItemId(resultSet.getLong(COLUMN_ITEM_ID));
+        state.setAction(Action.valueOf(resultSet.getString(COLUMN_ACTION)));
+        try {
+            state.setItemType((Class<? extends IModel>) Class.forName(resultSet.getString(COLUMN_ITEM_TYPE)));
+        } catch (ClassNotFoundException e) {
+            throw new SQLException("Unknown model type: " + resultSet.getString(COLUMN_ITEM_TYPE), e);
+        }
+        return state;
+    }
+
+    @Override
+    public <T extends IModel> boolean insertActionForModel(T object, Action action) {
+        return insert(createState(object, action));
+    }
+
+    @Override
+    public <T extends IModel> boolean updateActionForModel(T object, Action action) {
+        return update(createState(object, action));
+    }
+
+    @Override
+    public <T extends IModel> boolean saveActionForModel(T object, Action action) {
+        return save(createState(object, action));
+    }
+
+    @Override
+    public <T extends IModel> boolean deleteActionForModel(T object) {
+        Preconditions.isNull(object, "IModel object must not be null");
+        return getDatabase().update("DELETE FROM " + getTableName() + " WHERE " + COLUMN_ITEM_TYPE +
+                " = ? AND " + COLUMN_ITEM_ID + " = ?", object.getClass().getName(), object.getId()) > 0;
+    }
+
+    @Override
+    public <T extends IModel> State queryStateForModel(T object) {
+        Preconditions.isNull(object, "IModel object must not be null");
+        return queryFirst(COLUMN_ITEM_TYPE + " = ? AND " + COLUMN_ITEM_ID + " = ?",
+                object.getClass().getName(), object.getId());
+    }
+
+    @Override
+    public <T extends IModel> Action queryActionForModel(T object) {
+        State state = queryStateForModel(object);
+        return state != null ? state.getAction() : null;
+    }
+
+    /**
+     * Resolves actions with one query per chunk of models.
+     */
+    @Override
+    public <T extends IModel> ActionMap queryActionsForModels(final Class<T> clazz,
+                                                              Collection<? extends T> objects) {
+        Preconditions.isNull(clazz, "Class must not be null");
+        Preconditions.isNull(objects, "Collection of objects must not be null");
+
+        final Set<Long> ids = new LinkedHashSet<>();
+        for (T object : objects) {
+            if (object != null) {
+                ids.add(object.getId());
+            }
+        }
+
+        final ActionMap actionMap = new ActionMap(ids.size());
+        if (ids.isEmpty()) {
+            return actionMap;
+        }
+
+        return getDatabase().execute(new JdbcDatabase.IConnectionCallback<ActionMap>() {
+            @Override
+            public ActionMap execute(Connection connection) throws SQLException {
+                for (List<Object> chunk : chunks(ids)) {
+                    String sql = "SELECT " + COLUMN_ITEM_ID + ", " + COLUMN_ACTION + " FROM " + getTableName() +
+                            " WHERE " + COLUMN_ITEM_TYPE + " = ? AND " + COLUMN_ITEM_ID +
+                            " IN (" + placeholders(chunk.size()) + ")";
+                    try (PreparedStatement statement = connection.prepareStatement(sql)) {
+                        statement.setString(1, clazz.getName());
+                        for (int i = 0; i < chunk.size(); i++) {
+                            statement.setObject(i + 2, chunk.get(i));
+                        }
+
+                        try (ResultSet resultSet = statement.executeQuery()) {
+                            while (resultSet.next()) {
+                                actionMap.put(resultSet.getLong(1), Action.valueOf(resultSet.getString(2)));
+                            }
+                        }
+                    }
+                }
+                return actionMap;
+            }
+        });
+    }
+
+    @Override
+    public <T extends IModel> int saveActionsForModels(Collection<T> objects, Action action) {
+        Preconditions.isNull(objects, "Collection of objects must not be null");
+
+        List<State> states = new ArrayList<>(objects.size());
+        for (T object : objects) {
+            states.add(createState(object, action));
+        }
+        return saveAll(states);
+    }
+
+    @Override
+    public <T extends IModel> List<State> queryStatesForModelClass(Class<T> clazz) {
+        Preconditions.isNull(clazz, "Class must not be null");
+        return query(COLUMN_ITEM_TYPE + " = ?", clazz.getName());
+    }
+
+    @Override
+    public <T extends IModel> ActionMap queryActionsForModel(final Class<T> clazz) {
+        Preconditions.isNull(clazz, "Class must not be null");
+
+        return getDatabase().execute(new JdbcDatabase.IConnectionCallback<ActionMap>() {
+            @Override
+            public ActionMap execute(Connection connection) throws SQLException {
+                String sql = "SELECT " + COLUMN_ITEM_ID + ", " + COLUMN_ACTION + " FROM " +
+                        getTableName() + " WHERE " + COLUMN_ITEM_TYPE + " = ?";
+                try (PreparedStatement statement = connection.prepareStatement(sql)) {
+                    statement.setString(1, clazz.getName());
+
+                    ActionMap actionMap = new ActionMap();
+                    try (ResultSet resultSet = statement.executeQuery()) {
+                        while (resultSet.next()) {
+                            actionMap.put(resultSet.getLong(1), Action.valueOf(resultSet.getString(2)));
+                        }
+                    }
+                    return actionMap;
+                }
+            }
+        });
+    }
+
+    /**
+     * Resolves models with single query which joins model table with state table.
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T extends IModel> List<T> queryModelsWithActions(Class<T> clazz, Action... actions) {
+        Preconditions.isNull(clazz, "Class must not be null");
+
+        AbsJdbcStore<T> store = (AbsJdbcStore<T>) modelStores.get(clazz);
+        if (store == null) {
+            throw new IllegalArgumentException("No store is registered for " + clazz.getName());
+        }
+        if (actions.length == 0) {
+            return new ArrayList<>();
+        }
+
+        Object[] args = new Object[actions.length + 1];
+        args[0] = clazz.getName();
+        for (int i = 0; i < actions.length; i++) {
+            args[i + 1] = actions[i].name();
+        }
+
+        return store.query(COLUMN_ID + " IN (SELECT " + COLUMN_ITEM_ID + " FROM " + getTableName() +
+                " WHERE " + COLUMN_ITEM_TYPE + " = ? AND " + COLUMN_ACTION + " IN (" +
+                placeholders(actions.length) + "))", args);
+    }
+
+    private static <T extends IModel> State createState(T object, Action action) {
+        Preconditions.isNull(object, "IModel object must not be null");
+        Preconditions.isNull(action, "Action must not be null");
+
+        State state = new State();
+        state.setItemId(object.getId());
+        state.setItemType(object.getClass());
+        state.setAction(action);
+        return state;
+    }
+}
@@ -0,0 +1,105 @@
+/*
+ * Copyright (c) 2015, University of Oslo
+ *
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.hisp.dhis.java.sdk.common.persistence.jdbc;
+
+import org.hisp.dhis.java.sdk.models.enrollment.Enrollment;
+import org.hisp.dhis.java.sdk.models.trackedentity.TrackedEntityAttribute;
+import org.hisp.dhis.java.sdk.models.trackedentity.TrackedEntityAttributeValue;
+import org.hisp.dhis.java.sdk.models.trackedentity.TrackedEntityInstance;
+import org.hisp.dhis.java.sdk.trackedentity.ITrackedEntityAttributeValueStore;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.List;
+
+public class JdbcTrackedEntityAttributeValueStore extends AbsJdbcDocumentStore<TrackedEntityAttributeValue>
+        implements ITrackedEntityAttributeValueStore {
+    private static final String COLUMN_TRACKED_ENTITY_INSTANCE = "tracked_entity_instance";
+    private static final String COLUMN_TRACKED_ENTITY_ATTRIBUTE = "tracked_entity_attribute";
+
+    public JdbcTrackedEntityAttributeValueStore(JdbcDatabase database) {
+        super(database, "tracked_entity_attribute_values", TrackedEntityAttributeValue.class,
+                "trackedEntityInstance");
+
+        addColumn(COLUMN_TRACKED_ENTITY_INSTANCE, JdbcColumn.TYPE_TEXT,
+                new JdbcColumn.IValueExtractor<TrackedEntityAttributeValue>() {
+                    @Override
+                    public Object getValue(TrackedEntityAttributeValue value) {
+                        return getTrackedEntityInstanceUid(value.getTrackedEntityInstance());
+                    }
+                });
+        addColumn(COLUMN_TRACKED_ENTITY_ATTRIBUTE, JdbcColumn.TYPE_TEXT,
+                new JdbcColumn.IValueExtractor<TrackedEntityAttributeValue>() {
+                    @Override
+                    public Object getValue(TrackedEntityAttributeValue value) {
+                        return value.getTrackedEntityAttributeUId();
+                    }
+                });
+        setNaturalKey(COLUMN_TRACKED_ENTITY_INSTANCE, COLUMN_TRACKED_ENTITY_ATTRIBUTE);
+    }
+
+    @Override
+    protected void restoreModel(TrackedEntityAttributeValue value, ResultSet resultSet) throws SQLException {
+        String trackedEntityInstanceUid = resultSet.getString(COLUMN_TRACKED_ENTITY_INSTANCE);
+        if (trackedEntityInstanceUid != null) {
+            TrackedEntityInstance trackedEntityInstance = new TrackedEntityInstance();
+            trackedEntityInstance.setTrackedEntityInstanceUid(trackedEntityInstanceUid);
+            value.setTrackedEntityInstance(trackedEntityInstance);
+        }
+    }
+
+    @Override
+    public TrackedEntityAttributeValue query(TrackedEntityInstance trackedEntityInstance,
+                                             TrackedEntityAttribute trackedEntityAttribute) {
+        if (trackedEntityAttribute == null) {
+            return null;
+        }
+        return queryFirst(COLUMN_TRACKED_ENTITY_INSTANCE + " = ? AND " + COLUMN_TRACKED_ENTITY_ATTRIBUTE + " = ?",
+                getTrackedEntityInstanceUid(trackedEntityInstance), trackedEntityAttribute.getUId());
+    }
+
+    @Override
+    public List<TrackedEntityAttributeValue> query(TrackedEntityInstance trackedEntityInstance) {
+        return query(COLUMN_TRACKED_ENTITY_INSTANCE + " = ?", getTrackedEntityInstanceUid(trackedEntityInstance));
+    }
+
+    /**
+     * Attribute values are owned by tracked entity instance, so values of
+     * enrollment are values of the tracked entity instance it belongs to.
+     */
+    @Override
+    public List<TrackedEntityAttributeValue> query(Enrollment enrollment) {
+        return query(COLUMN_TRACKED_ENTITY_INSTANCE + " = ?", enrollment != null ?
+                getTrackedEntityInstanceUid(enrollment.getTrackedEntityInstance()) : null);
+    }
+
+    private static String getTrackedEntityInstanceUid(TrackedEntityInstance trackedEntityInstance) {
+        return trackedEntityInstance != null ? trackedEntityInstance.getTrackedEntityInstanceUid() : null;
+    }
+}
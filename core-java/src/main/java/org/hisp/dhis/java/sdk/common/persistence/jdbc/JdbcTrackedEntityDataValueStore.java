@@ -0,0 +1,105 @@
+/*
+ * Copyright (c) 2015, University of Oslo
+ *
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.hisp.dhis.java.sdk.common.persistence.jdbc;
+
+import org.hisp.dhis.java.sdk.models.dataelement.DataElement;
+import org.hisp.dhis.java.sdk.models.event.Event;
+import org.hisp.dhis.java.sdk.models.trackedentity.TrackedEntityDataValue;
+import org.hisp.dhis.java.sdk.trackedentity.ITrackedEntityDataValueStore;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+public class JdbcTrackedEntityDataValueStore extends AbsJdbcDocumentStore<TrackedEntityDataValue>
+        implements ITrackedEntityDataValueStore {
+    private static final String COLUMN_EVENT = "event";
+    private static final String COLUMN_DATA_ELEMENT = "data_element";
+
+    public JdbcTrackedEntityDataValueStore(JdbcDatabase database) {
+        super(database, "tracked_entity_data_values", TrackedEntityDataValue.class, "event");
+
+        addColumn(COLUMN_EVENT, JdbcColumn.TYPE_TEXT, new JdbcColumn.IValueExtractor<TrackedEntityDataValue>() {
+            @Override
+            public Object getValue(TrackedEntityDataValue dataValue) {
+                return getEventUid(dataValue.getEvent());
+            }
+        });
+        addColumn(COLUMN_DATA_ELEMENT, JdbcColumn.TYPE_TEXT, new JdbcColumn.IValueExtractor<TrackedEntityDataValue>() {
+            @Override
+            public Object getValue(TrackedEntityDataValue dataValue) {
+                return dataValue.getDataElement();
+            }
+        });
+        setNaturalKey(COLUMN_EVENT, COLUMN_DATA_ELEMENT);
+    }
+
+    @Override
+    protected void restoreModel(TrackedEntityDataValue dataValue, ResultSet resultSet) throws SQLException {
+        String eventUid = resultSet.getString(COLUMN_EVENT);
+        if (eventUid != null) {
+            Event event = new Event();
+            event.setUId(eventUid);
+            dataValue.setEvent(event);
+        }
+    }
+
+    @Override
+    public List<TrackedEntityDataValue> query(Event event) {
+        return query(COLUMN_EVENT + " = ?", getEventUid(event));
+    }
+
+    @Override
+    public List<TrackedEntityDataValue> query(List<Event> events) {
+        List<String> eventUids = new ArrayList<>(events.size());
+        for (Event event : events) {
+            eventUids.add(getEventUid(event));
+        }
+
+        List<TrackedEntityDataValue> dataValues = new ArrayList<>();
+        for (List<Object> chunk : chunks(eventUids)) {
+            dataValues.addAll(query(COLUMN_EVENT + " IN (" + placeholders(chunk.size()) + ")", chunk.toArray()));
+        }
+        return dataValues;
+    }
+
+    @Override
+    public TrackedEntityDataValue query(DataElement dataElement, Event event) {
+        if (dataElement == null) {
+            return null;
+        }
+        return queryFirst(COLUMN_EVENT + " = ? AND " + COLUMN_DATA_ELEMENT + " = ?",
+                getEventUid(event), dataElement.getUId());
+    }
+
+    private static String getEventUid(Event event) {
+        return event != null ? event.getUId() : null;
+    }
+}
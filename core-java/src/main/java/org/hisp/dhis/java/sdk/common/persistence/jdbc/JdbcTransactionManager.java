@@ -0,0 +1,65 @@
+/*
+ * Copyright (c) 2015, University of Oslo
+ *
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.hisp.dhis.java.sdk.common.persistence.jdbc;
+
+import org.hisp.dhis.java.sdk.common.persistence.AbsTransactionManager;
+import org.hisp.dhis.java.sdk.common.persistence.DbOperation;
+import org.hisp.dhis.java.sdk.common.persistence.IDbOperation;
+import org.hisp.dhis.java.sdk.utils.Preconditions;
+
+import java.sql.Connection;
+import java.util.Collection;
+
+/**
+ * Executes all operations in single database transaction. Consecutive operations
+ * which share store and action are coalesced by {@link DbOperation#executeAll(Collection)},
+ * so {@link AbsJdbcStore} sends them to database as one JDBC batch.
+ */
+public class JdbcTransactionManager extends AbsTransactionManager {
+    private final JdbcDatabase database;
+
+    public JdbcTransactionManager(JdbcDatabase database) {
+        this.database = Preconditions.isNull(database, "JdbcDatabase must not be null");
+    }
+
+    @Override
+    public void transact(final Collection<IDbOperation> operations) {
+        if (operations == null || operations.isEmpty()) {
+            return;
+        }
+
+        database.transact(new JdbcDatabase.IConnectionCallback<Void>() {
+            @Override
+            public Void execute(Connection connection) {
+                DbOperation.executeAll(operations);
+                return null;
+            }
+        });
+    }
+}
@@ -0,0 +1,350 @@
+/*
+ * Copyright (c) 2015, University of Oslo
+ *
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.hisp.dhis.java.sdk.common.persistence.memory;
+
+import org.hisp.dhis.java.sdk.common.persistence.DbAction;
+import org.hisp.dhis.java.sdk.common.persistence.IStore;
+import org.hisp.dhis.java.sdk.models.common.base.IModel;
+import org.hisp.dhis.java.sdk.utils.Preconditions;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+
+/**
+ * Base class for in-memory stores. Models are kept in primary key map, while
+ * subclasses can register secondary hash indexes in order to answer
+ * query methods without scanning all models.
+ */
+public abstract class AbsMemoryStore<T extends IModel> implements IStore<T> {
+    private final ReadWriteLock lock;
+    private final Map<Long, T> models;
+    private final List<MemoryIndex<T>> indexes;
+    private long sequence;
+
+    protected AbsMemoryStore(ReadWriteLock lock) {
+        this.lock = Preconditions.isNull(lock, "ReadWriteLock must not be null");
+        this.models = new LinkedHashMap<>();
+        this.indexes = new ArrayList<>();
+    }
+
+    /**
+     * Registers secondary index. Should be called only from constructor of subclass.
+     */
+    protected final MemoryIndex<T> addIndex(MemoryIndex<T> index) {
+        indexes.add(Preconditions.isNull(index, "MemoryIndex must not be null"));
+        return index;
+    }
+
+    /**
+     * Returns local id of given model. Subclasses can override this method
+     * in order to resolve id of models which were not loaded from this store
+     * (for example, by using uid of identifiable object).
+     */
+    protected long resolveId(T object) {
+        return object.getId();
+    }
+
+    @Override
+    public boolean insert(T object) {
+        Preconditions.isNull(object, "Object to insert must not be null");
+
+        lock.writeLock().lock();
+        try {
+            if (models.containsKey(resolveId(object))) {
+                return false;
+            }
+
+            long id = object.getId();
+            if (id <= 0) {
+                object.setId(++sequence);
+            } else if (id > sequence) {
+                sequence = id;
+            }
+
+            put(object);
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public boolean update(T object) {
+        Preconditions.isNull(object, "Object to update must not be null");
+
+        lock.writeLock().lock();
+        try {
+            long id = resolveId(object);
+            if (!models.containsKey(id)) {
+                return false;
+            }
+
+            object.setId(id);
+            unindex(models.get(id));
+            put(object);
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public boolean save(T object) {
+        Preconditions.isNull(object, "Object to save must not be null");
+
+        lock.writeLock().lock();
+        try {
+            long id = resolveId(object);
+            if (models.containsKey(id)) {
+                object.setId(id);
+                return update(object);
+            }
+            return insert(object);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public boolean delete(T object) {
+        Preconditions.isNull(object, "Object to delete must not be null");
+
+        lock.writeLock().lock();
+        try {
+            T removed = models.remove(resolveId(object));
+            if (removed == null) {
+                return false;
+            }
+
+            unindex(removed);
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public int insertAll(Collection<T> objects) {
+        return applyAll(DbAction.INSERT, objects);
+    }
+
+    @Override
+    public int updateAll(Collection<T> objects) {
+        return applyAll(DbAction.UPDATE, objects);
+    }
+
+    @Override
+    public int saveAll(Collection<T> objects) {
+        return applyAll(DbAction.SAVE, objects);
+    }
+
+    @Override
+    public int deleteAll(Collection<T> objects) {
+        return applyAll(DbAction.DELETE, objects);
+    }
+
+    @Override
+    public T queryById(long id) {
+        lock.readLock().lock();
+        try {
+            return models.get(id);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public List<T> queryAll() {
+        lock.readLock().lock();
+        try {
+            return new ArrayList<>(models.values());
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Removes all models from store and resets indexes.
+     */
+    public void clear() {
+        lock.writeLock().lock();
+        try {
+            models.clear();
+            for (MemoryIndex<T> index : indexes) {
+                index.clear();
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Returns all models which are stored in given index under given key.
+     */
+    protected final List<T> query(MemoryIndex<T> index, Object key) {
+        lock.readLock().lock();
+        try {
+            Set<Long> ids = index.get(key);
+            List<T> result = new ArrayList<>(ids.size());
+            for (Long id : ids) {
+                result.add(models.get(id));
+            }
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Returns first model which is stored in given index under given key, or null.
+     */
+    protected final T queryFirst(MemoryIndex<T> index, Object key) {
+        lock.readLock().lock();
+        try {
+            Set<Long> ids = index.get(key);
+            if (ids.isEmpty()) {
+                return null;
+            }
+            return models.get(ids.iterator().next());
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Returns local id of first model which is stored in given index under given key, or 0.
+     */
+    protected final long queryFirstId(MemoryIndex<T> index, Object key) {
+        lock.readLock().lock();
+        try {
+            Set<Long> ids = index.get(key);
+            return ids.isEmpty() ? 0 : ids.iterator().next();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Re-indexes model with given id. Should be used when state which is used
+     * by key extractors, but not owned by the model itself, has been changed.
+     */
+    protected final void reindex(long id) {
+        lock.writeLock().lock();
+        try {
+            T model = models.get(id);
+            if (model != null) {
+                unindex(model);
+                put(model);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    protected final ReadWriteLock getLock() {
+        return lock;
+    }
+
+    /**
+     * Applies given action to all models while holding write lock only once.
+     */
+    private int applyAll(DbAction action, Collection<T> objects) {
+        Preconditions.isNull(objects, "Collection of objects must not be null");
+
+        lock.writeLock().lock();
+        try {
+            int affected = 0;
+            for (T object : objects) {
+                boolean result = false;
+                switch (action) {
+                    case INSERT: {
+                        result = insert(object);
+                        break;
+                    }
+                    case UPDATE: {
+                        result = update(object);
+                        break;
+                    }
+                    case SAVE: {
+                        result = save(object);
+                        break;
+                    }
+                    case DELETE: {
+                        result = delete(object);
+                        break;
+                    }
+                }
+                if (result) {
+                    affected++;
+                }
+            }
+            return affected;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Called under write lock after model has been added to the store. Subclasses
+     * which maintain own lookup structures in addition to {@link MemoryIndex} can
+     * override this method together with {@link #onRemoved(IModel)}.
+     */
+    protected void onAdded(T model) {
+        // no-op by default
+    }
+
+    /**
+     * Called under write lock when model is removed from the store, or is about
+     * to be replaced by updated version. Note, the model might have been mutated
+     * in place by caller, so only state which is not changed by updates should be used.
+     */
+    protected void onRemoved(T model) {
+        // no-op by default
+    }
+
+    private void put(T object) {
+        models.put(object.getId(), object);
+        for (MemoryIndex<T> index : indexes) {
+            index.add(object);
+        }
+        onAdded(object);
+    }
+
+    private void unindex(T object) {
+        for (MemoryIndex<T> index : indexes) {
+            index.remove(object.getId());
+        }
+        onRemoved(object);
+    }
+}
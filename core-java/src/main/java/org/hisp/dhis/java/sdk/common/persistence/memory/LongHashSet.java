@@ -0,0 +1,148 @@
+/*
+ * Copyright (c) 2015, University of Oslo
+ *
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.hisp.dhis.java.sdk.common.persistence.memory;
+
+import java.util.Arrays;
+
+/**
+ * Set of primitive longs backed by open addressing hash table.
+ */
+final class LongHashSet {
+    private static final int MIN_CAPACITY = 16;
+
+    private long[] values;
+    private boolean[] used;
+    private int size;
+
+    LongHashSet() {
+        values = new long[MIN_CAPACITY];
+        used = new boolean[MIN_CAPACITY];
+    }
+
+    boolean add(long value) {
+        int mask = used.length - 1;
+        int index = hash(value, mask);
+        while (used[index]) {
+            if (values[index] == value) {
+                return false;
+            }
+            index = (index + 1) & mask;
+        }
+
+        values[index] = value;
+        used[index] = true;
+        if (++size * 2 > used.length) {
+            resize(used.length * 2);
+        }
+        return true;
+    }
+
+    boolean remove(long value) {
+        int mask = used.length - 1;
+        int index = hash(value, mask);
+        while (used[index] && values[index] != value) {
+            index = (index + 1) & mask;
+        }
+        if (!used[index]) {
+            return false;
+        }
+
+        used[index] = false;
+        size--;
+
+        int gap = index;
+        int next = (index + 1) & mask;
+        while (used[next]) {
+            int home = hash(values[next], mask);
+            if (((next - home) & mask) >= ((next - gap) & mask)) {
+                values[gap] = values[next];
+                used[gap] = true;
+                used[next] = false;
+                gap = next;
+            }
+            next = (next + 1) & mask;
+        }
+        return true;
+    }
+
+    boolean contains(long value) {
+        int mask = used.length - 1;
+        int index = hash(value, mask);
+        while (used[index]) {
+            if (values[index] == value) {
+                return true;
+            }
+            index = (index + 1) & mask;
+        }
+        return false;
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * Copies values into given array starting from given position.
+     *
+     * @return position after the last copied value.
+     */
+    int copyTo(long[] destination, int position) {
+        for (int i = 0; i < used.length; i++) {
+            if (used[i]) {
+                destination[position++] = values[i];
+            }
+        }
+        return position;
+    }
+
+    void clear() {
+        Arrays.fill(used, false);
+        size = 0;
+    }
+
+    private void resize(int capacity) {
+        long[] oldValues = values;
+        boolean[] oldUsed = used;
+
+        values = new long[capacity];
+        used = new boolean[capacity];
+        size = 0;
+
+        for (int i = 0; i < oldUsed.length; i++) {
+            if (oldUsed[i]) {
+                add(oldValues[i]);
+            }
+        }
+    }
+
+    private static int hash(long value, int mask) {
+        long hash = value * 0x9E3779B97F4A7C15L;
+        return (int) (hash ^ (hash >>> 32)) & mask;
+    }
+}
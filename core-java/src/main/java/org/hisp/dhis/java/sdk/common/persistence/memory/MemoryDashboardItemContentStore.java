@@ -0,0 +1,63 @@
+/*
+ * Copyright (c) 2015, University of Oslo
+ *
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.hisp.dhis.java.sdk.common.persistence.memory;
+
+import org.hisp.dhis.java.sdk.dashboard.IDashboardItemContentStore;
+import org.hisp.dhis.java.sdk.models.dashboard.DashboardContent;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.locks.ReadWriteLock;
+
+public class MemoryDashboardItemContentStore extends MemoryIdentifiableObjectStore<DashboardContent>
+        implements IDashboardItemContentStore {
+    private final MemoryIndex<DashboardContent> typeIndex;
+
+    public MemoryDashboardItemContentStore(ReadWriteLock lock) {
+        super(lock);
+
+        typeIndex = addIndex(MemoryIndex.single(new MemoryIndex.IKeyExtractor<DashboardContent>() {
+            @Override
+            public Object getKey(DashboardContent dashboardContent) {
+                return dashboardContent.getType();
+            }
+        }));
+    }
+
+    @Override
+    public List<DashboardContent> queryByTypes(List<String> types) {
+        List<DashboardContent> dashboardContents = new ArrayList<>();
+        if (types != null) {
+            for (String type : types) {
+                dashboardContents.addAll(query(typeIndex, type));
+            }
+        }
+        return dashboardContents;
+    }
+}
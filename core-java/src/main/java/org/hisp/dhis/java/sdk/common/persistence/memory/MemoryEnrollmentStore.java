@@ -0,0 +1,117 @@
+/*
+ * Copyright (c) 2015, University of Oslo
+ *
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.hisp.dhis.java.sdk.common.persistence.memory;
+
+import org.hisp.dhis.java.sdk.enrollment.IEnrollmentStore;
+import org.hisp.dhis.java.sdk.models.enrollment.Enrollment;
+import org.hisp.dhis.java.sdk.models.organisationunit.OrganisationUnit;
+import org.hisp.dhis.java.sdk.models.program.Program;
+import org.hisp.dhis.java.sdk.models.trackedentity.TrackedEntityInstance;
+
+import java.util.List;
+import java.util.concurrent.locks.ReadWriteLock;
+
+public class MemoryEnrollmentStore extends MemoryIdentifiableObjectStore<Enrollment> implements IEnrollmentStore {
+    private final MemoryIndex<Enrollment> trackedEntityInstanceIndex;
+    private final MemoryIndex<Enrollment> programTrackedEntityInstanceIndex;
+    private final MemoryIndex<Enrollment> programOrganisationUnitIndex;
+    private final MemoryIndex<Enrollment> activeEnrollmentIndex;
+
+    public MemoryEnrollmentStore(ReadWriteLock lock) {
+        super(lock);
+
+        trackedEntityInstanceIndex = addIndex(MemoryIndex.single(new MemoryIndex.IKeyExtractor<Enrollment>() {
+            @Override
+            public Object getKey(Enrollment enrollment) {
+                return getTrackedEntityInstanceUid(enrollment.getTrackedEntityInstance());
+            }
+        }));
+        programTrackedEntityInstanceIndex = addIndex(MemoryIndex.single(new MemoryIndex.IKeyExtractor<Enrollment>() {
+            @Override
+            public Object getKey(Enrollment enrollment) {
+                return MemoryIndex.key(enrollment.getProgram(),
+                        getTrackedEntityInstanceUid(enrollment.getTrackedEntityInstance()));
+            }
+        }));
+        programOrganisationUnitIndex = addIndex(MemoryIndex.single(new MemoryIndex.IKeyExtractor<Enrollment>() {
+            @Override
+            public Object getKey(Enrollment enrollment) {
+                return MemoryIndex.key(enrollment.getProgram(), enrollment.getOrgUnit());
+            }
+        }));
+
+        // only active enrollments are indexed here
+        activeEnrollmentIndex = addIndex(MemoryIndex.single(new MemoryIndex.IKeyExtractor<Enrollment>() {
+            @Override
+            public Object getKey(Enrollment enrollment) {
+                if (!Enrollment.ACTIVE.equals(enrollment.getStatus())) {
+                    return null;
+                }
+                return MemoryIndex.key(getTrackedEntityInstanceUid(enrollment.getTrackedEntityInstance()),
+                        enrollment.getOrgUnit(), enrollment.getProgram());
+            }
+        }));
+    }
+
+    @Override
+    public List<Enrollment> query(Program program, TrackedEntityInstance trackedEntityInstance) {
+        if (program == null) {
+            return query(programTrackedEntityInstanceIndex, null);
+        }
+        return query(programTrackedEntityInstanceIndex, MemoryIndex.key(program.getUId(),
+                getTrackedEntityInstanceUid(trackedEntityInstance)));
+    }
+
+    @Override
+    public Enrollment queryActiveEnrollment(TrackedEntityInstance trackedEntityInstance,
+                                            OrganisationUnit organisationUnit, Program program) {
+        if (organisationUnit == null || program == null) {
+            return null;
+        }
+        return queryFirst(activeEnrollmentIndex, MemoryIndex.key(getTrackedEntityInstanceUid(
+                trackedEntityInstance), organisationUnit.getUId(), program.getUId()));
+    }
+
+    @Override
+    public List<Enrollment> query(TrackedEntityInstance trackedEntityInstance) {
+        return query(trackedEntityInstanceIndex, getTrackedEntityInstanceUid(trackedEntityInstance));
+    }
+
+    @Override
+    public List<Enrollment> query(Program program, OrganisationUnit organisationUnit) {
+        if (program == null || organisationUnit == null) {
+            return query(programOrganisationUnitIndex, null);
+        }
+        return query(programOrganisationUnitIndex, MemoryIndex.key(program.getUId(), organisationUnit.getUId()));
+    }
+
+    private static String getTrackedEntityInstanceUid(TrackedEntityInstance trackedEntityInstance) {
+        return trackedEntityInstance != null ? trackedEntityInstance.getTrackedEntityInstanceUid() : null;
+    }
+}
@@ -0,0 +1,77 @@
+/*
+ * Copyright (c) 2015, University of Oslo
+ *
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.hisp.dhis.java.sdk.common.persistence.memory;
+
+import org.hisp.dhis.java.sdk.common.IFailedItemStore;
+import org.hisp.dhis.java.sdk.models.common.faileditem.FailedItem;
+import org.hisp.dhis.java.sdk.models.common.faileditem.FailedItemType;
+
+import java.util.List;
+import java.util.concurrent.locks.ReadWriteLock;
+
+public class MemoryFailedItemStore extends AbsMemoryStore<FailedItem> implements IFailedItemStore {
+    private final MemoryIndex<FailedItem> typeIndex;
+    private final MemoryIndex<FailedItem> itemIndex;
+
+    public MemoryFailedItemStore(ReadWriteLock lock) {
+        super(lock);
+
+        typeIndex = addIndex(MemoryIndex.single(new MemoryIndex.IKeyExtractor<FailedItem>() {
+            @Override
+            public Object getKey(FailedItem failedItem) {
+                return failedItem.getItemFailedItemType();
+            }
+        }));
+        itemIndex = addIndex(MemoryIndex.single(new MemoryIndex.IKeyExtractor<FailedItem>() {
+            @Override
+            public Object getKey(FailedItem failedItem) {
+                return MemoryIndex.key(failedItem.getItemFailedItemType(), failedItem.getItemId());
+            }
+        }));
+    }
+
+    @Override
+    protected long resolveId(FailedItem failedItem) {
+        if (failedItem.getId() > 0) {
+            return failedItem.getId();
+        }
+        return queryFirstId(itemIndex, MemoryIndex.key(
+                failedItem.getItemFailedItemType(), failedItem.getItemId()));
+    }
+
+    @Override
+    public List<FailedItem> query(FailedItemType type) {
+        return query(typeIndex, type);
+    }
+
+    @Override
+    public FailedItem query(FailedItemType type, long itemId) {
+        return queryFirst(itemIndex, MemoryIndex.key(type, itemId));
+    }
+}
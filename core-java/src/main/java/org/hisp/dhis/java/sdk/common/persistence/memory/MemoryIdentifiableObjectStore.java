@@ -0,0 +1,67 @@
+/*
+ * Copyright (c) 2015, University of Oslo
+ *
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.hisp.dhis.java.sdk.common.persistence.memory;
+
+import org.hisp.dhis.java.sdk.common.persistence.IIdentifiableObjectStore;
+import org.hisp.dhis.java.sdk.models.common.base.IdentifiableObject;
+
+import java.util.concurrent.locks.ReadWriteLock;
+
+/**
+ * In-memory store for identifiable objects. Besides primary key,
+ * models are indexed by uid.
+ */
+public class MemoryIdentifiableObjectStore<T extends IdentifiableObject> extends AbsMemoryStore<T>
+        implements IIdentifiableObjectStore<T> {
+    private final MemoryIndex<T> uidIndex;
+
+    public MemoryIdentifiableObjectStore(ReadWriteLock lock) {
+        super(lock);
+
+        uidIndex = addIndex(MemoryIndex.single(new MemoryIndex.IKeyExtractor<T>() {
+            @Override
+            public Object getKey(T model) {
+                return model.getUId();
+            }
+        }));
+    }
+
+    @Override
+    protected long resolveId(T object) {
+        if (object.getId() > 0 || object.getUId() == null) {
+            return object.getId();
+        }
+        return queryFirstId(uidIndex, object.getUId());
+    }
+
+    @Override
+    public T queryByUid(String uid) {
+        return queryFirst(uidIndex, uid);
+    }
+}
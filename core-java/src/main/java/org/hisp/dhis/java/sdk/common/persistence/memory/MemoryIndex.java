@@ -0,0 +1,188 @@
+/*
+ * Copyright (c) 2015, University of Oslo
+ *
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.hisp.dhis.java.sdk.common.persistence.memory;
+
+import org.hisp.dhis.java.sdk.models.common.base.IModel;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Hash index which maps keys extracted from models to primary (local) ids. Each
+ * model id remembers the keys it was indexed under, so models which were mutated
+ * in place before being updated in the store are still removed from correct buckets.
+ */
+public final class MemoryIndex<T extends IModel> {
+    private static final Object[] NO_KEYS = new Object[0];
+
+    private final IKeyExtractor<T> keyExtractor;
+    private final Map<Object, Set<Long>> buckets;
+    private final Map<Long, Object[]> keysById;
+
+    private MemoryIndex(IKeyExtractor<T> keyExtractor) {
+        this.keyExtractor = keyExtractor;
+        this.buckets = new HashMap<>();
+        this.keysById = new HashMap<>();
+    }
+
+    /**
+     * Creates index which stores each model under a single key.
+     */
+    public static <T extends IModel> MemoryIndex<T> single(final IKeyExtractor<T> keyExtractor) {
+        return new MemoryIndex<>(keyExtractor);
+    }
+
+    /**
+     * Creates index which stores each model under all keys returned by the extractor.
+     */
+    public static <T extends IModel> MemoryIndex<T> multi(final IMultiKeyExtractor<T> keyExtractor) {
+        return new MemoryIndex<>(new IKeyExtractor<T>() {
+            @Override
+            public Object getKey(T model) {
+                return new MultiKey(keyExtractor.getKeys(model));
+            }
+        });
+    }
+
+    /**
+     * Builds composite key out of given parts. Returns null
+     * if any of parts is null, which means that model is not indexed.
+     */
+    public static Object key(Object... parts) {
+        for (Object part : parts) {
+            if (part == null) {
+                return null;
+            }
+        }
+        return Arrays.asList(parts);
+    }
+
+    void add(T model) {
+        Object[] keys = extractKeys(model);
+        if (keys.length == 0) {
+            return;
+        }
+
+        for (Object key : keys) {
+            Set<Long> bucket = buckets.get(key);
+            if (bucket == null) {
+                bucket = new LinkedHashSet<>();
+                buckets.put(key, bucket);
+            }
+            bucket.add(model.getId());
+        }
+        keysById.put(model.getId(), keys);
+    }
+
+    void remove(long id) {
+        Object[] keys = keysById.remove(id);
+        if (keys == null) {
+            return;
+        }
+
+        for (Object key : keys) {
+            Set<Long> bucket = buckets.get(key);
+            if (bucket != null) {
+                bucket.remove(id);
+                if (bucket.isEmpty()) {
+                    buckets.remove(key);
+                }
+            }
+        }
+    }
+
+    void clear() {
+        buckets.clear();
+        keysById.clear();
+    }
+
+    Set<Long> get(Object key) {
+        if (key == null) {
+            return Collections.emptySet();
+        }
+
+        Set<Long> bucket = buckets.get(key);
+        return bucket != null ? bucket : Collections.<Long>emptySet();
+    }
+
+    private Object[] extractKeys(T model) {
+        Object key = keyExtractor.getKey(model);
+        if (key == null) {
+            return NO_KEYS;
+        }
+
+        if (key instanceof MultiKey) {
+            return ((MultiKey) key).keys;
+        }
+
+        return new Object[]{key};
+    }
+
+    public interface IKeyExtractor<T> {
+
+        /**
+         * @return key for given model or null if model should not be indexed.
+         */
+        Object getKey(T model);
+    }
+
+    public interface IMultiKeyExtractor<T> {
+
+        /**
+         * @return collection of keys for given model. Null keys are skipped.
+         */
+        Collection<?> getKeys(T model);
+    }
+
+    private static final class MultiKey {
+        private final Object[] keys;
+
+        MultiKey(Collection<?> keys) {
+            if (keys == null || keys.isEmpty()) {
+                this.keys = NO_KEYS;
+                return;
+            }
+
+            List<Object> nonNullKeys = new ArrayList<>(keys.size());
+            for (Object key : keys) {
+                if (key != null && !nonNullKeys.contains(key)) {
+                    nonNullKeys.add(key);
+                }
+            }
+            this.keys = nonNullKeys.toArray();
+        }
+    }
+}
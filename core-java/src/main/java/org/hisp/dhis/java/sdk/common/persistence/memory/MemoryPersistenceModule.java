@@ -0,0 +1,364 @@
+/*
+ * Copyright (c) 2015, University of Oslo
+ *
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.hisp.dhis.java.sdk.common.persistence.memory;
+
+import org.hisp.dhis.java.sdk.common.IFailedItemStore;
+import org.hisp.dhis.java.sdk.common.IStateStore;
+import org.hisp.dhis.java.sdk.common.persistence.IIdentifiableObjectStore;
+import org.hisp.dhis.java.sdk.common.persistence.IPersistenceModule;
+import org.hisp.dhis.java.sdk.common.persistence.ITransactionManager;
+import org.hisp.dhis.java.sdk.dashboard.IDashboardElementStore;
+import org.hisp.dhis.java.sdk.dashboard.IDashboardItemContentStore;
+import org.hisp.dhis.java.sdk.dashboard.IDashboardItemStore;
+import org.hisp.dhis.java.sdk.dashboard.IDashboardStore;
+import org.hisp.dhis.java.sdk.dataset.IDataSetStore;
+import org.hisp.dhis.java.sdk.enrollment.IEnrollmentStore;
+import org.hisp.dhis.java.sdk.event.IEventStore;
+import org.hisp.dhis.java.sdk.interpretation.IInterpretationCommentStore;
+import org.hisp.dhis.java.sdk.interpretation.IInterpretationElementStore;
+import org.hisp.dhis.java.sdk.models.constant.Constant;
+import org.hisp.dhis.java.sdk.models.dashboard.Dashboard;
+import org.hisp.dhis.java.sdk.models.dashboard.DashboardElement;
+import org.hisp.dhis.java.sdk.models.dashboard.DashboardItem;
+import org.hisp.dhis.java.sdk.models.dataelement.DataElement;
+import org.hisp.dhis.java.sdk.models.enrollment.Enrollment;
+import org.hisp.dhis.java.sdk.models.event.Event;
+import org.hisp.dhis.java.sdk.models.interpretation.Interpretation;
+import org.hisp.dhis.java.sdk.models.optionset.OptionSet;
+import org.hisp.dhis.java.sdk.models.relationship.Relationship;
+import org.hisp.dhis.java.sdk.models.relationship.RelationshipType;
+import org.hisp.dhis.java.sdk.models.trackedentity.TrackedEntity;
+import org.hisp.dhis.java.sdk.models.trackedentity.TrackedEntityAttribute;
+import org.hisp.dhis.java.sdk.models.trackedentity.TrackedEntityAttributeValue;
+import org.hisp.dhis.java.sdk.models.trackedentity.TrackedEntityDataValue;
+import org.hisp.dhis.java.sdk.models.trackedentity.TrackedEntityInstance;
+import org.hisp.dhis.java.sdk.optionset.IOptionStore;
+import org.hisp.dhis.java.sdk.organisationunit.IOrganisationUnitStore;
+import org.hisp.dhis.java.sdk.program.IProgramIndicatorStore;
+import org.hisp.dhis.java.sdk.program.IProgramRuleActionStore;
+import org.hisp.dhis.java.sdk.program.IProgramRuleStore;
+import org.hisp.dhis.java.sdk.program.IProgramRuleVariableStore;
+import org.hisp.dhis.java.sdk.program.IProgramStageDataElementStore;
+import org.hisp.dhis.java.sdk.program.IProgramStageSectionStore;
+import org.hisp.dhis.java.sdk.program.IProgramStageStore;
+import org.hisp.dhis.java.sdk.program.IProgramStore;
+import org.hisp.dhis.java.sdk.program.IProgramTrackedEntityAttributeStore;
+import org.hisp.dhis.java.sdk.relationship.IRelationshipStore;
+import org.hisp.dhis.java.sdk.trackedentity.ITrackedEntityAttributeValueStore;
+import org.hisp.dhis.java.sdk.trackedentity.ITrackedEntityDataValueStore;
+import org.hisp.dhis.java.sdk.trackedentity.ITrackedEntityInstanceStore;
+import org.hisp.dhis.java.sdk.user.IUserAccountStore;
+import org.hisp.dhis.java.sdk.user.IUserStore;
+import org.hisp.dhis.java.sdk.utils.IModelUtils;
+import org.hisp.dhis.java.sdk.utils.Preconditions;
+
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Reference implementation of {@link IPersistenceModule} which keeps all models in memory.
+ * Each store maintains hash indexes for primary keys, uids and fields used by its query
+ * methods, so lookups do not depend on number of stored rows. All stores share one
+ * read-write lock, which allows {@link MemoryTransactionManager} to apply transactions atomically
+ * with respect to readers.
+ */
+public class MemoryPersistenceModule implements IPersistenceModule {
+    private final ITransactionManager transactionManager;
+    private final MemoryStateStore stateStore;
+    private final IDashboardStore dashboardStore;
+    private final IDashboardItemStore dashboardItemStore;
+    private final IDashboardElementStore dashboardElementStore;
+    private final IDashboardItemContentStore dashboardItemContentStore;
+    private final IIdentifiableObjectStore<Constant> constantStore;
+    private final IIdentifiableObjectStore<DataElement> dataElementStore;
+    private final IOptionStore optionStore;
+    private final IIdentifiableObjectStore<OptionSet> optionSetStore;
+    private final IOrganisationUnitStore organisationUnitStore;
+    private final IProgramStore programStore;
+    private final IIdentifiableObjectStore<TrackedEntity> trackedEntityStore;
+    private final IIdentifiableObjectStore<TrackedEntityAttribute> trackedEntityAttributeStore;
+    private final IProgramTrackedEntityAttributeStore programTrackedEntityAttributeStore;
+    private final IProgramStageDataElementStore programStageDataElementStore;
+    private final IProgramIndicatorStore programIndicatorStore;
+    private final IProgramStageSectionStore programStageSectionStore;
+    private final IProgramStageStore programStageStore;
+    private final IProgramRuleStore programRuleStore;
+    private final IProgramRuleActionStore programRuleActionStore;
+    private final IProgramRuleVariableStore programRuleVariableStore;
+    private final IIdentifiableObjectStore<RelationshipType> relationshipTypeStore;
+    private final IDataSetStore dataSetStore;
+    private final ITrackedEntityAttributeValueStore trackedEntityAttributeValueStore;
+    private final IRelationshipStore relationshipStore;
+    private final ITrackedEntityInstanceStore trackedEntityInstanceStore;
+    private final ITrackedEntityDataValueStore trackedEntityDataValueStore;
+    private final IEventStore eventStore;
+    private final IEnrollmentStore enrollmentStore;
+    private final IIdentifiableObjectStore<Interpretation> interpretationStore;
+    private final IInterpretationCommentStore interpretationCommentStore;
+    private final IInterpretationElementStore interpretationElementStore;
+    private final IUserAccountStore userAccountStore;
+    private final IUserStore userStore;
+    private final IFailedItemStore failedItemStore;
+
+    public MemoryPersistenceModule(IModelUtils modelUtils) {
+        Preconditions.isNull(modelUtils, "IModelUtils must not be null");
+
+        ReadWriteLock lock = new ReentrantReadWriteLock();
+        MemoryDataSetStore memoryDataSetStore = new MemoryDataSetStore(lock);
+
+        transactionManager = new MemoryTransactionManager(lock);
+        stateStore = new MemoryStateStore(lock);
+        dashboardStore = new MemoryDashboardStore(lock);
+        dashboardItemStore = new MemoryDashboardItemStore(lock);
+        dashboardElementStore = new MemoryDashboardElementStore(lock);
+        dashboardItemContentStore = new MemoryDashboardItemContentStore(lock);
+        constantStore = new MemoryIdentifiableObjectStore<>(lock);
+        dataElementStore = new MemoryIdentifiableObjectStore<>(lock);
+        optionStore = new MemoryOptionStore(lock);
+        optionSetStore = new MemoryIdentifiableObjectStore<>(lock);
+        organisationUnitStore = new MemoryOrganisationUnitStore(lock, memoryDataSetStore);
+        programStore = new MemoryProgramStore(lock);
+        trackedEntityStore = new MemoryIdentifiableObjectStore<>(lock);
+        trackedEntityAttributeStore = new MemoryIdentifiableObjectStore<>(lock);
+        programTrackedEntityAttributeStore = new MemoryProgramTrackedEntityAttributeStore(lock);
+        programStageDataElementStore = new MemoryProgramStageDataElementStore(lock);
+        programIndicatorStore = new MemoryProgramIndicatorStore(lock);
+        programStageSectionStore = new MemoryProgramStageSectionStore(lock);
+        programStageStore = new MemoryProgramStageStore(lock);
+        programRuleStore = new MemoryProgramRuleStore(lock);
+        programRuleActionStore = new MemoryProgramRuleActionStore(lock);
+        programRuleVariableStore = new MemoryProgramRuleVariableStore(lock);
+        relationshipTypeStore = new MemoryIdentifiableObjectStore<>(lock);
+        dataSetStore = memoryDataSetStore;
+        trackedEntityAttributeValueStore = new MemoryTrackedEntityAttributeValueStore(lock);
+        relationshipStore = new MemoryRelationshipStore(lock);
+        trackedEntityInstanceStore = new MemoryTrackedEntityInstanceStore(lock);
+        trackedEntityDataValueStore = new MemoryTrackedEntityDataValueStore(lock);
+        eventStore = new MemoryEventStore(lock);
+        enrollmentStore = new MemoryEnrollmentStore(lock);
+        interpretationStore = new MemoryIdentifiableObjectStore<>(lock);
+        interpretationCommentStore = new MemoryInterpretationCommentStore(lock);
+        interpretationElementStore = new MemoryInterpretationElementStore(lock);
+        userAccountStore = new MemoryUserAccountStore(lock);
+        userStore = new MemoryUserStore(lock);
+        failedItemStore = new MemoryFailedItemStore(lock);
+
+        // models which can carry state
+        stateStore.register(Dashboard.class, dashboardStore);
+        stateStore.register(DashboardItem.class, dashboardItemStore);
+        stateStore.register(DashboardElement.class, dashboardElementStore);
+        stateStore.register(Interpretation.class, interpretationStore);
+        stateStore.register(TrackedEntityInstance.class, trackedEntityInstanceStore);
+        stateStore.register(TrackedEntityAttributeValue.class, trackedEntityAttributeValueStore);
+        stateStore.register(TrackedEntityDataValue.class, trackedEntityDataValueStore);
+        stateStore.register(Relationship.class, relationshipStore);
+        stateStore.register(Enrollment.class, enrollmentStore);
+        stateStore.register(Event.class, eventStore);
+    }
+
+    @Override
+    public ITransactionManager getTransactionManager() {
+        return transactionManager;
+    }
+
+    @Override
+    public IStateStore getStateStore() {
+        return stateStore;
+    }
+
+    @Override
+    public IDashboardStore getDashboardStore() {
+        return dashboardStore;
+    }
+
+    @Override
+    public IDashboardItemStore getDashboardItemStore() {
+        return dashboardItemStore;
+    }
+
+    @Override
+    public IDashboardElementStore getDashboardElementStore() {
+        return dashboardElementStore;
+    }
+
+    @Override
+    public IDashboardItemContentStore getDashboardContentStore() {
+        return dashboardItemContentStore;
+    }
+
+    @Override
+    public IIdentifiableObjectStore<Constant> getConstantStore() {
+        return constantStore;
+    }
+
+    @Override
+    public IIdentifiableObjectStore<DataElement> getDataElementStore() {
+        return dataElementStore;
+    }
+
+    @Override
+    public IOptionStore getOptionStore() {
+        return optionStore;
+    }
+
+    @Override
+    public IIdentifiableObjectStore<OptionSet> getOptionSetStore() {
+        return optionSetStore;
+    }
+
+    @Override
+    public IOrganisationUnitStore getOrganisationUnitStore() {
+        return organisationUnitStore;
+    }
+
+    @Override
+    public IProgramStore getProgramStore() {
+        return programStore;
+    }
+
+    @Override
+    public IIdentifiableObjectStore<TrackedEntity> getTrackedEntityStore() {
+        return trackedEntityStore;
+    }
+
+    @Override
+    public IIdentifiableObjectStore<TrackedEntityAttribute> getTrackedEntityAttributeStore() {
+        return trackedEntityAttributeStore;
+    }
+
+    @Override
+    public IProgramTrackedEntityAttributeStore getProgramTrackedEntityAttributeStore() {
+        return programTrackedEntityAttributeStore;
+    }
+
+    @Override
+    public IProgramStageDataElementStore getProgramStageDataElementStore() {
+        return programStageDataElementStore;
+    }
+
+    @Override
+    public IProgramIndicatorStore getProgramIndicatorStore() {
+        return programIndicatorStore;
+    }
+
+    @Override
+    public IProgramStageSectionStore getProgramStageSectionStore() {
+        return programStageSectionStore;
+    }
+
+    @Override
+    public IProgramStageStore getProgramStageStore() {
+        return programStageStore;
+    }
+
+    @Override
+    public IProgramRuleStore getProgramRuleStore() {
+        return programRuleStore;
+    }
+
+    @Override
+    public IProgramRuleActionStore getProgramRuleActionStore() {
+        return programRuleActionStore;
+    }
+
+    @Override
+    public IProgramRuleVariableStore getProgramRuleVariableStore() {
+        return programRuleVariableStore;
+    }
+
+    @Override
+    public IIdentifiableObjectStore<RelationshipType> getRelationshipTypeStore() {
+        return relationshipTypeStore;
+    }
+
+    @Override
+    public IDataSetStore getDataStore() {
+        return dataSetStore;
+    }
+
+    @Override
+    public ITrackedEntityAttributeValueStore getTrackedEntityAttributeValueStore() {
+        return trackedEntityAttributeValueStore;
+    }
+
+    @Override
+    public IRelationshipStore getRelationshipStore() {
+        return relationshipStore;
+    }
+
+    @Override
+    public ITrackedEntityInstanceStore getTrackedEntityInstanceStore() {
+        return trackedEntityInstanceStore;
+    }
+
+    @Override
+    public ITrackedEntityDataValueStore getTrackedEntityDataValueStore() {
+        return trackedEntityDataValueStore;
+    }
+
+    @Override
+    public IEventStore getEventStore() {
+        return eventStore;
+    }
+
+    @Override
+    public IEnrollmentStore getEnrollmentStore() {
+        return enrollmentStore;
+    }
+
+    @Override
+    public IIdentifiableObjectStore<Interpretation> getInterpretationStore() {
+        return interpretationStore;
+    }
+
+    @Override
+    public IInterpretationCommentStore getInterpretationCommentStore() {
+        return interpretationCommentStore;
+    }
+
+    @Override
+    public IInterpretationElementStore getInterpretationElementStore() {
+        return interpretationElementStore;
+    }
+
+    @Override
+    public IUserAccountStore getUserAccountStore() {
+        return userAccountStore;
+    }
+
+    @Override
+    public IUserStore getUserStore() {
+        return userStore;
+    }
+
+    @Override
+    public IFailedItemStore getFailedItemStore() {
+        return failedItemStore;
+    }
+}
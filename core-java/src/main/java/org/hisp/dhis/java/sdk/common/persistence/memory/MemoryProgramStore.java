@@ -0,0 +1,107 @@
+/*
+ * Copyright (c) 2015, University of Oslo
+ *
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.hisp.dhis.java.sdk.common.persistence.memory;
+
+import org.hisp.dhis.java.sdk.models.organisationunit.OrganisationUnit;
+import org.hisp.dhis.java.sdk.models.program.Program;
+import org.hisp.dhis.java.sdk.program.IProgramStore;
+import org.hisp.dhis.java.sdk.utils.Preconditions;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+
+public class MemoryProgramStore extends MemoryIdentifiableObjectStore<Program> implements IProgramStore {
+    /* program uid to uids of organisation units it is assigned to */
+    private final Map<String, Set<String>> assignments;
+    private final MemoryIndex<Program> organisationUnitIndex;
+
+    public MemoryProgramStore(ReadWriteLock lock) {
+        super(lock);
+
+        assignments = new HashMap<>();
+        organisationUnitIndex = addIndex(MemoryIndex.multi(new MemoryIndex.IMultiKeyExtractor<Program>() {
+            @Override
+            public Collection<?> getKeys(Program program) {
+                return assignments.get(program.getUId());
+            }
+        }));
+    }
+
+    @Override
+    public List<Program> query(OrganisationUnit organisationUnit) {
+        return query(organisationUnitIndex, organisationUnit != null ? organisationUnit.getUId() : null);
+    }
+
+    @Override
+    public List<Program> query(OrganisationUnit organisationUnit, Program.ProgramType... programTypes) {
+        Set<String> kinds = new HashSet<>();
+        if (programTypes != null) {
+            for (Program.ProgramType programType : programTypes) {
+                kinds.add(programType.toString());
+            }
+        }
+
+        List<Program> programs = new ArrayList<>();
+        for (Program program : query(organisationUnit)) {
+            if (kinds.contains(program.getKind())) {
+                programs.add(program);
+            }
+        }
+        return programs;
+    }
+
+    @Override
+    public void assign(Program program, Set<OrganisationUnit> organisationUnits) {
+        Preconditions.isNull(program, "Program must not be null");
+
+        getLock().writeLock().lock();
+        try {
+            Set<String> organisationUnitUids = new HashSet<>();
+            if (organisationUnits != null) {
+                for (OrganisationUnit organisationUnit : organisationUnits) {
+                    organisationUnitUids.add(organisationUnit.getUId());
+                }
+            }
+            assignments.put(program.getUId(), organisationUnitUids);
+
+            Program persistedProgram = queryByUid(program.getUId());
+            if (persistedProgram != null) {
+                reindex(persistedProgram.getId());
+            }
+        } finally {
+            getLock().writeLock().unlock();
+        }
+    }
+}
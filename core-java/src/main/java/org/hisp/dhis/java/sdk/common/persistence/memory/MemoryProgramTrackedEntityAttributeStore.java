@@ -0,0 +1,83 @@
+/*
+ * Copyright (c) 2015, University of Oslo
+ *
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.hisp.dhis.java.sdk.common.persistence.memory;
+
+import org.hisp.dhis.java.sdk.models.program.Program;
+import org.hisp.dhis.java.sdk.models.program.ProgramTrackedEntityAttribute;
+import org.hisp.dhis.java.sdk.models.trackedentity.TrackedEntityAttribute;
+import org.hisp.dhis.java.sdk.program.IProgramTrackedEntityAttributeStore;
+
+import java.util.List;
+import java.util.concurrent.locks.ReadWriteLock;
+
+public class MemoryProgramTrackedEntityAttributeStore extends AbsMemoryStore<ProgramTrackedEntityAttribute>
+        implements IProgramTrackedEntityAttributeStore {
+    private final MemoryIndex<ProgramTrackedEntityAttribute> programIndex;
+    private final MemoryIndex<ProgramTrackedEntityAttribute> attributeIndex;
+
+    public MemoryProgramTrackedEntityAttributeStore(ReadWriteLock lock) {
+        super(lock);
+
+        programIndex = addIndex(MemoryIndex.single(new MemoryIndex.IKeyExtractor<ProgramTrackedEntityAttribute>() {
+            @Override
+            public Object getKey(ProgramTrackedEntityAttribute attribute) {
+                return attribute.getProgram();
+            }
+        }));
+        attributeIndex = addIndex(MemoryIndex.single(new MemoryIndex.IKeyExtractor<ProgramTrackedEntityAttribute>() {
+            @Override
+            public Object getKey(ProgramTrackedEntityAttribute attribute) {
+                return MemoryIndex.key(attribute.getProgram(), attribute.getTrackedEntityAttribute());
+            }
+        }));
+    }
+
+    @Override
+    protected long resolveId(ProgramTrackedEntityAttribute attribute) {
+        if (attribute.getId() > 0) {
+            return attribute.getId();
+        }
+        return queryFirstId(attributeIndex, MemoryIndex.key(
+                attribute.getProgram(), attribute.getTrackedEntityAttribute()));
+    }
+
+    @Override
+    public List<ProgramTrackedEntityAttribute> query(Program program) {
+        return query(programIndex, program != null ? program.getUId() : null);
+    }
+
+    @Override
+    public ProgramTrackedEntityAttribute query(Program program, TrackedEntityAttribute trackedEntityAttribute) {
+        if (program == null || trackedEntityAttribute == null) {
+            return null;
+        }
+        return queryFirst(attributeIndex, MemoryIndex.key(
+                program.getUId(), trackedEntityAttribute.getUId()));
+    }
+}
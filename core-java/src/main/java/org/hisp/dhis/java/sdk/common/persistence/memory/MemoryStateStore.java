@@ -0,0 +1,342 @@
+/*
+ * Copyright (c) 2015, University of Oslo
+ *
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.hisp.dhis.java.sdk.common.persistence.memory;
+
+import org.hisp.dhis.java.sdk.common.ActionMap;
+import org.hisp.dhis.java.sdk.common.IStateStore;
+import org.hisp.dhis.java.sdk.common.persistence.IStore;
+import org.hisp.dhis.java.sdk.models.common.base.IModel;
+import org.hisp.dhis.java.sdk.models.common.state.Action;
+import org.hisp.dhis.java.sdk.models.common.state.State;
+import org.hisp.dhis.java.sdk.utils.Preconditions;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReadWriteLock;
+
+/**
+ * In-memory implementation of {@link IStateStore}. States are indexed by model type and
+ * by (model type, model id) pair. In addition, ids of models are kept in primitive sets
+ * per model type and action, so looking up models with given actions costs proportional
+ * to the number of matching models, rather than to the number of all states of the type.
+ * In order to resolve models for given state, store of corresponding model
+ * type has to be registered with {@link #register(Class, IStore)}.
+ */
+public class MemoryStateStore extends AbsMemoryStore<State> implements IStateStore {
+    private final MemoryIndex<State> modelIndex;
+    private final MemoryIndex<State> typeIndex;
+    private final Map<Class<? extends IModel>, IStore<? extends IModel>> modelStores;
+    private final Map<Class<? extends IModel>, ActionIndex> actionIndexes;
+
+    public MemoryStateStore(ReadWriteLock lock) {
+        super(lock);
+
+        modelStores = new HashMap<>();
+        actionIndexes = new HashMap<>();
+        modelIndex = addIndex(MemoryIndex.single(new MemoryIndex.IKeyExtractor<State>() {
+            @Override
+            public Object getKey(State state) {
+                return MemoryIndex.key(state.getItemType(), state.getItemId());
+            }
+        }));
+        typeIndex = addIndex(MemoryIndex.single(new MemoryIndex.IKeyExtractor<State>() {
+            @Override
+            public Object getKey(State state) {
+                return state.getItemType();
+            }
+        }));
+    }
+
+    /**
+     * Registers store which is used to resolve models of given type.
+     */
+    public <T extends IModel> void register(Class<T> clazz, IStore<T> store) {
+        Preconditions.isNull(clazz, "Class must not be null");
+        Preconditions.isNull(store, "IStore must not be null");
+
+        getLock().writeLock().lock();
+        try {
+            modelStores.put(clazz, store);
+        } finally {
+            getLock().writeLock().unlock();
+        }
+    }
+
+    @Override
+    protected void onAdded(State state) {
+        if (state.getItemType() == null || state.getAction() == null) {
+            return;
+        }
+
+        ActionIndex actionIndex = actionIndexes.get(state.getItemType());
+        if (actionIndex == null) {
+            actionIndex = new ActionIndex();
+            actionIndexes.put(state.getItemType(), actionIndex);
+        }
+        actionIndex.put(state.getItemId(), state.getAction());
+    }
+
+    @Override
+    protected void onRemoved(State state) {
+        ActionIndex actionIndex = actionIndexes.get(state.getItemType());
+        if (actionIndex != null) {
+            actionIndex.remove(state.getItemId());
+        }
+    }
+
+    @Override
+    public void clear() {
+        getLock().writeLock().lock();
+        try {
+            super.clear();
+            actionIndexes.clear();
+        } finally {
+            getLock().writeLock().unlock();
+        }
+    }
+
+    @Override
+    protected long resolveId(State state) {
+        if (state.getId() > 0) {
+            return state.getId();
+        }
+        return queryFirstId(modelIndex, MemoryIndex.key(state.getItemType(), state.getItemId()));
+    }
+
+    @Override
+    public <T extends IModel> boolean insertActionForModel(T object, Action action) {
+        return insert(createState(object, action));
+    }
+
+    @Override
+    public <T extends IModel> boolean updateActionForModel(T object, Action action) {
+        State state = queryStateForModel(object);
+        if (state == null) {
+            return false;
+        }
+
+        state.setAction(action);
+        return update(state);
+    }
+
+    @Override
+    public <T extends IModel> boolean saveActionForModel(T object, Action action) {
+        getLock().writeLock().lock();
+        try {
+            State state = queryStateForModel(object);
+            if (state == null) {
+                return insert(createState(object, action));
+            }
+
+            state.setAction(action);
+            return update(state);
+        } finally {
+            getLock().writeLock().unlock();
+        }
+    }
+
+    @Override
+    public <T extends IModel> boolean deleteActionForModel(T object) {
+        State state = queryStateForModel(object);
+        return state != null && delete(state);
+    }
+
+    @Override
+    public <T extends IModel> State queryStateForModel(T object) {
+        Preconditions.isNull(object, "IModel object must not be null");
+        return queryFirst(modelIndex, MemoryIndex.key(object.getClass(), object.getId()));
+    }
+
+    @Override
+    public <T extends IModel> Action queryActionForModel(T object) {
+        State state = queryStateForModel(object);
+        return state != null ? state.getAction() : null;
+    }
+
+    @Override
+    public <T extends IModel> ActionMap queryActionsForModels(Class<T> clazz, Collection<? extends T> objects) {
+        Preconditions.isNull(clazz, "Class must not be null");
+        Preconditions.isNull(objects, "Collection of objects must not be null");
+
+        ActionMap actionMap = new ActionMap(objects.size());
+        getLock().readLock().lock();
+        try {
+            ActionIndex actionIndex = actionIndexes.get(clazz);
+            if (actionIndex == null) {
+                return actionMap;
+            }
+
+            for (T object : objects) {
+                Action action = object != null ? actionIndex.actions.get(object.getId()) : null;
+                if (action != null) {
+                    actionMap.put(object.getId(), action);
+                }
+            }
+            return actionMap;
+        } finally {
+            getLock().readLock().unlock();
+        }
+    }
+
+    @Override
+    public <T extends IModel> int saveActionsForModels(Collection<T> objects, Action action) {
+        Preconditions.isNull(objects, "Collection of objects must not be null");
+
+        getLock().writeLock().lock();
+        try {
+            int saved = 0;
+            for (T object : objects) {
+                if (saveActionForModel(object, action)) {
+                    saved++;
+                }
+            }
+            return saved;
+        } finally {
+            getLock().writeLock().unlock();
+        }
+    }
+
+    @Override
+    public <T extends IModel> List<State> queryStatesForModelClass(Class<T> clazz) {
+        return query(typeIndex, clazz);
+    }
+
+    @Override
+    public <T extends IModel> ActionMap queryActionsForModel(Class<T> clazz) {
+        getLock().readLock().lock();
+        try {
+            ActionIndex actionIndex = actionIndexes.get(clazz);
+            return actionIndex != null ? new ActionMap(actionIndex.actions) : new ActionMap();
+        } finally {
+            getLock().readLock().unlock();
+        }
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T extends IModel> List<T> queryModelsWithActions(Class<T> clazz, Action... actions) {
+        getLock().readLock().lock();
+        try {
+            IStore<T> store = (IStore<T>) modelStores.get(clazz);
+            if (store == null) {
+                throw new IllegalArgumentException("No store is registered for " + clazz.getName());
+            }
+
+            ActionIndex actionIndex = actionIndexes.get(clazz);
+            if (actionIndex == null) {
+                return new ArrayList<>();
+            }
+
+            long[] ids = actionIndex.query(actions);
+            List<T> models = new ArrayList<>(ids.length);
+            for (long id : ids) {
+                T model = store.queryById(id);
+                if (model != null) {
+                    models.add(model);
+                }
+            }
+            return models;
+        } finally {
+            getLock().readLock().unlock();
+        }
+    }
+
+    private static <T extends IModel> State createState(T object, Action action) {
+        Preconditions.isNull(object, "IModel object must not be null");
+        Preconditions.isNull(action, "Action must not be null");
+
+        State state = new State();
+        state.setItemId(object.getId());
+        state.setItemType(object.getClass());
+        state.setAction(action);
+        return state;
+    }
+
+    /**
+     * Actions of all models of one type, together with ids of models grouped by action.
+     */
+    private static final class ActionIndex {
+        private final ActionMap actions;
+        private final EnumMap<Action, LongHashSet> ids;
+
+        ActionIndex() {
+            actions = new ActionMap();
+            ids = new EnumMap<>(Action.class);
+            for (Action action : Action.values()) {
+                ids.put(action, new LongHashSet());
+            }
+        }
+
+        void put(long id, Action action) {
+            Action previous = actions.put(id, action);
+            if (previous != null) {
+                ids.get(previous).remove(id);
+            }
+            ids.get(action).add(id);
+        }
+
+        void remove(long id) {
+            Action previous = actions.remove(id);
+            if (previous != null) {
+                ids.get(previous).remove(id);
+            }
+        }
+
+        /**
+         * @return ids of models with any of given actions, in ascending order.
+         */
+        long[] query(Action... actionArray) {
+            EnumSet<Action> actionSet = EnumSet.noneOf(Action.class);
+            for (Action action : actionArray) {
+                if (action != null) {
+                    actionSet.add(action);
+                }
+            }
+
+            int size = 0;
+            for (Action action : actionSet) {
+                size += ids.get(action).size();
+            }
+
+            long[] result = new long[size];
+            int position = 0;
+            for (Action action : actionSet) {
+                position = ids.get(action).copyTo(result, position);
+            }
+            Arrays.sort(result);
+            return result;
+        }
+    }
+}
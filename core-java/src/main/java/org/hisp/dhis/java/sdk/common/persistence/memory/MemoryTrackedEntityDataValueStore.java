@@ -0,0 +1,96 @@
+/*
+ * Copyright (c) 2015, University of Oslo
+ *
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.hisp.dhis.java.sdk.common.persistence.memory;
+
+import org.hisp.dhis.java.sdk.models.dataelement.DataElement;
+import org.hisp.dhis.java.sdk.models.event.Event;
+import org.hisp.dhis.java.sdk.models.trackedentity.TrackedEntityDataValue;
+import org.hisp.dhis.java.sdk.trackedentity.ITrackedEntityDataValueStore;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.locks.ReadWriteLock;
+
+public class MemoryTrackedEntityDataValueStore extends AbsMemoryStore<TrackedEntityDataValue>
+        implements ITrackedEntityDataValueStore {
+    private final MemoryIndex<TrackedEntityDataValue> eventIndex;
+    private final MemoryIndex<TrackedEntityDataValue> dataElementIndex;
+
+    public MemoryTrackedEntityDataValueStore(ReadWriteLock lock) {
+        super(lock);
+
+        eventIndex = addIndex(MemoryIndex.single(new MemoryIndex.IKeyExtractor<TrackedEntityDataValue>() {
+            @Override
+            public Object getKey(TrackedEntityDataValue dataValue) {
+                return getEventUid(dataValue.getEvent());
+            }
+        }));
+        dataElementIndex = addIndex(MemoryIndex.single(new MemoryIndex.IKeyExtractor<TrackedEntityDataValue>() {
+            @Override
+            public Object getKey(TrackedEntityDataValue dataValue) {
+                return MemoryIndex.key(getEventUid(dataValue.getEvent()), dataValue.getDataElement());
+            }
+        }));
+    }
+
+    @Override
+    protected long resolveId(TrackedEntityDataValue dataValue) {
+        if (dataValue.getId() > 0) {
+            return dataValue.getId();
+        }
+        return queryFirstId(dataElementIndex, MemoryIndex.key(
+                getEventUid(dataValue.getEvent()), dataValue.getDataElement()));
+    }
+
+    @Override
+    public List<TrackedEntityDataValue> query(Event event) {
+        return query(eventIndex, getEventUid(event));
+    }
+
+    @Override
+    public List<TrackedEntityDataValue> query(List<Event> events) {
+        List<TrackedEntityDataValue> dataValues = new ArrayList<>();
+        for (Event event : events) {
+            dataValues.addAll(query(eventIndex, getEventUid(event)));
+        }
+        return dataValues;
+    }
+
+    @Override
+    public TrackedEntityDataValue query(DataElement dataElement, Event event) {
+        if (dataElement == null) {
+            return null;
+        }
+        return queryFirst(dataElementIndex, MemoryIndex.key(getEventUid(event), dataElement.getUId()));
+    }
+
+    private static String getEventUid(Event event) {
+        return event != null ? event.getUId() : null;
+    }
+}
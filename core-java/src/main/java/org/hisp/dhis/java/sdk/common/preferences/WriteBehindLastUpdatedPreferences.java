@@ -0,0 +1,267 @@
+/*
+ * Copyright (c) 2015, University of Oslo
+ *
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.hisp.dhis.java.sdk.common.preferences;
+
+import org.hisp.dhis.java.sdk.common.persistence.IDbOperation;
+import org.hisp.dhis.java.sdk.common.persistence.IIdentifiableObjectStore;
+import org.hisp.dhis.java.sdk.common.persistence.ITransactionManager;
+import org.hisp.dhis.java.sdk.models.common.base.IdentifiableObject;
+import org.hisp.dhis.java.sdk.utils.Preconditions;
+import org.joda.time.DateTime;
+
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Keeps lastUpdated values in memory and writes changed ones to underlying preferences in
+ * batches. Values are flushed after a transaction of the transaction manager returned by
+ * {@link #bind(ITransactionManager)} is committed, or when number of unsaved values reaches
+ * maxDirty. Controllers save lastUpdated only after data it describes has been committed, so
+ * persisted preferences never run ahead of persisted data; after a crash unsaved values are
+ * simply lost and data is downloaded again.
+ * <p/>
+ * At most maxCached values are kept in memory; least recently used values which are
+ * already saved are evicted first, values waiting for flush are never evicted.
+ */
+public final class WriteBehindLastUpdatedPreferences implements ILastUpdatedPreferences {
+    public static final int DEFAULT_MAX_DIRTY = 256;
+    public static final int DEFAULT_MAX_CACHED = 1024;
+
+    private final ILastUpdatedPreferences lastUpdatedPreferences;
+    private final int maxDirty;
+    private final int maxCached;
+    private final Map<Key, DateTime> values;
+    private final Set<Key> dirty;
+
+    public WriteBehindLastUpdatedPreferences(ILastUpdatedPreferences lastUpdatedPreferences) {
+        this(lastUpdatedPreferences, DEFAULT_MAX_DIRTY);
+    }
+
+    public WriteBehindLastUpdatedPreferences(ILastUpdatedPreferences lastUpdatedPreferences, int maxDirty) {
+        this(lastUpdatedPreferences, maxDirty, DEFAULT_MAX_CACHED);
+    }
+
+    public WriteBehindLastUpdatedPreferences(ILastUpdatedPreferences lastUpdatedPreferences,
+                                             int maxDirty, int maxCached) {
+        this.lastUpdatedPreferences = Preconditions.isNull(lastUpdatedPreferences,
+                "lastUpdatedPreferences must not be null");
+        if (maxDirty < 1) {
+            throw new IllegalArgumentException("maxDirty must be positive");
+        }
+        if (maxCached < 1) {
+            throw new IllegalArgumentException("maxCached must be positive");
+        }
+        this.maxDirty = maxDirty;
+        this.maxCached = maxCached;
+        // access ordered, so iteration starts at least recently used value
+        this.values = new LinkedHashMap<>(16, 0.75f, true);
+        this.dirty = new LinkedHashSet<>();
+    }
+
+    /**
+     * Returns transaction manager which flushes unsaved values after every committed transaction.
+     */
+    public ITransactionManager bind(ITransactionManager transactionManager) {
+        return new FlushingTransactionManager(Preconditions.isNull(transactionManager,
+                "transactionManager must not be null"), this);
+    }
+
+    /**
+     * Writes all unsaved values to underlying preferences. Values which could not
+     * be written are kept and retried on the next flush.
+     */
+    public synchronized void flush() {
+        Iterator<Key> iterator = dirty.iterator();
+        while (iterator.hasNext()) {
+            Key key = iterator.next();
+            DateTime value = values.get(key);
+            boolean saved = key.hasExtra ?
+                    lastUpdatedPreferences.save(key.resourceType, value, key.extra) :
+                    lastUpdatedPreferences.save(key.resourceType, value);
+            if (saved) {
+                iterator.remove();
+            }
+        }
+        evict();
+    }
+
+    /**
+     * Number of values currently held in memory.
+     */
+    synchronized int getCachedCount() {
+        return values.size();
+    }
+
+    @Override
+    public synchronized boolean save(ResourceType key, DateTime value) {
+        return put(new Key(key, null, false), value);
+    }
+
+    @Override
+    public synchronized boolean save(ResourceType resourceType, DateTime dateTime, String extra) {
+        return put(new Key(resourceType, extra, true), dateTime);
+    }
+
+    @Override
+    public synchronized boolean delete(ResourceType key) {
+        Key cacheKey = new Key(key, null, false);
+        values.remove(cacheKey);
+        dirty.remove(cacheKey);
+        return lastUpdatedPreferences.delete(key);
+    }
+
+    @Override
+    public synchronized boolean isSet(ResourceType key) {
+        Key cacheKey = new Key(key, null, false);
+        if (values.containsKey(cacheKey)) {
+            return values.get(cacheKey) != null;
+        }
+        return lastUpdatedPreferences.isSet(key);
+    }
+
+    @Override
+    public synchronized boolean clear() {
+        values.clear();
+        dirty.clear();
+        return lastUpdatedPreferences.clear();
+    }
+
+    @Override
+    public synchronized DateTime get(ResourceType key) {
+        return get(new Key(key, null, false));
+    }
+
+    @Override
+    public synchronized DateTime get(ResourceType resourceType, String extra) {
+        return get(new Key(resourceType, extra, true));
+    }
+
+    @Override
+    public synchronized List<DateTime> get() {
+        flush();
+        return lastUpdatedPreferences.get();
+    }
+
+    private boolean put(Key key, DateTime value) {
+        values.put(key, value);
+        dirty.add(key);
+        if (dirty.size() >= maxDirty) {
+            flush();
+        } else {
+            evict();
+        }
+        return true;
+    }
+
+    private DateTime get(Key key) {
+        if (values.containsKey(key)) {
+            return values.get(key);
+        }
+
+        DateTime value = key.hasExtra ?
+                lastUpdatedPreferences.get(key.resourceType, key.extra) :
+                lastUpdatedPreferences.get(key.resourceType);
+        values.put(key, value);
+        evict();
+        return value;
+    }
+
+    private void evict() {
+        Iterator<Key> iterator = values.keySet().iterator();
+        while (values.size() > maxCached && iterator.hasNext()) {
+            if (!dirty.contains(iterator.next())) {
+                iterator.remove();
+            }
+        }
+    }
+
+    private static final class Key {
+        private final ResourceType resourceType;
+        private final String extra;
+        private final boolean hasExtra;
+
+        Key(ResourceType resourceType, String extra, boolean hasExtra) {
+            this.resourceType = resourceType;
+            this.extra = extra;
+            this.hasExtra = hasExtra;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+
+            Key key = (Key) o;
+            return hasExtra == key.hasExtra && resourceType == key.resourceType &&
+                    (extra != null ? extra.equals(key.extra) : key.extra == null);
+        }
+
+        @Override
+        public int hashCode() {
+            int result = resourceType != null ? resourceType.hashCode() : 0;
+            result = 31 * result + (extra != null ? extra.hashCode() : 0);
+            result = 31 * result + (hasExtra ? 1 : 0);
+            return result;
+        }
+    }
+
+    private static final class FlushingTransactionManager implements ITransactionManager {
+        private final ITransactionManager transactionManager;
+        private final WriteBehindLastUpdatedPreferences lastUpdatedPreferences;
+
+        FlushingTransactionManager(ITransactionManager transactionManager,
+                                   WriteBehindLastUpdatedPreferences lastUpdatedPreferences) {
+            this.transactionManager = transactionManager;
+            this.lastUpdatedPreferences = lastUpdatedPreferences;
+        }
+
+        @Override
+        public void transact(Collection<IDbOperation> operations) {
+            // values saved so far describe data committed by previous
+            // transactions, so they can be flushed once this one succeeds
+            transactionManager.transact(operations);
+            lastUpdatedPreferences.flush();
+        }
+
+        @Override
+        public <T extends IdentifiableObject> List<IDbOperation> createOperations(IIdentifiableObjectStore<T> modelStore,
+                                                                                  List<T> oldModels, List<T> newModels) {
+            return transactionManager.createOperations(modelStore, oldModels, newModels);
+        }
+    }
+}
@@ -28,7 +28,7 @@
 
 package org.hisp.dhis.java.sdk.constant;
 
-import org.hisp.dhis.java.sdk.common.controllers.IDataController;
+import org.hisp.dhis.java.sdk.common.controllers.IMetadataController;
 import org.hisp.dhis.java.sdk.models.constant.Constant;
 import org.hisp.dhis.java.sdk.common.network.ApiException;
 import org.hisp.dhis.java.sdk.common.persistence.IDbOperation;
@@ -44,7 +44,7 @@ import java.util.LinkedList;
 import java.util.List;
 import java.util.Queue;
 
-public final class ConstantController implements IDataController<Constant> {
+public final class ConstantController implements IMetadataController<Constant> {
     private final IConstantApiClient constantApiClient;
     private final ITransactionManager transactionManager;
     private final ISystemInfoApiClient systemInfoApiClient;
@@ -65,18 +65,32 @@ public final class ConstantController implements IDataController<Constant> {
         this.modelUtils = modelUtils;
     }
 
-    private void getConstantsDataFromServer() throws ApiException {
-        ResourceType resource = ResourceType.CONSTANTS;
-        DateTime serverTime = systemInfoApiClient.getSystemInfo().getServerDate();
-        DateTime lastUpdated = lastUpdatedPreferences.get(resource);
+    @Override
+    public ResourceType getResourceType() {
+        return ResourceType.CONSTANTS;
+    }
+
+    @Override
+    public ICommit fetch() throws ApiException {
+        final DateTime serverTime = systemInfoApiClient.getSystemInfo().getServerDate();
+        DateTime lastUpdated = lastUpdatedPreferences.get(ResourceType.CONSTANTS);
 
         //fetching id and name for all items on server. This is needed in case something is
         // deleted on the server and we want to reflect that locally
-        List<Constant> allConstants = constantApiClient.getBasicConstants(null);
+        final List<Constant> allConstants = constantApiClient.getBasicConstants(null);
 
         //fetch all updated items
-        List<Constant> updatedConstants = constantApiClient.getFullConstants(lastUpdated);
+        final List<Constant> updatedConstants = constantApiClient.getFullConstants(lastUpdated);
+
+        return new ICommit() {
+            @Override
+            public void commit() {
+                saveConstants(allConstants, updatedConstants, serverTime);
+            }
+        };
+    }
 
+    private void saveConstants(List<Constant> allConstants, List<Constant> updatedConstants, DateTime serverTime) {
         //merging updated items with persisted items, and removing ones not present in server.
         List<Constant> existingPersistedAndUpdatedConstants =
                 modelUtils.merge(allConstants, updatedConstants, constantStore.queryAll());
@@ -86,11 +100,11 @@ public final class ConstantController implements IDataController<Constant> {
                 existingPersistedAndUpdatedConstants, constantStore.queryAll()));
 
         transactionManager.transact(operations);
-        lastUpdatedPreferences.save(resource, serverTime);
+        lastUpdatedPreferences.save(ResourceType.CONSTANTS, serverTime);
     }
 
     @Override
     public void sync() throws ApiException {
-        getConstantsDataFromServer();
+        fetch().commit();
     }
 }
\ No newline at end of file
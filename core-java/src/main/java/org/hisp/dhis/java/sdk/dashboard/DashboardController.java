@@ -28,6 +28,7 @@
 
 package org.hisp.dhis.java.sdk.dashboard;
 
+import org.hisp.dhis.java.sdk.common.ActionMap;
 import org.hisp.dhis.java.sdk.common.controllers.IDataController;
 import org.hisp.dhis.java.sdk.models.common.state.Action;
 import org.hisp.dhis.java.sdk.models.dashboard.Dashboard;
@@ -38,6 +39,7 @@ import org.hisp.dhis.java.sdk.common.IStateStore;
 import org.hisp.dhis.java.sdk.common.network.ApiException;
 import org.hisp.dhis.java.sdk.common.network.Response;
 import org.hisp.dhis.java.sdk.common.persistence.DbOperation;
+import org.hisp.dhis.java.sdk.common.persistence.DiffEngine;
 import org.hisp.dhis.java.sdk.common.persistence.IDbOperation;
 import org.hisp.dhis.java.sdk.common.persistence.ITransactionManager;
 import org.hisp.dhis.java.sdk.common.preferences.ILastUpdatedPreferences;
@@ -104,22 +106,34 @@ public final class DashboardController implements IDataController<Dashboard> {
         DateTime lastUpdated = lastUpdatedPreferences.get(ResourceType.DASHBOARDS);
         DateTime serverDateTime = systemInfoApiClient.getSystemInfo().getServerDate();
 
-        List<Dashboard> dashboards = updateDashboards(lastUpdated);
-        List<DashboardItem> dashboardItems = updateDashboardItems(dashboards, lastUpdated);
+        // persisted models are queried and indexed only once per sync
+        List<Dashboard> persistedDashboards = stateStore.queryModelsWithActions(Dashboard.class,
+                Action.SYNCED, Action.TO_UPDATE, Action.TO_DELETE);
+        List<DashboardItem> persistedItems = stateStore.queryModelsWithActions(DashboardItem.class,
+                Action.SYNCED, Action.TO_UPDATE, Action.TO_DELETE);
+        Map<Long, List<DashboardElement>> persistedElementMap = toDashboardElementMap(
+                stateStore.queryModelsWithActions(DashboardElement.class,
+                        Action.SYNCED, Action.TO_UPDATE, Action.TO_DELETE));
+
+        List<Dashboard> dashboards = updateDashboards(lastUpdated, persistedDashboards,
+                persistedItems, persistedElementMap);
+        List<DashboardItem> dashboardItems = updateDashboardItems(dashboards, lastUpdated, persistedItems);
 
         Queue<IDbOperation> operations = new LinkedList<>();
 
         operations.addAll(transactionManager.createOperations(dashboardStore,
-                stateStore.queryModelsWithActions(Dashboard.class, Action.SYNCED, Action.TO_UPDATE, Action.TO_DELETE), dashboards));
+                persistedDashboards, dashboards));
         operations.addAll(transactionManager.createOperations(dashboardItemStore,
-                stateStore.queryModelsWithActions(DashboardItem.class, Action.SYNCED, Action.TO_UPDATE, Action.TO_DELETE), dashboardItems));
-        operations.addAll(createOperations(dashboardItems));
+                persistedItems, dashboardItems));
+        operations.addAll(createOperations(dashboardItems, persistedElementMap));
 
         transactionManager.transact(operations);
         lastUpdatedPreferences.save(ResourceType.DASHBOARDS, serverDateTime);
     }
 
-    private List<Dashboard> updateDashboards(DateTime lastUpdated) {
+    private List<Dashboard> updateDashboards(DateTime lastUpdated, List<Dashboard> persistedDashboards,
+                                             List<DashboardItem> persistedItems,
+                                             Map<Long, List<DashboardElement>> dashboardElementMap) {
         // List of dashboards with UUIDs (without content). This list is used
         // only to determine what was removed on server.
         List<Dashboard> actualDashboards = dashboardApiClient.getBasicDashboards(null);
@@ -127,12 +141,7 @@ public final class DashboardController implements IDataController<Dashboard> {
         // List of updated dashboards with content.
         List<Dashboard> updatedDashboards = dashboardApiClient.getFullDashboards(lastUpdated);
 
-        // List of persisted dashboards.
-        List<Dashboard> persistedDashboards = stateStore.queryModelsWithActions(Dashboard.class,
-                Action.SYNCED, Action.TO_UPDATE, Action.TO_DELETE);
-
-        Map<Long, List<DashboardItem>> dashboardItemMap = getDashboardItemMap();
-        Map<Long, List<DashboardElement>> dashboardElementMap = getDashboardElementMap(false);
+        Map<Long, List<DashboardItem>> dashboardItemMap = toDashboardItemMap(persistedItems);
 
         for (Dashboard dashboard : persistedDashboards) {
             List<DashboardItem> items = dashboardItemMap.get(dashboard.getId());
@@ -149,7 +158,8 @@ public final class DashboardController implements IDataController<Dashboard> {
         return modelUtils.merge(actualDashboards, updatedDashboards, persistedDashboards);
     }
 
-    private List<DashboardItem> updateDashboardItems(List<Dashboard> dashboards, DateTime lastUpdated) {
+    private List<DashboardItem> updateDashboardItems(List<Dashboard> dashboards, DateTime lastUpdated,
+                                                     List<DashboardItem> persistedItems) {
         // List of actual dashboard items.
         List<DashboardItem> actualItems = new ArrayList<>();
         for (Dashboard dashboard : dashboards) {
@@ -158,9 +168,7 @@ public final class DashboardController implements IDataController<Dashboard> {
         }
 
         // List of persisted dashboard items
-        Map<String, DashboardItem> persistedDashboardItems =
-                modelUtils.toMap(stateStore.queryModelsWithActions(DashboardItem.class,
-                        Action.SYNCED, Action.TO_UPDATE, Action.TO_DELETE));
+        Map<String, DashboardItem> persistedDashboardItems = modelUtils.toMap(persistedItems);
 
         // List of updated dashboard items. We need this only to get
         // information about updates of item shape.
@@ -199,80 +207,34 @@ public final class DashboardController implements IDataController<Dashboard> {
     }
 
 
-    private List<DbOperation> createOperations(List<DashboardItem> refreshedItems) {
-        List<DbOperation> dbOperations = new ArrayList<>();
-
-        Map<Long, List<DashboardElement>> dashboardElementMap = getDashboardElementMap(false);
-        for (DashboardItem refreshedItem : refreshedItems) {
-            List<DashboardElement> persistedElementList =
-                    dashboardElementMap.get(refreshedItem.getId());
-
-            List<DashboardElement> refreshedElementList =
-                    refreshedItem.getDashboardElements();
-
-            if (persistedElementList == null) {
-                persistedElementList = new ArrayList<>();
-            }
-
-            if (refreshedElementList == null) {
-                refreshedElementList = new ArrayList<>();
-            }
-
-            List<String> persistedElementIds = modelUtils.toUidList(persistedElementList);
-            List<String> refreshedElementIds = modelUtils.toUidList(refreshedElementList);
-
-            List<String> itemIdsToInsert = subtract(refreshedElementIds, persistedElementIds);
-            List<String> itemIdsToDelete = subtract(persistedElementIds, refreshedElementIds);
+    private List<IDbOperation> createOperations(List<DashboardItem> refreshedItems,
+                                                Map<Long, List<DashboardElement>> dashboardElementMap) {
+        List<IDbOperation> dbOperations = new ArrayList<>();
 
-            for (String elementToDelete : itemIdsToDelete) {
-                int index = persistedElementIds.indexOf(elementToDelete);
-                DashboardElement element = persistedElementList.get(index);
-                dbOperations.add(DbOperation
-                        .with(dashboardElementStore)
-                        .delete(element));
+        // dashboard elements are never changed, they are only
+        // added to or removed from dashboard items
+        DiffEngine<DashboardElement> diffEngine = DiffEngine.with(dashboardElementStore)
+                .key(DiffEngine.<DashboardElement>byUid())
+                .version(new DiffEngine.IVersionComparator<DashboardElement>() {
+                    @Override
+                    public boolean isNewer(DashboardElement oldModel, DashboardElement newModel) {
+                        return false;
+                    }
+                });
 
-                persistedElementIds.remove(index);
-                persistedElementList.remove(index);
-            }
-
-            for (String elementToInsert : itemIdsToInsert) {
-                int index = refreshedElementIds.indexOf(elementToInsert);
-                DashboardElement dashboardElement = refreshedElementList.get(index);
-                dbOperations.add(DbOperation
-                        .with(dashboardElementStore)
-                        .insert(dashboardElement));
-
-                refreshedElementIds.remove(index);
-                refreshedElementList.remove(index);
-            }
+        for (DashboardItem refreshedItem : refreshedItems) {
+            dbOperations.addAll(diffEngine.diff(dashboardElementMap.get(refreshedItem.getId()),
+                    refreshedItem.getDashboardElements()));
         }
 
         return dbOperations;
     }
 
+    /* returns map where key is id of dashboard and value is list of dashboard items */
+    private static Map<Long, List<DashboardItem>> toDashboardItemMap(List<DashboardItem> dashboardItems) {
+        Map<Long, List<DashboardItem>> dashboardItemMap = new HashMap<>(dashboardItems.size());
 
-    /* this method subtracts content of bList from aList */
-    private static List<String> subtract(List<String> aList, List<String> bList) {
-        List<String> aListCopy = new ArrayList<>(aList);
-        if (bList != null && !bList.isEmpty()) {
-            for (String bItem : bList) {
-                if (aListCopy.contains(bItem)) {
-                    int index = aListCopy.indexOf(bItem);
-                    aListCopy.remove(index);
-                }
-            }
-        }
-        return aListCopy;
-    }
-
-
-    // TODO move this method out
-    private Map<Long, List<DashboardItem>> getDashboardItemMap() {
-        List<DashboardItem> dashboardItemsList = stateStore
-                .queryModelsWithActions(DashboardItem.class, Action.SYNCED, Action.TO_UPDATE, Action.TO_DELETE);
-        Map<Long, List<DashboardItem>> dashboardItemMap = new HashMap<>();
-
-        for (DashboardItem dashboardItem : dashboardItemsList) {
+        for (DashboardItem dashboardItem : dashboardItems) {
             Long dashboardId = dashboardItem.getDashboard().getId();
 
             List<DashboardItem> bag = dashboardItemMap.get(dashboardId);
@@ -287,20 +249,11 @@ public final class DashboardController implements IDataController<Dashboard> {
         return dashboardItemMap;
     }
 
-    // TODO move this method out
-    private Map<Long, List<DashboardElement>> getDashboardElementMap(boolean withAction) {
-        List<DashboardElement> dashboardElementsList;
-
-        if (withAction) {
-            dashboardElementsList = stateStore.queryModelsWithActions(
-                    DashboardElement.class, Action.TO_POST);
-        } else {
-            dashboardElementsList = stateStore.queryModelsWithActions(
-                    DashboardElement.class, Action.SYNCED, Action.TO_UPDATE, Action.TO_DELETE);
-        }
-        Map<Long, List<DashboardElement>> dashboardElementMap = new HashMap<>();
+    /* returns map where key is id of dashboard item and value is list of dashboard elements */
+    private static Map<Long, List<DashboardElement>> toDashboardElementMap(List<DashboardElement> dashboardElements) {
+        Map<Long, List<DashboardElement>> dashboardElementMap = new HashMap<>(dashboardElements.size());
 
-        for (DashboardElement dashboardElement : dashboardElementsList) {
+        for (DashboardElement dashboardElement : dashboardElements) {
             Long dashboardItemId = dashboardElement.getDashboardItem().getId();
 
             List<DashboardElement> bag = dashboardElementMap.get(dashboardItemId);
@@ -315,7 +268,6 @@ public final class DashboardController implements IDataController<Dashboard> {
         return dashboardElementMap;
     }
 
-
     private void sendLocalChanges() {
         sendDashboardChanges();
         sendDashboardItemChanges();
@@ -329,12 +281,12 @@ public final class DashboardController implements IDataController<Dashboard> {
         // List<Dashboard> dashboards = dashboardStore.filter(Action.SYNCED);
         List<Dashboard> dashboards = stateStore
                 .queryModelsWithActions(Dashboard.class, Action.TO_POST, Action.TO_UPDATE, Action.TO_DELETE);
-        Map<Long, Action> actionMap = stateStore
-                .queryActionsForModel(Dashboard.class);
         if (dashboards == null || dashboards.isEmpty()) {
             return;
         }
 
+        ActionMap actionMap = stateStore.queryActionsForModels(Dashboard.class, dashboards);
+
         for (Dashboard dashboard : dashboards) {
             Action action = actionMap.get(dashboard.getId());
             action = action == null ? Action.SYNCED : action;
@@ -414,12 +366,18 @@ public final class DashboardController implements IDataController<Dashboard> {
                 dashboardItemStore.filter(Action.SYNCED); */
         List<DashboardItem> dashboardItems =
                 stateStore.queryModelsWithActions(DashboardItem.class, Action.TO_POST, Action.TO_UPDATE, Action.TO_DELETE);
-        Map<Long, Action> actionMap = stateStore.queryActionsForModel(DashboardItem.class);
 
         if (dashboardItems == null || dashboardItems.isEmpty()) {
             return;
         }
 
+        ActionMap actionMap = stateStore.queryActionsForModels(DashboardItem.class, dashboardItems);
+        ActionMap dashboardActionMap = queryDashboardActions(dashboardItems);
+
+        // elements which are waiting to be posted are indexed once for all items
+        Map<Long, List<DashboardElement>> elementsToPost = toDashboardElementMap(
+                stateStore.queryModelsWithActions(DashboardElement.class, Action.TO_POST));
+
         for (DashboardItem dashboardItem : dashboardItems) {
             Action action = actionMap.get(dashboardItem.getId());
             if (action == null) {
@@ -428,20 +386,21 @@ public final class DashboardController implements IDataController<Dashboard> {
 
             switch (action) {
                 case TO_POST: {
-                    postDashboardItem(dashboardItem);
+                    postDashboardItem(dashboardItem, dashboardActionMap, elementsToPost);
                     break;
                 }
                 case TO_DELETE: {
-                    deleteDashboardItem(dashboardItem);
+                    deleteDashboardItem(dashboardItem, dashboardActionMap);
                     break;
                 }
             }
         }
     }
 
-    private void postDashboardItem(DashboardItem dashboardItem) {
+    private void postDashboardItem(DashboardItem dashboardItem, ActionMap dashboardActionMap,
+                                   Map<Long, List<DashboardElement>> elementsToPost) {
         Dashboard dashboard = dashboardItem.getDashboard();
-        Action dashboardAction = stateStore.queryActionForModel(dashboard);
+        Action dashboardAction = dashboard != null ? dashboardActionMap.get(dashboard.getId()) : null;
 
         if (dashboard != null && dashboardAction != null) {
             boolean isDashboardSynced = (dashboardAction.equals(Action.SYNCED) ||
@@ -455,8 +414,7 @@ public final class DashboardController implements IDataController<Dashboard> {
                     dashboardElementStore.queryById(dashboardItem, Action.TO_POST); */
             /* List<DashboardElement> elements =
                     getDashboardElements(dashboardItem, Action.TO_POST); */
-            List<DashboardElement> elements = getDashboardElementMap(true)
-                    .get(dashboardItem.getId());
+            List<DashboardElement> elements = elementsToPost.get(dashboardItem.getId());
 
             if (elements == null || elements.isEmpty()) {
                 return;
@@ -494,9 +452,9 @@ public final class DashboardController implements IDataController<Dashboard> {
         }
     }
 
-    private void deleteDashboardItem(DashboardItem dashboardItem) {
+    private void deleteDashboardItem(DashboardItem dashboardItem, ActionMap dashboardActionMap) {
         Dashboard dashboard = dashboardItem.getDashboard();
-        Action dashboardAction = stateStore.queryActionForModel(dashboard);
+        Action dashboardAction = dashboard != null ? dashboardActionMap.get(dashboard.getId()) : null;
 
         if (dashboard != null && dashboardAction != null) {
             boolean isDashboardSynced = (dashboardAction.equals(Action.SYNCED) ||
@@ -520,6 +478,19 @@ public final class DashboardController implements IDataController<Dashboard> {
         }
     }
 
+    /**
+     * Resolves actions of parent dashboards of given items with one state store lookup.
+     */
+    private ActionMap queryDashboardActions(List<DashboardItem> dashboardItems) {
+        List<Dashboard> dashboards = new ArrayList<>();
+        for (DashboardItem dashboardItem : dashboardItems) {
+            if (dashboardItem.getDashboard() != null) {
+                dashboards.add(dashboardItem.getDashboard());
+            }
+        }
+        return stateStore.queryActionsForModels(Dashboard.class, dashboards);
+    }
+
     private void sendDashboardElements() {
         /* List<DashboardElement> elements = new Select()
                 .from(DashboardElement.class)
@@ -529,12 +500,22 @@ public final class DashboardController implements IDataController<Dashboard> {
                 .queryList(); */
         List<DashboardElement> elements = stateStore
                 .queryModelsWithActions(DashboardElement.class, Action.TO_POST, Action.TO_UPDATE, Action.TO_DELETE);
-        Map<Long, Action> actionMap = stateStore.queryActionsForModel(DashboardElement.class);
 
         if (elements == null || elements.isEmpty()) {
             return;
         }
 
+        ActionMap actionMap = stateStore.queryActionsForModels(DashboardElement.class, elements);
+
+        List<DashboardItem> items = new ArrayList<>();
+        for (DashboardElement element : elements) {
+            if (element.getDashboardItem() != null) {
+                items.add(element.getDashboardItem());
+            }
+        }
+        ActionMap itemActionMap = stateStore.queryActionsForModels(DashboardItem.class, items);
+        ActionMap dashboardActionMap = queryDashboardActions(items);
+
         for (DashboardElement element : elements) {
             Action action = actionMap.get(element.getId());
             if (action == null) {
@@ -547,7 +528,7 @@ public final class DashboardController implements IDataController<Dashboard> {
                     break;
                 }
                 case TO_DELETE: {
-                    deleteDashboardElement(element);
+                    deleteDashboardElement(element, itemActionMap, dashboardActionMap);
                     break;
                 }
             }
@@ -586,16 +567,17 @@ public final class DashboardController implements IDataController<Dashboard> {
         } */
     }
 
-    private void deleteDashboardElement(DashboardElement element) {
+    private void deleteDashboardElement(DashboardElement element, ActionMap itemActionMap,
+                                        ActionMap dashboardActionMap) {
         DashboardItem item = element.getDashboardItem();
-        Action itemAction = stateStore.queryActionForModel(item);
+        Action itemAction = item != null ? itemActionMap.get(item.getId()) : null;
 
         if (item == null || itemAction == null) {
             return;
         }
 
         Dashboard dashboard = item.getDashboard();
-        Action dashboardAction = stateStore.queryActionForModel(dashboard);
+        Action dashboardAction = dashboard != null ? dashboardActionMap.get(dashboard.getId()) : null;
         if (dashboard == null || dashboardAction == null) {
             return;
         }
@@ -28,6 +28,7 @@
 
 package org.hisp.dhis.java.sdk.dashboard;
 
+import org.hisp.dhis.java.sdk.common.ActionMap;
 import org.hisp.dhis.java.sdk.models.common.Access;
 import org.hisp.dhis.java.sdk.models.common.state.Action;
 import org.hisp.dhis.java.sdk.models.dashboard.DashboardContent;
@@ -39,7 +40,6 @@ import org.hisp.dhis.java.sdk.utils.CodeGenerator;
 
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Map;
 
 public class DashboardElementService implements IDashboardElementService {
     private final IStateStore stateStore;
@@ -116,7 +116,7 @@ public class DashboardElementService implements IDashboardElementService {
         Preconditions.isNull(dashboardItem, "DashboardItem object must not be null");
 
         List<DashboardElement> allDashboardElements = dashboardElementStore.queryByDashboardItem(dashboardItem);
-        Map<Long, Action> actionMap = stateStore.queryActionsForModel(DashboardElement.class);
+        ActionMap actionMap = stateStore.queryActionsForModel(DashboardElement.class);
 
         List<DashboardElement> dashboardElements = new ArrayList<>();
         for (DashboardElement dashboardElement : allDashboardElements) {
@@ -28,6 +28,7 @@
 
 package org.hisp.dhis.java.sdk.dashboard;
 
+import org.hisp.dhis.java.sdk.common.ActionMap;
 import org.hisp.dhis.java.sdk.common.IStateStore;
 import org.hisp.dhis.java.sdk.models.common.Access;
 import org.hisp.dhis.java.sdk.models.common.state.Action;
@@ -41,7 +42,6 @@ import org.joda.time.DateTime;
 
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Map;
 
 public class DashboardItemService implements IDashboardItemService {
     private final IDashboardItemStore dashboardItemStore;
@@ -107,7 +107,7 @@ public class DashboardItemService implements IDashboardItemService {
         Preconditions.isNull(dashboard, "Dashboard object must not be null");
 
         List<DashboardItem> allDashboardItems = dashboardItemStore.queryByDashboard(dashboard);
-        Map<Long, Action> actionMap = stateStore.queryActionsForModel(DashboardItem.class);
+        ActionMap actionMap = stateStore.queryActionsForModel(DashboardItem.class);
 
         List<DashboardItem> dashboardItems = new ArrayList<>();
         for (DashboardItem dashboardItem : allDashboardItems) {
@@ -28,7 +28,7 @@
 
 package org.hisp.dhis.java.sdk.dataelement;
 
-import org.hisp.dhis.java.sdk.common.controllers.IDataController;
+import org.hisp.dhis.java.sdk.common.controllers.IMetadataController;
 import org.hisp.dhis.java.sdk.common.persistence.IIdentifiableObjectStore;
 import org.hisp.dhis.java.sdk.common.preferences.ResourceType;
 import org.hisp.dhis.java.sdk.models.dataelement.DataElement;
@@ -42,7 +42,7 @@ import org.joda.time.DateTime;
 
 import java.util.List;
 
-public final class DataElementController implements IDataController<DataElement> {
+public final class DataElementController implements IMetadataController<DataElement> {
     private final IDataElementApiClient dataElementApiClient;
     private final ISystemInfoApiClient systemInfoApiClient;
     private final IIdentifiableObjectStore<DataElement> mDataElementStore;
@@ -63,18 +63,33 @@ public final class DataElementController implements IDataController<DataElement>
         this.modelUtils = modelUtils;
     }
 
-    private void getProgramRulesDataFromServer() throws ApiException {
-        ResourceType resource = ResourceType.DATA_ELEMENTS;
-        DateTime serverTime = systemInfoApiClient.getSystemInfo().getServerDate();
-        DateTime lastUpdated = lastUpdatedPreferences.get(resource);
+    @Override
+    public ResourceType getResourceType() {
+        return ResourceType.DATA_ELEMENTS;
+    }
+
+    @Override
+    public ICommit fetch() throws ApiException {
+        final DateTime serverTime = systemInfoApiClient.getSystemInfo().getServerDate();
+        DateTime lastUpdated = lastUpdatedPreferences.get(ResourceType.DATA_ELEMENTS);
 
         //fetching id and name for all items on server. This is needed in case something is
         // deleted on the server and we want to reflect that locally
-        List<DataElement> allDataElements = dataElementApiClient.getBasicDataElements(null);
+        final List<DataElement> allDataElements = dataElementApiClient.getBasicDataElements(null);
 
         //fetch all updated items
-        List<DataElement> updatedDataElements = dataElementApiClient.getFullDataElements(lastUpdated);
+        final List<DataElement> updatedDataElements = dataElementApiClient.getFullDataElements(lastUpdated);
+
+        return new ICommit() {
+            @Override
+            public void commit() {
+                saveDataElements(allDataElements, updatedDataElements, serverTime);
+            }
+        };
+    }
 
+    private void saveDataElements(List<DataElement> allDataElements, List<DataElement> updatedDataElements,
+                                  DateTime serverTime) {
         //merging updated items with persisted items, and removing ones not present in server.
         List<DataElement> existingPersistedAndUpdatedDataElements =
                 modelUtils.merge(allDataElements, updatedDataElements, mDataElementStore.queryAll());
@@ -87,6 +102,6 @@ public final class DataElementController implements IDataController<DataElement>
 
     @Override
     public void sync() throws ApiException {
-        getProgramRulesDataFromServer();
+        fetch().commit();
     }
 }
\ No newline at end of file
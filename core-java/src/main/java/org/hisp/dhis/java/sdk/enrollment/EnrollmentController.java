@@ -28,9 +28,11 @@
 
 package org.hisp.dhis.java.sdk.enrollment;
 
+import org.hisp.dhis.java.sdk.common.ActionMap;
 import org.hisp.dhis.java.sdk.common.IFailedItemStore;
 import org.hisp.dhis.java.sdk.common.IStateStore;
 import org.hisp.dhis.java.sdk.common.controllers.PushableDataController;
+import org.hisp.dhis.java.sdk.common.controllers.TrackerPushPlanner;
 import org.hisp.dhis.java.sdk.common.network.ApiException;
 import org.hisp.dhis.java.sdk.common.persistence.*;
 import org.hisp.dhis.java.sdk.common.preferences.ILastUpdatedPreferences;
@@ -38,20 +40,26 @@ import org.hisp.dhis.java.sdk.common.preferences.ResourceType;
 import org.hisp.dhis.java.sdk.event.IEventController;
 import org.hisp.dhis.java.sdk.event.IEventStore;
 import org.hisp.dhis.java.sdk.models.common.faileditem.FailedItemType;
+import org.hisp.dhis.java.sdk.models.common.importsummary.ImportSummaries;
 import org.hisp.dhis.java.sdk.models.common.importsummary.ImportSummary;
 import org.hisp.dhis.java.sdk.models.common.state.Action;
 import org.hisp.dhis.java.sdk.models.enrollment.Enrollment;
 import org.hisp.dhis.java.sdk.models.event.Event;
 import org.hisp.dhis.java.sdk.models.trackedentity.TrackedEntityInstance;
-import org.hisp.dhis.java.sdk.systeminfo.ISystemInfoApiClient;
+import org.hisp.dhis.java.sdk.systeminfo.IServerClock;
 import org.hisp.dhis.java.sdk.utils.IModelUtils;
 import org.joda.time.DateTime;
 
 import java.util.*;
 
 public final class EnrollmentController extends PushableDataController implements IEnrollmentController {
+    /**
+     * Enrollments are sent one by one by default.
+     */
+    public static final int DEFAULT_PUSH_BATCH_SIZE = 1;
+
     private final IEnrollmentApiClient enrollmentApiClient;
-    private final ISystemInfoApiClient systemInfoApiClient;
+    private final IServerClock serverClock;
 
     private final ILastUpdatedPreferences lastUpdatedPreferences;
     private final ITransactionManager transactionManager;
@@ -62,12 +70,15 @@ public final class EnrollmentController extends PushableDataController implement
     private final IStateStore stateStore;
     private final IFailedItemStore failedItemStore;
     private final IModelUtils modelUtils;
+    private final TrackerPushPlanner pushPlanner;
+    private final List<Enrollment> pushedEnrollments = Collections.synchronizedList(new ArrayList<Enrollment>());
+    private int pushBatchSize = DEFAULT_PUSH_BATCH_SIZE;
 
-    public EnrollmentController(IEnrollmentApiClient apiClient, ISystemInfoApiClient systemInfoApiClient, ILastUpdatedPreferences preferences,
+    public EnrollmentController(IEnrollmentApiClient apiClient, IServerClock serverClock, ILastUpdatedPreferences preferences,
                                 ITransactionManager transactionManager, IEventController eventController, IEnrollmentStore enrollmentStore,
                                 IEventStore eventStore, IStateStore stateStore, IFailedItemStore failedItemStore, IModelUtils modelUtils) {
         this.enrollmentApiClient = apiClient;
-        this.systemInfoApiClient = systemInfoApiClient;
+        this.serverClock = serverClock;
         this.lastUpdatedPreferences = preferences;
         this.transactionManager = transactionManager;
         this.eventController = eventController;
@@ -76,6 +87,20 @@ public final class EnrollmentController extends PushableDataController implement
         this.stateStore = stateStore;
         this.failedItemStore = failedItemStore;
         this.modelUtils = modelUtils;
+        this.pushPlanner = new TrackerPushPlanner(stateStore);
+    }
+
+    /**
+     * Sets number of enrollments which are sent to server in one request. If batch size
+     * is greater than one, changed enrollments are sent with {@link IEnrollmentApiClient#postEnrollments(List)}
+     * and {@link IEnrollmentApiClient#putEnrollments(List)} in chunks of given size, and events
+     * of all enrollments are sent afterwards as one wave.
+     */
+    public void setPushBatchSize(int pushBatchSize) {
+        if (pushBatchSize < 1) {
+            throw new IllegalArgumentException("Push batch size must be positive");
+        }
+        this.pushBatchSize = pushBatchSize;
     }
 
     private List<Enrollment> getEnrollmentsDataFromServer(TrackedEntityInstance trackedEntityInstance) throws ApiException {
@@ -85,7 +110,7 @@ public final class EnrollmentController extends PushableDataController implement
 
         DateTime lastUpdated = lastUpdatedPreferences
                 .get(ResourceType.ENROLLMENTS, trackedEntityInstance.getTrackedEntityInstanceUid());
-        DateTime serverDateTime = systemInfoApiClient.getSystemInfo().getServerDate();
+        DateTime serverDateTime = serverClock.getServerDate();
 
         List<Enrollment> existingUpdatedAndPersistedEnrollments = updateEnrollments(trackedEntityInstance, lastUpdated);
 
@@ -113,7 +138,7 @@ public final class EnrollmentController extends PushableDataController implement
 
     private Enrollment getEnrollmentDataFromServer(String uid, boolean getEvents) throws ApiException {
         DateTime lastUpdated = lastUpdatedPreferences.get(ResourceType.ENROLLMENT, uid);
-        DateTime serverDateTime = systemInfoApiClient.getSystemInfo().getServerDate();
+        DateTime serverDateTime = serverClock.getServerDate();
 
         Enrollment updatedEnrollment = enrollmentApiClient.getFullEnrollment(uid, lastUpdated);
         //todo: if the updatedEnrollment is deleted on the server, delete it also locally
@@ -152,8 +177,8 @@ public final class EnrollmentController extends PushableDataController implement
         // query enrollment store for all enrollments for the tracked entity instance
         List<Enrollment> enrollmentsForTrackedEntityInstance = enrollmentStore.query(trackedEntityInstance);
 
-        // get action map for all enrollments in state store
-        Map<Long, Action> actionMap = stateStore.queryActionsForModel(Enrollment.class);
+        // get action map for enrollments of the tracked entity instance
+        ActionMap actionMap = stateStore.queryActionsForModels(Enrollment.class, enrollmentsForTrackedEntityInstance);
 
         // create a new list that filters out the enrollments that has Action.TO_POST (meaning it is saved locally), from enrollment store
         List<Enrollment> filteredEnrollments = new ArrayList<>();
@@ -203,44 +228,61 @@ public final class EnrollmentController extends PushableDataController implement
             return;
         }
 
-        Map<Long, Action> actionMap = stateStore
-                .queryActionsForModel(Enrollment.class);
+        if (pushBatchSize > 1) {
+            sendEnrollmentWave(enrollments);
+            reconcileTimestamps();
+            return;
+        }
 
+        ActionMap actionMap = stateStore.queryActionsForModels(Enrollment.class, enrollments);
 
-        for (int i = 0; i < enrollments.size(); i++) {/* workaround for not attempting to upload enrollments with local tei reference*/
-            Enrollment enrollment = enrollments.get(i);
-            Action trackedEntityInstanceAction = null;
-            TrackedEntityInstance trackedEntityInstance = enrollment.getTrackedEntityInstance();
-            if (trackedEntityInstance == null) {
-                trackedEntityInstanceAction = stateStore.queryActionForModel(trackedEntityInstance);
+        List<TrackedEntityInstance> trackedEntityInstances = new ArrayList<>();
+        for (Enrollment enrollment : enrollments) {
+            if (enrollment != null && enrollment.getTrackedEntityInstance() != null) {
+                trackedEntityInstances.add(enrollment.getTrackedEntityInstance());
+            }
+        }
+        ActionMap trackedEntityInstanceActionMap = stateStore
+                .queryActionsForModels(TrackedEntityInstance.class, trackedEntityInstances);
+
+        for (Enrollment enrollment : enrollments) {
+            if (enrollment == null) {
+                continue;
             }
 
             //we avoid trying to send enrollments whose trackedEntityInstances that have not yet been posted to server
-            if (Action.TO_POST.equals(trackedEntityInstanceAction)) {
-                enrollments.remove(i);
-                i--;
+            TrackedEntityInstance trackedEntityInstance = enrollment.getTrackedEntityInstance();
+            if (trackedEntityInstance != null && Action.TO_POST.equals(
+                    trackedEntityInstanceActionMap.get(trackedEntityInstance.getId()))) {
+                continue;
             }
-        }
-        for (Enrollment enrollment : enrollments) {
+
             sendEnrollmentChanges(enrollment, actionMap.get(enrollment.getId()));
         }
+        reconcileTimestamps();
     }
 
-    private void sendEnrollmentChanges(Enrollment enrollment, Action action) throws ApiException {
-        if (enrollment == null) {
-            return;
+    private void sendEnrollmentWave(List<Enrollment> enrollments) throws ApiException {
+        TrackerPushPlanner.Wave<Enrollment> wave = pushPlanner.planEnrollments(enrollments);
+        for (List<Enrollment> chunk : TrackerPushPlanner.chunks(wave.getToPost(), pushBatchSize)) {
+            postEnrollments(chunk);
         }
-        Action trackedEntityInstanceAction = null;
-        TrackedEntityInstance trackedEntityInstance = enrollment.getTrackedEntityInstance();
-        if (trackedEntityInstance == null) {
-            trackedEntityInstanceAction = stateStore.queryActionForModel(trackedEntityInstance);
+        for (List<Enrollment> chunk : TrackerPushPlanner.chunks(wave.getToPut(), pushBatchSize)) {
+            putEnrollments(chunk);
         }
 
-        //we avoid trying to send enrollments whose trackedEntityInstances that have not yet been posted to server
-        if (Action.TO_POST.equals(trackedEntityInstanceAction)) {
-            return;
+        // events of enrollments which are still not known by server are
+        // held back by planner, the rest is sent in one go
+        List<Event> events = new ArrayList<>();
+        for (Enrollment enrollment : enrollments) {
+            if (enrollment != null) {
+                events.addAll(eventStore.query(enrollment));
+            }
         }
+        eventController.sendEventChanges(events);
+    }
 
+    private void sendEnrollmentChanges(Enrollment enrollment, Action action) throws ApiException {
         if (Action.TO_POST.equals(action)) {
             postEnrollment(enrollment);
         } else {
@@ -262,7 +304,7 @@ public final class EnrollmentController extends PushableDataController implement
                 stateStore.saveActionForModel(enrollment, Action.SYNCED);
                 enrollmentStore.save(enrollment);
                 clearFailedItem(FailedItemType.ENROLLMENT, failedItemStore, enrollment.getId());
-                UpdateEnrollmentTimestamp(enrollment);
+                pushedEnrollments.add(enrollment);
             }
         } catch (ApiException apiException) {
             handleEnrollmentSendException(apiException, failedItemStore, enrollment);
@@ -280,27 +322,134 @@ public final class EnrollmentController extends PushableDataController implement
                 stateStore.saveActionForModel(enrollment, Action.SYNCED);
                 enrollmentStore.save(enrollment);
                 clearFailedItem(FailedItemType.ENROLLMENT, failedItemStore, enrollment.getId());
-                UpdateEnrollmentTimestamp(enrollment);
+                pushedEnrollments.add(enrollment);
             }
         } catch (ApiException apiException) {
             handleEnrollmentSendException(apiException, failedItemStore, enrollment);
         }
     }
 
-    private void UpdateEnrollmentTimestamp(Enrollment enrollment) throws ApiException {
+    private void postEnrollments(List<Enrollment> enrollments) {
         try {
-            Enrollment updatedEnrollment = enrollmentApiClient
-                    .getBasicEnrollment(enrollment.getUId(), null);
+            ImportSummaries importSummaries = enrollmentApiClient.postEnrollments(enrollments);
+            handleImportSummaries(enrollments, importSummaries, true);
+        } catch (ApiException apiException) {
+            for (Enrollment enrollment : enrollments) {
+                handleEnrollmentSendException(apiException, failedItemStore, enrollment);
+            }
+        }
+    }
 
-            // merging updated timestamp to local enrollment model
-            enrollment.setCreated(updatedEnrollment.getCreated());
-            enrollment.setLastUpdated(updatedEnrollment.getLastUpdated());
-            enrollmentStore.save(enrollment);
+    private void putEnrollments(List<Enrollment> enrollments) {
+        try {
+            ImportSummaries importSummaries = enrollmentApiClient.putEnrollments(enrollments);
+            handleImportSummaries(enrollments, importSummaries, false);
         } catch (ApiException apiException) {
-            // NetworkUtils.handleApiException(apiException);
+            for (Enrollment enrollment : enrollments) {
+                handleEnrollmentSendException(apiException, failedItemStore, enrollment);
+            }
         }
     }
 
+    /**
+     * Maps each import summary back to the enrollment at the same position. Successfully
+     * imported enrollments are saved and marked as synced in bulk, while the rest is
+     * stored as failed items.
+     */
+    private void handleImportSummaries(List<Enrollment> enrollments, ImportSummaries importSummaries, boolean posted) {
+        List<ImportSummary> summaries = importSummaries != null && importSummaries.getImportSummaries() != null ?
+                importSummaries.getImportSummaries() : new ArrayList<ImportSummary>();
+
+        List<Enrollment> syncedEnrollments = new ArrayList<>();
+        for (int i = 0; i < enrollments.size(); i++) {
+            Enrollment enrollment = enrollments.get(i);
+            ImportSummary importSummary = i < summaries.size() ? summaries.get(i) : null;
+            if (importSummary == null) {
+                handleImportSummaryError(null, failedItemStore, FailedItemType.ENROLLMENT, 200, enrollment.getId());
+                continue;
+            }
+
+            if (ImportSummary.Status.SUCCESS.equals(importSummary.getStatus()) ||
+                    ImportSummary.Status.OK.equals(importSummary.getStatus())) {
+                if (posted && importSummary.getReference() != null) {
+                    enrollment.setUId(importSummary.getReference());
+                }
+                syncedEnrollments.add(enrollment);
+            } else {
+                handleImportSummaryWithError(importSummary, failedItemStore, FailedItemType.ENROLLMENT, enrollment.getId());
+            }
+        }
+
+        if (syncedEnrollments.isEmpty()) {
+            return;
+        }
+
+        List<IDbOperation> operations = new ArrayList<>();
+        for (Enrollment enrollment : syncedEnrollments) {
+            operations.add(DbOperation.with(enrollmentStore).save(enrollment));
+        }
+        transactionManager.transact(operations);
+        stateStore.saveActionsForModels(syncedEnrollments, Action.SYNCED);
+        pushedEnrollments.addAll(syncedEnrollments);
+
+        for (Enrollment enrollment : syncedEnrollments) {
+            clearFailedItem(FailedItemType.ENROLLMENT, failedItemStore, enrollment.getId());
+        }
+    }
+
+    /**
+     * Fetches created and lastUpdated timestamps of all enrollments pushed since the last
+     * reconciliation, with one request per {@link TrackerPushPlanner#MAX_TIMESTAMP_UIDS}
+     * enrollments, and merges them into the local models.
+     */
+    private void reconcileTimestamps() {
+        if (pushedEnrollments.isEmpty()) {
+            return;
+        }
+
+        Map<String, Enrollment> enrollmentMap = new HashMap<>();
+        synchronized (pushedEnrollments) {
+            for (Enrollment enrollment : pushedEnrollments) {
+                if (enrollment.getUId() != null) {
+                    enrollmentMap.put(enrollment.getUId(), enrollment);
+                }
+            }
+            pushedEnrollments.clear();
+        }
+
+        if (enrollmentMap.isEmpty()) {
+            return;
+        }
+
+        List<IDbOperation> operations = new ArrayList<>();
+        for (Set<String> uids : TrackerPushPlanner.timestampChunks(enrollmentMap.keySet())) {
+            List<Enrollment> updatedEnrollments;
+            try {
+                updatedEnrollments = enrollmentApiClient.getEnrollmentTimestamps(uids);
+            } catch (ApiException apiException) {
+                // NetworkUtils.handleApiException(apiException);
+                continue;
+            }
+
+            if (updatedEnrollments == null) {
+                continue;
+            }
+            for (Enrollment updatedEnrollment : updatedEnrollments) {
+                Enrollment enrollment = updatedEnrollment != null ?
+                        enrollmentMap.get(updatedEnrollment.getUId()) : null;
+                if (enrollment == null) {
+                    continue;
+                }
+
+                // merging updated timestamp to local enrollment model
+                enrollment.setCreated(updatedEnrollment.getCreated());
+                enrollment.setLastUpdated(updatedEnrollment.getLastUpdated());
+                operations.add(DbOperation.with(enrollmentStore).save(enrollment));
+            }
+        }
+        transactionManager.transact(operations);
+    }
+
     @Override
     public void sync() throws ApiException {
         sendEnrollmentChanges();
@@ -28,11 +28,13 @@
 
 package org.hisp.dhis.java.sdk.enrollment;
 
+import org.hisp.dhis.java.sdk.models.common.importsummary.ImportSummaries;
 import org.hisp.dhis.java.sdk.models.common.importsummary.ImportSummary;
 import org.hisp.dhis.java.sdk.models.enrollment.Enrollment;
 import org.joda.time.DateTime;
 
 import java.util.List;
+import java.util.Set;
 
 public interface IEnrollmentApiClient {
     List<Enrollment> getBasicEnrollments(String trackedEntityInstanceUid, DateTime lastUpdated);
@@ -46,4 +48,25 @@ public interface IEnrollmentApiClient {
     ImportSummary postEnrollment(Enrollment enrollment);
 
     ImportSummary putEnrollment(Enrollment enrollment);
+
+    /**
+     * Sends all given enrollments in one request.
+     *
+     * @return summaries of import, one per enrollment in the same order as enrollments were given.
+     */
+    ImportSummaries postEnrollments(List<Enrollment> enrollments);
+
+    /**
+     * Updates all given enrollments in one request.
+     *
+     * @return summaries of import, one per enrollment in the same order as enrollments were given.
+     */
+    ImportSummaries putEnrollments(List<Enrollment> enrollments);
+
+    /**
+     * Fetches only id, created and lastUpdated fields (fields=id,created,lastUpdated)
+     * of enrollments with given uids in one request. All uids go
+     * into the query string, so callers have to split large sets.
+     */
+    List<Enrollment> getEnrollmentTimestamps(Set<String> uids);
 }
@@ -31,13 +31,17 @@ package org.hisp.dhis.java.sdk.event;
 import org.hisp.dhis.java.sdk.common.IFailedItemStore;
 import org.hisp.dhis.java.sdk.common.IStateStore;
 import org.hisp.dhis.java.sdk.common.persistence.DbOperation;
+import org.hisp.dhis.java.sdk.common.persistence.DiffEngine;
 import org.hisp.dhis.java.sdk.common.persistence.IStore;
 import org.hisp.dhis.java.sdk.common.preferences.ResourceType;
 import org.hisp.dhis.java.sdk.program.IProgramStore;
-import org.hisp.dhis.java.sdk.systeminfo.ISystemInfoApiClient;
+import org.hisp.dhis.java.sdk.systeminfo.IServerClock;
 import org.hisp.dhis.java.sdk.common.controllers.PushableDataController;
+import org.hisp.dhis.java.sdk.common.controllers.TrackerPushPlanner;
 import org.hisp.dhis.java.sdk.common.network.ApiException;
+import org.hisp.dhis.java.sdk.common.network.IChunkConsumer;
 import org.hisp.dhis.java.sdk.models.common.faileditem.FailedItemType;
+import org.hisp.dhis.java.sdk.models.common.importsummary.ImportSummaries;
 import org.hisp.dhis.java.sdk.models.common.importsummary.ImportSummary;
 import org.hisp.dhis.java.sdk.common.persistence.IDbOperation;
 import org.hisp.dhis.java.sdk.models.common.state.Action;
@@ -50,19 +54,53 @@ import org.hisp.dhis.java.sdk.models.program.Program;
 import org.hisp.dhis.java.sdk.trackedentity.ITrackedEntityDataValueStore;
 import org.hisp.dhis.java.sdk.models.trackedentity.TrackedEntityDataValue;
 import org.hisp.dhis.java.sdk.utils.IModelUtils;
+import org.hisp.dhis.java.sdk.utils.Preconditions;
 import org.joda.time.DateTime;
 
 import java.util.ArrayList;
-import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 
 public final class EventController extends PushableDataController implements IEventController {
+    /**
+     * Events are sent one by one by default.
+     */
+    public static final int DEFAULT_PUSH_BATCH_SIZE = 1;
+
+    /**
+     * Downloaded events are persisted in chunks of this size by default.
+     */
+    public static final int DEFAULT_DOWNLOAD_CHUNK_SIZE = 100;
+
+    /**
+     * Events are requested in pages of this size by {@link #syncAll} by default.
+     */
+    public static final int DEFAULT_DOWNLOAD_PAGE_SIZE = 500;
+
+    private static final DiffEngine.IKeyExtractor<TrackedEntityDataValue> DATA_VALUE_KEY =
+            new DiffEngine.IKeyExtractor<TrackedEntityDataValue>() {
+                @Override
+                public String getKey(TrackedEntityDataValue dataValue) {
+                    if (dataValue.getEvent() == null || dataValue.getDataElement() == null) {
+                        return null;
+                    }
+                    return dataValue.getEvent().getUId() + dataValue.getDataElement();
+                }
+            };
+
     private final IEventApiClient eventApiClient;
-    private final ISystemInfoApiClient systemInfoApiClient;
+    private final IServerClock serverClock;
     private final ILastUpdatedPreferences lastUpdatedPreferences;
     private final ITransactionManager transactionManager;
     private final IStateStore stateStore;
@@ -72,10 +110,15 @@ public final class EventController extends PushableDataController implements IEv
     private final IProgramStore programStore;
     private final IFailedItemStore failedItemStore;
     private final IModelUtils modelUtils;
+    private final TrackerPushPlanner pushPlanner;
+    private final List<Event> pushedEvents = Collections.synchronizedList(new ArrayList<Event>());
+    private int pushBatchSize = DEFAULT_PUSH_BATCH_SIZE;
+    private int downloadChunkSize = DEFAULT_DOWNLOAD_CHUNK_SIZE;
+    private int downloadPageSize = DEFAULT_DOWNLOAD_PAGE_SIZE;
 
-    public EventController(IEventApiClient eventApiClient, ISystemInfoApiClient systemInfoApiClient, ILastUpdatedPreferences lastUpdatedPreferences, ITransactionManager transactionManager, IStateStore stateStore, IEventStore eventStore, ITrackedEntityDataValueStore trackedEntityDataValueStore, IOrganisationUnitStore organisationUnitStore, IProgramStore programStore, IFailedItemStore failedItemStore, IModelUtils modelUtils) {
+    public EventController(IEventApiClient eventApiClient, IServerClock serverClock, ILastUpdatedPreferences lastUpdatedPreferences, ITransactionManager transactionManager, IStateStore stateStore, IEventStore eventStore, ITrackedEntityDataValueStore trackedEntityDataValueStore, IOrganisationUnitStore organisationUnitStore, IProgramStore programStore, IFailedItemStore failedItemStore, IModelUtils modelUtils) {
         this.eventApiClient = eventApiClient;
-        this.systemInfoApiClient = systemInfoApiClient;
+        this.serverClock = serverClock;
         this.lastUpdatedPreferences = lastUpdatedPreferences;
         this.transactionManager = transactionManager;
         this.stateStore = stateStore;
@@ -85,6 +128,39 @@ public final class EventController extends PushableDataController implements IEv
         this.programStore = programStore;
         this.failedItemStore = failedItemStore;
         this.modelUtils = modelUtils;
+        this.pushPlanner = new TrackerPushPlanner(stateStore);
+    }
+
+    /**
+     * Sets number of events which are sent to server in one request. If batch size
+     * is greater than one, changed events are sent with {@link IEventApiClient#postEvents(List)}
+     * and {@link IEventApiClient#putEvents(List)} in chunks of given size.
+     */
+    public void setPushBatchSize(int pushBatchSize) {
+        if (pushBatchSize < 1) {
+            throw new IllegalArgumentException("Push batch size must be positive");
+        }
+        this.pushBatchSize = pushBatchSize;
+    }
+
+    /**
+     * Sets number of downloaded events which are held in memory and persisted at once.
+     */
+    public void setDownloadChunkSize(int downloadChunkSize) {
+        if (downloadChunkSize < 1) {
+            throw new IllegalArgumentException("Download chunk size must be positive");
+        }
+        this.downloadChunkSize = downloadChunkSize;
+    }
+
+    /**
+     * Sets number of events which are requested in one page by {@link #syncAll}.
+     */
+    public void setDownloadPageSize(int downloadPageSize) {
+        if (downloadPageSize < 1) {
+            throw new IllegalArgumentException("Download page size must be positive");
+        }
+        this.downloadPageSize = downloadPageSize;
     }
 
     /**
@@ -97,14 +173,233 @@ public final class EventController extends PushableDataController implements IEv
      * @param serverDateTime
      * @throws ApiException
      */
-    private void getEventsDataFromServer(String organisationUnitUid, String programUid, int count, DateTime serverDateTime) throws ApiException {
-        ResourceType resourceType = ResourceType.EVENTS;
+    private void getEventsDataFromServer(String organisationUnitUid, String programUid, int count,
+                                         final DateTime serverDateTime) throws ApiException {
         String extraIdentifier = organisationUnitUid + programUid;
         DateTime lastUpdated = lastUpdatedPreferences.get(ResourceType.EVENTS, extraIdentifier);
-        List<Event> updatedEvents = eventApiClient.getFullEvents(programUid, organisationUnitUid, count, lastUpdated);
-        saveResourceDataFromServer(resourceType, extraIdentifier, updatedEvents,
-                eventStore.query(organisationUnitStore.queryByUid(organisationUnitUid),
-                        programStore.queryByUid(programUid)), serverDateTime);
+
+        // events are persisted chunk by chunk while response is being read. Persisted events
+        // which were received are removed from the map, so the remaining ones are deleted.
+        final Map<String, Event> persistedEvents = new HashMap<>();
+        for (Event event : eventStore.query(organisationUnitStore.queryByUid(organisationUnitUid),
+                programStore.queryByUid(programUid))) {
+            if (event.getUId() != null) {
+                persistedEvents.put(event.getUId(), event);
+            }
+        }
+
+        eventApiClient.getFullEvents(programUid, organisationUnitUid, count, lastUpdated,
+                downloadChunkSize, new IChunkConsumer<Event>() {
+                    @Override
+                    public void consume(List<Event> events) {
+                        saveEventChunk(events, persistedEvents, serverDateTime);
+                    }
+                });
+
+        transactionManager.transact(DiffEngine.with(eventStore)
+                .key(DiffEngine.<Event>byUid())
+                .deleteGuard(DiffEngine.unlessChangedLocally(stateStore, Event.class))
+                .diff(new ArrayList<>(persistedEvents.values()), null));
+        lastUpdatedPreferences.save(ResourceType.EVENTS, serverDateTime, extraIdentifier);
+    }
+
+    /**
+     * Downloads all events of program in organisation unit which were changed since the last
+     * checkpoint. Total number of events is fetched first, then pages are requested on given
+     * executor with at most maxConcurrentPages in flight, and persisted on the calling thread
+     * in the order they arrive.
+     *
+     * <p>Both the count and the pages are limited to events changed before serverDateTime (or
+     * current server time if it is null), so events changed during download cannot shift later
+     * pages or extend the result; they are picked up by the next sync instead.</p>
+     *
+     * <p>Pages are ordered by lastUpdated, so the lastUpdated checkpoint is moved to the newest
+     * event of the last page which was persisted together with all pages before it. If download
+     * fails, next call continues from that checkpoint. Events on the boundary of checkpoint may
+     * be fetched twice, which does no harm as they are diffed against persisted ones.</p>
+     *
+     * <p>Only if as many events were received as were counted, the checkpoint is moved to
+     * serverDateTime, and persisted events which were not received are deleted (unless modified
+     * locally) if the whole history was downloaded, i.e. there was no checkpoint yet. Fewer
+     * events mean that some of them dropped out of the result while it was paged, which could
+     * have shifted others past a page boundary at any point; the checkpoint is then put back to
+     * where this call started, so next call fetches the skipped events again.</p>
+     */
+    private void getAllEventsDataFromServer(final String organisationUnitUid, final String programUid,
+                                            DateTime serverDateTime, ExecutorService executorService,
+                                            int maxConcurrentPages) throws ApiException {
+        String extraIdentifier = organisationUnitUid + programUid;
+        final DateTime lastUpdated = lastUpdatedPreferences.get(ResourceType.EVENTS, extraIdentifier);
+        final DateTime lastUpdatedEndDate = serverDateTime != null ?
+                serverDateTime : serverClock.getServerDate();
+
+        Map<String, Event> persistedEvents = new HashMap<>();
+        for (Event event : eventStore.query(organisationUnitStore.queryByUid(organisationUnitUid),
+                programStore.queryByUid(programUid))) {
+            if (event.getUId() != null) {
+                persistedEvents.put(event.getUId(), event);
+            }
+        }
+
+        int total = eventApiClient.getEventCount(programUid, organisationUnitUid,
+                lastUpdated, lastUpdatedEndDate);
+        int pageCount = (total + downloadPageSize - 1) / downloadPageSize;
+
+        CompletionService<EventPage> completionService = new ExecutorCompletionService<>(executorService);
+        List<Future<EventPage>> futures = new ArrayList<>();
+        boolean[] persistedPages = new boolean[pageCount];
+        DateTime[] pageLastUpdated = new DateTime[pageCount];
+        int nextPage = 0;
+        int checkpointPage = 0;
+        int received = 0;
+
+        try {
+            while (nextPage < pageCount && nextPage < maxConcurrentPages) {
+                futures.add(completionService.submit(fetchPage(programUid,
+                        organisationUnitUid, lastUpdated, lastUpdatedEndDate, nextPage++)));
+            }
+
+            for (int completed = 0; completed < pageCount; completed++) {
+                EventPage page = completionService.take().get();
+                received += page.events.size();
+
+                for (int start = 0; start < page.events.size(); start += downloadChunkSize) {
+                    saveEventChunk(new ArrayList<>(page.events.subList(start,
+                            Math.min(start + downloadChunkSize, page.events.size()))),
+                            persistedEvents, lastUpdatedEndDate);
+                }
+                persistedPages[page.index] = true;
+                pageLastUpdated[page.index] = getNewestLastUpdated(page.events);
+
+                DateTime checkpoint = null;
+                while (checkpointPage < pageCount && persistedPages[checkpointPage]) {
+                    if (pageLastUpdated[checkpointPage] != null) {
+                        checkpoint = pageLastUpdated[checkpointPage];
+                    }
+                    checkpointPage++;
+                }
+                if (checkpoint != null) {
+                    lastUpdatedPreferences.save(ResourceType.EVENTS,
+                            checkpoint.minusMillis(1), extraIdentifier);
+                }
+
+                if (nextPage < pageCount) {
+                    futures.add(completionService.submit(fetchPage(programUid,
+                            organisationUnitUid, lastUpdated, lastUpdatedEndDate, nextPage++)));
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            cancel(futures);
+            throw ApiException.unexpectedError(null, e);
+        } catch (ExecutionException e) {
+            cancel(futures);
+            throw toRuntimeException(e.getCause());
+        } catch (RuntimeException e) {
+            cancel(futures);
+            throw e;
+        }
+
+        if (received < total) {
+            lastUpdatedPreferences.save(ResourceType.EVENTS, lastUpdated, extraIdentifier);
+            return;
+        }
+
+        if (lastUpdated == null) {
+            transactionManager.transact(DiffEngine.with(eventStore)
+                    .key(DiffEngine.<Event>byUid())
+                    .deleteGuard(DiffEngine.unlessChangedLocally(stateStore, Event.class))
+                    .diff(new ArrayList<>(persistedEvents.values()), null));
+        }
+        lastUpdatedPreferences.save(ResourceType.EVENTS, lastUpdatedEndDate, extraIdentifier);
+    }
+
+    private Callable<EventPage> fetchPage(final String programUid, final String organisationUnitUid,
+                                          final DateTime lastUpdated, final DateTime lastUpdatedEndDate,
+                                          final int index) {
+        final int pageSize = downloadPageSize;
+        return new Callable<EventPage>() {
+            @Override
+            public EventPage call() throws Exception {
+                final List<Event> events = new ArrayList<>(pageSize);
+                eventApiClient.getFullEventsPage(programUid, organisationUnitUid, lastUpdated,
+                        lastUpdatedEndDate, index + 1, pageSize, pageSize, new IChunkConsumer<Event>() {
+                            @Override
+                            public void consume(List<Event> models) {
+                                events.addAll(models);
+                            }
+                        });
+                return new EventPage(index, events);
+            }
+        };
+    }
+
+    private static DateTime getNewestLastUpdated(List<Event> events) {
+        DateTime newest = null;
+        for (Event event : events) {
+            if (event.getLastUpdated() != null &&
+                    (newest == null || event.getLastUpdated().isAfter(newest))) {
+                newest = event.getLastUpdated();
+            }
+        }
+        return newest;
+    }
+
+    private static void cancel(List<Future<EventPage>> futures) {
+        for (Future<EventPage> future : futures) {
+            future.cancel(true);
+        }
+    }
+
+    private static RuntimeException toRuntimeException(Throwable throwable) {
+        if (throwable instanceof RuntimeException) {
+            return (RuntimeException) throwable;
+        }
+        if (throwable instanceof Error) {
+            throw (Error) throwable;
+        }
+        return ApiException.unexpectedError(null, throwable);
+    }
+
+    /**
+     * Saves events together with their data values in one transaction.
+     */
+    private void saveEventChunk(List<Event> events, Map<String, Event> persistedEvents,
+                                DateTime serverDateTime) {
+        Map<String, Event> persistedChunk = new HashMap<>();
+        for (Event event : events) {
+            Event persistedEvent = persistedEvents.remove(event.getUId());
+            if (persistedEvent != null) {
+                persistedChunk.put(event.getUId(), persistedEvent);
+            }
+        }
+
+        List<IDbOperation> operations = new ArrayList<>();
+        operations.addAll(DiffEngine.with(eventStore)
+                .key(DiffEngine.<Event>byUid())
+                .version(DiffEngine.<Event>byLastUpdated())
+                .keepIds()
+                .diff(new ArrayList<>(persistedChunk.values()), events));
+
+        for (Event event : events) {
+            List<TrackedEntityDataValue> updatedDataValues = event.getTrackedEntityDataValues();
+            if (updatedDataValues == null) {
+                continue;
+            }
+
+            for (TrackedEntityDataValue dataValue : updatedDataValues) {
+                dataValue.setEvent(event);
+            }
+            Event persistedEvent = persistedChunk.get(event.getUId());
+            operations.addAll(createOperations(trackedEntityDataValueStore, persistedEvent, event,
+                    persistedEvent != null ? trackedEntityDataValueStore.query(persistedEvent) : null,
+                    updatedDataValues));
+        }
+        transactionManager.transact(operations);
+
+        for (Event event : events) {
+            lastUpdatedPreferences.save(ResourceType.EVENT, serverDateTime, event.getUId());
+        }
     }
 
     /**
@@ -118,7 +413,7 @@ public final class EventController extends PushableDataController implements IEv
             return;
         }
         DateTime lastUpdated = lastUpdatedPreferences.get(ResourceType.EVENTS, enrollment.getUId());
-        DateTime serverDateTime = systemInfoApiClient.getSystemInfo().getServerDate();
+        DateTime serverDateTime = serverClock.getServerDate();
         Program program = programStore.queryByUid(enrollment.getProgram());
         if (program == null || program.getUId() == null) {
             return;
@@ -141,7 +436,7 @@ public final class EventController extends PushableDataController implements IEv
      * @throws ApiException
      */
     private void getEventDataFromServer(String uid) throws ApiException {
-        DateTime serverDateTime = systemInfoApiClient.getSystemInfo().getServerDate();
+        DateTime serverDateTime = serverClock.getServerDate();
 
         Event updatedEvent = eventApiClient.getFullEvent(uid, null);//mDhisApi.getEvent(uid, getAllFieldsQueryMap(null));
         //todo: delete the event if it has been deleted on server.
@@ -195,84 +490,27 @@ public final class EventController extends PushableDataController implements IEv
     }
 
     /**
-     * This utility method allows to determine which type of operation to apply to
-     * each BaseIdentifiableObject$Flow depending on TimeStamp.
-     *
-     * @param oldModels List of models from local storage.
-     * @param newModels List of models of distance instance of DHIS.
+     * Data values are matched by event and data element. They are updated only if
+     * the event was updated on server, and values changed locally are not deleted.
      */
-    private List<DbOperation> createOperations(IStore<TrackedEntityDataValue> modelStore,
-                                               Event oldEvent,
-                                               Event newEvent,
-                                               List<TrackedEntityDataValue> oldModels,
-                                               List<TrackedEntityDataValue> newModels) {
-        List<DbOperation> ops = new ArrayList<>();
-
-        Map<String, TrackedEntityDataValue> newModelsMap = toMap(newModels);
-        Map<String, TrackedEntityDataValue> oldModelsMap = toMap(oldModels);
-
-        // As we will go through map of persisted items, we will try to update existing data.
-        // Also, during each iteration we will remove old model key from list of new models.
-        // As the result, the list of remaining items in newModelsMap,
-        // will contain only those items which were not inserted before.
-        for (String oldModelKey : oldModelsMap.keySet()) {
-            TrackedEntityDataValue newModel = newModelsMap.get(oldModelKey);
-            TrackedEntityDataValue oldModel = oldModelsMap.get(oldModelKey);
-
-            // if there is no particular model with given uid in list of
-            // actual (up to date) items, it means it was removed on the server side
-            if (newModel == null) {
-                //todo: check the state here in case the data value has changed locally before
-                //todo:  deleting local value.
-                //todo: this may happen if an event on the server was missing the datavalue for the
-                //todo:  dataelement of the current "model" (aka TrackedEntityDataValue)
-                //todo:  and it was created locally, but has not yet been synced to the server.
-                //todo: this may be problematic in cases where a data element has been removed
-                //todo:  from a program on the server, but the user of the this code has changed
-                //todo:  the datavalue for the dataelement that has been removed on the server.
-                Action action = stateStore.queryActionForModel(oldModel);
-                if (!Action.TO_UPDATE.equals(action) && !Action.TO_POST.equals(action)) {
-                    ops.add(DbOperation.with(modelStore)
-                            .delete(oldModel));
-                }
-
-                // in case if there is no new model object,
-                // we can jump to next iteration.
-                continue;
-            }
-
-            // if the last updated field in up to date model is after the same
-            // field in persisted model, it means we need to update it.
-            if (oldEvent == null || newEvent.getLastUpdated().isAfter(oldEvent.getLastUpdated())) {
-                ops.add(DbOperation.with(modelStore)
-                        .update(newModel));
-            }
-
-            // as we have processed given old (persisted) model,
-            // we can remove it from map of new models.
-            newModelsMap.remove(oldModelKey);
-        }
-
-        // Inserting new items.
-        for (String newModelKey : newModelsMap.keySet()) {
-            TrackedEntityDataValue item = newModelsMap.get(newModelKey);
-            ops.add(DbOperation.with(modelStore)
-                    .insert(item));
-        }
-
-        return ops;
-    }
-
-    private static Map<String, TrackedEntityDataValue> toMap(Collection<TrackedEntityDataValue> objects) {
-        Map<String, TrackedEntityDataValue> map = new HashMap<>();
-        if (objects != null && objects.size() > 0) {
-            for (TrackedEntityDataValue object : objects) {
-                if (object.getEvent() != null && object.getDataElement() != null) {
-                    map.put(object.getEvent().getUId() + object.getDataElement(), object);
-                }
-            }
-        }
-        return map;
+    private List<IDbOperation> createOperations(IStore<TrackedEntityDataValue> modelStore,
+                                                final Event oldEvent,
+                                                final Event newEvent,
+                                                List<TrackedEntityDataValue> oldModels,
+                                                List<TrackedEntityDataValue> newModels) {
+        //todo: deleting values which are missing on the server may be problematic in cases
+        //todo:  where a data element has been removed from a program on the server, but
+        //todo:  the user of the this code has changed the datavalue for that data element.
+        return DiffEngine.with(modelStore)
+                .key(DATA_VALUE_KEY)
+                .version(new DiffEngine.IVersionComparator<TrackedEntityDataValue>() {
+                    @Override
+                    public boolean isNewer(TrackedEntityDataValue oldModel, TrackedEntityDataValue newModel) {
+                        return oldEvent == null || newEvent.getLastUpdated().isAfter(oldEvent.getLastUpdated());
+                    }
+                })
+                .deleteGuard(DiffEngine.unlessChangedLocally(stateStore, TrackedEntityDataValue.class))
+                .diff(oldModels, newModels);
     }
 
     private void sendEventChanges() throws ApiException {
@@ -295,49 +533,26 @@ public final class EventController extends PushableDataController implements IEv
             return;
         }
 
-        Map<Long, Action> actionMap = stateStore
-                .queryActionsForModel(Event.class);
+        //we avoid trying to send events whose enrollments that have not yet been posted to server
+        TrackerPushPlanner.Wave<Event> wave = pushPlanner.planEvents(events);
 
-        for (int i = 0; i < events.size(); i++) {/* removing events with local enrollment reference. In this case, the enrollment needs to be synced first*/
-            Event event = events.get(i);
-            Action enrollmentAction = null;
-            Enrollment enrollment = event.getEnrollment();
-            if (enrollment != null) {
-                enrollmentAction = stateStore.queryActionForModel(enrollment);
+        if (pushBatchSize <= 1) {
+            for (Event event : wave.getToPost()) {
+                postEvent(event);
             }
-            //we avoid trying to send events whose enrollments that have not yet been posted to server
-            if (Action.TO_POST.equals(enrollmentAction)) {
-                events.remove(i);
-                i--;
-                continue;
+            for (Event event : wave.getToPut()) {
+                putEvent(event);
+            }
+        } else {
+            for (List<Event> chunk : TrackerPushPlanner.chunks(wave.getToPost(), pushBatchSize)) {
+                postEvents(chunk);
+            }
+            for (List<Event> chunk : TrackerPushPlanner.chunks(wave.getToPut(), pushBatchSize)) {
+                putEvents(chunk);
             }
         }
 
-        for (Event event : events) {
-            sendEventChanges(event, actionMap.get(event.getId()));
-        }
-    }
-
-    private void sendEventChanges(Event event, Action action) throws ApiException {
-        if (event == null) {
-            return;
-        }
-
-        Action enrollmentAction = null;
-        Enrollment enrollment = event.getEnrollment();
-        if (enrollment != null) {
-            enrollmentAction = stateStore.queryActionForModel(enrollment);
-        }
-        //we avoid trying to send events whose enrollments that have not yet been posted to server
-        if (Action.TO_POST.equals(enrollmentAction)) {
-            return;
-        }
-
-        if (Action.TO_POST.equals(action)) {
-            postEvent(event);
-        } else if (Action.TO_UPDATE.equals(action)) {
-            putEvent(event);
-        }
+        reconcileTimestamps();
     }
 
     private void postEvent(Event event) throws ApiException {
@@ -348,16 +563,19 @@ public final class EventController extends PushableDataController implements IEv
             handleImportSummaryWithError(importSummary, failedItemStore, FailedItemType.EVENT, event.getId());
                 if (ImportSummary.Status.SUCCESS.equals(importSummary.getStatus()) ||
                         ImportSummary.Status.OK.equals(importSummary.getStatus())) {
+                    // server assigns new uid to posted event
+                    if (importSummary.getReference() != null) {
+                        event.setUId(importSummary.getReference());
+                    }
                     stateStore.saveActionForModel(event, Action.SYNCED);
+                    stateStore.saveActionsForModels(event.getTrackedEntityDataValues(), Action.SYNCED);
                     List<IDbOperation> operations = new ArrayList<>();
                     for (TrackedEntityDataValue dataValue : event.getTrackedEntityDataValues()) {
-                        stateStore.saveActionForModel(dataValue, Action.SYNCED);
                         operations.add(DbOperation.with(trackedEntityDataValueStore).save(dataValue));
                     }
                     operations.add(DbOperation.with(eventStore).save(event));
                     transactionManager.transact(operations);
-                    updateEventTimestamp(event);
-                    eventStore.save(event);
+                    pushedEvents.add(event);
                     clearFailedItem(FailedItemType.EVENT, failedItemStore, event.getId());
             }
         } catch (ApiException apiException) {
@@ -373,16 +591,15 @@ public final class EventController extends PushableDataController implements IEv
                         ImportSummary.Status.OK.equals(importSummary.getStatus())) {
 
                     stateStore.saveActionForModel(event, Action.SYNCED);
+                    stateStore.saveActionsForModels(event.getTrackedEntityDataValues(), Action.SYNCED);
                     List<IDbOperation> operations = new ArrayList<>();
                     for (TrackedEntityDataValue dataValue : event.getTrackedEntityDataValues()) {
-                        stateStore.saveActionForModel(dataValue, Action.SYNCED);
                         operations.add(DbOperation.with(trackedEntityDataValueStore).save(dataValue));
                     }
                     operations.add(DbOperation.with(eventStore).save(event));
                     transactionManager.transact(operations);
                     clearFailedItem(FailedItemType.EVENT, failedItemStore, event.getId());
-                    updateEventTimestamp(event);
-                    eventStore.save(event);
+                    pushedEvents.add(event);
                 }
 
         } catch (ApiException apiException) {
@@ -390,17 +607,138 @@ public final class EventController extends PushableDataController implements IEv
         }
     }
 
-    private Event updateEventTimestamp(Event event) throws ApiException {
+    private void postEvents(List<Event> events) {
+        //setting uids to null to avoid sending temporary local references
+        for (Event event : events) {
+            event.setUId(null);
+        }
+
         try {
-            Event updatedEvent = eventApiClient.getBasicEvent(event.getUId(), null);
+            ImportSummaries importSummaries = eventApiClient.postEvents(events);
+            handleImportSummaries(events, importSummaries, true);
+        } catch (ApiException apiException) {
+            for (Event event : events) {
+                handleEventSendException(apiException, failedItemStore, event);
+            }
+        }
+    }
 
-            // merging updated timestamp to local event model
-            event.setCreated(updatedEvent.getCreated());
-            event.setLastUpdated(updatedEvent.getLastUpdated());
-        } catch (ApiException ApiException) {
-            //NetworkUtils.handleApiException(ApiException); todo
+    private void putEvents(List<Event> events) {
+        try {
+            ImportSummaries importSummaries = eventApiClient.putEvents(events);
+            handleImportSummaries(events, importSummaries, false);
+        } catch (ApiException apiException) {
+            for (Event event : events) {
+                handleEventSendException(apiException, failedItemStore, event);
+            }
         }
-        return event;
+    }
+
+    /**
+     * Maps each import summary back to the event at the same position. Successfully
+     * imported events (together with their data values) are marked as synced in one
+     * transaction, while the rest is stored as failed items.
+     */
+    private void handleImportSummaries(List<Event> events, ImportSummaries importSummaries, boolean posted) {
+        List<ImportSummary> summaries = importSummaries != null && importSummaries.getImportSummaries() != null ?
+                importSummaries.getImportSummaries() : new ArrayList<ImportSummary>();
+
+        List<Event> syncedEvents = new ArrayList<>();
+        List<TrackedEntityDataValue> syncedDataValues = new ArrayList<>();
+        for (int i = 0; i < events.size(); i++) {
+            Event event = events.get(i);
+            ImportSummary importSummary = i < summaries.size() ? summaries.get(i) : null;
+            if (importSummary == null) {
+                handleImportSummaryError(null, failedItemStore, FailedItemType.EVENT, 200, event.getId());
+                continue;
+            }
+
+            if (ImportSummary.Status.SUCCESS.equals(importSummary.getStatus()) ||
+                    ImportSummary.Status.OK.equals(importSummary.getStatus())) {
+                // server assigns new uid to posted event
+                if (posted && importSummary.getReference() != null) {
+                    event.setUId(importSummary.getReference());
+                }
+                syncedEvents.add(event);
+                if (event.getTrackedEntityDataValues() != null) {
+                    syncedDataValues.addAll(event.getTrackedEntityDataValues());
+                }
+            } else {
+                handleImportSummaryWithError(importSummary, failedItemStore, FailedItemType.EVENT, event.getId());
+            }
+        }
+
+        if (syncedEvents.isEmpty()) {
+            return;
+        }
+
+        List<IDbOperation> operations = new ArrayList<>();
+        for (TrackedEntityDataValue dataValue : syncedDataValues) {
+            operations.add(DbOperation.with(trackedEntityDataValueStore).save(dataValue));
+        }
+        for (Event event : syncedEvents) {
+            operations.add(DbOperation.with(eventStore).save(event));
+        }
+        transactionManager.transact(operations);
+        stateStore.saveActionsForModels(syncedEvents, Action.SYNCED);
+        stateStore.saveActionsForModels(syncedDataValues, Action.SYNCED);
+        pushedEvents.addAll(syncedEvents);
+
+        for (Event event : syncedEvents) {
+            clearFailedItem(FailedItemType.EVENT, failedItemStore, event.getId());
+        }
+    }
+
+    /**
+     * Fetches created and lastUpdated timestamps of all events pushed since the last
+     * reconciliation, with one request per {@link TrackerPushPlanner#MAX_TIMESTAMP_UIDS}
+     * events, and merges them into the local models.
+     */
+    private void reconcileTimestamps() {
+        if (pushedEvents.isEmpty()) {
+            return;
+        }
+
+        Map<String, Event> eventMap = new HashMap<>();
+        synchronized (pushedEvents) {
+            for (Event event : pushedEvents) {
+                if (event.getUId() != null) {
+                    eventMap.put(event.getUId(), event);
+                }
+            }
+            pushedEvents.clear();
+        }
+
+        if (eventMap.isEmpty()) {
+            return;
+        }
+
+        List<IDbOperation> operations = new ArrayList<>();
+        for (Set<String> uids : TrackerPushPlanner.timestampChunks(eventMap.keySet())) {
+            List<Event> updatedEvents;
+            try {
+                updatedEvents = eventApiClient.getEventTimestamps(uids);
+            } catch (ApiException apiException) {
+                //NetworkUtils.handleApiException(ApiException); todo
+                continue;
+            }
+
+            if (updatedEvents == null) {
+                continue;
+            }
+            for (Event updatedEvent : updatedEvents) {
+                Event event = updatedEvent != null ? eventMap.get(updatedEvent.getUId()) : null;
+                if (event == null) {
+                    continue;
+                }
+
+                // merging updated timestamp to local event model
+                event.setCreated(updatedEvent.getCreated());
+                event.setLastUpdated(updatedEvent.getLastUpdated());
+                operations.add(DbOperation.with(eventStore).save(event));
+            }
+        }
+        transactionManager.transact(operations);
     }
 
     @Override
@@ -418,7 +756,28 @@ public final class EventController extends PushableDataController implements IEv
         getEventsDataFromServer(enrollment);
     }
 
+    @Override
+    public void syncAll(String organisationUnitUid, String programUid, DateTime serverDateTime,
+                        ExecutorService executorService, int maxConcurrentPages) throws ApiException {
+        Preconditions.isNull(executorService, "executorService must not be null");
+        if (maxConcurrentPages < 1) {
+            throw new IllegalArgumentException("maxConcurrentPages must be positive");
+        }
+        getAllEventsDataFromServer(organisationUnitUid, programUid, serverDateTime,
+                executorService, maxConcurrentPages);
+    }
+
     public void sync(String UId) {
         getEventDataFromServer(UId);
     }
+
+    private static final class EventPage {
+        final int index;
+        final List<Event> events;
+
+        EventPage(int index, List<Event> events) {
+            this.index = index;
+            this.events = events;
+        }
+    }
 }
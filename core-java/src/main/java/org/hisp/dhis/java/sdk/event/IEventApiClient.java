@@ -28,15 +28,44 @@
 
 package org.hisp.dhis.java.sdk.event;
 
+import org.hisp.dhis.java.sdk.common.network.IChunkConsumer;
+import org.hisp.dhis.java.sdk.models.common.importsummary.ImportSummaries;
 import org.hisp.dhis.java.sdk.models.common.importsummary.ImportSummary;
 import org.hisp.dhis.java.sdk.models.event.Event;
 import org.joda.time.DateTime;
 
 import java.util.List;
+import java.util.Set;
 
 public interface IEventApiClient {
     List<Event> getFullEvents(String programUid, String organisationUnitId, int count, DateTime lastUpdated);
 
+    /**
+     * Streams the same events as {@link #getFullEvents(String, String, int, DateTime)}. Events are
+     * passed to consumer in chunks of at most chunkSize while response body is being read.
+     */
+    void getFullEvents(String programUid, String organisationUnitId, int count, DateTime lastUpdated,
+                       int chunkSize, IChunkConsumer<Event> consumer);
+
+    /**
+     * Returns total number of events of program in organisation unit which were
+     * changed after lastUpdated (or all of them if lastUpdated is null) and not after
+     * lastUpdatedEndDate (if it is not null).
+     */
+    int getEventCount(String programUid, String organisationUnitId,
+                      DateTime lastUpdated, DateTime lastUpdatedEndDate);
+
+    /**
+     * Streams one page of events matching {@link #getEventCount(String, String, DateTime, DateTime)}.
+     * Events are ordered by lastUpdated (oldest first). With lastUpdatedEndDate set, events
+     * changed while pages are being fetched drop out of the result instead of moving to its end.
+     *
+     * @param page number of page, starting from 1.
+     */
+    void getFullEventsPage(String programUid, String organisationUnitId, DateTime lastUpdated,
+                           DateTime lastUpdatedEndDate, int page, int pageSize, int chunkSize,
+                           IChunkConsumer<Event> consumer);
+
     List<Event> getBasicEvents(String programUid, String enrollmentStatus, String trackedEntityInstanceUid, DateTime lastUpdated);
 
     List<Event> getFullEvents(String programUid, String enrollmentStatus, String trackedEntityInstanceUid, DateTime lastUpdated);
@@ -48,4 +77,25 @@ public interface IEventApiClient {
     ImportSummary postEvent(Event event);
 
     ImportSummary putEvent(Event event);
+
+    /**
+     * Sends all given events in one request.
+     *
+     * @return summaries of import, one per event in the same order as events were given.
+     */
+    ImportSummaries postEvents(List<Event> events);
+
+    /**
+     * Updates all given events in one request.
+     *
+     * @return summaries of import, one per event in the same order as events were given.
+     */
+    ImportSummaries putEvents(List<Event> events);
+
+    /**
+     * Fetches only id, created and lastUpdated fields (fields=id,created,lastUpdated)
+     * of events with given uids in one request. All uids go
+     * into the query string, so callers have to split large sets.
+     */
+    List<Event> getEventTimestamps(Set<String> uids);
 }
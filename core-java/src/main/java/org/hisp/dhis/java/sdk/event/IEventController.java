@@ -34,11 +34,14 @@ import org.hisp.dhis.java.sdk.models.event.Event;
 import org.joda.time.DateTime;
 
 import java.util.List;
+import java.util.concurrent.ExecutorService;
 
 public interface IEventController {
     void sync() throws ApiException;
     void sync(String organisationUnitUid, String programUid, int count, DateTime serverDateTime) throws ApiException;
     void sync(Enrollment enrollment) throws ApiException;
+    void syncAll(String organisationUnitUid, String programUid, DateTime serverDateTime,
+                 ExecutorService executorService, int maxConcurrentPages) throws ApiException;
     void getEventsDataFromServer(Enrollment enrollment) throws ApiException;
     void sendEventChanges(List<Event> events) throws ApiException;
 }
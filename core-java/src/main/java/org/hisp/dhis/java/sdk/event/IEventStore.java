@@ -40,4 +40,6 @@ import java.util.List;
 public interface IEventStore extends IIdentifiableObjectStore<Event> {
     List<Event> query(Enrollment enrollment);
     List<Event> query(OrganisationUnit organisationUnit, Program program);
+
+    List<Event> query(Program program);
 }
@@ -35,8 +35,12 @@ import org.hisp.dhis.java.sdk.models.interpretation.InterpretationElement;
 import org.hisp.dhis.java.sdk.models.user.User;
 import org.hisp.dhis.java.sdk.models.user.UserAccount;
 import org.hisp.dhis.java.sdk.common.network.ApiException;
+import org.hisp.dhis.java.sdk.common.network.Fields;
 import org.hisp.dhis.java.sdk.common.network.Response;
+import org.hisp.dhis.java.sdk.common.persistence.DbAction;
 import org.hisp.dhis.java.sdk.common.persistence.DbOperation;
+import org.hisp.dhis.java.sdk.common.persistence.DiffEngine;
+import org.hisp.dhis.java.sdk.common.persistence.IDbOperation;
 import org.hisp.dhis.java.sdk.common.persistence.IIdentifiableObjectStore;
 import org.hisp.dhis.java.sdk.user.IUserAccountService;
 import org.hisp.dhis.java.sdk.user.IUserStore;
@@ -49,6 +53,23 @@ import java.util.List;
 import java.util.Map;
 
 public final class InterpretationController implements IDataController<Interpretation> {
+    private static final String[] BASE_FIELDS = {
+            "id", "created", "lastUpdated", "name", "displayName", "access"};
+    private static final Fields<InterpretationElement> ELEMENT_FIELDS =
+            Fields.builder(InterpretationElement.class).field(BASE_FIELDS).build();
+    private static final Fields<Interpretation> INTERPRETATION_FIELDS = Fields.builder(Interpretation.class)
+            .field(BASE_FIELDS).field("text", "type")
+            .nested("chart", ELEMENT_FIELDS)
+            .nested("map", ELEMENT_FIELDS)
+            .nested("reportTable", ELEMENT_FIELDS)
+            .nested("user", Fields.builder(User.class).field(BASE_FIELDS).build())
+            .nested("dataSet", ELEMENT_FIELDS)
+            .nested("period", ELEMENT_FIELDS)
+            .nested("organisationUnit", ELEMENT_FIELDS)
+            .nested("comments", Fields.builder(InterpretationComment.class)
+                    .field(BASE_FIELDS).field("user", "text").build())
+            .build();
+
     private final IInterpretationService mInterpretationService;
     private final IUserAccountService mUserAccountService;
 
@@ -371,18 +392,9 @@ public final class InterpretationController implements IDataController<Interpret
     private List<Interpretation> updateInterpretations(DateTime lastUpdated) {
         final Map<String, String> QUERY_MAP_BASIC = new HashMap<>();
         final Map<String, String> QUERY_MAP_FULL = new HashMap<>();
-        final String BASE = "id,created,lastUpdated,name,displayName,access";
-
-        QUERY_MAP_BASIC.put("fields", "id");
-        QUERY_MAP_FULL.put("fields", BASE + ",text,type," +
-                "chart" + "[" + BASE + "]," +
-                "map" + "[" + BASE + "]," +
-                "reportTable" + "[" + BASE + "]," +
-                "user" + "[" + BASE + "]," +
-                "dataSet" + "[" + BASE + "]," +
-                "period" + "[" + BASE + "]," +
-                "organisationUnit" + "[" + BASE + "]," +
-                "comments" + "[" + BASE + ",user,text" + "]");
+
+        QUERY_MAP_BASIC.put("fields", Fields.reference(Interpretation.class).toString());
+        QUERY_MAP_FULL.put("fields", INTERPRETATION_FIELDS.toString());
 
         if (lastUpdated != null) {
             QUERY_MAP_FULL.put("filter", "lastUpdated:gt:" + lastUpdated.toString());
@@ -518,42 +530,28 @@ public final class InterpretationController implements IDataController<Interpret
         return new ArrayList<>(users.values());
     }
 
-    private List<DbOperation> createOperations(List<Interpretation> oldModels,
-                                               List<Interpretation> newModels) {
-        List<DbOperation> ops = new ArrayList<>();
-
-        Map<String, Interpretation> newModelsMap = modelUtils.toMap(newModels);
-        Map<String, Interpretation> oldModelsMap = modelUtils.toMap(oldModels);
-
-        for (String oldModelKey : oldModelsMap.keySet()) {
-            Interpretation newModel = newModelsMap.get(oldModelKey);
-            Interpretation oldModel = oldModelsMap.get(oldModelKey);
-
-            if (newModel == null) {
-                ops.add(DbOperation.with(mInterpretationStore).delete(oldModel));
+    private List<IDbOperation> createOperations(List<Interpretation> oldModels,
+                                                List<Interpretation> newModels) {
+        List<IDbOperation> ops = DiffEngine.with(mInterpretationStore)
+                .key(DiffEngine.<Interpretation>byUid())
+                .version(DiffEngine.<Interpretation>byLastUpdated())
+                .keepIds()
+                .diff(oldModels, newModels);
+
+        // we also have to insert interpretation elements here
+        List<IDbOperation> elementOps = new ArrayList<>();
+        for (IDbOperation op : ops) {
+            if (!DbAction.INSERT.equals(op.getAction())) {
                 continue;
             }
 
-            if (newModel.getLastUpdated().isAfter(oldModel.getLastUpdated())) {
-                newModel.setId(oldModel.getId());
-                ops.add(DbOperation.with(mInterpretationStore).update(newModel));
-            }
-
-            newModelsMap.remove(oldModelKey);
-        }
-
-        for (String newModelKey : newModelsMap.keySet()) {
-            Interpretation item = newModelsMap.get(newModelKey);
-
-            // we also have to insert interpretation elements here
-            ops.add(DbOperation.with(mInterpretationStore).insert(item));
-
             List<InterpretationElement> elements = new ArrayList<>();
-            // = mInterpretationService.getInterpretationElements(item);
+            // = mInterpretationService.getInterpretationElements((Interpretation) op.getModel());
             for (InterpretationElement element : elements) {
-                ops.add(DbOperation.with(mInterpretationElementStore).insert(element));
+                elementOps.add(DbOperation.with(mInterpretationElementStore).insert(element));
             }
         }
+        ops.addAll(elementOps);
 
         return ops;
     }
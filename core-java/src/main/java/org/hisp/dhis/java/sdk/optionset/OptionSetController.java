@@ -29,7 +29,7 @@
 package org.hisp.dhis.java.sdk.optionset;
 
 
-import org.hisp.dhis.java.sdk.common.controllers.IDataController;
+import org.hisp.dhis.java.sdk.common.controllers.IMetadataController;
 import org.hisp.dhis.java.sdk.common.persistence.IIdentifiableObjectStore;
 import org.hisp.dhis.java.sdk.common.preferences.ResourceType;
 import org.hisp.dhis.java.sdk.models.optionset.Option;
@@ -45,7 +45,7 @@ import org.joda.time.DateTime;
 import java.util.ArrayList;
 import java.util.List;
 
-public final class OptionSetController implements IDataController<OptionSet> {
+public final class OptionSetController implements IMetadataController<OptionSet> {
     private final IOptionSetApiClient optionSetApiClient;
     private final ISystemInfoApiClient systemInfoApiClient;
     private final ILastUpdatedPreferences lastUpdatedPreferences;
@@ -70,13 +70,28 @@ public final class OptionSetController implements IDataController<OptionSet> {
         this.modelUtils = modelUtils;
     }
 
-    private void getOptionSetDataFromServer() throws ApiException {
-        ResourceType resource = ResourceType.OPTION_SETS;
-        DateTime serverTime = systemInfoApiClient.getSystemInfo().getServerDate();
-        DateTime lastUpdated = lastUpdatedPreferences.get(resource);
-        List<OptionSet> allOptionSets = optionSetApiClient.getBasicOptionSets(null);
-        List<OptionSet> updatedOptionSets = optionSetApiClient.getFullOptionSets(lastUpdated);
+    @Override
+    public ResourceType getResourceType() {
+        return ResourceType.OPTION_SETS;
+    }
+
+    @Override
+    public ICommit fetch() throws ApiException {
+        final DateTime serverTime = systemInfoApiClient.getSystemInfo().getServerDate();
+        DateTime lastUpdated = lastUpdatedPreferences.get(ResourceType.OPTION_SETS);
+        final List<OptionSet> allOptionSets = optionSetApiClient.getBasicOptionSets(null);
+        final List<OptionSet> updatedOptionSets = optionSetApiClient.getFullOptionSets(lastUpdated);
         linkOptionsWithOptionSets(updatedOptionSets);
+
+        return new ICommit() {
+            @Override
+            public void commit() {
+                saveOptionSets(allOptionSets, updatedOptionSets, serverTime);
+            }
+        };
+    }
+
+    private void saveOptionSets(List<OptionSet> allOptionSets, List<OptionSet> updatedOptionSets, DateTime serverTime) {
         List<OptionSet> existingPersistedAndUpdatedOptionSets =
                 modelUtils.merge(allOptionSets, updatedOptionSets, mOptionSetStore.queryAll());
 
@@ -126,6 +141,6 @@ public final class OptionSetController implements IDataController<OptionSet> {
 
     @Override
     public void sync() throws ApiException {
-        getOptionSetDataFromServer();
+        fetch().commit();
     }
 }
\ No newline at end of file
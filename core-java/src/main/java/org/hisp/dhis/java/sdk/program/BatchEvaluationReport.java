@@ -0,0 +1,79 @@
+/*
+ * Copyright (c) 2015, University of Oslo
+ *
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.hisp.dhis.java.sdk.program;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Counters and timing of one {@link ProgramRuleBatchEvaluator} run.
+ */
+public final class BatchEvaluationReport {
+    private final long eventCount;
+    private final long ruleEvaluationCount;
+    private final long violationCount;
+    private final long elapsedNanos;
+
+    public BatchEvaluationReport(long eventCount, long ruleEvaluationCount,
+                                 long violationCount, long elapsedNanos) {
+        this.eventCount = eventCount;
+        this.ruleEvaluationCount = ruleEvaluationCount;
+        this.violationCount = violationCount;
+        this.elapsedNanos = elapsedNanos;
+    }
+
+    public long getEventCount() {
+        return eventCount;
+    }
+
+    public long getRuleEvaluationCount() {
+        return ruleEvaluationCount;
+    }
+
+    public long getViolationCount() {
+        return violationCount;
+    }
+
+    public long getElapsedMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(elapsedNanos);
+    }
+
+    public double getEventsPerSecond() {
+        return elapsedNanos > 0 ? eventCount * (double) TimeUnit.SECONDS.toNanos(1) / elapsedNanos : 0.0;
+    }
+
+    public double getRuleEvaluationsPerSecond() {
+        return elapsedNanos > 0 ? ruleEvaluationCount * (double) TimeUnit.SECONDS.toNanos(1) / elapsedNanos : 0.0;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d events, %d rule evaluations, %d violations in %d ms (%.0f events/s)",
+                eventCount, ruleEvaluationCount, violationCount, getElapsedMillis(), getEventsPerSecond());
+    }
+}
@@ -0,0 +1,454 @@
+/*
+ * Copyright (c) 2015, University of Oslo
+ *
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.hisp.dhis.java.sdk.program;
+
+import org.hisp.dhis.java.sdk.common.expression.ExpressionOptimizer;
+import org.hisp.dhis.java.sdk.common.expression.ExpressionParser;
+import org.hisp.dhis.java.sdk.common.expression.IExpression;
+import org.hisp.dhis.java.sdk.common.expression.INumericExpression;
+import org.hisp.dhis.java.sdk.common.expression.ISymbolTable;
+import org.hisp.dhis.java.sdk.common.expression.NumericCompiler;
+import org.hisp.dhis.java.sdk.common.expression.Values;
+import org.hisp.dhis.java.sdk.models.constant.Constant;
+import org.hisp.dhis.java.sdk.models.enrollment.Enrollment;
+import org.hisp.dhis.java.sdk.models.event.Event;
+import org.hisp.dhis.java.sdk.models.program.ProgramIndicator;
+import org.hisp.dhis.java.sdk.models.trackedentity.TrackedEntityAttributeValue;
+import org.hisp.dhis.java.sdk.models.trackedentity.TrackedEntityDataValue;
+import org.hisp.dhis.java.sdk.utils.Preconditions;
+import org.joda.time.DateTime;
+import org.joda.time.Days;
+import org.joda.time.LocalDate;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A program indicator with its expression compiled once. It can be evaluated for a
+ * single event, for an enrollment with its events, or aggregated over many events.
+ * <p/>
+ * Purely numeric expressions aggregate over an {@link EventColumns} view through a
+ * {@link NumericCompiler} kernel, so no strings are parsed per event. Expressions
+ * using text, dates or attributes fall back to evaluating event by event, and so do
+ * events holding a value which is not a number in one of the columns read.
+ * <p/>
+ * For indicators of value type date, date values count as days since the root date
+ * of the enrollment, which is its incident date unless rootDate says enrollment_date.
+ */
+public final class CompiledProgramIndicator {
+    private final ProgramIndicator programIndicator;
+    private final IExpression expression;
+    private final Object[] slotTemplate;
+    private final Map<String, List<DataElementSlot>> dataElementSlots;
+    private final Map<String, Integer> attributeSlots;
+    private final Map<Integer, String> columnKeys;
+    private final int[] valueSlots;
+    private final int[] programVariableSlots;
+    private final ProgramVariable[] programVariables;
+    private final boolean dateValues;
+    private final boolean columnar;
+
+    private CompiledProgramIndicator(ProgramIndicator programIndicator, IExpression expression,
+                                     SymbolTable symbolTable) {
+        this.programIndicator = programIndicator;
+        this.expression = expression;
+        this.slotTemplate = symbolTable.slotTemplate.toArray();
+        this.dataElementSlots = symbolTable.dataElementSlots;
+        this.attributeSlots = symbolTable.attributeSlots;
+        this.columnKeys = symbolTable.columnKeys;
+        this.valueSlots = toArray(new ArrayList<>(columnKeys.keySet()));
+        this.programVariableSlots = toArray(symbolTable.programVariableSlots);
+        this.programVariables = symbolTable.programVariables.toArray(
+                new ProgramVariable[symbolTable.programVariables.size()]);
+        this.dateValues = ProgramIndicator.VALUE_TYPE_DATE.equals(programIndicator.getValueType());
+
+        // probe whether every slot has a numeric form
+        this.columnar = !dateValues && NumericCompiler.compile(expression, new NumericCompiler.ISlotResolver() {
+            @Override
+            public INumericExpression resolve(int slot) {
+                return isNumericSlot(slot) ? NumericCompiler.constant(0.0) : null;
+            }
+        }) != null;
+    }
+
+    /**
+     * @throws IllegalArgumentException if the expression is malformed or references
+     *                                  something which cannot be resolved.
+     */
+    public static CompiledProgramIndicator compile(ProgramIndicator programIndicator, List<Constant> constants) {
+        Preconditions.isNull(programIndicator, "programIndicator must not be null");
+        Preconditions.isNull(programIndicator.getExpression(), "programIndicator expression must not be null");
+
+        SymbolTable symbolTable = new SymbolTable(constants);
+        IExpression expression = ExpressionOptimizer.fold(
+                ExpressionParser.parse(programIndicator.getExpression(), symbolTable), symbolTable);
+        return new CompiledProgramIndicator(programIndicator, expression, symbolTable);
+    }
+
+    public ProgramIndicator getProgramIndicator() {
+        return programIndicator;
+    }
+
+    /**
+     * @return keys of the {@link EventColumns} the indicator reads when aggregating.
+     */
+    public List<String> getColumnKeys() {
+        return new ArrayList<>(columnKeys.values());
+    }
+
+    /**
+     * @return true if aggregates are computed over primitive columns.
+     */
+    public boolean isColumnar() {
+        return columnar;
+    }
+
+    /**
+     * Evaluates the indicator for one event. Attribute values and enrollment dates are
+     * read from the enrollment attached to the event, if any.
+     *
+     * @return null if the indicator has no value for the event.
+     */
+    public Double evaluate(Event event) {
+        Preconditions.isNull(event, "event must not be null");
+
+        return evaluate(event, event.getTrackedEntityDataValues());
+    }
+
+    private Double evaluate(Event event, List<TrackedEntityDataValue> dataValues) {
+        Object[] slots = slotTemplate.clone();
+        fillDataValues(slots, event, dataValues, event.getEnrollment());
+        return evaluate(slots, event, event.getEnrollment());
+    }
+
+    /**
+     * Evaluates the indicator for an enrollment. Events should be in chronological
+     * order; when several events hold a value for the same reference, the last one wins.
+     *
+     * @return null if the indicator has no value for the enrollment.
+     */
+    public Double evaluate(Enrollment enrollment, List<Event> events) {
+        Preconditions.isNull(enrollment, "enrollment must not be null");
+
+        Object[] slots = slotTemplate.clone();
+        if (events != null) {
+            for (Event event : events) {
+                fillDataValues(slots, event, event.getTrackedEntityDataValues(), enrollment);
+            }
+        }
+        return evaluate(slots, null, enrollment);
+    }
+
+    /**
+     * Aggregates the indicator over the events, using the data values attached to them.
+     */
+    public IndicatorAggregate aggregate(List<Event> events) {
+        Preconditions.isNull(events, "events must not be null");
+
+        if (columnar) {
+            return aggregate(EventColumns.build(events, columnKeys.values()));
+        }
+
+        long count = 0;
+        double sum = 0.0;
+        double min = Double.POSITIVE_INFINITY;
+        double max = Double.NEGATIVE_INFINITY;
+        for (Event event : events) {
+            Double value = evaluate(event);
+            if (value != null && !value.isNaN()) {
+                count++;
+                sum += value;
+                min = Math.min(min, value);
+                max = Math.max(max, value);
+            }
+        }
+        return new IndicatorAggregate(count, sum, min, max);
+    }
+
+    /**
+     * Aggregates the indicator over columns which contain at least {@link #getColumnKeys()}.
+     *
+     * @throws IllegalStateException if the indicator is not {@link #isColumnar()}.
+     */
+    public IndicatorAggregate aggregate(final EventColumns columns) {
+        Preconditions.isNull(columns, "columns must not be null");
+        if (!columnar) {
+            throw new IllegalStateException("Program indicator " + programIndicator.getUId() +
+                    " cannot be aggregated over columns");
+        }
+
+        INumericExpression kernel = NumericCompiler.compile(expression, new NumericCompiler.ISlotResolver() {
+            @Override
+            public INumericExpression resolve(int slot) {
+                return toNumeric(slot, columns);
+            }
+        });
+
+        // rows with values which are not numbers are not represented by the columns
+        BitSet nonNumericRows = new BitSet();
+        for (String columnKey : columnKeys.values()) {
+            nonNumericRows.or(columns.getNonNumericRows(columnKey));
+        }
+
+        long count = 0;
+        double sum = 0.0;
+        double min = Double.POSITIVE_INFINITY;
+        double max = Double.NEGATIVE_INFINITY;
+        for (int row = 0, rows = columns.getRowCount(); row < rows; row++) {
+            double value;
+            if (nonNumericRows.get(row)) {
+                Double rowValue = evaluate(columns.getEvent(row), columns.getNonNumericDataValues(row));
+                value = rowValue != null ? rowValue : Double.NaN;
+            } else {
+                value = kernel.evaluate(row);
+            }
+            if (!Double.isNaN(value)) {
+                count++;
+                sum += value;
+                min = Math.min(min, value);
+                max = Math.max(max, value);
+            }
+        }
+        return new IndicatorAggregate(count, sum, min, max);
+    }
+
+    private boolean isNumericSlot(int slot) {
+        if (slotTemplate[slot] != null) {
+            return Values.asNumber(slotTemplate[slot]) != null;
+        }
+        if (columnKeys.containsKey(slot)) {
+            return true;
+        }
+        for (int i = 0; i < programVariables.length; i++) {
+            if (programVariableSlots[i] == slot) {
+                return programVariables[i].isValueCount();
+            }
+        }
+        return false;
+    }
+
+    private INumericExpression toNumeric(int slot, EventColumns columns) {
+        if (slotTemplate[slot] != null) {
+            return NumericCompiler.constant(Values.asNumber(slotTemplate[slot]));
+        }
+
+        String columnKey = columnKeys.get(slot);
+        if (columnKey != null) {
+            double[] column = columns.getColumn(columnKey);
+            if (column == null) {
+                throw new IllegalArgumentException("Columns do not contain " + columnKey);
+            }
+            return NumericCompiler.column(column);
+        }
+
+        for (int i = 0; i < programVariables.length; i++) {
+            if (programVariableSlots[i] == slot) {
+                return valueCount(columns, programVariables[i] == ProgramVariable.ZERO_POS_VALUE_COUNT);
+            }
+        }
+        return null;
+    }
+
+    private INumericExpression valueCount(EventColumns columns, final boolean zeroOrPositive) {
+        final double[][] valueColumns = new double[valueSlots.length][];
+        for (int i = 0; i < valueSlots.length; i++) {
+            valueColumns[i] = columns.getColumn(columnKeys.get(valueSlots[i]));
+        }
+        return new INumericExpression() {
+            @Override
+            public double evaluate(int row) {
+                double count = 0.0;
+                for (double[] column : valueColumns) {
+                    double value = column[row];
+                    if (zeroOrPositive ? value >= 0.0 : !Double.isNaN(value)) {
+                        count++;
+                    }
+                }
+                return count;
+            }
+        };
+    }
+
+    private Double evaluate(Object[] slots, Event event, Enrollment enrollment) {
+        if (enrollment != null && enrollment.getTrackedEntityAttributeValues() != null && !attributeSlots.isEmpty()) {
+            for (TrackedEntityAttributeValue attributeValue : enrollment.getTrackedEntityAttributeValues()) {
+                Integer slot = attributeSlots.get(attributeValue.getTrackedEntityAttributeUId());
+                if (slot != null) {
+                    slots[slot] = attributeValue.getValue();
+                }
+            }
+        }
+
+        for (int i = 0; i < programVariables.length; i++) {
+            slots[programVariableSlots[i]] = programVariables[i].resolve(event, enrollment, slots, valueSlots);
+        }
+
+        Object value = expression.evaluate(slots);
+        return Values.isEmpty(value) ? null : Values.asNumber(value);
+    }
+
+    private void fillDataValues(Object[] slots, Event event, List<TrackedEntityDataValue> dataValues,
+                                Enrollment enrollment) {
+        if (dataValues == null) {
+            return;
+        }
+
+        for (TrackedEntityDataValue dataValue : dataValues) {
+            List<DataElementSlot> targets = dataElementSlots.get(dataValue.getDataElement());
+            if (targets == null || Values.isEmpty(dataValue.getValue())) {
+                continue;
+            }
+
+            Object value = dateValues ? daysSinceRootDate(dataValue.getValue(), enrollment) : dataValue.getValue();
+            for (DataElementSlot target : targets) {
+                if (target.programStage == null || target.programStage.equals(event.getProgramStageId())) {
+                    slots[target.slot] = value;
+                }
+            }
+        }
+    }
+
+    private Object daysSinceRootDate(String value, Enrollment enrollment) {
+        LocalDate date = Values.toDate(value);
+        if (date == null) {
+            return value;
+        }
+
+        DateTime rootDate = null;
+        if (enrollment != null) {
+            rootDate = ProgramIndicator.ENROLLMENT_DATE.equals(programIndicator.getRootDate()) ?
+                    enrollment.getDateOfEnrollment() : enrollment.getDateOfIncident();
+        }
+        return rootDate != null ? (double) Days.daysBetween(rootDate.toLocalDate(), date).getDays() : null;
+    }
+
+    private static int[] toArray(List<Integer> integers) {
+        int[] array = new int[integers.size()];
+        for (int i = 0; i < array.length; i++) {
+            array[i] = integers.get(i);
+        }
+        return array;
+    }
+
+    private static final class DataElementSlot {
+        private final String programStage;
+        private final int slot;
+
+        DataElementSlot(String programStage, int slot) {
+            this.programStage = programStage;
+            this.slot = slot;
+        }
+    }
+
+    /**
+     * Indicators reference data elements by #{programStage.dataElement} or #{dataElement}
+     * and attributes by A{attribute}, using uids rather than rule variable names.
+     */
+    private static final class SymbolTable implements ISymbolTable, ExpressionOptimizer.IConstantSlots {
+        private final Map<String, Constant> constantsByUid = new HashMap<>();
+        private final Map<String, Integer> slotsByReference = new HashMap<>();
+        private final List<Object> slotTemplate = new ArrayList<>();
+        private final Map<String, List<DataElementSlot>> dataElementSlots = new HashMap<>();
+        private final Map<String, Integer> attributeSlots = new HashMap<>();
+        private final Map<Integer, String> columnKeys = new HashMap<>();
+        private final List<Integer> programVariableSlots = new ArrayList<>();
+        private final List<ProgramVariable> programVariables = new ArrayList<>();
+
+        SymbolTable(List<Constant> constants) {
+            if (constants != null) {
+                for (Constant constant : constants) {
+                    constantsByUid.put(constant.getUId(), constant);
+                }
+            }
+        }
+
+        @Override
+        public int bind(String key, String name) {
+            Integer slot = slotsByReference.get(key + name);
+            if (slot != null) {
+                return slot;
+            }
+
+            if (ProgramIndicator.KEY_DATAELEMENT.equals(key)) {
+                int separator = name.indexOf('.');
+                String programStage = separator >= 0 ? name.substring(0, separator) : null;
+                String dataElement = separator >= 0 ? name.substring(separator + 1) : name;
+
+                slot = newSlot(key + name, null);
+                List<DataElementSlot> targets = dataElementSlots.get(dataElement);
+                if (targets == null) {
+                    targets = new ArrayList<>();
+                    dataElementSlots.put(dataElement, targets);
+                }
+                targets.add(new DataElementSlot(programStage, slot));
+                columnKeys.put(slot, name);
+                return slot;
+            }
+            if (ProgramIndicator.KEY_ATTRIBUTE.equals(key)) {
+                slot = newSlot(key + name, null);
+                attributeSlots.put(name, slot);
+                return slot;
+            }
+            if (ProgramIndicator.KEY_PROGRAM_VARIABLE.equals(key)) {
+                ProgramVariable programVariable = ProgramVariable.forName(name);
+                if (programVariable == null) {
+                    throw new IllegalArgumentException("Unknown program variable " + name);
+                }
+                slot = newSlot(key + name, null);
+                programVariableSlots.add(slot);
+                programVariables.add(programVariable);
+                return slot;
+            }
+            if (ProgramIndicator.KEY_CONSTANT.equals(key)) {
+                Constant constant = constantsByUid.get(name);
+                if (constant == null) {
+                    throw new IllegalArgumentException("Unknown constant " + name);
+                }
+                return newSlot(key + name, constant.getValue());
+            }
+            throw new IllegalArgumentException("Unknown reference " + key + "{" + name + "}");
+        }
+
+        @Override
+        public Object getConstant(int slot) {
+            return slotTemplate.get(slot);
+        }
+
+        private int newSlot(String reference, Object value) {
+            int slot = slotTemplate.size();
+            slotTemplate.add(value);
+            slotsByReference.put(reference, slot);
+            return slot;
+        }
+    }
+}
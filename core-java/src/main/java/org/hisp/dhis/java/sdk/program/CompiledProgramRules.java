@@ -0,0 +1,515 @@
+/*
+ * Copyright (c) 2015, University of Oslo
+ *
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.hisp.dhis.java.sdk.program;
+
+import org.hisp.dhis.java.sdk.common.expression.ExpressionOptimizer;
+import org.hisp.dhis.java.sdk.common.expression.ExpressionParser;
+import org.hisp.dhis.java.sdk.common.expression.IExpression;
+import org.hisp.dhis.java.sdk.common.expression.ISymbolTable;
+import org.hisp.dhis.java.sdk.common.expression.Values;
+import org.hisp.dhis.java.sdk.models.constant.Constant;
+import org.hisp.dhis.java.sdk.models.enrollment.Enrollment;
+import org.hisp.dhis.java.sdk.models.event.Event;
+import org.hisp.dhis.java.sdk.models.program.ProgramRule;
+import org.hisp.dhis.java.sdk.models.program.ProgramRuleAction;
+import org.hisp.dhis.java.sdk.models.program.ProgramRuleVariable;
+import org.hisp.dhis.java.sdk.models.trackedentity.TrackedEntityAttributeValue;
+import org.hisp.dhis.java.sdk.models.trackedentity.TrackedEntityDataValue;
+import org.hisp.dhis.java.sdk.utils.Preconditions;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Program rules of one program with their conditions compiled to expression trees.
+ * Every #{}, A{}, V{} and C{} reference is bound to a slot at compile time; an
+ * evaluation fills the slots from the event once and walks the trees, without
+ * touching the condition strings again. Instances are immutable and thread safe.
+ * <p/>
+ * Compilation also records which slots each condition reads, so a
+ * {@link ProgramRuleSession} can re-evaluate just the rules affected by a changed value.
+ */
+public final class CompiledProgramRules {
+    private final CompiledRule[] rules;
+    private final Object[] slotTemplate;
+    private final Map<String, Integer> dataElementSlots;
+    private final Map<String, Integer> attributeSlots;
+    private final int[] valueSlots;
+    private final int[] programVariableSlots;
+    private final ProgramVariable[] programVariables;
+    private final int[] valueCountVariables;
+    private final int[][] dependentRules;
+    private final Map<String, String> compileErrors;
+    private final List<String> droppedRules;
+
+    private CompiledProgramRules(CompiledRule[] rules, SymbolTable symbolTable, Map<String, String> compileErrors,
+                                 List<String> droppedRules) {
+        this.rules = rules;
+        this.slotTemplate = symbolTable.slotTemplate.toArray();
+        this.dataElementSlots = symbolTable.dataElementSlots;
+        this.attributeSlots = symbolTable.attributeSlots;
+        this.programVariableSlots = toArray(symbolTable.programVariableSlots);
+        this.programVariables = symbolTable.programVariables.toArray(
+                new ProgramVariable[symbolTable.programVariables.size()]);
+        this.compileErrors = Collections.unmodifiableMap(compileErrors);
+        this.droppedRules = Collections.unmodifiableList(droppedRules);
+
+        List<Integer> valueSlots = new ArrayList<>(dataElementSlots.values());
+        valueSlots.addAll(attributeSlots.values());
+        this.valueSlots = toArray(valueSlots);
+
+        List<Integer> valueCountVariables = new ArrayList<>();
+        for (int i = 0; i < programVariables.length; i++) {
+            if (programVariables[i].isValueCount()) {
+                valueCountVariables.add(i);
+            }
+        }
+        this.valueCountVariables = toArray(valueCountVariables);
+        this.dependentRules = buildDependencyIndex(rules, slotTemplate.length);
+    }
+
+    /**
+     * Inverts the slots read by every rule into the rules reading every slot.
+     */
+    private static int[][] buildDependencyIndex(CompiledRule[] rules, int slotCount) {
+        int[] counts = new int[slotCount];
+        for (CompiledRule rule : rules) {
+            for (int slot : rule.slots) {
+                counts[slot]++;
+            }
+        }
+
+        int[][] dependentRules = new int[slotCount][];
+        for (int slot = 0; slot < slotCount; slot++) {
+            dependentRules[slot] = new int[counts[slot]];
+            counts[slot] = 0;
+        }
+        for (int index = 0; index < rules.length; index++) {
+            for (int slot : rules[index].slots) {
+                dependentRules[slot][counts[slot]++] = index;
+            }
+        }
+        return dependentRules;
+    }
+
+    /**
+     * Compiles the conditions of the given rules. Rules with a malformed condition or a
+     * reference which cannot be resolved are left out and reported by {@link #getCompileErrors()};
+     * rules without a HIDEFIELD, HIDESECTION, SHOWWARNING or SHOWERROR action are left out silently.
+     * Constants are inlined into the conditions and constant subexpressions folded; rules whose
+     * condition folds to false can never fire and are left out as well, see {@link #getDroppedRules()}.
+     *
+     * @param programRuleActions actions of the rules. When none of them belongs to a rule,
+     *                           the actions embedded into the rule itself are used.
+     */
+    public static CompiledProgramRules compile(List<ProgramRule> programRules,
+                                               List<ProgramRuleAction> programRuleActions,
+                                               List<ProgramRuleVariable> programRuleVariables,
+                                               List<Constant> constants) {
+        Preconditions.isNull(programRules, "programRules must not be null");
+
+        Map<String, List<ProgramRuleAction>> actionsByRule = new HashMap<>();
+        if (programRuleActions != null) {
+            for (ProgramRuleAction programRuleAction : programRuleActions) {
+                List<ProgramRuleAction> actions = actionsByRule.get(programRuleAction.getProgramRule());
+                if (actions == null) {
+                    actions = new ArrayList<>();
+                    actionsByRule.put(programRuleAction.getProgramRule(), actions);
+                }
+                actions.add(programRuleAction);
+            }
+        }
+
+        SymbolTable symbolTable = new SymbolTable(programRuleVariables, constants);
+        Map<String, String> compileErrors = new LinkedHashMap<>();
+        List<String> droppedRules = new ArrayList<>();
+        List<CompiledRule> compiledRules = new ArrayList<>();
+        for (ProgramRule programRule : programRules) {
+            List<ProgramRuleAction> actions = actionsByRule.get(programRule.getUId());
+            if (actions == null) {
+                actions = programRule.getProgramRuleActions();
+            }
+
+            RuleEffect[] effects = toEffects(programRule, actions);
+            if (effects.length == 0) {
+                continue;
+            }
+
+            if (programRule.getCondition() == null) {
+                compileErrors.put(programRule.getUId(), "Program rule has no condition");
+                continue;
+            }
+
+            try {
+                symbolTable.clearReferences();
+                IExpression condition = ExpressionOptimizer.fold(
+                        ExpressionParser.parse(programRule.getCondition(), symbolTable), symbolTable);
+                if (ExpressionOptimizer.isFalse(condition)) {
+                    droppedRules.add(programRule.getUId());
+                    continue;
+                }
+                compiledRules.add(new CompiledRule(programRule, condition, effects,
+                        toArray(symbolTable.referencedSlots)));
+            } catch (IllegalArgumentException e) {
+                compileErrors.put(programRule.getUId(), e.getMessage());
+            }
+        }
+
+        return new CompiledProgramRules(compiledRules.toArray(new CompiledRule[compiledRules.size()]),
+                symbolTable, compileErrors, droppedRules);
+    }
+
+    /**
+     * Evaluates all rules which apply to the stage of the event. Attribute values and
+     * enrollment dates are read from the enrollment attached to the event, if any.
+     *
+     * @return effects of the rules whose condition holds, in rule order.
+     */
+    public List<RuleEffect> evaluate(Event event) {
+        Preconditions.isNull(event, "event must not be null");
+        return evaluate(event, event.getEnrollment());
+    }
+
+    public List<RuleEffect> evaluate(Event event, Enrollment enrollment) {
+        Preconditions.isNull(event, "event must not be null");
+
+        Object[] slots = slotTemplate.clone();
+        fillSlots(slots, event, event.getTrackedEntityDataValues(), enrollment);
+
+        List<RuleEffect> effects = new ArrayList<>();
+        String programStage = event.getProgramStageId();
+        for (CompiledRule rule : rules) {
+            if (rule.appliesTo(programStage) && Values.toBoolean(rule.condition.evaluate(slots))) {
+                Collections.addAll(effects, rule.effects);
+            }
+        }
+        return effects;
+    }
+
+    /**
+     * Evaluates all rules for an event which is about to be edited and keeps the results,
+     * see {@link ProgramRuleSession}.
+     */
+    public ProgramRuleSession newSession(Event event) {
+        Preconditions.isNull(event, "event must not be null");
+        return new ProgramRuleSession(this, event, event.getEnrollment());
+    }
+
+    public ProgramRuleSession newSession(Event event, Enrollment enrollment) {
+        Preconditions.isNull(event, "event must not be null");
+        return new ProgramRuleSession(this, event, enrollment);
+    }
+
+    /**
+     * @return number of rules which compiled and will be evaluated.
+     */
+    public int size() {
+        return rules.length;
+    }
+
+    /**
+     * @return reason of the compile failure keyed by program rule uid.
+     */
+    public Map<String, String> getCompileErrors() {
+        return compileErrors;
+    }
+
+    /**
+     * @return uids of the rules left out because their condition is false for any event.
+     */
+    public List<String> getDroppedRules() {
+        return droppedRules;
+    }
+
+    Object[] newSlots(Event event, Enrollment enrollment) {
+        Object[] slots = slotTemplate.clone();
+        fillSlots(slots, event, event.getTrackedEntityDataValues(), enrollment);
+        return slots;
+    }
+
+    Object[] newSlots() {
+        return slotTemplate.clone();
+    }
+
+    /**
+     * Refills slots allocated by an earlier {@link #newSlots()} call,
+     * so batch evaluation can reuse one array per thread.
+     */
+    void resetSlots(Object[] slots, Event event, List<TrackedEntityDataValue> dataValues, Enrollment enrollment) {
+        System.arraycopy(slotTemplate, 0, slots, 0, slotTemplate.length);
+        fillSlots(slots, event, dataValues, enrollment);
+    }
+
+    boolean appliesTo(int rule, String programStage) {
+        return rules[rule].appliesTo(programStage);
+    }
+
+    boolean evaluate(int rule, Object[] slots) {
+        return Values.toBoolean(rules[rule].condition.evaluate(slots));
+    }
+
+    RuleEffect[] getEffects(int rule) {
+        return rules[rule].effects;
+    }
+
+    int[] getDependentRules(int slot) {
+        return dependentRules[slot];
+    }
+
+    Integer getDataElementSlot(String dataElement) {
+        return dataElementSlots.get(dataElement);
+    }
+
+    Integer getAttributeSlot(String trackedEntityAttribute) {
+        return attributeSlots.get(trackedEntityAttribute);
+    }
+
+    /**
+     * @return indexes of the V{value_count} and V{zero_pos_value_count} variables, which
+     * depend on every value slot.
+     */
+    int[] getValueCountVariables() {
+        return valueCountVariables;
+    }
+
+    int getProgramVariableSlot(int variable) {
+        return programVariableSlots[variable];
+    }
+
+    Object resolve(int variable, Object[] slots, Event event, Enrollment enrollment) {
+        return programVariables[variable].resolve(event, enrollment, slots, valueSlots);
+    }
+
+    private void fillSlots(Object[] slots, Event event, List<TrackedEntityDataValue> dataValues,
+                           Enrollment enrollment) {
+        if (dataValues != null) {
+            for (TrackedEntityDataValue dataValue : dataValues) {
+                Integer slot = dataElementSlots.get(dataValue.getDataElement());
+                if (slot != null) {
+                    slots[slot] = dataValue.getValue();
+                }
+            }
+        }
+
+        if (enrollment != null && enrollment.getTrackedEntityAttributeValues() != null && !attributeSlots.isEmpty()) {
+            for (TrackedEntityAttributeValue attributeValue : enrollment.getTrackedEntityAttributeValues()) {
+                Integer slot = attributeSlots.get(attributeValue.getTrackedEntityAttributeUId());
+                if (slot != null) {
+                    slots[slot] = attributeValue.getValue();
+                }
+            }
+        }
+
+        for (int i = 0; i < programVariables.length; i++) {
+            slots[programVariableSlots[i]] = programVariables[i].resolve(event, enrollment, slots, valueSlots);
+        }
+    }
+
+    private static RuleEffect[] toEffects(ProgramRule programRule, List<ProgramRuleAction> actions) {
+        if (actions == null) {
+            return new RuleEffect[0];
+        }
+
+        List<RuleEffect> effects = new ArrayList<>();
+        for (ProgramRuleAction action : actions) {
+            String type = action.getProgramRuleActionType();
+            if (ProgramRuleAction.TYPE_HIDEFIELD.equals(type) ||
+                    ProgramRuleAction.TYPE_HIDESECTION.equals(type) ||
+                    ProgramRuleAction.TYPE_SHOWWARNING.equals(type) ||
+                    ProgramRuleAction.TYPE_SHOWERROR.equals(type)) {
+                effects.add(new RuleEffect(programRule.getUId(), action));
+            }
+        }
+        return effects.toArray(new RuleEffect[effects.size()]);
+    }
+
+    private static int[] toArray(List<Integer> integers) {
+        int[] array = new int[integers.size()];
+        for (int i = 0; i < array.length; i++) {
+            array[i] = integers.get(i);
+        }
+        return array;
+    }
+
+    private static final class CompiledRule {
+        private final ProgramRule programRule;
+        private final IExpression condition;
+        private final RuleEffect[] effects;
+        private final int[] slots;
+
+        CompiledRule(ProgramRule programRule, IExpression condition, RuleEffect[] effects, int[] slots) {
+            this.programRule = programRule;
+            this.condition = condition;
+            this.effects = effects;
+            this.slots = slots;
+        }
+
+        boolean appliesTo(String programStage) {
+            return programRule.getProgramStage() == null || programRule.getProgramStage().equals(programStage);
+        }
+    }
+
+    /**
+     * Hands out one slot per data element, attribute, program variable and constant,
+     * no matter how many rule variables or rules refer to it.
+     */
+    private static final class SymbolTable implements ISymbolTable, ExpressionOptimizer.IConstantSlots {
+        private final Map<String, ProgramRuleVariable> variablesByName = new HashMap<>();
+        private final Map<String, Constant> constantsByUid = new HashMap<>();
+        private final Map<String, Integer> slotsByReference = new HashMap<>();
+        private final List<Object> slotTemplate = new ArrayList<>();
+        private final Map<String, Integer> dataElementSlots = new HashMap<>();
+        private final Map<String, Integer> attributeSlots = new HashMap<>();
+        private final List<Integer> programVariableSlots = new ArrayList<>();
+        private final List<ProgramVariable> programVariables = new ArrayList<>();
+        private final List<Integer> referencedSlots = new ArrayList<>();
+
+        SymbolTable(List<ProgramRuleVariable> programRuleVariables, List<Constant> constants) {
+            if (programRuleVariables != null) {
+                for (ProgramRuleVariable programRuleVariable : programRuleVariables) {
+                    variablesByName.put(programRuleVariable.getName(), programRuleVariable);
+                }
+            }
+            if (constants != null) {
+                for (Constant constant : constants) {
+                    constantsByUid.put(constant.getUId(), constant);
+                }
+            }
+        }
+
+        void clearReferences() {
+            referencedSlots.clear();
+        }
+
+        @Override
+        public int bind(String key, String name) {
+            int slot = bindSlot(key, name);
+            if (!referencedSlots.contains(slot)) {
+                referencedSlots.add(slot);
+            }
+            return slot;
+        }
+
+        private int bindSlot(String key, String name) {
+            if (ProgramRule.KEY_DATAELEMENT.equals(key)) {
+                // #{programStage.dataElement} addresses the data element directly
+                int separator = name.indexOf('.');
+                if (separator >= 0) {
+                    return slot(dataElementSlots, name.substring(separator + 1));
+                }
+                ProgramRuleVariable variable = getVariable(name);
+                if (variable.getDataElement() != null) {
+                    return slot(dataElementSlots, variable.getDataElement());
+                }
+                if (variable.getTrackedEntityAttribute() != null) {
+                    return slot(attributeSlots, variable.getTrackedEntityAttribute());
+                }
+                throw new IllegalArgumentException("Program rule variable " + name + " has no source");
+            }
+            if (ProgramRule.KEY_ATTRIBUTE.equals(key)) {
+                ProgramRuleVariable variable = getVariable(name);
+                if (variable.getTrackedEntityAttribute() == null) {
+                    throw new IllegalArgumentException("Program rule variable " + name + " has no attribute");
+                }
+                return slot(attributeSlots, variable.getTrackedEntityAttribute());
+            }
+            if (ProgramRule.KEY_PROGRAM_VARIABLE.equals(key)) {
+                ProgramVariable programVariable = ProgramVariable.forName(name);
+                if (programVariable == null) {
+                    throw new IllegalArgumentException("Unknown program variable " + name);
+                }
+                Integer slot = slotsByReference.get(key + name);
+                if (slot == null) {
+                    slot = newSlot(key + name, null);
+                    programVariableSlots.add(slot);
+                    programVariables.add(programVariable);
+                }
+                if (programVariable.isValueCount()) {
+                    // value counts cover every rule variable, referenced or not
+                    bindAllVariables();
+                }
+                return slot;
+            }
+            if (ProgramRule.KEY_CONSTANT.equals(key)) {
+                Constant constant = constantsByUid.get(name);
+                if (constant == null) {
+                    throw new IllegalArgumentException("Unknown constant " + name);
+                }
+                Integer slot = slotsByReference.get(key + name);
+                return slot != null ? slot : newSlot(key + name, constant.getValue());
+            }
+            throw new IllegalArgumentException("Unknown reference " + key + "{" + name + "}");
+        }
+
+        private void bindAllVariables() {
+            for (ProgramRuleVariable variable : variablesByName.values()) {
+                if (variable.getDataElement() != null) {
+                    slot(dataElementSlots, variable.getDataElement());
+                } else if (variable.getTrackedEntityAttribute() != null) {
+                    slot(attributeSlots, variable.getTrackedEntityAttribute());
+                }
+            }
+        }
+
+        private ProgramRuleVariable getVariable(String name) {
+            ProgramRuleVariable variable = variablesByName.get(name);
+            if (variable == null) {
+                throw new IllegalArgumentException("Unknown program rule variable " + name);
+            }
+            return variable;
+        }
+
+        private int slot(Map<String, Integer> slots, String uid) {
+            Integer slot = slots.get(uid);
+            if (slot == null) {
+                slot = newSlot(null, null);
+                slots.put(uid, slot);
+            }
+            return slot;
+        }
+
+        @Override
+        public Object getConstant(int slot) {
+            return slotTemplate.get(slot);
+        }
+
+        private int newSlot(String reference, Object value) {
+            int slot = slotTemplate.size();
+            slotTemplate.add(value);
+            if (reference != null) {
+                slotsByReference.put(reference, slot);
+            }
+            return slot;
+        }
+    }
+}
@@ -0,0 +1,201 @@
+/*
+ * Copyright (c) 2015, University of Oslo
+ *
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.hisp.dhis.java.sdk.program;
+
+import org.hisp.dhis.java.sdk.common.expression.Values;
+import org.hisp.dhis.java.sdk.models.event.Event;
+import org.hisp.dhis.java.sdk.models.trackedentity.TrackedEntityDataValue;
+import org.hisp.dhis.java.sdk.trackedentity.ITrackedEntityDataValueStore;
+import org.hisp.dhis.java.sdk.utils.Preconditions;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Columnar view of the numeric data values of a set of events: one double[] per
+ * column, one row per event, NaN where an event has no numeric value. Data values are
+ * parsed once while the view is built, so aggregations run over primitive arrays.
+ * <p/>
+ * A column key is either a data element uid, holding its values from any program stage,
+ * or programStage.dataElement, holding only values of events of that stage.
+ * <p/>
+ * Values which are present but not numeric cannot be told apart from missing ones in a
+ * column, so such rows are marked per column and keep their data values, letting
+ * aggregations evaluate them event by event.
+ */
+public final class EventColumns {
+    private final List<Event> events;
+    private final Map<String, double[]> columns;
+    private final Map<String, BitSet> nonNumericRows;
+    private final Map<Integer, List<TrackedEntityDataValue>> nonNumericDataValues;
+
+    private EventColumns(List<Event> events, Map<String, double[]> columns, Map<String, BitSet> nonNumericRows,
+                         Map<Integer, List<TrackedEntityDataValue>> nonNumericDataValues) {
+        this.events = events;
+        this.columns = Collections.unmodifiableMap(columns);
+        this.nonNumericRows = nonNumericRows;
+        this.nonNumericDataValues = nonNumericDataValues;
+    }
+
+    /**
+     * Builds the columns from the data values attached to the events.
+     */
+    public static EventColumns build(List<Event> events, Collection<String> columnKeys) {
+        return build(events, null, columnKeys);
+    }
+
+    /**
+     * Builds the columns from data values read from the store with one bulk query.
+     */
+    public static EventColumns build(List<Event> events, ITrackedEntityDataValueStore trackedEntityDataValueStore,
+                                     Collection<String> columnKeys) {
+        Preconditions.isNull(events, "events must not be null");
+        Preconditions.isNull(columnKeys, "columnKeys must not be null");
+
+        Map<String, double[]> columns = new HashMap<>();
+        Map<String, BitSet> nonNumericRows = new HashMap<>();
+        Map<String, List<Target>> targets = new HashMap<>();
+        for (String columnKey : columnKeys) {
+            if (columns.containsKey(columnKey)) {
+                continue;
+            }
+
+            double[] column = new double[events.size()];
+            Arrays.fill(column, Double.NaN);
+            BitSet rows = new BitSet();
+            columns.put(columnKey, column);
+            nonNumericRows.put(columnKey, rows);
+
+            int separator = columnKey.indexOf('.');
+            String programStage = separator >= 0 ? columnKey.substring(0, separator) : null;
+            String dataElement = separator >= 0 ? columnKey.substring(separator + 1) : columnKey;
+            List<Target> dataElementTargets = targets.get(dataElement);
+            if (dataElementTargets == null) {
+                dataElementTargets = new ArrayList<>();
+                targets.put(dataElement, dataElementTargets);
+            }
+            dataElementTargets.add(new Target(programStage, column, rows));
+        }
+
+        Map<String, List<TrackedEntityDataValue>> storedDataValues = trackedEntityDataValueStore != null ?
+                queryDataValues(events, trackedEntityDataValueStore) : null;
+        Map<Integer, List<TrackedEntityDataValue>> nonNumericDataValues = new HashMap<>();
+        for (int row = 0; row < events.size(); row++) {
+            Event event = events.get(row);
+            List<TrackedEntityDataValue> dataValues = storedDataValues != null ?
+                    storedDataValues.get(event.getUId()) : event.getTrackedEntityDataValues();
+            if (dataValues == null) {
+                continue;
+            }
+
+            for (TrackedEntityDataValue dataValue : dataValues) {
+                List<Target> dataElementTargets = targets.get(dataValue.getDataElement());
+                if (dataElementTargets == null || Values.isEmpty(dataValue.getValue())) {
+                    continue;
+                }
+
+                Double value = Values.asNumber(dataValue.getValue());
+                for (Target target : dataElementTargets) {
+                    if (target.programStage == null || target.programStage.equals(event.getProgramStageId())) {
+                        if (value != null) {
+                            target.column[row] = value;
+                        } else {
+                            target.nonNumericRows.set(row);
+                            nonNumericDataValues.put(row, dataValues);
+                        }
+                    }
+                }
+            }
+        }
+        return new EventColumns(events, columns, nonNumericRows, nonNumericDataValues);
+    }
+
+    private static Map<String, List<TrackedEntityDataValue>> queryDataValues(
+            List<Event> events, ITrackedEntityDataValueStore trackedEntityDataValueStore) {
+        Map<String, List<TrackedEntityDataValue>> dataValues = new HashMap<>();
+        for (TrackedEntityDataValue dataValue : trackedEntityDataValueStore.query(events)) {
+            String eventUid = dataValue.getEvent() != null ? dataValue.getEvent().getUId() : null;
+            List<TrackedEntityDataValue> eventDataValues = dataValues.get(eventUid);
+            if (eventDataValues == null) {
+                eventDataValues = new ArrayList<>();
+                dataValues.put(eventUid, eventDataValues);
+            }
+            eventDataValues.add(dataValue);
+        }
+        return dataValues;
+    }
+
+    public int getRowCount() {
+        return events.size();
+    }
+
+    /**
+     * @return the column, which must not be modified, or null if it was not built.
+     */
+    public double[] getColumn(String columnKey) {
+        return columns.get(columnKey);
+    }
+
+    /**
+     * @return rows which hold a value in the column that is not a number, which must not
+     * be modified, or null if the column was not built.
+     */
+    BitSet getNonNumericRows(String columnKey) {
+        return nonNumericRows.get(columnKey);
+    }
+
+    Event getEvent(int row) {
+        return events.get(row);
+    }
+
+    /**
+     * @return all data values of the event in a row marked by {@link #getNonNumericRows(String)}.
+     */
+    List<TrackedEntityDataValue> getNonNumericDataValues(int row) {
+        return nonNumericDataValues.get(row);
+    }
+
+    private static final class Target {
+        private final String programStage;
+        private final double[] column;
+        private final BitSet nonNumericRows;
+
+        Target(String programStage, double[] column, BitSet nonNumericRows) {
+            this.programStage = programStage;
+            this.column = column;
+            this.nonNumericRows = nonNumericRows;
+        }
+    }
+}
@@ -54,15 +54,19 @@ package org.hisp.dhis.java.sdk.program;/*
  * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
  */
 
+import org.hisp.dhis.java.sdk.common.network.Fields;
 import org.hisp.dhis.java.sdk.models.program.Program;
 import org.joda.time.DateTime;
 
 import java.util.List;
 
 public interface IProgramApiClient {
-    List<Program> getBasicPrograms(DateTime lastUpdated);
 
-    List<Program> getFullPrograms(DateTime lastUpdated);
+    /**
+     * Fetches programs changed after lastUpdated (or all of them if lastUpdated is null),
+     * each restricted to the given projection.
+     */
+    List<Program> getPrograms(Fields<Program> fields, DateTime lastUpdated);
 
-    Program getFullProgram(String uid, DateTime lastUpdated);
+    Program getProgram(String uid, Fields<Program> fields, DateTime lastUpdated);
 }
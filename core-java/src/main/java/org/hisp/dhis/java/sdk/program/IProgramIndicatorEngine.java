@@ -0,0 +1,70 @@
+/*
+ * Copyright (c) 2015, University of Oslo
+ *
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.hisp.dhis.java.sdk.program;
+
+import org.hisp.dhis.java.sdk.common.controllers.IMetadataSyncListener;
+import org.hisp.dhis.java.sdk.common.services.IService;
+import org.hisp.dhis.java.sdk.models.event.Event;
+import org.hisp.dhis.java.sdk.models.program.Program;
+import org.hisp.dhis.java.sdk.models.program.ProgramIndicator;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Registered as {@link IMetadataSyncListener}, the engine recompiles the indicators it
+ * has cached whenever constants or programs have been synced.
+ */
+public interface IProgramIndicatorEngine extends IService, IMetadataSyncListener {
+
+    /**
+     * Compiles the indicator against the stored constants and caches the result.
+     *
+     * @throws IllegalArgumentException if the expression is not well formed.
+     */
+    CompiledProgramIndicator compile(ProgramIndicator programIndicator);
+
+    /**
+     * Returns the cached indicator, compiling it on first use.
+     */
+    CompiledProgramIndicator get(ProgramIndicator programIndicator);
+
+    /**
+     * Aggregates every well formed indicator of the program over the events. The
+     * columnar indicators share one {@link EventColumns} view of the events.
+     *
+     * @return aggregates keyed by program indicator uid.
+     */
+    Map<String, IndicatorAggregate> aggregate(Program program, List<Event> events);
+
+    /**
+     * Drops all compiled indicators, so changed metadata is picked up.
+     */
+    void invalidate();
+}
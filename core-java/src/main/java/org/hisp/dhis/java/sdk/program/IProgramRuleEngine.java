@@ -0,0 +1,69 @@
+/*
+ * Copyright (c) 2015, University of Oslo
+ *
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.hisp.dhis.java.sdk.program;
+
+import org.hisp.dhis.java.sdk.common.controllers.IMetadataSyncListener;
+import org.hisp.dhis.java.sdk.common.services.IService;
+import org.hisp.dhis.java.sdk.models.event.Event;
+import org.hisp.dhis.java.sdk.models.program.Program;
+
+import java.util.List;
+
+/**
+ * Registered as {@link IMetadataSyncListener}, the engine recompiles the rules it has
+ * cached whenever constants or program rule metadata have been synced, so constants
+ * are folded into the conditions ahead of the next evaluation.
+ */
+public interface IProgramRuleEngine extends IService, IMetadataSyncListener {
+
+    /**
+     * Compiles the program rules of the program from the stores and caches the result.
+     * Meant to be called once program rules, their actions, variables and constants
+     * have been synced.
+     */
+    CompiledProgramRules compile(Program program);
+
+    /**
+     * Returns the cached rules of the program, compiling them on first use.
+     */
+    CompiledProgramRules get(Program program);
+
+    List<RuleEffect> evaluate(Program program, Event event);
+
+    /**
+     * Starts an editing session for the event, which re-evaluates only affected rules
+     * as values change.
+     */
+    ProgramRuleSession newSession(Program program, Event event);
+
+    /**
+     * Drops all compiled rules, so the next {@link #get(Program)} picks up changed metadata.
+     */
+    void invalidate();
+}
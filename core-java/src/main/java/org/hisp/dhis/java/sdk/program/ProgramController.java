@@ -28,16 +28,20 @@
 
 package org.hisp.dhis.java.sdk.program;
 
-import org.hisp.dhis.java.sdk.common.controllers.IDataController;
+import org.hisp.dhis.java.sdk.common.controllers.IMetadataController;
+import org.hisp.dhis.java.sdk.common.network.Fields;
 import org.hisp.dhis.java.sdk.common.persistence.DbOperation;
 import org.hisp.dhis.java.sdk.common.preferences.ResourceType;
+import org.hisp.dhis.java.sdk.models.dataelement.DataElement;
+import org.hisp.dhis.java.sdk.models.optionset.OptionSet;
 import org.hisp.dhis.java.sdk.models.program.Program;
 import org.hisp.dhis.java.sdk.models.program.ProgramIndicator;
 import org.hisp.dhis.java.sdk.models.program.ProgramStage;
 import org.hisp.dhis.java.sdk.models.program.ProgramStageDataElement;
 import org.hisp.dhis.java.sdk.models.program.ProgramStageSection;
 import org.hisp.dhis.java.sdk.models.program.ProgramTrackedEntityAttribute;
-import org.hisp.dhis.java.sdk.systeminfo.ISystemInfoApiClient;
+import org.hisp.dhis.java.sdk.models.trackedentity.TrackedEntityAttribute;
+import org.hisp.dhis.java.sdk.systeminfo.IServerClock;
 import org.hisp.dhis.java.sdk.common.network.ApiException;
 import org.hisp.dhis.java.sdk.common.persistence.IDbOperation;
 import org.hisp.dhis.java.sdk.common.persistence.ITransactionManager;
@@ -50,22 +54,47 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
-public final class ProgramController implements IProgramController, IDataController<Program> {
+public final class ProgramController implements IProgramController, IMetadataController<Program> {
+    private static final Fields<ProgramStageDataElement> PROGRAM_STAGE_DATA_ELEMENT_FIELDS =
+            Fields.builder(ProgramStageDataElement.class).allFields()
+                    .nested("programStage", Fields.reference(ProgramStage.class))
+                    .nested("dataElement", Fields.builder(DataElement.class).allFields()
+                            .nested("optionSet", Fields.reference(OptionSet.class)).build())
+                    .build();
+
+    // the whole tree which is persisted by generateUpdateProgramDbOperations()
+    private static final Fields<Program> PROGRAM_FIELDS = Fields.builder(Program.class).allFields()
+            .nested("programStages", Fields.builder(ProgramStage.class).allFields()
+                    .nested("program", Fields.reference(Program.class))
+                    .nested("programIndicators", Fields.all(ProgramIndicator.class))
+                    .nested("programStageSections", Fields.builder(ProgramStageSection.class).allFields()
+                            .nested("programStageDataElements", PROGRAM_STAGE_DATA_ELEMENT_FIELDS)
+                            .nested("programIndicators", Fields.all(ProgramIndicator.class))
+                            .build())
+                    .nested("programStageDataElements", PROGRAM_STAGE_DATA_ELEMENT_FIELDS)
+                    .build())
+            .nested("programTrackedEntityAttributes", Fields.builder(ProgramTrackedEntityAttribute.class)
+                    .allFields()
+                    .nested("trackedEntityAttribute", Fields.all(TrackedEntityAttribute.class))
+                    .build())
+            .build();
+
     private final IProgramStore mProgramStore;
     private final IProgramApiClient programApiClient;
     private final ITransactionManager transactionManager;
     private final ILastUpdatedPreferences lastUpdatedPreferences;
-    private final ISystemInfoApiClient systemInfoApiClient;
+    private final IServerClock serverClock;
     private final IProgramIndicatorStore mProgramIndicatorsStore;
     private final IProgramStageDataElementStore mProgramStageDataElementStore;
     private final IProgramTrackedEntityAttributeStore mProgramTrackedEntityAttributeStore;
     private final IProgramStageStore mProgramStageStore;
     private final IProgramStageSectionStore mProgramStageSectionStore;
+    private final ProgramTreeDiff programTreeDiff;
 
     public ProgramController(IProgramApiClient programApiClient,
                              ITransactionManager transactionManager,
                              ILastUpdatedPreferences lastUpdatedPreferences,
-                             ISystemInfoApiClient systemInfoApiClient, IProgramStore mProgramStore,
+                             IServerClock serverClock, IProgramStore mProgramStore,
                              IProgramIndicatorStore mProgramIndicatorsStore,
                              IProgramStageDataElementStore mProgramStageDataElementStore,
                              IProgramTrackedEntityAttributeStore mProgramTrackedEntityAttributeStore,
@@ -74,25 +103,42 @@ public final class ProgramController implements IProgramController, IDataControl
         this.programApiClient = programApiClient;
         this.transactionManager = transactionManager;
         this.lastUpdatedPreferences = lastUpdatedPreferences;
-        this.systemInfoApiClient = systemInfoApiClient;
+        this.serverClock = serverClock;
         this.mProgramStore = mProgramStore;
         this.mProgramIndicatorsStore = mProgramIndicatorsStore;
         this.mProgramStageDataElementStore = mProgramStageDataElementStore;
         this.mProgramTrackedEntityAttributeStore = mProgramTrackedEntityAttributeStore;
         this.mProgramStageStore = mProgramStageStore;
         this.mProgramStageSectionStore = mProgramStageSectionStore;
+        this.programTreeDiff = new ProgramTreeDiff(mProgramTrackedEntityAttributeStore,
+                mProgramStageStore, mProgramStageSectionStore, mProgramStageDataElementStore,
+                mProgramIndicatorsStore);
     }
 
 
-    private void getProgramsDataFromServer() throws ApiException {
-        ResourceType resource = ResourceType.PROGRAMS;
-        DateTime serverTime = systemInfoApiClient.getSystemInfo().getServerDate();
-        DateTime lastUpdated = lastUpdatedPreferences.get(resource);
+    @Override
+    public ResourceType getResourceType() {
+        return ResourceType.PROGRAMS;
+    }
 
-        List<Program> allProgramsOnServer = programApiClient.getBasicPrograms(null);
+    @Override
+    public ICommit fetch() throws ApiException {
+        final DateTime serverTime = serverClock.getServerDate();
+        DateTime lastUpdated = lastUpdatedPreferences.get(ResourceType.PROGRAMS);
 
-        List<Program> updatedPrograms = programApiClient.getFullPrograms(lastUpdated);
+        final List<Program> allProgramsOnServer = programApiClient.getPrograms(Fields.basic(Program.class), null);
+
+        final List<Program> updatedPrograms = programApiClient.getPrograms(PROGRAM_FIELDS, lastUpdated);
+
+        return new ICommit() {
+            @Override
+            public void commit() {
+                savePrograms(allProgramsOnServer, updatedPrograms, serverTime);
+            }
+        };
+    }
 
+    private void savePrograms(List<Program> allProgramsOnServer, List<Program> updatedPrograms, DateTime serverTime) {
         List<IDbOperation> operations = new ArrayList<>();
         for (Program program : updatedPrograms) {
             operations.addAll(generateUpdateProgramDbOperations(program));
@@ -109,11 +155,11 @@ public final class ProgramController implements IProgramController, IDataControl
         }
 
         transactionManager.transact(operations);
-        lastUpdatedPreferences.save(resource, serverTime);
+        lastUpdatedPreferences.save(ResourceType.PROGRAMS, serverTime);
     }
 
     private void getProgramsDataFromServer(Collection<String> programUidsToLoad) throws ApiException {
-        List<Program> allProgramsOnServer = programApiClient.getBasicPrograms(null);
+        List<Program> allProgramsOnServer = programApiClient.getPrograms(Fields.basic(Program.class), null);
 
         Map<String, Program> programsOnServerMap = new HashMap<>();
         for (Program program : allProgramsOnServer) {
@@ -140,11 +186,11 @@ public final class ProgramController implements IProgramController, IDataControl
 
     private void getProgramDataFromServer(String uid) throws ApiException {
         ResourceType resource = ResourceType.PROGRAM;
-        DateTime serverTime = systemInfoApiClient.getSystemInfo().getServerDate();
+        DateTime serverTime = serverClock.getServerDate();
         DateTime lastUpdated = lastUpdatedPreferences.get(resource);
 
         // program with content.
-        Program updatedProgram = programApiClient.getFullProgram(uid, lastUpdated);
+        Program updatedProgram = programApiClient.getProgram(uid, PROGRAM_FIELDS, lastUpdated);
         if (updatedProgram.getUId() == null) {
             return;
         }
@@ -155,48 +201,14 @@ public final class ProgramController implements IProgramController, IDataControl
 
     private List<IDbOperation> generateUpdateProgramDbOperations(Program updatedProgram) {
         List<IDbOperation> operations = new ArrayList<>();
-        /* In case something has been deleted on the server for this program, we delete everything
-         * related exclusively to the program and store it again cause it's easier, it's not that
-         * big, and  it rarely happens. We delete the following:
-         * ProgramTrackedEntityAttribute
-         * ProgramStageDataElement (not the actual DataElement, we can simply update that)
-         * ProgramStages
-         * ProgramStageSections
-         * ProgramIndicators
-         */
         Program persistedProgram = mProgramStore.queryByUid(updatedProgram.getUId());
         if (persistedProgram != null) {
             updatedProgram.setId(persistedProgram.getId());
-            operations.addAll(genereDeleteProgramDbOperations(persistedProgram, false));
         }
         operations.add(DbOperation.with(mProgramStore).save(updatedProgram));
 
-        int sortOrder = 0;
-        for (ProgramTrackedEntityAttribute ptea : updatedProgram.getProgramTrackedEntityAttributes()) {
-            ptea.setProgram(updatedProgram.getUId());
-            ptea.setSortOrder(sortOrder);
-            operations.add(DbOperation.with(mProgramTrackedEntityAttributeStore).save(ptea));
-            sortOrder++;
-        }
-
-        for (ProgramStage programStage : updatedProgram.getProgramStages()) {
-            operations.add(DbOperation.with(mProgramStageStore).save(programStage));
-            if (programStage.getProgramStageSections() != null && !programStage.getProgramStageSections().isEmpty()) {
-                // due to the way the WebAPI lists programStageSections we have to manually
-                // set id of programStageSection in programStageDataElements to be able to
-                // access it later when loading from local db
-                for (ProgramStageSection programStageSection : programStage.getProgramStageSections()) {
-                    operations.add(DbOperation.with(mProgramStageSectionStore).save(programStageSection));
-                    for (ProgramStageDataElement programStageDataElement : programStageSection.getProgramStageDataElements()) {
-                        programStageDataElement.setProgramStageSection(programStageSection.getUId());
-                        operations.add(DbOperation.with(mProgramStageDataElementStore).save(programStageDataElement));
-                    }
-                    for (ProgramIndicator programIndicator : programStageSection.getProgramIndicators()) {
-                        operations.add(DbOperation.with(mProgramIndicatorsStore).save(programIndicator));
-                    }
-                }
-            }
-        }
+        // only nodes of program tree which were added, changed or removed on server are written
+        operations.addAll(programTreeDiff.diff(persistedProgram, updatedProgram));
         return operations;
     }
 
@@ -205,15 +217,19 @@ public final class ProgramController implements IProgramController, IDataControl
         for (ProgramTrackedEntityAttribute ptea : persistedProgram.getProgramTrackedEntityAttributes()) {
             operations.add(DbOperation.with(mProgramTrackedEntityAttributeStore).delete(ptea));
         }
+        List<IDbOperation> programStageOperations = new ArrayList<>();
+        List<IDbOperation> programStageSectionOperations = new ArrayList<>();
         for (ProgramStage programStage : persistedProgram.getProgramStages()) {
             for (ProgramStageDataElement psde : programStage.getProgramStageDataElements()) {
                 operations.add(DbOperation.with(mProgramStageDataElementStore).delete(psde));
             }
             for (ProgramStageSection programStageSection : programStage.getProgramStageSections()) {
-                operations.add(DbOperation.with(mProgramStageSectionStore).delete(programStageSection));
+                programStageSectionOperations.add(DbOperation.with(mProgramStageSectionStore).delete(programStageSection));
             }
-            operations.add(DbOperation.with(mProgramStageStore).delete(programStage));
+            programStageOperations.add(DbOperation.with(mProgramStageStore).delete(programStage));
         }
+        operations.addAll(programStageSectionOperations);
+        operations.addAll(programStageOperations);
         for (ProgramIndicator programIndicator : mProgramIndicatorsStore.query(persistedProgram)) {
             operations.add(DbOperation.with(mProgramIndicatorsStore).delete(programIndicator));
         }
@@ -223,23 +239,9 @@ public final class ProgramController implements IProgramController, IDataControl
         return operations;
     }
 
-    private Map<String, String> getFullQueryMap(DateTime lastUpdated) {
-        final Map<String, String> QUERY_MAP_FULL = new HashMap<>();
-        QUERY_MAP_FULL.put("fields",
-                "*,programStages[*,!dataEntryForm,program[id],programIndicators[*]," +
-                        "programStageSections[*,programStageDataElements[*,programStage[id]," +
-                        "dataElement[*,optionSet[id]]],programIndicators[*]],programStageDataElements" +
-                        "[*,programStage[id],dataElement[*,optionSet[id]]]],programTrackedEntityAttributes" +
-                        "[*,trackedEntityAttribute[*]],!organisationUnits)");
-        if (lastUpdated != null) {
-            QUERY_MAP_FULL.put("filter", "lastUpdated:gt:" + lastUpdated.toString());
-        }
-        return QUERY_MAP_FULL;
-    }
-
     @Override
     public void sync() throws ApiException {
-        getProgramsDataFromServer();
+        fetch().commit();
     }
 
     @Override
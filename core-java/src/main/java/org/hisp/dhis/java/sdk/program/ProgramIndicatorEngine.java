@@ -0,0 +1,154 @@
+/*
+ * Copyright (c) 2015, University of Oslo
+ *
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.hisp.dhis.java.sdk.program;
+
+import org.hisp.dhis.java.sdk.common.persistence.IIdentifiableObjectStore;
+import org.hisp.dhis.java.sdk.common.preferences.ResourceType;
+import org.hisp.dhis.java.sdk.models.constant.Constant;
+import org.hisp.dhis.java.sdk.models.event.Event;
+import org.hisp.dhis.java.sdk.models.program.Program;
+import org.hisp.dhis.java.sdk.models.program.ProgramIndicator;
+import org.hisp.dhis.java.sdk.trackedentity.ITrackedEntityDataValueStore;
+import org.hisp.dhis.java.sdk.utils.Preconditions;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+public final class ProgramIndicatorEngine implements IProgramIndicatorEngine {
+    private static final Set<ResourceType> INDICATOR_RESOURCES = EnumSet.of(ResourceType.CONSTANTS,
+            ResourceType.PROGRAMS);
+
+    private final IProgramIndicatorStore programIndicatorStore;
+    private final IIdentifiableObjectStore<Constant> constantStore;
+    private final ITrackedEntityDataValueStore trackedEntityDataValueStore;
+    private final ConcurrentMap<String, CompiledProgramIndicator> compiledIndicators;
+
+    /**
+     * @param trackedEntityDataValueStore source of data values for columnar aggregation, or
+     *                                    null to use the values attached to the events.
+     */
+    public ProgramIndicatorEngine(IProgramIndicatorStore programIndicatorStore,
+                                  IIdentifiableObjectStore<Constant> constantStore,
+                                  ITrackedEntityDataValueStore trackedEntityDataValueStore) {
+        this.programIndicatorStore = programIndicatorStore;
+        this.constantStore = constantStore;
+        this.trackedEntityDataValueStore = trackedEntityDataValueStore;
+        this.compiledIndicators = new ConcurrentHashMap<>();
+    }
+
+    @Override
+    public CompiledProgramIndicator compile(ProgramIndicator programIndicator) {
+        Preconditions.isNull(programIndicator, "programIndicator must not be null");
+
+        CompiledProgramIndicator indicator = CompiledProgramIndicator.compile(
+                programIndicator, constantStore.queryAll());
+        compiledIndicators.put(programIndicator.getUId(), indicator);
+        return indicator;
+    }
+
+    @Override
+    public CompiledProgramIndicator get(ProgramIndicator programIndicator) {
+        Preconditions.isNull(programIndicator, "programIndicator must not be null");
+
+        CompiledProgramIndicator indicator = compiledIndicators.get(programIndicator.getUId());
+        return indicator != null ? indicator : compile(programIndicator);
+    }
+
+    @Override
+    public Map<String, IndicatorAggregate> aggregate(Program program, List<Event> events) {
+        Preconditions.isNull(program, "program must not be null");
+        Preconditions.isNull(events, "events must not be null");
+
+        List<CompiledProgramIndicator> columnar = new ArrayList<>();
+        List<CompiledProgramIndicator> rowWise = new ArrayList<>();
+        Set<String> columnKeys = new LinkedHashSet<>();
+        for (ProgramIndicator programIndicator : programIndicatorStore.query(program)) {
+            CompiledProgramIndicator indicator;
+            try {
+                indicator = get(programIndicator);
+            } catch (IllegalArgumentException e) {
+                // expressions which are not well formed have no value
+                continue;
+            }
+
+            if (indicator.isColumnar()) {
+                columnar.add(indicator);
+                columnKeys.addAll(indicator.getColumnKeys());
+            } else {
+                rowWise.add(indicator);
+            }
+        }
+
+        Map<String, IndicatorAggregate> aggregates = new LinkedHashMap<>();
+        if (!columnar.isEmpty()) {
+            EventColumns columns = EventColumns.build(events, trackedEntityDataValueStore, columnKeys);
+            for (CompiledProgramIndicator indicator : columnar) {
+                aggregates.put(indicator.getProgramIndicator().getUId(), indicator.aggregate(columns));
+            }
+        }
+        for (CompiledProgramIndicator indicator : rowWise) {
+            aggregates.put(indicator.getProgramIndicator().getUId(), indicator.aggregate(events));
+        }
+        return aggregates;
+    }
+
+    @Override
+    public void invalidate() {
+        compiledIndicators.clear();
+    }
+
+    @Override
+    public void onSynced(Set<ResourceType> committed) {
+        if (Collections.disjoint(committed, INDICATOR_RESOURCES)) {
+            return;
+        }
+
+        for (String uid : new ArrayList<>(compiledIndicators.keySet())) {
+            ProgramIndicator programIndicator = programIndicatorStore.queryByUid(uid);
+            if (programIndicator == null) {
+                compiledIndicators.remove(uid);
+                continue;
+            }
+
+            try {
+                compile(programIndicator);
+            } catch (IllegalArgumentException e) {
+                compiledIndicators.remove(uid);
+            }
+        }
+    }
+}
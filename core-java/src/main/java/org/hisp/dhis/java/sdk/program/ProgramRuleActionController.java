@@ -28,7 +28,7 @@
 
 package org.hisp.dhis.java.sdk.program;
 
-import org.hisp.dhis.java.sdk.common.controllers.IDataController;
+import org.hisp.dhis.java.sdk.common.controllers.IMetadataController;
 import org.hisp.dhis.java.sdk.common.preferences.ResourceType;
 import org.hisp.dhis.java.sdk.models.program.ProgramRuleAction;
 import org.hisp.dhis.java.sdk.common.network.ApiException;
@@ -44,7 +44,7 @@ import java.util.LinkedList;
 import java.util.List;
 import java.util.Queue;
 
-public final class ProgramRuleActionController implements IDataController<ProgramRuleAction> {
+public final class ProgramRuleActionController implements IMetadataController<ProgramRuleAction> {
     private final IProgramRuleActionApiClient programRuleActionApiClient;
     private final ITransactionManager transactionManager;
     private final ISystemInfoApiClient systemInfoApiClient;
@@ -66,17 +66,34 @@ public final class ProgramRuleActionController implements IDataController<Progra
         this.modelUtils = modelUtils;
     }
 
-    private void getProgramRuleVariablesDataFromServer() throws ApiException {
-        ResourceType resource = ResourceType.PROGRAM_RULE_ACTIONS;
-        DateTime serverTime = systemInfoApiClient.getSystemInfo().getServerDate();
-        DateTime lastUpdated = lastUpdatedPreferences.get(resource);
+    @Override
+    public ResourceType getResourceType() {
+        return ResourceType.PROGRAM_RULE_ACTIONS;
+    }
+
+    @Override
+    public ICommit fetch() throws ApiException {
+        final DateTime serverTime = systemInfoApiClient.getSystemInfo().getServerDate();
+        DateTime lastUpdated = lastUpdatedPreferences.get(ResourceType.PROGRAM_RULE_ACTIONS);
 
         //fetching id and name for all items on server. This is needed in case something is
         // deleted on the server and we want to reflect that locally
-        List<ProgramRuleAction> allProgramRuleActions = programRuleActionApiClient.getBasicProgramRuleActions(null);
+        final List<ProgramRuleAction> allProgramRuleActions = programRuleActionApiClient.getBasicProgramRuleActions(null);
 
         //fetch all updated items
-        List<ProgramRuleAction> updatedProgramRuleActions = programRuleActionApiClient.getFullProgramRuleActions(lastUpdated);
+        final List<ProgramRuleAction> updatedProgramRuleActions = programRuleActionApiClient.getFullProgramRuleActions(lastUpdated);
+
+        return new ICommit() {
+            @Override
+            public void commit() {
+                saveProgramRuleActions(allProgramRuleActions, updatedProgramRuleActions, serverTime);
+            }
+        };
+    }
+
+    private void saveProgramRuleActions(List<ProgramRuleAction> allProgramRuleActions,
+                                        List<ProgramRuleAction> updatedProgramRuleActions,
+                                        DateTime serverTime) {
         //merging updated items with persisted items, and removing ones not present in server.
         List<ProgramRuleAction> existingPersistedAndUpdatedProgramRuleActions =
                 modelUtils.merge(allProgramRuleActions, updatedProgramRuleActions, mProgramRuleActionStore.
@@ -87,11 +104,11 @@ public final class ProgramRuleActionController implements IDataController<Progra
                 existingPersistedAndUpdatedProgramRuleActions, mProgramRuleActionStore.queryAll()));
 
         transactionManager.transact(operations);
-        lastUpdatedPreferences.save(resource, serverTime, null);
+        lastUpdatedPreferences.save(ResourceType.PROGRAM_RULE_ACTIONS, serverTime, null);
     }
 
     @Override
     public void sync() throws ApiException {
-        getProgramRuleVariablesDataFromServer();
+        fetch().commit();
     }
 }
\ No newline at end of file
@@ -0,0 +1,263 @@
+/*
+ * Copyright (c) 2015, University of Oslo
+ *
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.hisp.dhis.java.sdk.program;
+
+import org.hisp.dhis.java.sdk.common.network.IChunkConsumer;
+import org.hisp.dhis.java.sdk.event.IEventStore;
+import org.hisp.dhis.java.sdk.models.event.Event;
+import org.hisp.dhis.java.sdk.models.program.Program;
+import org.hisp.dhis.java.sdk.models.program.ProgramRuleAction;
+import org.hisp.dhis.java.sdk.models.trackedentity.TrackedEntityDataValue;
+import org.hisp.dhis.java.sdk.trackedentity.ITrackedEntityDataValueStore;
+import org.hisp.dhis.java.sdk.utils.Preconditions;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Runs the compiled rules of a program over stored events, for back-office validation.
+ * Events are split into batches which are evaluated on a fork-join pool; every worker
+ * thread reuses one slot array and one violation buffer for the whole run. Effects of
+ * the selected action types, SHOWERROR by default, are streamed to the consumer batch
+ * by batch instead of being collected.
+ * <p/>
+ * Data values are read from the data value store with one bulk query per batch.
+ * Enrollments are not loaded, so
+ * A{} references and enrollment dates evaluate as missing values.
+ */
+public final class ProgramRuleBatchEvaluator {
+    public static final int DEFAULT_BATCH_SIZE = 256;
+
+    private final IEventStore eventStore;
+    private final ITrackedEntityDataValueStore trackedEntityDataValueStore;
+    private final ForkJoinPool forkJoinPool;
+    private Set<String> actionTypes;
+    private int batchSize;
+
+    public ProgramRuleBatchEvaluator(IEventStore eventStore,
+                                     ITrackedEntityDataValueStore trackedEntityDataValueStore,
+                                     ForkJoinPool forkJoinPool) {
+        Preconditions.isNull(eventStore, "eventStore must not be null");
+        Preconditions.isNull(trackedEntityDataValueStore, "trackedEntityDataValueStore must not be null");
+        Preconditions.isNull(forkJoinPool, "forkJoinPool must not be null");
+
+        this.eventStore = eventStore;
+        this.trackedEntityDataValueStore = trackedEntityDataValueStore;
+        this.forkJoinPool = forkJoinPool;
+        this.actionTypes = new HashSet<>(Arrays.asList(ProgramRuleAction.TYPE_SHOWERROR));
+        this.batchSize = DEFAULT_BATCH_SIZE;
+    }
+
+    public void setActionTypes(String... actionTypes) {
+        Preconditions.isNull(actionTypes, "actionTypes must not be null");
+        this.actionTypes = new HashSet<>(Arrays.asList(actionTypes));
+    }
+
+    public void setBatchSize(int batchSize) {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("batchSize must be positive");
+        }
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Evaluates the rules over every stored event of the program.
+     *
+     * @param consumer receives the violations of one batch at a time. It is called
+     *                 concurrently from worker threads and must be thread safe.
+     */
+    public BatchEvaluationReport evaluate(CompiledProgramRules programRules, Program program,
+                                         IChunkConsumer<RuleViolation> consumer) {
+        Preconditions.isNull(program, "program must not be null");
+        return evaluate(programRules, eventStore.query(program), consumer);
+    }
+
+    public BatchEvaluationReport evaluate(CompiledProgramRules programRules, List<Event> events,
+                                         IChunkConsumer<RuleViolation> consumer) {
+        Preconditions.isNull(programRules, "programRules must not be null");
+        Preconditions.isNull(events, "events must not be null");
+        Preconditions.isNull(consumer, "consumer must not be null");
+
+        long start = System.nanoTime();
+        Run run = new Run(programRules, events, consumer);
+        if (!events.isEmpty() && run.candidateRules.length > 0) {
+            forkJoinPool.invoke(new BatchTask(run, 0, events.size()));
+        }
+        return new BatchEvaluationReport(events.size(), run.ruleEvaluationCount.get(),
+                run.violationCount.get(), System.nanoTime() - start);
+    }
+
+    /**
+     * State shared by all tasks of one evaluate() call.
+     */
+    private final class Run {
+        private final CompiledProgramRules programRules;
+        private final List<Event> events;
+        private final IChunkConsumer<RuleViolation> consumer;
+        private final int batchSize;
+        private final int[] candidateRules;
+        private final RuleEffect[][] candidateEffects;
+        private final AtomicLong ruleEvaluationCount;
+        private final AtomicLong violationCount;
+        private final ThreadLocal<Context> contexts;
+
+        Run(final CompiledProgramRules programRules, List<Event> events, IChunkConsumer<RuleViolation> consumer) {
+            this.programRules = programRules;
+            this.events = events;
+            this.consumer = consumer;
+            this.batchSize = ProgramRuleBatchEvaluator.this.batchSize;
+            this.ruleEvaluationCount = new AtomicLong();
+            this.violationCount = new AtomicLong();
+            this.contexts = new ThreadLocal<Context>() {
+                @Override
+                protected Context initialValue() {
+                    return new Context(programRules.newSlots());
+                }
+            };
+
+            // rules without an action of the selected types can never raise a violation
+            List<Integer> rules = new ArrayList<>();
+            List<RuleEffect[]> effects = new ArrayList<>();
+            for (int rule = 0; rule < programRules.size(); rule++) {
+                List<RuleEffect> selected = new ArrayList<>();
+                for (RuleEffect effect : programRules.getEffects(rule)) {
+                    if (actionTypes.contains(effect.getActionType())) {
+                        selected.add(effect);
+                    }
+                }
+                if (!selected.isEmpty()) {
+                    rules.add(rule);
+                    effects.add(selected.toArray(new RuleEffect[selected.size()]));
+                }
+            }
+
+            this.candidateRules = new int[rules.size()];
+            for (int i = 0; i < candidateRules.length; i++) {
+                candidateRules[i] = rules.get(i);
+            }
+            this.candidateEffects = effects.toArray(new RuleEffect[effects.size()][]);
+        }
+
+        void evaluate(int from, int to) {
+            Context context = contexts.get();
+            long evaluations = 0;
+
+            Map<String, List<TrackedEntityDataValue>> dataValues = queryDataValues(from, to);
+            for (int index = from; index < to; index++) {
+                Event event = events.get(index);
+                List<TrackedEntityDataValue> eventDataValues = dataValues.get(event.getUId());
+                programRules.resetSlots(context.slots, event, eventDataValues != null ? eventDataValues :
+                        Collections.<TrackedEntityDataValue>emptyList(), null);
+
+                String programStage = event.getProgramStageId();
+                for (int i = 0; i < candidateRules.length; i++) {
+                    int rule = candidateRules[i];
+                    if (!programRules.appliesTo(rule, programStage)) {
+                        continue;
+                    }
+
+                    evaluations++;
+                    if (programRules.evaluate(rule, context.slots)) {
+                        for (RuleEffect effect : candidateEffects[i]) {
+                            context.violations.add(new RuleViolation(event.getUId(), effect));
+                        }
+                    }
+                }
+            }
+
+            ruleEvaluationCount.addAndGet(evaluations);
+            if (!context.violations.isEmpty()) {
+                violationCount.addAndGet(context.violations.size());
+                try {
+                    consumer.consume(context.violations);
+                } finally {
+                    context.violations.clear();
+                }
+            }
+        }
+
+        private Map<String, List<TrackedEntityDataValue>> queryDataValues(int from, int to) {
+            Map<String, List<TrackedEntityDataValue>> dataValues = new HashMap<>();
+            for (TrackedEntityDataValue dataValue : trackedEntityDataValueStore.query(events.subList(from, to))) {
+                String eventUid = dataValue.getEvent() != null ? dataValue.getEvent().getUId() : null;
+                List<TrackedEntityDataValue> eventDataValues = dataValues.get(eventUid);
+                if (eventDataValues == null) {
+                    eventDataValues = new ArrayList<>();
+                    dataValues.put(eventUid, eventDataValues);
+                }
+                eventDataValues.add(dataValue);
+            }
+            return dataValues;
+        }
+    }
+
+    private static final class Context {
+        private final Object[] slots;
+        private final List<RuleViolation> violations;
+
+        Context(Object[] slots) {
+            this.slots = slots;
+            this.violations = new ArrayList<>();
+        }
+    }
+
+    private static final class BatchTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final Run run;
+        private final int from;
+        private final int to;
+
+        BatchTask(Run run, int from, int to) {
+            this.run = run;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= run.batchSize) {
+                run.evaluate(from, to);
+                return;
+            }
+
+            int middle = (from + to) >>> 1;
+            invokeAll(new BatchTask(run, from, middle), new BatchTask(run, middle, to));
+        }
+    }
+}
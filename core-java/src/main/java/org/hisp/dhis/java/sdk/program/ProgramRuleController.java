@@ -28,7 +28,7 @@
 
 package org.hisp.dhis.java.sdk.program;
 
-import org.hisp.dhis.java.sdk.common.controllers.IDataController;
+import org.hisp.dhis.java.sdk.common.controllers.IMetadataController;
 import org.hisp.dhis.java.sdk.common.network.ApiException;
 import org.hisp.dhis.java.sdk.common.persistence.IIdentifiableObjectStore;
 import org.hisp.dhis.java.sdk.common.preferences.ILastUpdatedPreferences;
@@ -45,7 +45,7 @@ import java.util.LinkedList;
 import java.util.List;
 import java.util.Queue;
 
-public final class ProgramRuleController implements IDataController<ProgramRule> {
+public final class ProgramRuleController implements IMetadataController<ProgramRule> {
     private final ITransactionManager transactionManager;
     private final IIdentifiableObjectStore<ProgramRule> mProgramRuleStore;
     private final ILastUpdatedPreferences lastUpdatedPreferences;
@@ -66,18 +66,33 @@ public final class ProgramRuleController implements IDataController<ProgramRule>
         this.modelUtils = modelUtils;
     }
 
-    private void getProgramRulesDataFromServer() throws ApiException {
-        ResourceType resource = ResourceType.PROGRAM_RULES;
-        DateTime serverTime = systemInfoApiClient.getSystemInfo().getServerDate();
-        DateTime lastUpdated = lastUpdatedPreferences.get(resource);
+    @Override
+    public ResourceType getResourceType() {
+        return ResourceType.PROGRAM_RULES;
+    }
+
+    @Override
+    public ICommit fetch() throws ApiException {
+        final DateTime serverTime = systemInfoApiClient.getSystemInfo().getServerDate();
+        DateTime lastUpdated = lastUpdatedPreferences.get(ResourceType.PROGRAM_RULES);
 
         // fetching id and name for all items on server. This is needed in case something is
         // deleted on the server and we want to reflect that locally
-        List<ProgramRule> allProgramRules = programRuleApiClient.getBasicProgramRules(null);
+        final List<ProgramRule> allProgramRules = programRuleApiClient.getBasicProgramRules(null);
 
         // fetch all updated items
-        List<ProgramRule> updatedProgramRules = programRuleApiClient.getFullProgramRules(lastUpdated);
+        final List<ProgramRule> updatedProgramRules = programRuleApiClient.getFullProgramRules(lastUpdated);
+
+        return new ICommit() {
+            @Override
+            public void commit() {
+                saveProgramRules(allProgramRules, updatedProgramRules, serverTime);
+            }
+        };
+    }
 
+    private void saveProgramRules(List<ProgramRule> allProgramRules, List<ProgramRule> updatedProgramRules,
+                                  DateTime serverTime) {
         // merging updated items with persisted items, and removing ones not present in server.
         List<ProgramRule> existingPersistedAndUpdatedProgramRules =
                 modelUtils.merge(allProgramRules, updatedProgramRules, mProgramRuleStore.queryAll());
@@ -86,11 +101,11 @@ public final class ProgramRuleController implements IDataController<ProgramRule>
         operations.addAll(transactionManager.createOperations(mProgramRuleStore, existingPersistedAndUpdatedProgramRules, mProgramRuleStore.queryAll()));
 
         transactionManager.transact(operations);
-        lastUpdatedPreferences.save(resource, serverTime);
+        lastUpdatedPreferences.save(ResourceType.PROGRAM_RULES, serverTime);
     }
 
     @Override
     public void sync() throws ApiException {
-        getProgramRulesDataFromServer();
+        fetch().commit();
     }
 }
\ No newline at end of file
@@ -0,0 +1,122 @@
+/*
+ * Copyright (c) 2015, University of Oslo
+ *
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.hisp.dhis.java.sdk.program;
+
+import org.hisp.dhis.java.sdk.common.persistence.IIdentifiableObjectStore;
+import org.hisp.dhis.java.sdk.common.preferences.ResourceType;
+import org.hisp.dhis.java.sdk.models.constant.Constant;
+import org.hisp.dhis.java.sdk.models.event.Event;
+import org.hisp.dhis.java.sdk.models.program.Program;
+import org.hisp.dhis.java.sdk.models.program.ProgramRule;
+import org.hisp.dhis.java.sdk.models.program.ProgramRuleAction;
+import org.hisp.dhis.java.sdk.utils.Preconditions;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+public final class ProgramRuleEngine implements IProgramRuleEngine {
+    private static final Set<ResourceType> RULE_RESOURCES = EnumSet.of(ResourceType.CONSTANTS,
+            ResourceType.PROGRAM_RULES, ResourceType.PROGRAM_RULE_ACTIONS, ResourceType.PROGRAM_RULE_VARIABLES);
+
+    private final IProgramRuleStore programRuleStore;
+    private final IProgramRuleActionStore programRuleActionStore;
+    private final IProgramRuleVariableStore programRuleVariableStore;
+    private final IIdentifiableObjectStore<Constant> constantStore;
+    private final ConcurrentMap<String, CompiledProgramRules> compiledRules;
+    private final ConcurrentMap<String, Program> programs;
+
+    public ProgramRuleEngine(IProgramRuleStore programRuleStore,
+                             IProgramRuleActionStore programRuleActionStore,
+                             IProgramRuleVariableStore programRuleVariableStore,
+                             IIdentifiableObjectStore<Constant> constantStore) {
+        this.programRuleStore = programRuleStore;
+        this.programRuleActionStore = programRuleActionStore;
+        this.programRuleVariableStore = programRuleVariableStore;
+        this.constantStore = constantStore;
+        this.compiledRules = new ConcurrentHashMap<>();
+        this.programs = new ConcurrentHashMap<>();
+    }
+
+    @Override
+    public CompiledProgramRules compile(Program program) {
+        Preconditions.isNull(program, "program must not be null");
+
+        List<ProgramRule> programRules = programRuleStore.query(program);
+        List<ProgramRuleAction> programRuleActions = new ArrayList<>();
+        for (ProgramRule programRule : programRules) {
+            programRuleActions.addAll(programRuleActionStore.query(programRule));
+        }
+
+        CompiledProgramRules rules = CompiledProgramRules.compile(programRules, programRuleActions,
+                programRuleVariableStore.query(program), constantStore.queryAll());
+        compiledRules.put(program.getUId(), rules);
+        programs.put(program.getUId(), program);
+        return rules;
+    }
+
+    @Override
+    public CompiledProgramRules get(Program program) {
+        Preconditions.isNull(program, "program must not be null");
+
+        CompiledProgramRules rules = compiledRules.get(program.getUId());
+        return rules != null ? rules : compile(program);
+    }
+
+    @Override
+    public List<RuleEffect> evaluate(Program program, Event event) {
+        return get(program).evaluate(event);
+    }
+
+    @Override
+    public ProgramRuleSession newSession(Program program, Event event) {
+        return get(program).newSession(event);
+    }
+
+    @Override
+    public void invalidate() {
+        compiledRules.clear();
+        programs.clear();
+    }
+
+    @Override
+    public void onSynced(Set<ResourceType> committed) {
+        if (Collections.disjoint(committed, RULE_RESOURCES)) {
+            return;
+        }
+
+        for (Program program : programs.values()) {
+            compile(program);
+        }
+    }
+}
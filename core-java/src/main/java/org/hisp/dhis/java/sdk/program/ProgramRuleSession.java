@@ -0,0 +1,164 @@
+/*
+ * Copyright (c) 2015, University of Oslo
+ *
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.hisp.dhis.java.sdk.program;
+
+import org.hisp.dhis.java.sdk.models.enrollment.Enrollment;
+import org.hisp.dhis.java.sdk.models.event.Event;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Memoized rule results for one event while it is being edited. Changing a value
+ * re-evaluates only the rules whose condition reads it, directly or through
+ * V{value_count} and V{zero_pos_value_count}; all other results are reused.
+ * <p/>
+ * Sessions are cheap to create and are not thread safe.
+ */
+public final class ProgramRuleSession {
+    private final CompiledProgramRules programRules;
+    private final Event event;
+    private final Enrollment enrollment;
+    private final Object[] slots;
+    private final boolean[] applicable;
+    private final boolean[] results;
+    private final boolean[] pending;
+    private final int[] pendingRules;
+    private List<RuleEffect> effects;
+    private int evaluationCount;
+
+    ProgramRuleSession(CompiledProgramRules programRules, Event event, Enrollment enrollment) {
+        this.programRules = programRules;
+        this.event = event;
+        this.enrollment = enrollment;
+        this.slots = programRules.newSlots(event, enrollment);
+        this.applicable = new boolean[programRules.size()];
+        this.results = new boolean[programRules.size()];
+        this.pending = new boolean[programRules.size()];
+        this.pendingRules = new int[programRules.size()];
+
+        String programStage = event.getProgramStageId();
+        for (int rule = 0; rule < results.length; rule++) {
+            applicable[rule] = programRules.appliesTo(rule, programStage);
+            if (applicable[rule]) {
+                results[rule] = programRules.evaluate(rule, slots);
+                evaluationCount++;
+            }
+        }
+        effects = collectEffects();
+    }
+
+    /**
+     * @return effects of the rules whose condition currently holds, in rule order.
+     */
+    public List<RuleEffect> getEffects() {
+        return effects;
+    }
+
+    /**
+     * @return true if the change altered the effects.
+     */
+    public boolean setDataValue(String dataElement, String value) {
+        Integer slot = programRules.getDataElementSlot(dataElement);
+        return slot != null && update(slot, value);
+    }
+
+    /**
+     * @return true if the change altered the effects.
+     */
+    public boolean setAttributeValue(String trackedEntityAttribute, String value) {
+        Integer slot = programRules.getAttributeSlot(trackedEntityAttribute);
+        return slot != null && update(slot, value);
+    }
+
+    /**
+     * @return number of rule conditions evaluated by the last change, or by the
+     * initial evaluation if nothing has changed yet.
+     */
+    public int getEvaluationCount() {
+        return evaluationCount;
+    }
+
+    private boolean update(int slot, String value) {
+        evaluationCount = 0;
+        if (value == null ? slots[slot] == null : value.equals(slots[slot])) {
+            return false;
+        }
+
+        slots[slot] = value;
+        int pendingCount = markDependents(slot, 0);
+        for (int variable : programRules.getValueCountVariables()) {
+            int countSlot = programRules.getProgramVariableSlot(variable);
+            Object count = programRules.resolve(variable, slots, event, enrollment);
+            if (!count.equals(slots[countSlot])) {
+                slots[countSlot] = count;
+                pendingCount = markDependents(countSlot, pendingCount);
+            }
+        }
+
+        boolean changed = false;
+        for (int i = 0; i < pendingCount; i++) {
+            int rule = pendingRules[i];
+            pending[rule] = false;
+
+            boolean result = programRules.evaluate(rule, slots);
+            evaluationCount++;
+            if (result != results[rule]) {
+                results[rule] = result;
+                changed = true;
+            }
+        }
+
+        if (changed) {
+            effects = collectEffects();
+        }
+        return changed;
+    }
+
+    private int markDependents(int slot, int pendingCount) {
+        for (int rule : programRules.getDependentRules(slot)) {
+            if (applicable[rule] && !pending[rule]) {
+                pending[rule] = true;
+                pendingRules[pendingCount++] = rule;
+            }
+        }
+        return pendingCount;
+    }
+
+    private List<RuleEffect> collectEffects() {
+        List<RuleEffect> effects = new ArrayList<>();
+        for (int rule = 0; rule < results.length; rule++) {
+            if (results[rule]) {
+                Collections.addAll(effects, programRules.getEffects(rule));
+            }
+        }
+        return Collections.unmodifiableList(effects);
+    }
+}
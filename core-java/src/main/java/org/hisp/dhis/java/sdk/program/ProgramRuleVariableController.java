@@ -28,7 +28,7 @@
 
 package org.hisp.dhis.java.sdk.program;
 
-import org.hisp.dhis.java.sdk.common.controllers.IDataController;
+import org.hisp.dhis.java.sdk.common.controllers.IMetadataController;
 import org.hisp.dhis.java.sdk.common.preferences.ResourceType;
 import org.hisp.dhis.java.sdk.models.program.ProgramRuleVariable;
 import org.hisp.dhis.java.sdk.common.network.ApiException;
@@ -44,7 +44,7 @@ import java.util.LinkedList;
 import java.util.List;
 import java.util.Queue;
 
-public final class ProgramRuleVariableController implements IDataController<ProgramRuleVariable> {
+public final class ProgramRuleVariableController implements IMetadataController<ProgramRuleVariable> {
     private final IProgramRuleVariableApiClient programRuleActionApiClient;
     private final ITransactionManager transactionManager;
     private final ILastUpdatedPreferences lastUpdatedPreferences;
@@ -66,17 +66,34 @@ public final class ProgramRuleVariableController implements IDataController<Prog
         this.modelUtils = modelUtils;
     }
 
-    private void getProgramRuleVariablesDataFromServer() throws ApiException {
-        ResourceType resource = ResourceType.PROGRAM_RULE_VARIABLES;
-        DateTime serverTime = systemInfoApiClient.getSystemInfo().getServerDate();
-        DateTime lastUpdated = lastUpdatedPreferences.get(resource);
+    @Override
+    public ResourceType getResourceType() {
+        return ResourceType.PROGRAM_RULE_VARIABLES;
+    }
+
+    @Override
+    public ICommit fetch() throws ApiException {
+        final DateTime serverTime = systemInfoApiClient.getSystemInfo().getServerDate();
+        DateTime lastUpdated = lastUpdatedPreferences.get(ResourceType.PROGRAM_RULE_VARIABLES);
 
         //fetching id and name for all items on server. This is needed in case something is
         // deleted on the server and we want to reflect that locally
-        List<ProgramRuleVariable> allProgramRuleVariables = programRuleActionApiClient.getBasicProgramRuleVariables(null);
+        final List<ProgramRuleVariable> allProgramRuleVariables = programRuleActionApiClient.getBasicProgramRuleVariables(null);
 
         //fetch all updated items
-        List<ProgramRuleVariable> updatedProgramRuleVariables = programRuleActionApiClient.getFullProgramRuleVariables(lastUpdated);
+        final List<ProgramRuleVariable> updatedProgramRuleVariables = programRuleActionApiClient.getFullProgramRuleVariables(lastUpdated);
+
+        return new ICommit() {
+            @Override
+            public void commit() {
+                saveProgramRuleVariables(allProgramRuleVariables, updatedProgramRuleVariables, serverTime);
+            }
+        };
+    }
+
+    private void saveProgramRuleVariables(List<ProgramRuleVariable> allProgramRuleVariables,
+                                          List<ProgramRuleVariable> updatedProgramRuleVariables,
+                                          DateTime serverTime) {
         //merging updated items with persisted items, and removing ones not present in server.
         List<ProgramRuleVariable> existingPersistedAndUpdatedProgramRuleVariables =
                 modelUtils.merge(allProgramRuleVariables, updatedProgramRuleVariables, mProgramRuleVariableStore.
@@ -87,12 +104,11 @@ public final class ProgramRuleVariableController implements IDataController<Prog
                 existingPersistedAndUpdatedProgramRuleVariables, mProgramRuleVariableStore.queryAll()));
 
         transactionManager.transact(operations);
-        lastUpdatedPreferences.save(resource, serverTime, null);
-
+        lastUpdatedPreferences.save(ResourceType.PROGRAM_RULE_VARIABLES, serverTime, null);
     }
 
     @Override
     public void sync() throws ApiException {
-        getProgramRuleVariablesDataFromServer();
+        fetch().commit();
     }
 }
\ No newline at end of file
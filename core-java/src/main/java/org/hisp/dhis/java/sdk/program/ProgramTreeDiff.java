@@ -0,0 +1,263 @@
+/*
+ * Copyright (c) 2015, University of Oslo
+ *
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.hisp.dhis.java.sdk.program;
+
+import org.hisp.dhis.java.sdk.common.persistence.DbAction;
+import org.hisp.dhis.java.sdk.common.persistence.DiffEngine;
+import org.hisp.dhis.java.sdk.common.persistence.IDbOperation;
+import org.hisp.dhis.java.sdk.models.program.Program;
+import org.hisp.dhis.java.sdk.models.program.ProgramIndicator;
+import org.hisp.dhis.java.sdk.models.program.ProgramStage;
+import org.hisp.dhis.java.sdk.models.program.ProgramStageDataElement;
+import org.hisp.dhis.java.sdk.models.program.ProgramStageSection;
+import org.hisp.dhis.java.sdk.models.program.ProgramTrackedEntityAttribute;
+import org.hisp.dhis.java.sdk.utils.Preconditions;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Compares persisted program tree, as read from the stores of its nodes, with the one received
+ * from server and returns operations only for nodes which were added, changed or removed. Stages, sections and
+ * indicators are matched by uid and compared by lastUpdated. Program tracked entity
+ * attributes are matched by attribute, program stage data elements by stage and data
+ * element, and both are compared field by field, since they carry no timestamps.
+ */
+final class ProgramTreeDiff {
+    private static final DiffEngine.IKeyExtractor<ProgramTrackedEntityAttribute> PTEA_KEY =
+            new DiffEngine.IKeyExtractor<ProgramTrackedEntityAttribute>() {
+                @Override
+                public String getKey(ProgramTrackedEntityAttribute ptea) {
+                    return ptea.getTrackedEntityAttribute();
+                }
+            };
+
+    private static final DiffEngine.IVersionComparator<ProgramTrackedEntityAttribute> PTEA_CHANGED =
+            new DiffEngine.IVersionComparator<ProgramTrackedEntityAttribute>() {
+                @Override
+                public boolean isNewer(ProgramTrackedEntityAttribute oldModel,
+                                       ProgramTrackedEntityAttribute newModel) {
+                    return oldModel.getSortOrder() != newModel.getSortOrder() ||
+                            oldModel.isAllowFutureDate() != newModel.isAllowFutureDate() ||
+                            oldModel.isDisplayInList() != newModel.isDisplayInList() ||
+                            oldModel.isMandatory() != newModel.isMandatory() ||
+                            !isEqual(oldModel.getProgram(), newModel.getProgram());
+                }
+            };
+
+    private static final DiffEngine.IKeyExtractor<ProgramStageDataElement> PSDE_KEY =
+            new DiffEngine.IKeyExtractor<ProgramStageDataElement>() {
+                @Override
+                public String getKey(ProgramStageDataElement psde) {
+                    if (psde.getProgramStage() == null || psde.getDataElement() == null) {
+                        return null;
+                    }
+                    return psde.getProgramStage() + psde.getDataElement();
+                }
+            };
+
+    private static final DiffEngine.IVersionComparator<ProgramStageDataElement> PSDE_CHANGED =
+            new DiffEngine.IVersionComparator<ProgramStageDataElement>() {
+                @Override
+                public boolean isNewer(ProgramStageDataElement oldModel, ProgramStageDataElement newModel) {
+                    return oldModel.getSortOrder() != newModel.getSortOrder() ||
+                            oldModel.isAllowFutureDate() != newModel.isAllowFutureDate() ||
+                            oldModel.isDisplayInReports() != newModel.isDisplayInReports() ||
+                            oldModel.isAllowProvidedElsewhere() != newModel.isAllowProvidedElsewhere() ||
+                            oldModel.isCompulsory() != newModel.isCompulsory() ||
+                            !isEqual(oldModel.getProgramStageSection(), newModel.getProgramStageSection());
+                }
+            };
+
+    private final IProgramTrackedEntityAttributeStore programTrackedEntityAttributeStore;
+    private final IProgramStageStore programStageStore;
+    private final IProgramStageSectionStore programStageSectionStore;
+    private final IProgramStageDataElementStore programStageDataElementStore;
+    private final IProgramIndicatorStore programIndicatorStore;
+
+    ProgramTreeDiff(IProgramTrackedEntityAttributeStore programTrackedEntityAttributeStore,
+                    IProgramStageStore programStageStore,
+                    IProgramStageSectionStore programStageSectionStore,
+                    IProgramStageDataElementStore programStageDataElementStore,
+                    IProgramIndicatorStore programIndicatorStore) {
+        this.programTrackedEntityAttributeStore = Preconditions.isNull(programTrackedEntityAttributeStore,
+                "programTrackedEntityAttributeStore must not be null");
+        this.programStageStore = Preconditions.isNull(programStageStore,
+                "programStageStore must not be null");
+        this.programStageSectionStore = Preconditions.isNull(programStageSectionStore,
+                "programStageSectionStore must not be null");
+        this.programStageDataElementStore = Preconditions.isNull(programStageDataElementStore,
+                "programStageDataElementStore must not be null");
+        this.programIndicatorStore = Preconditions.isNull(programIndicatorStore,
+                "programIndicatorStore must not be null");
+    }
+
+    /**
+     * Returns operations for children of the program. Removed nodes are deleted children first,
+     * changed and added nodes are saved parents first. Operations of each store are kept together,
+     * so transaction manager can apply them with bulk calls.
+     *
+     * @param persistedProgram program from local storage, or null if it was not stored before.
+     * @param updatedProgram   program from server.
+     */
+    List<IDbOperation> diff(Program persistedProgram, Program updatedProgram) {
+        List<ProgramTrackedEntityAttribute> persistedPteas = new ArrayList<>();
+        List<ProgramStage> persistedStages = new ArrayList<>();
+        List<ProgramStageSection> persistedSections = new ArrayList<>();
+        List<ProgramStageDataElement> persistedPsdes = new ArrayList<>();
+        List<ProgramIndicator> persistedIndicators = new ArrayList<>();
+
+        // children are not part of persisted program itself, so they are read from their
+        // stores. Data elements are read per section, just like they are received from server
+        if (persistedProgram != null) {
+            addAll(persistedPteas, programTrackedEntityAttributeStore.query(persistedProgram));
+            addAll(persistedStages, programStageStore.query(persistedProgram));
+            for (ProgramStage programStage : persistedStages) {
+                List<ProgramStageSection> programStageSections = programStageSectionStore.query(programStage);
+                addAll(persistedSections, programStageSections);
+                if (programStageSections != null) {
+                    for (ProgramStageSection programStageSection : programStageSections) {
+                        addAll(persistedPsdes, programStageDataElementStore.query(programStageSection));
+                    }
+                }
+            }
+            addAll(persistedIndicators, programIndicatorStore.query(persistedProgram));
+        }
+
+        List<ProgramTrackedEntityAttribute> updatedPteas = new ArrayList<>();
+        List<ProgramStage> updatedStages = new ArrayList<>();
+        List<ProgramStageSection> updatedSections = new ArrayList<>();
+        List<ProgramStageDataElement> updatedPsdes = new ArrayList<>();
+        List<ProgramIndicator> updatedIndicators = new ArrayList<>();
+
+        addAll(updatedPteas, updatedProgram.getProgramTrackedEntityAttributes());
+        int sortOrder = 0;
+        for (ProgramTrackedEntityAttribute ptea : updatedPteas) {
+            ptea.setProgram(updatedProgram.getUId());
+            ptea.setSortOrder(sortOrder);
+            sortOrder++;
+        }
+
+        addAll(updatedStages, updatedProgram.getProgramStages());
+        for (ProgramStage programStage : updatedStages) {
+            // stages, sections and indicators are looked up by their parent on the next diff
+            if (programStage.getProgram() == null) {
+                programStage.setProgram(updatedProgram.getUId());
+            }
+            if (programStage.getProgramStageSections() == null) {
+                continue;
+            }
+
+            // due to the way the WebAPI lists programStageSections we have to manually
+            // set id of programStageSection in programStageDataElements to be able to
+            // access it later when loading from local db
+            for (ProgramStageSection programStageSection : programStage.getProgramStageSections()) {
+                if (programStageSection.getProgramStage() == null) {
+                    programStageSection.setProgramStage(programStage.getUId());
+                }
+                updatedSections.add(programStageSection);
+                if (programStageSection.getProgramStageDataElements() != null) {
+                    for (ProgramStageDataElement psde : programStageSection.getProgramStageDataElements()) {
+                        psde.setProgramStageSection(programStageSection.getUId());
+                        if (psde.getProgramStage() == null) {
+                            psde.setProgramStage(programStage.getUId());
+                        }
+                        updatedPsdes.add(psde);
+                    }
+                }
+                if (programStageSection.getProgramIndicators() != null) {
+                    for (ProgramIndicator programIndicator : programStageSection.getProgramIndicators()) {
+                        if (programIndicator.getProgram() == null) {
+                            programIndicator.setProgram(updatedProgram.getUId());
+                        }
+                        updatedIndicators.add(programIndicator);
+                    }
+                }
+            }
+        }
+
+        List<IDbOperation> pteaOperations = DiffEngine.with(programTrackedEntityAttributeStore)
+                .key(PTEA_KEY).version(PTEA_CHANGED).keepIds()
+                .diff(persistedPteas, updatedPteas);
+        List<IDbOperation> stageOperations = DiffEngine.with(programStageStore)
+                .key(DiffEngine.<ProgramStage>byUid())
+                .version(DiffEngine.<ProgramStage>byLastUpdated()).keepIds()
+                .diff(persistedStages, updatedStages);
+        List<IDbOperation> sectionOperations = DiffEngine.with(programStageSectionStore)
+                .key(DiffEngine.<ProgramStageSection>byUid())
+                .version(DiffEngine.<ProgramStageSection>byLastUpdated()).keepIds()
+                .diff(persistedSections, updatedSections);
+        List<IDbOperation> psdeOperations = DiffEngine.with(programStageDataElementStore)
+                .key(PSDE_KEY).version(PSDE_CHANGED).keepIds()
+                .diff(persistedPsdes, updatedPsdes);
+        List<IDbOperation> indicatorOperations = DiffEngine.with(programIndicatorStore)
+                .key(DiffEngine.<ProgramIndicator>byUid())
+                .version(DiffEngine.<ProgramIndicator>byLastUpdated()).keepIds()
+                .diff(persistedIndicators, updatedIndicators);
+
+        List<IDbOperation> operations = new ArrayList<>();
+        addDeletions(operations, psdeOperations);
+        addDeletions(operations, indicatorOperations);
+        addDeletions(operations, sectionOperations);
+        addDeletions(operations, stageOperations);
+        addDeletions(operations, pteaOperations);
+        addChanges(operations, pteaOperations);
+        addChanges(operations, stageOperations);
+        addChanges(operations, sectionOperations);
+        addChanges(operations, psdeOperations);
+        addChanges(operations, indicatorOperations);
+        return operations;
+    }
+
+    private static void addDeletions(List<IDbOperation> operations, List<IDbOperation> nodeOperations) {
+        for (IDbOperation operation : nodeOperations) {
+            if (DbAction.DELETE.equals(operation.getAction())) {
+                operations.add(operation);
+            }
+        }
+    }
+
+    private static void addChanges(List<IDbOperation> operations, List<IDbOperation> nodeOperations) {
+        for (IDbOperation operation : nodeOperations) {
+            if (!DbAction.DELETE.equals(operation.getAction())) {
+                operations.add(operation);
+            }
+        }
+    }
+
+    private static <T> void addAll(List<T> list, List<T> items) {
+        if (items != null) {
+            list.addAll(items);
+        }
+    }
+
+    private static boolean isEqual(String a, String b) {
+        return a == null ? b == null : a.equals(b);
+    }
+}
@@ -0,0 +1,128 @@
+/*
+ * Copyright (c) 2015, University of Oslo
+ *
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.hisp.dhis.java.sdk.program;
+
+import org.hisp.dhis.java.sdk.common.expression.Values;
+import org.hisp.dhis.java.sdk.models.enrollment.Enrollment;
+import org.hisp.dhis.java.sdk.models.event.Event;
+import org.hisp.dhis.java.sdk.models.program.ProgramRule;
+import org.joda.time.DateTime;
+import org.joda.time.LocalDate;
+
+/**
+ * The V{name} variables of program rule and program indicator expressions.
+ */
+enum ProgramVariable {
+    CURRENT_DATE(ProgramRule.CURRENT_DATE),
+    EVENT_DATE("event_date"),
+    DUE_DATE("due_date"),
+    INCIDENT_DATE(ProgramRule.INCIDENT_DATE),
+    ENROLLMENT_DATE(ProgramRule.ENROLLMENT_DATE),
+    EVENT_ID("event_id"),
+    ENROLLMENT_ID("enrollment_id"),
+    PROGRAM_STAGE_ID("program_stage_id"),
+    ORG_UNIT("org_unit"),
+    VALUE_COUNT(ProgramRule.VAR_VALUE_COUNT),
+    ZERO_POS_VALUE_COUNT(ProgramRule.VAR_ZERO_POS_VALUE_COUNT);
+
+    private final String name;
+
+    ProgramVariable(String name) {
+        this.name = name;
+    }
+
+    static ProgramVariable forName(String name) {
+        for (ProgramVariable programVariable : values()) {
+            if (programVariable.name.equals(name)) {
+                return programVariable;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return true for the variables which count the values held by other slots.
+     */
+    boolean isValueCount() {
+        return this == VALUE_COUNT || this == ZERO_POS_VALUE_COUNT;
+    }
+
+    /**
+     * @param event      may be null when evaluating against a whole enrollment.
+     * @param enrollment may be null.
+     * @param valueSlots slots counted by V{value_count} and V{zero_pos_value_count}.
+     */
+    Object resolve(Event event, Enrollment enrollment, Object[] slots, int[] valueSlots) {
+        switch (this) {
+            case CURRENT_DATE:
+                return LocalDate.now().toString();
+            case EVENT_DATE:
+                return event != null ? toDate(event.getEventDate()) : null;
+            case DUE_DATE:
+                return event != null ? toDate(event.getDueDate()) : null;
+            case INCIDENT_DATE:
+                return enrollment != null ? toDate(enrollment.getDateOfIncident()) : null;
+            case ENROLLMENT_DATE:
+                return enrollment != null ? toDate(enrollment.getDateOfEnrollment()) : null;
+            case EVENT_ID:
+                return event != null ? event.getUId() : null;
+            case ENROLLMENT_ID:
+                return enrollment != null ? enrollment.getUId() : null;
+            case PROGRAM_STAGE_ID:
+                return event != null ? event.getProgramStageId() : null;
+            case ORG_UNIT:
+                return event != null ? event.getOrganisationUnitId() :
+                        enrollment != null ? enrollment.getOrgUnit() : null;
+            case VALUE_COUNT:
+            case ZERO_POS_VALUE_COUNT: {
+                double count = 0.0;
+                for (int slot : valueSlots) {
+                    if (Values.isEmpty(slots[slot])) {
+                        continue;
+                    }
+                    if (this == VALUE_COUNT) {
+                        count++;
+                    } else {
+                        Double value = Values.asNumber(slots[slot]);
+                        if (value != null && value >= 0.0) {
+                            count++;
+                        }
+                    }
+                }
+                return count;
+            }
+            default:
+                throw new IllegalArgumentException("Unsupported program variable: " + this);
+        }
+    }
+
+    private static String toDate(DateTime dateTime) {
+        return dateTime != null ? dateTime.toLocalDate().toString() : null;
+    }
+}
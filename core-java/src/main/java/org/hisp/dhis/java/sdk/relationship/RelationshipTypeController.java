@@ -28,7 +28,7 @@
 
 package org.hisp.dhis.java.sdk.relationship;
 
-import org.hisp.dhis.java.sdk.common.controllers.IDataController;
+import org.hisp.dhis.java.sdk.common.controllers.IMetadataController;
 import org.hisp.dhis.java.sdk.common.persistence.IIdentifiableObjectStore;
 import org.hisp.dhis.java.sdk.common.preferences.ILastUpdatedPreferences;
 import org.hisp.dhis.java.sdk.common.preferences.ResourceType;
@@ -44,7 +44,7 @@ import java.util.LinkedList;
 import java.util.List;
 import java.util.Queue;
 
-public final class RelationshipTypeController implements IDataController<RelationshipType> {
+public final class RelationshipTypeController implements IMetadataController<RelationshipType> {
     private final ITransactionManager transactionManager;
     private final ILastUpdatedPreferences lastUpdatedPreferences;
     private final IRelationshipTypeApiClient relationshipTypeApiClient;
@@ -65,19 +65,34 @@ public final class RelationshipTypeController implements IDataController<Relatio
         this.modelUtils = modelUtils;
     }
 
-    private void getRelationshipTypesDataFromServer() throws ApiException {
-        ResourceType resource = ResourceType.RELATIONSHIP_TYPES;
-        DateTime serverTime = systemInfoApiClient.getSystemInfo().getServerDate();
-        DateTime lastUpdated = lastUpdatedPreferences.get(resource);
+    @Override
+    public ResourceType getResourceType() {
+        return ResourceType.RELATIONSHIP_TYPES;
+    }
+
+    @Override
+    public ICommit fetch() throws ApiException {
+        final DateTime serverTime = systemInfoApiClient.getSystemInfo().getServerDate();
+        DateTime lastUpdated = lastUpdatedPreferences.get(ResourceType.RELATIONSHIP_TYPES);
 
         //fetching id and name for all items on server. This is needed in case something is
         // deleted on the server and we want to reflect that locally
-        List<RelationshipType> allRelationshipTypes = relationshipTypeApiClient.getBasicRelationshipTypes(null);
-
+        final List<RelationshipType> allRelationshipTypes = relationshipTypeApiClient.getBasicRelationshipTypes(null);
 
         //fetch all updated relationshiptypes
-        List<RelationshipType> updatedRelationshipTypes = relationshipTypeApiClient.getFullRelationshipTypes(lastUpdated);
+        final List<RelationshipType> updatedRelationshipTypes = relationshipTypeApiClient.getFullRelationshipTypes(lastUpdated);
+
+        return new ICommit() {
+            @Override
+            public void commit() {
+                saveRelationshipTypes(allRelationshipTypes, updatedRelationshipTypes, serverTime);
+            }
+        };
+    }
 
+    private void saveRelationshipTypes(List<RelationshipType> allRelationshipTypes,
+                                       List<RelationshipType> updatedRelationshipTypes,
+                                       DateTime serverTime) {
         //merging updated items with persisted items, and removing ones not present in server.
         List<RelationshipType> existingPersistedAndUpdatedRelationshipTypes =
                 modelUtils.merge(allRelationshipTypes, updatedRelationshipTypes, mRelationshipTypeStore.
@@ -88,11 +103,11 @@ public final class RelationshipTypeController implements IDataController<Relatio
                 existingPersistedAndUpdatedRelationshipTypes, mRelationshipTypeStore.queryAll()));
 
         transactionManager.transact(operations);
-        lastUpdatedPreferences.save(resource, serverTime, null);
+        lastUpdatedPreferences.save(ResourceType.RELATIONSHIP_TYPES, serverTime, null);
     }
 
     @Override
     public void sync() throws ApiException {
-        getRelationshipTypesDataFromServer();
+        fetch().commit();
     }
 }
\ No newline at end of file
@@ -0,0 +1,150 @@
+/*
+ * Copyright (c) 2015, University of Oslo
+ *
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.hisp.dhis.java.sdk.systeminfo;
+
+import org.hisp.dhis.java.sdk.models.common.SystemInfo;
+import org.hisp.dhis.java.sdk.utils.Preconditions;
+import org.joda.time.DateTime;
+
+/**
+ * Measures offset between server and local clock with one system info request, and serves
+ * serverDate as local time plus that offset. Offset is measured again when it gets older than
+ * maxAge, or when local wall clock drifts away from the monotonic clock by more than maxDrift
+ * (for example, when device time is changed by user or synchronized by network).
+ */
+public final class ServerClock implements IServerClock {
+    public static final long DEFAULT_MAX_AGE_MILLIS = 15 * 60 * 1000;
+    public static final long DEFAULT_MAX_DRIFT_MILLIS = 5 * 1000;
+
+    private static final long NANOS_PER_MILLI = 1000 * 1000;
+
+    private final ISystemInfoApiClient systemInfoApiClient;
+    private final ILocalClock localClock;
+    private final long maxAgeMillis;
+    private final long maxDriftMillis;
+
+    private SystemInfo systemInfo;
+    private long offsetMillis;
+    private long measuredAtMillis;
+    private long measuredAtNanos;
+
+    public ServerClock(ISystemInfoApiClient systemInfoApiClient) {
+        this(systemInfoApiClient, DEFAULT_MAX_AGE_MILLIS, DEFAULT_MAX_DRIFT_MILLIS);
+    }
+
+    public ServerClock(ISystemInfoApiClient systemInfoApiClient, long maxAgeMillis, long maxDriftMillis) {
+        this(systemInfoApiClient, maxAgeMillis, maxDriftMillis, ILocalClock.SYSTEM);
+    }
+
+    ServerClock(ISystemInfoApiClient systemInfoApiClient, long maxAgeMillis,
+                long maxDriftMillis, ILocalClock localClock) {
+        this.systemInfoApiClient = Preconditions.isNull(systemInfoApiClient, "systemInfoApiClient must not be null");
+        this.localClock = Preconditions.isNull(localClock, "localClock must not be null");
+        if (maxAgeMillis < 0 || maxDriftMillis < 0) {
+            throw new IllegalArgumentException("maxAge and maxDrift must not be negative");
+        }
+        this.maxAgeMillis = maxAgeMillis;
+        this.maxDriftMillis = maxDriftMillis;
+    }
+
+    @Override
+    public synchronized SystemInfo getSystemInfo() {
+        DateTime serverDate = getServerDate();
+
+        SystemInfo copy = new SystemInfo();
+        copy.setBuildTime(systemInfo.getBuildTime());
+        copy.setServerDate(serverDate);
+        copy.setCalendar(systemInfo.getCalendar());
+        copy.setDateFormat(systemInfo.getDateFormat());
+        copy.setIntervalSinceLastAnalyticsTableSuccess(systemInfo.getIntervalSinceLastAnalyticsTableSuccess());
+        copy.setLastAnalyticsTableSuccess(systemInfo.getLastAnalyticsTableSuccess());
+        copy.setRevision(systemInfo.getRevision());
+        copy.setVersion(systemInfo.getVersion());
+        return copy;
+    }
+
+    @Override
+    public synchronized DateTime getServerDate() {
+        if (isExpired()) {
+            measure();
+        }
+
+        if (systemInfo.getServerDate() == null) {
+            return null;
+        }
+        return new DateTime(localClock.currentTimeMillis() + offsetMillis, systemInfo.getServerDate().getZone());
+    }
+
+    @Override
+    public synchronized void invalidate() {
+        systemInfo = null;
+    }
+
+    private boolean isExpired() {
+        if (systemInfo == null) {
+            return true;
+        }
+
+        long elapsedMillis = (localClock.nanoTime() - measuredAtNanos) / NANOS_PER_MILLI;
+        long wallElapsedMillis = localClock.currentTimeMillis() - measuredAtMillis;
+        return elapsedMillis > maxAgeMillis || Math.abs(wallElapsedMillis - elapsedMillis) > maxDriftMillis;
+    }
+
+    private void measure() {
+        long requestedAtMillis = localClock.currentTimeMillis();
+        SystemInfo updatedSystemInfo = systemInfoApiClient.getSystemInfo();
+        long receivedAtMillis = localClock.currentTimeMillis();
+
+        // server date is assumed to be taken half way through the request
+        long localMillis = requestedAtMillis + (receivedAtMillis - requestedAtMillis) / 2;
+        offsetMillis = updatedSystemInfo.getServerDate() != null ?
+                updatedSystemInfo.getServerDate().getMillis() - localMillis : 0;
+        measuredAtMillis = receivedAtMillis;
+        measuredAtNanos = localClock.nanoTime();
+        systemInfo = updatedSystemInfo;
+    }
+
+    interface ILocalClock {
+        ILocalClock SYSTEM = new ILocalClock() {
+            @Override
+            public long currentTimeMillis() {
+                return System.currentTimeMillis();
+            }
+
+            @Override
+            public long nanoTime() {
+                return System.nanoTime();
+            }
+        };
+
+        long currentTimeMillis();
+
+        long nanoTime();
+    }
+}
@@ -38,5 +38,10 @@ import java.util.List;
 public interface ITrackedEntityDataValueStore extends IStore<TrackedEntityDataValue> {
     List<TrackedEntityDataValue> query(Event event);
 
+    /**
+     * Returns data values of all given events at once, in no particular order.
+     */
+    List<TrackedEntityDataValue> query(List<Event> events);
+
     TrackedEntityDataValue query(DataElement dataElement, Event event);
 }
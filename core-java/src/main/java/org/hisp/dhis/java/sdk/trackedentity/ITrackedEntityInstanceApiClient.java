@@ -28,12 +28,14 @@
 
 package org.hisp.dhis.java.sdk.trackedentity;
 
+import org.hisp.dhis.java.sdk.models.common.importsummary.ImportSummaries;
 import org.hisp.dhis.java.sdk.models.common.importsummary.ImportSummary;
 import org.hisp.dhis.java.sdk.models.trackedentity.TrackedEntityAttribute;
 import org.hisp.dhis.java.sdk.models.trackedentity.TrackedEntityInstance;
 import org.joda.time.DateTime;
 
 import java.util.List;
+import java.util.Set;
 
 public interface ITrackedEntityInstanceApiClient {
     List<TrackedEntityAttribute> getBasicTrackedEntityAttributes(DateTime lastUpdated);
@@ -49,4 +51,25 @@ public interface ITrackedEntityInstanceApiClient {
     ImportSummary postTrackedEntityInstance(TrackedEntityInstance instance);
 
     ImportSummary putTrackedEntityInstance(TrackedEntityInstance instance);
+
+    /**
+     * Sends all given tracked entity instances in one request.
+     *
+     * @return summaries of import, one per tracked entity instance in the same order as they were given.
+     */
+    ImportSummaries postTrackedEntityInstances(List<TrackedEntityInstance> instances);
+
+    /**
+     * Updates all given tracked entity instances in one request.
+     *
+     * @return summaries of import, one per tracked entity instance in the same order as they were given.
+     */
+    ImportSummaries putTrackedEntityInstances(List<TrackedEntityInstance> instances);
+
+    /**
+     * Fetches only id, created and lastUpdated fields (fields=id,created,lastUpdated)
+     * of tracked entity instances with given uids in one request. All uids go
+     * into the query string, so callers have to split large sets.
+     */
+    List<TrackedEntityInstance> getTrackedEntityInstanceTimestamps(Set<String> uids);
 }
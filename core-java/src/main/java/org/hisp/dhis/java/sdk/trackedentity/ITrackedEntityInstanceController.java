@@ -32,6 +32,7 @@ import org.hisp.dhis.java.sdk.models.trackedentity.TrackedEntityAttributeValue;
 import org.hisp.dhis.java.sdk.models.trackedentity.TrackedEntityInstance;
 
 import java.util.List;
+import java.util.concurrent.ExecutorService;
 
 public interface ITrackedEntityInstanceController {
     void sync();
@@ -40,6 +41,9 @@ public interface ITrackedEntityInstanceController {
 
     void sync(List<TrackedEntityInstance> trackedEntityInstances, boolean getEnrollments);
 
+    void sync(List<TrackedEntityInstance> trackedEntityInstances, boolean getEnrollments,
+              ExecutorService executorService, int maxConcurrentDownloads);
+
     List<TrackedEntityInstance> queryServerTrackedEntityInstances(String organisationUnitUid, String programUid,
                                                                   String queryString, TrackedEntityAttributeValue... params);
 }
@@ -28,7 +28,7 @@
 
 package org.hisp.dhis.java.sdk.trackedentity;
 
-import org.hisp.dhis.java.sdk.common.controllers.IDataController;
+import org.hisp.dhis.java.sdk.common.controllers.IMetadataController;
 import org.hisp.dhis.java.sdk.models.trackedentity.TrackedEntityAttribute;
 import org.hisp.dhis.java.sdk.common.network.ApiException;
 import org.hisp.dhis.java.sdk.common.persistence.IDbOperation;
@@ -44,7 +44,7 @@ import java.util.LinkedList;
 import java.util.List;
 import java.util.Queue;
 
-public final class TrackedEntityAttributeController implements IDataController<TrackedEntityAttribute> {
+public final class TrackedEntityAttributeController implements IMetadataController<TrackedEntityAttribute> {
     private final ITrackedEntityAttributeApiClient trackedEntityAttributeApiClient;
     private final ITransactionManager transactionManager;
     private final ILastUpdatedPreferences lastUpdatedPreferences;
@@ -66,21 +66,36 @@ public final class TrackedEntityAttributeController implements IDataController<T
     }
 
 
-    private void getTrackedEntityAttributesFromServer() throws ApiException {
-        ResourceType resource = ResourceType.TRACKED_ENTITY_ATTRIBUTES;
-        DateTime serverTime = systemInfoApiClient.getSystemInfo().getServerDate();
-        DateTime lastUpdated = lastUpdatedPreferences.get(resource);
+    @Override
+    public ResourceType getResourceType() {
+        return ResourceType.TRACKED_ENTITY_ATTRIBUTES;
+    }
+
+    @Override
+    public ICommit fetch() throws ApiException {
+        final DateTime serverTime = systemInfoApiClient.getSystemInfo().getServerDate();
+        DateTime lastUpdated = lastUpdatedPreferences.get(ResourceType.TRACKED_ENTITY_ATTRIBUTES);
 
         // fetching id and name for all items on server. This is needed in case something is
         // deleted on the server and we want to reflect that locally
-
-        List<TrackedEntityAttribute> allTrackedEntityAttributes
+        final List<TrackedEntityAttribute> allTrackedEntityAttributes
                 = trackedEntityAttributeApiClient.getBasicTrackedEntityAttributes(null);
 
         //fetch all updated items
-        List<TrackedEntityAttribute> updatedTrackedEntityAttributes
+        final List<TrackedEntityAttribute> updatedTrackedEntityAttributes
                 = trackedEntityAttributeApiClient.getFullTrackedEntityAttributes(lastUpdated);
 
+        return new ICommit() {
+            @Override
+            public void commit() {
+                saveTrackedEntityAttributes(allTrackedEntityAttributes, updatedTrackedEntityAttributes, serverTime);
+            }
+        };
+    }
+
+    private void saveTrackedEntityAttributes(List<TrackedEntityAttribute> allTrackedEntityAttributes,
+                                             List<TrackedEntityAttribute> updatedTrackedEntityAttributes,
+                                             DateTime serverTime) {
         //merging updated items with persisted items, and removing ones not present in server.
         List<TrackedEntityAttribute> existingPersistedAndUpdatedTrackedEntityAttributes =
                 modelUtils.merge(allTrackedEntityAttributes, updatedTrackedEntityAttributes,
@@ -91,11 +106,11 @@ public final class TrackedEntityAttributeController implements IDataController<T
                 existingPersistedAndUpdatedTrackedEntityAttributes, trackedEntityAttributeStore.queryAll()));
 
         transactionManager.transact(operations);
-        lastUpdatedPreferences.save(resource, serverTime);
+        lastUpdatedPreferences.save(ResourceType.TRACKED_ENTITY_ATTRIBUTES, serverTime);
     }
 
     @Override
     public void sync() throws ApiException {
-        getTrackedEntityAttributesFromServer();
+        fetch().commit();
     }
 }
\ No newline at end of file
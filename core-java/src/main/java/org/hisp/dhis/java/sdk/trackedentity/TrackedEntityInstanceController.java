@@ -28,8 +28,10 @@
 
 package org.hisp.dhis.java.sdk.trackedentity;
 
+import org.hisp.dhis.java.sdk.common.ActionMap;
 import org.hisp.dhis.java.sdk.common.IStateStore;
 import org.hisp.dhis.java.sdk.models.common.faileditem.FailedItemType;
+import org.hisp.dhis.java.sdk.models.common.importsummary.ImportSummaries;
 import org.hisp.dhis.java.sdk.models.common.importsummary.ImportSummary;
 import org.hisp.dhis.java.sdk.models.common.state.Action;
 import org.hisp.dhis.java.sdk.models.enrollment.Enrollment;
@@ -39,8 +41,10 @@ import org.hisp.dhis.java.sdk.models.trackedentity.TrackedEntityInstance;
 import org.hisp.dhis.java.sdk.relationship.IRelationshipStore;
 import org.hisp.dhis.java.sdk.common.IFailedItemStore;
 import org.hisp.dhis.java.sdk.common.controllers.PushableDataController;
+import org.hisp.dhis.java.sdk.common.controllers.TrackerPushPlanner;
 import org.hisp.dhis.java.sdk.common.network.ApiException;
 import org.hisp.dhis.java.sdk.common.persistence.DbOperation;
+import org.hisp.dhis.java.sdk.common.persistence.DiffEngine;
 import org.hisp.dhis.java.sdk.common.persistence.IDbOperation;
 import org.hisp.dhis.java.sdk.common.persistence.IStore;
 import org.hisp.dhis.java.sdk.common.persistence.ITransactionManager;
@@ -48,14 +52,41 @@ import org.hisp.dhis.java.sdk.common.preferences.ILastUpdatedPreferences;
 import org.hisp.dhis.java.sdk.common.preferences.ResourceType;
 import org.hisp.dhis.java.sdk.enrollment.IEnrollmentController;
 import org.hisp.dhis.java.sdk.enrollment.IEnrollmentStore;
-import org.hisp.dhis.java.sdk.systeminfo.ISystemInfoApiClient;
+import org.hisp.dhis.java.sdk.systeminfo.IServerClock;
+import org.hisp.dhis.java.sdk.utils.Preconditions;
 import org.joda.time.DateTime;
 
 import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 
 public class TrackedEntityInstanceController extends PushableDataController implements ITrackedEntityInstanceController {
+    /**
+     * Tracked entity instances are sent one by one by default.
+     */
+    public static final int DEFAULT_PUSH_BATCH_SIZE = 1;
+
+    private static final DiffEngine.IKeyExtractor<Relationship> RELATIONSHIP_KEY =
+            new DiffEngine.IKeyExtractor<Relationship>() {
+                @Override
+                public String getKey(Relationship relationship) {
+                    if (relationship.getTrackedEntityInstanceA() == null ||
+                            relationship.getTrackedEntityInstanceB() == null ||
+                            relationship.getRelationship() == null) {
+                        return null;
+                    }
+                    return relationship.getTrackedEntityInstanceA().getTrackedEntityInstanceUid()
+                            + relationship.getTrackedEntityInstanceB().getTrackedEntityInstanceUid()
+                            + relationship.getRelationship();
+                }
+            };
+
     private final ITrackedEntityInstanceApiClient trackedEntityInstanceApiClient;
-    private final ISystemInfoApiClient systemInfoApiClient;
+    private final IServerClock serverClock;
     private final ITrackedEntityInstanceStore trackedEntityInstanceStore;
     private final ILastUpdatedPreferences lastUpdatedPreferences;
     private final ITransactionManager transactionManager;
@@ -66,9 +97,15 @@ public class TrackedEntityInstanceController extends PushableDataController impl
     private final IRelationshipStore relationshipStore;
     private final ITrackedEntityAttributeValueStore trackedEntityAttributeValueStore;
     private final IEnrollmentStore enrollmentStore;
+    private final TrackerPushPlanner pushPlanner;
+    private final List<TrackedEntityInstance> pushedTrackedEntityInstances =
+            Collections.synchronizedList(new ArrayList<TrackedEntityInstance>());
+    // number of public push calls in progress, guarded by pushedTrackedEntityInstances
+    private int pushDepth;
+    private int pushBatchSize = DEFAULT_PUSH_BATCH_SIZE;
 
     public TrackedEntityInstanceController(ITrackedEntityInstanceApiClient trackedEntityInstanceApiClient,
-                                           ISystemInfoApiClient systemInfoApiClient,
+                                           IServerClock serverClock,
                                            ITrackedEntityInstanceStore trackedEntityInstanceStore,
                                            ILastUpdatedPreferences lastUpdatedPreferences,
                                            ITransactionManager transactionManager,
@@ -78,7 +115,7 @@ public class TrackedEntityInstanceController extends PushableDataController impl
                                            ITrackedEntityAttributeValueStore trackedEntityAttributeValueStore,
                                            IEnrollmentStore enrollmentStore) {
         this.trackedEntityInstanceApiClient = trackedEntityInstanceApiClient;
-        this.systemInfoApiClient = systemInfoApiClient;
+        this.serverClock = serverClock;
         this.trackedEntityInstanceStore = trackedEntityInstanceStore;
         this.lastUpdatedPreferences = lastUpdatedPreferences;
         this.transactionManager = transactionManager;
@@ -88,6 +125,21 @@ public class TrackedEntityInstanceController extends PushableDataController impl
         this.relationshipStore = relationshipStore;
         this.trackedEntityAttributeValueStore = trackedEntityAttributeValueStore;
         this.enrollmentStore = enrollmentStore;
+        this.pushPlanner = new TrackerPushPlanner(stateStore);
+    }
+
+    /**
+     * Sets number of tracked entity instances which are sent to server in one request. If batch size
+     * is greater than one, changed tracked entity instances are sent with
+     * {@link ITrackedEntityInstanceApiClient#postTrackedEntityInstances(List)} and
+     * {@link ITrackedEntityInstanceApiClient#putTrackedEntityInstances(List)} in chunks of given size,
+     * and enrollments of all tracked entity instances are sent afterwards as one wave.
+     */
+    public void setPushBatchSize(int pushBatchSize) {
+        if (pushBatchSize < 1) {
+            throw new IllegalArgumentException("Push batch size must be positive");
+        }
+        this.pushBatchSize = pushBatchSize;
     }
 
     /**
@@ -151,13 +203,90 @@ public class TrackedEntityInstanceController extends PushableDataController impl
         }
     }
 
-    private TrackedEntityInstance getTrackedEntityInstanceDataFromServer(String uid, boolean getEnrollments) {
-        DateTime lastUpdated = lastUpdatedPreferences.get(ResourceType.TRACKED_ENTITY_INSTANCE, uid);
-        DateTime serverDateTime = systemInfoApiClient.getSystemInfo().getServerDate();
+    /**
+     * Downloads given trackedEntityInstances on the given executor, keeping at most maxConcurrentDownloads
+     * requests in flight. Every downloaded instance is handed back to the calling thread, which is the only
+     * one writing to the local database. The executor is owned by the caller and is not shut down here.
+     */
+    private void getTrackedEntityInstancesDataFromServerConcurrently(List<TrackedEntityInstance> trackedEntityInstances,
+                                                                     boolean getEnrollments,
+                                                                     ExecutorService executorService,
+                                                                     int maxConcurrentDownloads) {
+        if (trackedEntityInstances == null) {
+            return;
+        }
+        DateTime serverDateTime = serverClock.getServerDate();
 
-        final Map<String, String> QUERY_MAP_FULL = new HashMap<>();
+        List<String> uids = new ArrayList<>();
+        for (TrackedEntityInstance trackedEntityInstance : trackedEntityInstances) {
+            if (trackedEntityInstance != null) {
+                uids.add(trackedEntityInstance.getTrackedEntityInstanceUid());
+            }
+        }
+
+        CompletionService<TrackedEntityInstance> completionService = new ExecutorCompletionService<>(executorService);
+        List<Future<TrackedEntityInstance>> futures = new ArrayList<>();
+        int nextDownload = 0;
+        try {
+            while (nextDownload < uids.size() && nextDownload < maxConcurrentDownloads) {
+                futures.add(completionService.submit(fetchTrackedEntityInstance(uids.get(nextDownload++))));
+            }
+
+            for (int i = 0; i < uids.size(); i++) {
+                Future<TrackedEntityInstance> download = completionService.take();
+                if (nextDownload < uids.size()) {
+                    futures.add(completionService.submit(fetchTrackedEntityInstance(uids.get(nextDownload++))));
+                }
+
+                TrackedEntityInstance updatedTrackedEntityInstance;
+                try {
+                    updatedTrackedEntityInstance = download.get();
+                } catch (ExecutionException e) { //can't throw this further up because we want to continue loading all the TEIs..
+                    e.getCause().printStackTrace();
+                    continue;
+                }
+
+                try {
+                    saveTrackedEntityInstanceDataFromServer(updatedTrackedEntityInstance.getTrackedEntityInstanceUid(),
+                            updatedTrackedEntityInstance, serverDateTime, getEnrollments);
+                } catch (ApiException e) {
+                    e.printStackTrace();
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            cancel(futures);
+        } catch (RuntimeException e) {
+            cancel(futures);
+            throw e;
+        }
+    }
+
+    private Callable<TrackedEntityInstance> fetchTrackedEntityInstance(final String uid) {
+        return new Callable<TrackedEntityInstance>() {
+            @Override
+            public TrackedEntityInstance call() throws Exception {
+                return trackedEntityInstanceApiClient.getFullTrackedEntityInstance(uid, null);
+            }
+        };
+    }
+
+    private static void cancel(List<Future<TrackedEntityInstance>> futures) {
+        for (Future<TrackedEntityInstance> future : futures) {
+            future.cancel(true);
+        }
+    }
+
+    private TrackedEntityInstance getTrackedEntityInstanceDataFromServer(String uid, boolean getEnrollments) {
+        DateTime serverDateTime = serverClock.getServerDate();
         TrackedEntityInstance updatedTrackedEntityInstance =
                 trackedEntityInstanceApiClient.getFullTrackedEntityInstance(uid, null);
+        return saveTrackedEntityInstanceDataFromServer(uid, updatedTrackedEntityInstance, serverDateTime, getEnrollments);
+    }
+
+    private TrackedEntityInstance saveTrackedEntityInstanceDataFromServer(String uid,
+                                                                          TrackedEntityInstance updatedTrackedEntityInstance,
+                                                                          DateTime serverDateTime, boolean getEnrollments) {
         TrackedEntityInstance persistedTrackedEntityInstance =
                 trackedEntityInstanceStore.queryByUid(uid);
 
@@ -196,74 +325,18 @@ public class TrackedEntityInstanceController extends PushableDataController impl
     }
 
     /**
-     * This utility method allows to determine which type of operation to apply to
-     * each BaseIdentifiableObject$Flow depending on TimeStamp.
-     *
-     * @param oldModels List of models from local storage.
-     * @param newModels List of models of distance instance of DHIS.
+     * Relationships are matched by both instances and relationship type. Relationships which
+     * are missing on the server are deleted only if they were not changed locally, since
+     * the item may have been created locally and not yet posted.
      */
-    private List<DbOperation> createOperations(IStore<Relationship> modelStore,
-                                               List<Relationship> oldModels,
-                                               List<Relationship> newModels) {
-        List<DbOperation> ops = new ArrayList<>();
-
-        Map<String, Relationship> newModelsMap = toMap(newModels);
-        Map<String, Relationship> oldModelsMap = toMap(oldModels);
-
-        // As we will go through map of persisted items, we will try to update existing data.
-        // Also, during each iteration we will remove old model key from list of new models.
-        // As the result, the list of remaining items in newModelsMap,
-        // will contain only those items which were not inserted before.
-        for (String oldModelKey : oldModelsMap.keySet()) {
-            Relationship newModel = newModelsMap.get(oldModelKey);
-            Relationship oldModel = oldModelsMap.get(oldModelKey);
-
-            // if there is no particular model with given uid in list of
-            // actual (up to date) items, it means it was removed on the server side,
-            // or the item was created locally and has not yet been posted.
-            if (newModel == null) {
-                Action action = stateStore.queryActionForModel(oldModel);
-                if (!Action.TO_UPDATE.equals(action) && !Action.TO_POST.equals(action)) {
-                    ops.add(DbOperation.with(modelStore)
-                            .delete(oldModel));
-                }
-
-                // in case if there is no new model object,
-                // we can jump to next iteration.
-                continue;
-            }
-
-            newModel.setId(oldModel.getId());
-            ops.add(DbOperation.with(modelStore)
-                    .update(newModel));
-
-            // as we have processed given old (persisted) model,
-            // we can remove it from map of new models.
-            newModelsMap.remove(oldModelKey);
-        }
-
-        // Inserting new items.
-        for (String newModelKey : newModelsMap.keySet()) {
-            Relationship item = newModelsMap.get(newModelKey);
-            ops.add(DbOperation.with(modelStore)
-                    .insert(item));
-        }
-
-        return ops;
-    }
-
-    public static Map<String, Relationship> toMap(List<Relationship> objects) {
-        Map<String, Relationship> map = new HashMap<>();
-        if (objects != null && objects.size() > 0) {
-            for (Relationship object : objects) {
-                if (object.getTrackedEntityInstanceA() != null && object.getTrackedEntityInstanceB() != null && object.getRelationship() != null) {
-                    map.put(object.getTrackedEntityInstanceA().getTrackedEntityInstanceUid()
-                            + object.getTrackedEntityInstanceB().getTrackedEntityInstanceUid()
-                            + object.getRelationship(), object);
-                }
-            }
-        }
-        return map;
+    private List<IDbOperation> createOperations(IStore<Relationship> modelStore,
+                                                List<Relationship> oldModels,
+                                                List<Relationship> newModels) {
+        return DiffEngine.with(modelStore)
+                .key(RELATIONSHIP_KEY)
+                .keepIds()
+                .deleteGuard(DiffEngine.unlessChangedLocally(stateStore, Relationship.class))
+                .diff(oldModels, newModels);
     }
 
     private void sendTrackedEntityInstanceChanges(boolean sendEnrollments) {
@@ -285,11 +358,42 @@ public class TrackedEntityInstanceController extends PushableDataController impl
             return;
         }
 
-        Map<Long, Action> actionMap = stateStore
-                .queryActionsForModel(TrackedEntityInstance.class);
+        beginPush();
+        try {
+            if (pushBatchSize > 1) {
+                sendTrackedEntityInstanceWave(trackedEntityInstances, sendEnrollments);
+            } else {
+                ActionMap actionMap = stateStore
+                        .queryActionsForModels(TrackedEntityInstance.class, trackedEntityInstances);
+
+                for (TrackedEntityInstance trackedEntityInstance : trackedEntityInstances) {
+                    sendTrackedEntityInstanceChanges(trackedEntityInstance, actionMap.get(trackedEntityInstance.getId()), sendEnrollments);
+                }
+            }
+        } finally {
+            endPush();
+        }
+    }
 
-        for (TrackedEntityInstance trackedEntityInstance : trackedEntityInstances) {
-            sendTrackedEntityInstanceChanges(trackedEntityInstance, actionMap.get(trackedEntityInstance.getId()), sendEnrollments);
+    private void sendTrackedEntityInstanceWave(List<TrackedEntityInstance> trackedEntityInstances, boolean sendEnrollments) {
+        TrackerPushPlanner.Wave<TrackedEntityInstance> wave = pushPlanner.planTrackedEntityInstances(trackedEntityInstances);
+        for (List<TrackedEntityInstance> chunk : TrackerPushPlanner.chunks(wave.getToPost(), pushBatchSize)) {
+            postTrackedEntityInstances(chunk);
+        }
+        for (List<TrackedEntityInstance> chunk : TrackerPushPlanner.chunks(wave.getToPut(), pushBatchSize)) {
+            putTrackedEntityInstances(chunk);
+        }
+
+        if (sendEnrollments) {
+            // enrollments of tracked entity instances which were not accepted
+            // by server are held back by planner, the rest is sent in one go
+            List<Enrollment> enrollments = new ArrayList<>();
+            for (TrackedEntityInstance trackedEntityInstance : trackedEntityInstances) {
+                if (trackedEntityInstance != null) {
+                    enrollments.addAll(enrollmentStore.query(trackedEntityInstance));
+                }
+            }
+            enrollmentController.sendEnrollmentChanges(enrollments);
         }
     }
 
@@ -297,14 +401,20 @@ public class TrackedEntityInstanceController extends PushableDataController impl
         if (trackedEntityInstance == null) {
             return;
         }
-        if (Action.TO_POST.equals(action)) {
-            postTrackedEntityInstance(trackedEntityInstance);
-        } else {
-            putTrackedEntityInstance(trackedEntityInstance);
-        }
-        if (sendEnrollments) {
-            List<Enrollment> enrollments = enrollmentStore.query(trackedEntityInstance);
-            enrollmentController.sendEnrollmentChanges(enrollments);
+
+        beginPush();
+        try {
+            if (Action.TO_POST.equals(action)) {
+                postTrackedEntityInstance(trackedEntityInstance);
+            } else {
+                putTrackedEntityInstance(trackedEntityInstance);
+            }
+            if (sendEnrollments) {
+                List<Enrollment> enrollments = enrollmentStore.query(trackedEntityInstance);
+                enrollmentController.sendEnrollmentChanges(enrollments);
+            }
+        } finally {
+            endPush();
         }
     }
 
@@ -313,11 +423,14 @@ public class TrackedEntityInstanceController extends PushableDataController impl
      * @param trackedEntityInstance
      */
     public void postTrackedEntityInstance(TrackedEntityInstance trackedEntityInstance) {
+        beginPush();
         try {
             ImportSummary importSummary = trackedEntityInstanceApiClient.postTrackedEntityInstance(trackedEntityInstance);
             handleImportSummary(trackedEntityInstance, importSummary);
         } catch (ApiException apiException) {
             handleTrackedEntityInstanceSendException(apiException, failedItemStore, trackedEntityInstance);
+        } finally {
+            endPush();
         }
     }
 
@@ -326,29 +439,111 @@ public class TrackedEntityInstanceController extends PushableDataController impl
      * @param trackedEntityInstance
      */
     public void putTrackedEntityInstance(TrackedEntityInstance trackedEntityInstance) {
+        beginPush();
         try {
             ImportSummary importSummary = trackedEntityInstanceApiClient.putTrackedEntityInstance(trackedEntityInstance);
             handleImportSummary(trackedEntityInstance, importSummary);
         } catch (ApiException apiException) {
             handleTrackedEntityInstanceSendException(apiException, failedItemStore, trackedEntityInstance);
+        } finally {
+            endPush();
+        }
+    }
+
+    private void postTrackedEntityInstances(List<TrackedEntityInstance> trackedEntityInstances) {
+        try {
+            ImportSummaries importSummaries = trackedEntityInstanceApiClient
+                    .postTrackedEntityInstances(trackedEntityInstances);
+            handleImportSummaries(trackedEntityInstances, importSummaries, true);
+        } catch (ApiException apiException) {
+            for (TrackedEntityInstance trackedEntityInstance : trackedEntityInstances) {
+                handleTrackedEntityInstanceSendException(apiException, failedItemStore, trackedEntityInstance);
+            }
+        }
+    }
+
+    private void putTrackedEntityInstances(List<TrackedEntityInstance> trackedEntityInstances) {
+        try {
+            ImportSummaries importSummaries = trackedEntityInstanceApiClient
+                    .putTrackedEntityInstances(trackedEntityInstances);
+            handleImportSummaries(trackedEntityInstances, importSummaries, false);
+        } catch (ApiException apiException) {
+            for (TrackedEntityInstance trackedEntityInstance : trackedEntityInstances) {
+                handleTrackedEntityInstanceSendException(apiException, failedItemStore, trackedEntityInstance);
+            }
+        }
+    }
+
+    /**
+     * Maps each import summary back to the TrackedEntityInstance at the same position. Successfully
+     * imported TrackedEntityInstances are saved and marked as synced in bulk, while the rest is
+     * stored as failed items.
+     */
+    private void handleImportSummaries(List<TrackedEntityInstance> trackedEntityInstances,
+                                       ImportSummaries importSummaries, boolean posted) {
+        List<ImportSummary> summaries = importSummaries != null && importSummaries.getImportSummaries() != null ?
+                importSummaries.getImportSummaries() : new ArrayList<ImportSummary>();
+
+        List<TrackedEntityInstance> syncedTrackedEntityInstances = new ArrayList<>();
+        for (int i = 0; i < trackedEntityInstances.size(); i++) {
+            TrackedEntityInstance trackedEntityInstance = trackedEntityInstances.get(i);
+            ImportSummary importSummary = i < summaries.size() ? summaries.get(i) : null;
+            if (importSummary == null) {
+                handleImportSummaryError(null, failedItemStore, FailedItemType.TRACKED_ENTITY_INSTANCE,
+                        200, trackedEntityInstance.getId());
+                continue;
+            }
+
+            if (ImportSummary.Status.SUCCESS.equals(importSummary.getStatus()) ||
+                    ImportSummary.Status.OK.equals(importSummary.getStatus())) {
+                if (posted && importSummary.getReference() != null) {
+                    trackedEntityInstance.setTrackedEntityInstanceUid(importSummary.getReference());
+                }
+                syncedTrackedEntityInstances.add(trackedEntityInstance);
+            } else {
+                handleImportSummaryWithError(importSummary, failedItemStore,
+                        FailedItemType.TRACKED_ENTITY_INSTANCE, trackedEntityInstance.getId());
+            }
+        }
+
+        if (syncedTrackedEntityInstances.isEmpty()) {
+            return;
+        }
+
+        List<IDbOperation> operations = new ArrayList<>();
+        for (TrackedEntityInstance trackedEntityInstance : syncedTrackedEntityInstances) {
+            operations.add(DbOperation.with(trackedEntityInstanceStore).save(trackedEntityInstance));
+        }
+        transactionManager.transact(operations);
+        stateStore.saveActionsForModels(syncedTrackedEntityInstances, Action.SYNCED);
+        pushedTrackedEntityInstances.addAll(syncedTrackedEntityInstances);
+
+        for (TrackedEntityInstance trackedEntityInstance : syncedTrackedEntityInstances) {
+            clearFailedItem(FailedItemType.TRACKED_ENTITY_INSTANCE, failedItemStore, trackedEntityInstance.getId());
         }
     }
 
     /**
      * Handles an ImportSummary typically from a post or put request to server by {@link #putTrackedEntityInstance(TrackedEntityInstance)} or
      * {@link #postTrackedEntityInstance(TrackedEntityInstance)}. Handling includes updating the State for the object and
-     * FailedItem for the object, and triggers fetching of lastUpdated and created timestamps
+     * FailedItem for the object, and queues the object for {@link #reconcileTimestamps()}. Queued objects are
+     * reconciled when the outermost push call returns, i.e. right away if this is called directly.
      * @param trackedEntityInstance
      * @param importSummary
      */
     public void handleImportSummary(TrackedEntityInstance trackedEntityInstance, ImportSummary importSummary) {
-        if (ImportSummary.Status.SUCCESS.equals(importSummary.getStatus()) ||
-                ImportSummary.Status.OK.equals(importSummary.getStatus())) {
-            stateStore.saveActionForModel(trackedEntityInstance, Action.SYNCED);
-            clearFailedItem(FailedItemType.TRACKED_ENTITY_INSTANCE, failedItemStore, trackedEntityInstance.getId());
-            updateTrackedEntityInstanceTimestamp(trackedEntityInstance);
-        } else {
-            handleImportSummaryWithError(importSummary, failedItemStore, FailedItemType.TRACKED_ENTITY_INSTANCE, trackedEntityInstance.getId());
+        beginPush();
+        try {
+            if (ImportSummary.Status.SUCCESS.equals(importSummary.getStatus()) ||
+                    ImportSummary.Status.OK.equals(importSummary.getStatus())) {
+                stateStore.saveActionForModel(trackedEntityInstance, Action.SYNCED);
+                clearFailedItem(FailedItemType.TRACKED_ENTITY_INSTANCE, failedItemStore, trackedEntityInstance.getId());
+                pushedTrackedEntityInstances.add(trackedEntityInstance);
+            } else {
+                handleImportSummaryWithError(importSummary, failedItemStore, FailedItemType.TRACKED_ENTITY_INSTANCE, trackedEntityInstance.getId());
+            }
+        } finally {
+            endPush();
         }
     }
 
@@ -356,25 +551,91 @@ public class TrackedEntityInstanceController extends PushableDataController impl
      * Updates the timestamps of created and lastUpdated for the given TrackedEntityInstance based on the values
      * stored on the online server
      * @param trackedEntityInstance
+     * @deprecated pushed TrackedEntityInstances are reconciled in bulk at the end of each push call,
+     * use {@link #reconcileTimestamps()} to reconcile the ones queued so far
      */
+    @Deprecated
     public void updateTrackedEntityInstanceTimestamp(TrackedEntityInstance trackedEntityInstance) {
-        try {
-            final Map<String, String> QUERY_PARAMS = new HashMap<>();
-            QUERY_PARAMS.put("fields", "created,lastUpdated");
-            TrackedEntityInstance updatedTrackedEntityInstance = trackedEntityInstanceApiClient
-                    .getFullTrackedEntityInstance(trackedEntityInstance.getTrackedEntityInstanceUid(), null);
-
-            // merging updated timestamp to local trackedentityinstance model
-            trackedEntityInstance.setCreated(updatedTrackedEntityInstance.getCreated());
-            trackedEntityInstance.setLastUpdated(updatedTrackedEntityInstance.getLastUpdated());
-            trackedEntityInstanceStore.save(trackedEntityInstance);
-        } catch (ApiException apiException) {
-            apiException.printStackTrace();
-            trackedEntityInstance.setLastUpdated(new DateTime(1970, 1, 1, 0, 0));
-            trackedEntityInstanceStore.save(trackedEntityInstance);
+        pushedTrackedEntityInstances.add(trackedEntityInstance);
+        reconcileTimestamps();
+    }
+
+    private void beginPush() {
+        synchronized (pushedTrackedEntityInstances) {
+            pushDepth++;
         }
     }
 
+    private void endPush() {
+        boolean outermost;
+        synchronized (pushedTrackedEntityInstances) {
+            outermost = --pushDepth == 0;
+        }
+        if (outermost) {
+            reconcileTimestamps();
+        }
+    }
+
+    /**
+     * Updates the timestamps of created and lastUpdated for all TrackedEntityInstances pushed since
+     * the last reconciliation based on the values stored on the online server. Timestamps are
+     * fetched with one request per {@link TrackerPushPlanner#MAX_TIMESTAMP_UIDS} instances. It is called when the outermost of
+     * {@link #sendTrackedEntityInstancesChanges(List, boolean)},
+     * {@link #sendTrackedEntityInstanceChanges(TrackedEntityInstance, Action, boolean)},
+     * {@link #postTrackedEntityInstance(TrackedEntityInstance)}, {@link #putTrackedEntityInstance(TrackedEntityInstance)}
+     * and {@link #handleImportSummary(TrackedEntityInstance, ImportSummary)} returns.
+     */
+    public void reconcileTimestamps() {
+        if (pushedTrackedEntityInstances.isEmpty()) {
+            return;
+        }
+
+        Map<String, TrackedEntityInstance> trackedEntityInstanceMap = new HashMap<>();
+        synchronized (pushedTrackedEntityInstances) {
+            for (TrackedEntityInstance trackedEntityInstance : pushedTrackedEntityInstances) {
+                if (trackedEntityInstance.getTrackedEntityInstanceUid() != null) {
+                    trackedEntityInstanceMap.put(trackedEntityInstance.getTrackedEntityInstanceUid(), trackedEntityInstance);
+                }
+            }
+            pushedTrackedEntityInstances.clear();
+        }
+
+        if (trackedEntityInstanceMap.isEmpty()) {
+            return;
+        }
+
+        List<IDbOperation> operations = new ArrayList<>();
+        for (Set<String> uids : TrackerPushPlanner.timestampChunks(trackedEntityInstanceMap.keySet())) {
+            try {
+                List<TrackedEntityInstance> updatedTrackedEntityInstances = trackedEntityInstanceApiClient
+                        .getTrackedEntityInstanceTimestamps(uids);
+
+                if (updatedTrackedEntityInstances != null) {
+                    for (TrackedEntityInstance updatedTrackedEntityInstance : updatedTrackedEntityInstances) {
+                        TrackedEntityInstance trackedEntityInstance = updatedTrackedEntityInstance != null ?
+                                trackedEntityInstanceMap.get(updatedTrackedEntityInstance.getTrackedEntityInstanceUid()) : null;
+                        if (trackedEntityInstance == null) {
+                            continue;
+                        }
+
+                        // merging updated timestamp to local trackedentityinstance model
+                        trackedEntityInstance.setCreated(updatedTrackedEntityInstance.getCreated());
+                        trackedEntityInstance.setLastUpdated(updatedTrackedEntityInstance.getLastUpdated());
+                        operations.add(DbOperation.with(trackedEntityInstanceStore).save(trackedEntityInstance));
+                    }
+                }
+            } catch (ApiException apiException) {
+                apiException.printStackTrace();
+                for (String uid : uids) {
+                    TrackedEntityInstance trackedEntityInstance = trackedEntityInstanceMap.get(uid);
+                    trackedEntityInstance.setLastUpdated(new DateTime(1970, 1, 1, 0, 0));
+                    operations.add(DbOperation.with(trackedEntityInstanceStore).save(trackedEntityInstance));
+                }
+            }
+        }
+        transactionManager.transact(operations);
+    }
+
     @Override
     public void sync() throws ApiException {
     }
@@ -384,6 +645,17 @@ public class TrackedEntityInstanceController extends PushableDataController impl
         getTrackedEntityInstancesDataFromServer(trackedEntityInstances, getEnrollments);
     }
 
+    @Override
+    public void sync(List<TrackedEntityInstance> trackedEntityInstances, boolean getEnrollments,
+                     ExecutorService executorService, int maxConcurrentDownloads) {
+        Preconditions.isNull(executorService, "executorService must not be null");
+        if (maxConcurrentDownloads < 1) {
+            throw new IllegalArgumentException("maxConcurrentDownloads must be positive");
+        }
+        getTrackedEntityInstancesDataFromServerConcurrently(trackedEntityInstances, getEnrollments,
+                executorService, maxConcurrentDownloads);
+    }
+
     @Override
     public TrackedEntityInstance sync(String uid, boolean getEnrollments) throws ApiException {
         return getTrackedEntityInstanceDataFromServer(uid, getEnrollments);
@@ -28,6 +28,19 @@
 
 package org.hisp.dhis.java.sdk;
 
+import org.hisp.dhis.java.sdk.common.ActionMapTest;
+import org.hisp.dhis.java.sdk.common.expression.ExpressionOptimizerTest;
+import org.hisp.dhis.java.sdk.common.expression.ExpressionParserTest;
+import org.hisp.dhis.java.sdk.common.network.FieldsTest;
+import org.hisp.dhis.java.sdk.common.network.JsonStreamReaderTest;
+import org.hisp.dhis.java.sdk.common.network.ResponseBodyTest;
+import org.hisp.dhis.java.sdk.common.network.http.HttpNetworkModuleTest;
+import org.hisp.dhis.java.sdk.common.controllers.MetadataSyncOrchestratorTest;
+import org.hisp.dhis.java.sdk.common.preferences.WriteBehindLastUpdatedPreferencesTest;
+import org.hisp.dhis.java.sdk.common.persistence.DbOperationTest;
+import org.hisp.dhis.java.sdk.common.persistence.DiffEngineTest;
+import org.hisp.dhis.java.sdk.common.persistence.jdbc.JdbcPersistenceModuleTest;
+import org.hisp.dhis.java.sdk.common.persistence.memory.MemoryPersistenceModuleTest;
 import org.hisp.dhis.java.sdk.dashboard.*;
 import org.hisp.dhis.java.sdk.event.EventControllerTest;
 import org.hisp.dhis.java.sdk.interpretation.InterpretationCommentServiceTest;
@@ -37,9 +50,15 @@ import org.hisp.dhis.java.sdk.enrollment.EnrollmentServiceTest;
 import org.hisp.dhis.java.sdk.event.EventServiceTest;
 import org.hisp.dhis.java.sdk.interpretation.InterpretationElementServiceTest;
 import org.hisp.dhis.java.sdk.interpretation.InterpretationServiceTest;
+import org.hisp.dhis.java.sdk.program.CompiledProgramIndicatorTest;
+import org.hisp.dhis.java.sdk.program.CompiledProgramRulesTest;
+import org.hisp.dhis.java.sdk.program.ProgramRuleBatchEvaluatorTest;
 import org.hisp.dhis.java.sdk.program.ProgramRuleServiceTest;
+import org.hisp.dhis.java.sdk.program.ProgramRuleSessionTest;
 import org.hisp.dhis.java.sdk.program.ProgramRuleVariableServiceTest;
 import org.hisp.dhis.java.sdk.program.ProgramServiceTest;
+import org.hisp.dhis.java.sdk.program.ProgramTreeDiffTest;
+import org.hisp.dhis.java.sdk.systeminfo.ServerClockTest;
 import org.hisp.dhis.java.sdk.trackedentity.TrackedEntityAttributeControllerTest;
 import org.hisp.dhis.java.sdk.trackedentity.TrackedEntityInstanceServiceTest;
 import org.hisp.dhis.java.sdk.user.UserAccountControllerTest;
@@ -54,10 +73,16 @@ import org.junit.runners.Suite;
         DashboardItemServiceTest.class,
         DashboardServiceTest.class,
         DashboardControllerTest.class,
+        DashboardControllerSyncTest.class,
 
         ProgramServiceTest.class,
+        ProgramTreeDiffTest.class,
         ProgramRuleServiceTest.class,
         ProgramRuleVariableServiceTest.class,
+        CompiledProgramRulesTest.class,
+        ProgramRuleSessionTest.class,
+        ProgramRuleBatchEvaluatorTest.class,
+        CompiledProgramIndicatorTest.class,
         UserAccountServiceTest.class,
 
         UserAccountControllerTest.class,
@@ -71,6 +96,21 @@ import org.junit.runners.Suite;
         InterpretationElementServiceTest.class,
         InterpretationCommentServiceTest.class,
         InterpretationServiceTest.class,
+
+        ActionMapTest.class,
+        ExpressionParserTest.class,
+        ExpressionOptimizerTest.class,
+        FieldsTest.class,
+        JsonStreamReaderTest.class,
+        ResponseBodyTest.class,
+        HttpNetworkModuleTest.class,
+        DbOperationTest.class,
+        DiffEngineTest.class,
+        MetadataSyncOrchestratorTest.class,
+        ServerClockTest.class,
+        WriteBehindLastUpdatedPreferencesTest.class,
+        MemoryPersistenceModuleTest.class,
+        JdbcPersistenceModuleTest.class,
 })
 public class CoreTestSuite {
 }
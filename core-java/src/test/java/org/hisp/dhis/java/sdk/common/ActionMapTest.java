@@ -0,0 +1,99 @@
+/*
+ * Copyright (c) 2015, University of Oslo
+ *
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.hisp.dhis.java.sdk.common;
+
+import org.hisp.dhis.java.sdk.models.common.state.Action;
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+
+public class ActionMapTest {
+
+    @Test
+    public void putShouldReplacePreviousAction() {
+        ActionMap actionMap = new ActionMap();
+
+        assertNull(actionMap.put(1L, Action.TO_POST));
+        assertEquals(Action.TO_POST, actionMap.put(1L, Action.SYNCED));
+        assertEquals(Action.SYNCED, actionMap.get(1L));
+        assertEquals(1, actionMap.size());
+    }
+
+    @Test
+    public void keysShouldBeSorted() {
+        ActionMap actionMap = new ActionMap();
+        actionMap.put(30L, Action.SYNCED);
+        actionMap.put(10L, Action.TO_POST);
+        actionMap.put(20L, Action.TO_DELETE);
+
+        assertArrayEquals(new long[]{10L, 20L, 30L}, actionMap.keys());
+    }
+
+    @Test
+    public void shouldBehaveLikeHashMap() {
+        ActionMap actionMap = new ActionMap();
+        Map<Long, Action> expected = new HashMap<>();
+        Random random = new Random(42);
+        Action[] actions = Action.values();
+
+        for (int i = 0; i < 20000; i++) {
+            long key = random.nextInt(2000);
+            if (random.nextBoolean()) {
+                Action action = actions[random.nextInt(actions.length)];
+                assertEquals(expected.put(key, action), actionMap.put(key, action));
+            } else {
+                assertEquals(expected.remove(key), actionMap.remove(key));
+            }
+        }
+
+        assertEquals(expected.size(), actionMap.size());
+        for (long key = 0; key < 2000; key++) {
+            assertEquals(expected.get(key), actionMap.get(key));
+        }
+    }
+
+    @Test
+    public void copyShouldNotShareState() {
+        ActionMap actionMap = new ActionMap();
+        actionMap.put(1L, Action.TO_POST);
+
+        ActionMap copy = new ActionMap(actionMap);
+        actionMap.remove(1L);
+
+        assertFalse(actionMap.containsKey(1L));
+        assertEquals(Action.TO_POST, copy.get(1L));
+    }
+}
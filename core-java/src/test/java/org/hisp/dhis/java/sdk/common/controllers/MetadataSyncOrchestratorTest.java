@@ -0,0 +1,190 @@
+/*
+ * Copyright (c) 2015, University of Oslo
+ *
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.hisp.dhis.java.sdk.common.controllers;
+
+import org.hisp.dhis.java.sdk.common.network.ApiException;
+import org.hisp.dhis.java.sdk.common.preferences.ResourceType;
+import org.hisp.dhis.java.sdk.models.common.base.IdentifiableObject;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class MetadataSyncOrchestratorTest {
+    private ExecutorService executorService;
+    private MetadataSyncOrchestrator orchestrator;
+    private List<ResourceType> commits;
+
+    @Before
+    public void setUp() {
+        executorService = Executors.newFixedThreadPool(4);
+        orchestrator = new MetadataSyncOrchestrator(executorService);
+        commits = Collections.synchronizedList(new ArrayList<ResourceType>());
+    }
+
+    @After
+    public void tearDown() {
+        executorService.shutdownNow();
+    }
+
+    @Test
+    public void commitsShouldFollowDependencyOrder() {
+        List<ResourceType> resourceTypes = Arrays.asList(ResourceType.PROGRAM_RULE_ACTIONS,
+                ResourceType.PROGRAM_RULES, ResourceType.PROGRAMS, ResourceType.PROGRAM_RULE_VARIABLES,
+                ResourceType.DATA_ELEMENTS, ResourceType.TRACKED_ENTITY_ATTRIBUTES, ResourceType.OPTION_SETS,
+                ResourceType.RELATIONSHIP_TYPES, ResourceType.CONSTANTS);
+        for (ResourceType resourceType : resourceTypes) {
+            orchestrator.add(new FakeController(resourceType, null, null));
+        }
+
+        orchestrator.sync();
+
+        assertEquals(resourceTypes.size(), commits.size());
+        for (ResourceType resourceType : resourceTypes) {
+            for (ResourceType dependency : MetadataSyncOrchestrator.getDependencies(resourceType)) {
+                assertTrue(dependency + " must be committed before " + resourceType,
+                        commits.indexOf(dependency) < commits.indexOf(resourceType));
+            }
+        }
+    }
+
+    @Test
+    public void fetchesShouldRunConcurrently() {
+        // every fetch waits for the other one, so serial execution would time out
+        CountDownLatch latch = new CountDownLatch(2);
+        orchestrator.add(new FakeController(ResourceType.CONSTANTS, latch, null));
+        orchestrator.add(new FakeController(ResourceType.OPTION_SETS, latch, null));
+
+        orchestrator.sync();
+
+        assertEquals(2, commits.size());
+    }
+
+    @Test
+    public void failedFetchShouldSkipDependentCommits() {
+        ApiException error = ApiException.unexpectedError(null, new RuntimeException("offline"));
+        orchestrator.add(new FakeController(ResourceType.OPTION_SETS, null, error));
+        orchestrator.add(new FakeController(ResourceType.DATA_ELEMENTS, null, null));
+        orchestrator.add(new FakeController(ResourceType.CONSTANTS, null, null));
+
+        try {
+            orchestrator.sync();
+            fail("ApiException expected");
+        } catch (ApiException apiException) {
+            assertSame(error, apiException);
+        }
+
+        assertEquals(Arrays.asList(ResourceType.CONSTANTS), commits);
+    }
+
+    @Test
+    public void listenersShouldBeNotifiedOfCommittedResources() {
+        final List<Set<ResourceType>> notifications = new ArrayList<>();
+        orchestrator.addListener(new IMetadataSyncListener() {
+            @Override
+            public void onSynced(Set<ResourceType> committed) {
+                notifications.add(EnumSet.copyOf(committed));
+            }
+        });
+        orchestrator.add(new FakeController(ResourceType.OPTION_SETS, null,
+                ApiException.unexpectedError(null, new RuntimeException("offline"))));
+        orchestrator.add(new FakeController(ResourceType.DATA_ELEMENTS, null, null));
+        orchestrator.add(new FakeController(ResourceType.CONSTANTS, null, null));
+
+        try {
+            orchestrator.sync();
+            fail("ApiException expected");
+        } catch (ApiException apiException) {
+            // committed resources are reported nonetheless
+        }
+
+        assertEquals(1, notifications.size());
+        assertEquals(EnumSet.of(ResourceType.CONSTANTS), notifications.get(0));
+    }
+
+    private class FakeController implements IMetadataController<IdentifiableObject> {
+        private final ResourceType resourceType;
+        private final CountDownLatch latch;
+        private final ApiException error;
+
+        FakeController(ResourceType resourceType, CountDownLatch latch, ApiException error) {
+            this.resourceType = resourceType;
+            this.latch = latch;
+            this.error = error;
+        }
+
+        @Override
+        public ResourceType getResourceType() {
+            return resourceType;
+        }
+
+        @Override
+        public ICommit fetch() throws ApiException {
+            if (latch != null) {
+                latch.countDown();
+                try {
+                    if (!latch.await(5, TimeUnit.SECONDS)) {
+                        throw ApiException.unexpectedError(null, new RuntimeException("fetches are serial"));
+                    }
+                } catch (InterruptedException e) {
+                    throw ApiException.unexpectedError(null, e);
+                }
+            }
+            if (error != null) {
+                throw error;
+            }
+            return new ICommit() {
+                @Override
+                public void commit() {
+                    commits.add(resourceType);
+                }
+            };
+        }
+
+        @Override
+        public void sync() throws ApiException {
+            fetch().commit();
+        }
+    }
+}
@@ -0,0 +1,104 @@
+/*
+ * Copyright (c) 2015, University of Oslo
+ *
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.hisp.dhis.java.sdk.common.expression;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ExpressionOptimizerTest {
+    private List<String> references;
+    private Map<String, Object> constants;
+    private ISymbolTable symbolTable;
+    private ExpressionOptimizer.IConstantSlots constantSlots;
+
+    @Before
+    public void setUp() {
+        references = new ArrayList<>();
+        constants = new HashMap<>();
+        constants.put("C{limit}", 65.0);
+        constants.put("C{threshold}", 10.0);
+        symbolTable = new ISymbolTable() {
+            @Override
+            public int bind(String key, String name) {
+                String reference = key + "{" + name + "}";
+                if (!references.contains(reference)) {
+                    references.add(reference);
+                }
+                return references.indexOf(reference);
+            }
+        };
+        constantSlots = new ExpressionOptimizer.IConstantSlots() {
+            @Override
+            public Object getConstant(int slot) {
+                return constants.get(references.get(slot));
+            }
+        };
+    }
+
+    private IExpression fold(String expression) {
+        return ExpressionOptimizer.fold(ExpressionParser.parse(expression, symbolTable), constantSlots);
+    }
+
+    @Test
+    public void testConstantSubexpressionsShouldFoldToLiterals() {
+        IExpression expression = fold("C{limit} * 2 + d2:floor(C{threshold} / 3)");
+
+        assertTrue(ExpressionOptimizer.isConstant(expression));
+        assertEquals(133.0, expression.evaluate(null));
+    }
+
+    @Test
+    public void testShortCircuitOperatorsShouldFoldOnDecidingSide() {
+        assertTrue(ExpressionOptimizer.isFalse(fold("#{age} > 18 && C{threshold} > C{limit}")));
+        assertTrue(ExpressionOptimizer.isConstant(fold("C{threshold} < C{limit} || #{age} > 18")));
+        assertFalse(ExpressionOptimizer.isConstant(fold("#{age} > 18 && C{threshold} < C{limit}")));
+    }
+
+    @Test
+    public void testPartiallyConstantExpressionsShouldKeepEvaluating() {
+        IExpression expression = fold("#{age} < C{limit} - C{threshold} && !(1 > 2)");
+
+        assertFalse(ExpressionOptimizer.isConstant(expression));
+        Object[] slots = new Object[references.size()];
+        int age = references.indexOf("#{age}");
+        slots[age] = "30";
+        assertEquals(true, expression.evaluate(slots));
+        slots[age] = "60";
+        assertEquals(false, expression.evaluate(slots));
+    }
+}
@@ -0,0 +1,138 @@
+/*
+ * Copyright (c) 2015, University of Oslo
+ *
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.hisp.dhis.java.sdk.common.expression;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class ExpressionParserTest {
+    private List<String> references;
+    private ISymbolTable symbolTable;
+
+    @Before
+    public void setUp() {
+        references = new ArrayList<>();
+        symbolTable = new ISymbolTable() {
+            @Override
+            public int bind(String key, String name) {
+                if ("unknown".equals(name)) {
+                    throw new IllegalArgumentException("Unknown variable " + name);
+                }
+                String reference = key + "{" + name + "}";
+                if (!references.contains(reference)) {
+                    references.add(reference);
+                }
+                return references.indexOf(reference);
+            }
+        };
+    }
+
+    private Object evaluate(String expression, Object... slots) {
+        return ExpressionParser.parse(expression, symbolTable).evaluate(slots);
+    }
+
+    @Test
+    public void testArithmeticShouldFollowOperatorPrecedence() {
+        assertEquals(7.0, evaluate("1 + 2 * 3"));
+        assertEquals(9.0, evaluate("(1 + 2) * 3"));
+        assertEquals(1.0, evaluate("7 % 3"));
+        assertEquals(-4.0, evaluate("-(2 + 2)"));
+        assertEquals(true, evaluate("1 + 1 == 2 && !(3 < 2) || false"));
+    }
+
+    @Test
+    public void testReferencesShouldBeBoundToSlotsOnce() {
+        IExpression expression = ExpressionParser.parse("#{age} > 18 && #{age} < C{limit} && V{current_date} != ''",
+                symbolTable);
+
+        assertEquals(3, references.size());
+        assertEquals("#{age}", references.get(0));
+        assertEquals("C{limit}", references.get(1));
+        assertEquals("V{current_date}", references.get(2));
+        assertEquals(true, expression.evaluate(new Object[]{"30", 65.0, "2015-10-01"}));
+        assertEquals(false, expression.evaluate(new Object[]{"70", 65.0, "2015-10-01"}));
+        assertEquals(false, expression.evaluate(new Object[]{null, 65.0, "2015-10-01"}));
+    }
+
+    @Test
+    public void testDataValueStringsShouldBeCoercedByOperator() {
+        assertEquals(true, evaluate("#{a} == 5", "5.0"));
+        assertEquals(true, evaluate("#{a} == 'yes'", "yes"));
+        assertEquals(true, evaluate("#{a} == true", "true"));
+        assertEquals(8.0, evaluate("#{a} + #{b}", "5", "3"));
+        assertEquals("ab", evaluate("#{a} + #{b}", "a", "b"));
+        assertEquals(true, evaluate("#{a} < #{b}", "2015-01-31", "2015-02-01"));
+        assertEquals(true, evaluate("#{a} == ''", (Object) null));
+    }
+
+    @Test
+    public void testFunctionsShouldEvaluateTheirArguments() {
+        assertEquals(true, evaluate("d2:hasValue('weight')", "10"));
+        assertEquals("#{weight}", references.get(0));
+        assertEquals(false, evaluate("d2:hasValue(#{weight})", ""));
+        assertEquals(31.0, evaluate("d2:daysBetween('2015-01-01', '2015-02-01')"));
+        assertEquals(2.0, evaluate("d2:yearsBetween('2013-01-01', '2015-06-01')"));
+        assertEquals("2015-01-03", evaluate("d2:addDays('2015-01-01', 2)"));
+        assertEquals(3.0, evaluate("d2:floor(3.7)"));
+        assertEquals("a1b", evaluate("d2:concatenate('a', 1, \"b\")"));
+        assertEquals(2.0, evaluate("d2:zpvc(1, -1, 0, 'x')"));
+        assertNull(evaluate("d2:daysBetween('no date', '2015-02-01')"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testUnknownFunctionShouldFail() {
+        ExpressionParser.parse("d2:unknown(1)", symbolTable);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testWrongArgumentCountShouldFail() {
+        ExpressionParser.parse("d2:daysBetween('2015-01-01')", symbolTable);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testUnresolvedReferenceShouldFail() {
+        ExpressionParser.parse("#{unknown} > 1", symbolTable);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testTrailingInputShouldFail() {
+        ExpressionParser.parse("1 + 2)", symbolTable);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testUnterminatedStringShouldFail() {
+        ExpressionParser.parse("'abc", symbolTable);
+    }
+}
@@ -0,0 +1,120 @@
+/*
+ * Copyright (c) 2015, University of Oslo
+ *
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.hisp.dhis.java.sdk.common.network;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import org.hisp.dhis.java.sdk.models.dataelement.DataElement;
+import org.hisp.dhis.java.sdk.models.event.Event;
+import org.hisp.dhis.java.sdk.models.program.Program;
+import org.hisp.dhis.java.sdk.models.program.ProgramStage;
+import org.junit.Test;
+
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class FieldsTest {
+
+    @Test
+    public void basicShouldContainIdentifierAndLastUpdated() {
+        assertEquals("id,lastUpdated", Fields.basic(Program.class).toString());
+        assertEquals("event,lastUpdated", Fields.basic(Event.class).toString());
+    }
+
+    @Test
+    public void allShouldContainInheritedPropertiesFirst() {
+        Set<String> properties = Fields.properties(DataElement.class);
+        String all = Fields.all(DataElement.class).toString();
+
+        assertTrue(all.startsWith("id,name,displayName,created,lastUpdated,access"));
+        assertTrue(properties.contains("shortName"));
+        assertTrue(properties.contains("optionSet"));
+        assertEquals(properties.size(), all.split(",").length);
+    }
+
+    @Test
+    public void nestedProjectionShouldReplacePlainField() {
+        Fields<Program> fields = Fields.builder(Program.class)
+                .field("id", "programStages", "version")
+                .nested("programStages", Fields.builder(ProgramStage.class)
+                        .field("id", "sortOrder").build())
+                .build();
+
+        assertEquals("id,programStages[id,sortOrder],version", fields.toString());
+    }
+
+    @Test
+    public void excludedFieldShouldNotBeRequested() {
+        String fields = Fields.builder(Program.class).allFields()
+                .exclude("programStages", "programTrackedEntityAttributes").build().toString();
+
+        assertFalse(fields.contains("programStages"));
+        assertTrue(fields.contains("trackedEntity"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void unknownPropertyShouldBeRejected() {
+        Fields.builder(Program.class).field("organisationUnits");
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void emptyProjectionShouldBeRejected() {
+        Fields.builder(Program.class).build();
+    }
+
+    @Test
+    public void annotatedAccessorsShouldBeNamedAfterBeanProperty() {
+        Set<String> properties = Fields.properties(AnnotatedAccessors.class);
+
+        assertEquals(3, properties.size());
+        assertTrue(properties.contains("displayName"));
+        assertTrue(properties.contains("active"));
+        assertTrue(properties.contains("url"));
+    }
+
+    private static class AnnotatedAccessors {
+
+        @JsonProperty
+        public String getDisplayName() {
+            return null;
+        }
+
+        @JsonProperty
+        public boolean isActive() {
+            return false;
+        }
+
+        @JsonProperty
+        public void setURL(String url) {
+            // not used
+        }
+    }
+}
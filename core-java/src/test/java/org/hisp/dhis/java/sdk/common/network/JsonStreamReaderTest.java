@@ -0,0 +1,110 @@
+/*
+ * Copyright (c) 2015, University of Oslo
+ *
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.hisp.dhis.java.sdk.common.network;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class JsonStreamReaderTest {
+    private JsonStreamReader jsonStreamReader;
+    private List<List<Item>> chunks;
+    private IChunkConsumer<Item> consumer;
+
+    @Before
+    public void setUp() {
+        jsonStreamReader = new JsonStreamReader(new ObjectMapper());
+        chunks = new ArrayList<>();
+        consumer = new IChunkConsumer<Item>() {
+            @Override
+            public void consume(List<Item> models) {
+                chunks.add(models);
+            }
+        };
+    }
+
+    @Test
+    public void modelsShouldBeReadFromFieldInChunks() throws IOException {
+        String json = "{\"pager\":{\"page\":1,\"items\":[{\"id\":\"x\"}]}," +
+                "\"items\":[{\"id\":\"a\"},{\"id\":\"b\",\"nested\":{\"id\":\"y\"}},{\"id\":\"c\"}]," +
+                "\"other\":[1,2]}";
+
+        int count = jsonStreamReader.readArray(stream(json), "items", Item.class, 2, consumer);
+
+        assertEquals(3, count);
+        assertEquals(2, chunks.size());
+        assertEquals(2, chunks.get(0).size());
+        assertEquals("a", chunks.get(0).get(0).id);
+        assertEquals("b", chunks.get(0).get(1).id);
+        assertEquals(1, chunks.get(1).size());
+        assertEquals("c", chunks.get(1).get(0).id);
+    }
+
+    @Test
+    public void modelsShouldBeReadFromRootArray() throws IOException {
+        int count = jsonStreamReader.readArray(stream("[{\"id\":\"a\"},{\"id\":\"b\"}]"),
+                "items", Item.class, 10, consumer);
+
+        assertEquals(2, count);
+        assertEquals(1, chunks.size());
+        assertEquals("b", chunks.get(0).get(1).id);
+    }
+
+    @Test
+    public void missingFieldShouldNotProduceChunks() throws IOException {
+        int count = jsonStreamReader.readArray(stream("{\"pager\":{\"page\":1}}"),
+                "items", Item.class, 10, consumer);
+
+        assertEquals(0, count);
+        assertTrue(chunks.isEmpty());
+    }
+
+    @Test(expected = IOException.class)
+    public void truncatedArrayShouldFail() throws IOException {
+        jsonStreamReader.readArray(stream("{\"items\":[{\"id\":\"a\"},"), "items", Item.class, 10, consumer);
+    }
+
+    private static InputStream stream(String json) {
+        return new ByteArrayInputStream(json.getBytes());
+    }
+
+    public static class Item {
+        public String id;
+        public Item nested;
+    }
+}
@@ -0,0 +1,152 @@
+/*
+ * Copyright (c) 2015, University of Oslo
+ *
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.hisp.dhis.java.sdk.common.network;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class ResponseBodyTest {
+
+    @Test
+    public void streamedBodyShouldBeBufferedOnceThroughResponse() {
+        TrackingInputStream source = new TrackingInputStream("payload".getBytes());
+        Response response = Response.streamed("url", 200, "OK",
+                new ArrayList<Header>(), ResponseBody.create(source, -1));
+
+        byte[] body = response.getBody();
+
+        assertArrayEquals("payload".getBytes(), body);
+        assertSame(body, response.getBody());
+        assertTrue(source.closed);
+    }
+
+    @Test
+    public void streamedBodyShouldBeReadableAsChannel() throws IOException {
+        ResponseBody body = ResponseBody.create(new ByteArrayInputStream("abc".getBytes()), 3);
+        ByteBuffer buffer = ByteBuffer.allocate(8);
+
+        ReadableByteChannel channel = body.channel();
+        while (channel.read(buffer) != -1) {
+            // keep reading
+        }
+
+        assertEquals(3, buffer.position());
+        assertEquals(3, body.contentLength());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void streamedBodyShouldNotBeConsumedTwice() {
+        ResponseBody body = ResponseBody.create(new ByteArrayInputStream(new byte[1]), 1);
+        body.byteStream();
+        body.byteStream();
+    }
+
+    @Test
+    public void errorBodyShouldBeCappedAndCapturedLazily() {
+        byte[] large = new byte[ApiException.MAX_ERROR_BODY_SIZE * 2];
+        Arrays.fill(large, (byte) 'x');
+        TrackingInputStream source = new TrackingInputStream(large);
+        Response response = Response.streamed("url", 500, "Internal Server Error",
+                new ArrayList<Header>(), ResponseBody.create(source, large.length));
+
+        ApiException exception = ApiException.httpError("url", response);
+        assertEquals(0, source.read);
+
+        byte[] errorBody = exception.getErrorBody();
+        assertEquals(ApiException.MAX_ERROR_BODY_SIZE, errorBody.length);
+        assertEquals(ApiException.MAX_ERROR_BODY_SIZE, source.read);
+        assertSame(errorBody, exception.getErrorBody());
+        assertTrue(source.closed);
+    }
+
+    @Test
+    public void errorBodyShouldBeNullWithoutResponseBody() {
+        Response response = new Response("url", 500, "", new ArrayList<Header>(), (byte[]) null);
+        assertNull(ApiException.httpError("url", response).getErrorBody());
+    }
+
+    @Test
+    public void requestBodyWriterShouldBeBufferedForByteArrayCallers() {
+        Request request = Request.streamed(HttpMethod.POST, "url", null, new IRequestBodyWriter() {
+            @Override
+            public void writeTo(OutputStream outputStream) throws IOException {
+                outputStream.write("streamed".getBytes());
+            }
+        });
+
+        assertArrayEquals("streamed".getBytes(), request.getBody());
+    }
+
+    private static class TrackingInputStream extends InputStream {
+        private final InputStream delegate;
+        private int read;
+        private boolean closed;
+
+        TrackingInputStream(byte[] bytes) {
+            delegate = new ByteArrayInputStream(bytes);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int value = delegate.read();
+            if (value != -1) {
+                read++;
+            }
+            return value;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            int count = delegate.read(buffer, offset, length);
+            if (count > 0) {
+                read += count;
+            }
+            return count;
+        }
+
+        @Override
+        public void close() throws IOException {
+            closed = true;
+        }
+    }
+}
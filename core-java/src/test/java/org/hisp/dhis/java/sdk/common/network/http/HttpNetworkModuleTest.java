@@ -0,0 +1,287 @@
+/*
+ * Copyright (c) 2015, University of Oslo
+ *
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.hisp.dhis.java.sdk.common.network.http;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.hisp.dhis.java.sdk.common.network.ApiException;
+import org.hisp.dhis.java.sdk.common.network.AuthHandler;
+import org.hisp.dhis.java.sdk.common.network.Configuration;
+import org.hisp.dhis.java.sdk.common.network.Header;
+import org.hisp.dhis.java.sdk.common.network.HttpMethod;
+import org.hisp.dhis.java.sdk.common.network.IChunkConsumer;
+import org.hisp.dhis.java.sdk.common.network.Request;
+import org.hisp.dhis.java.sdk.common.network.Response;
+import org.hisp.dhis.java.sdk.common.network.UserCredentials;
+import org.hisp.dhis.java.sdk.models.common.SystemInfo;
+import org.hisp.dhis.java.sdk.models.common.importsummary.ImportSummaries;
+import org.hisp.dhis.java.sdk.models.dashboard.Dashboard;
+import org.hisp.dhis.java.sdk.models.event.Event;
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URLDecoder;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class HttpNetworkModuleTest {
+    private static final String DASHBOARDS = "{\"pager\":{\"page\":1},\"dashboards\":[" +
+            "{\"id\":\"dashboard1\",\"name\":\"First\",\"lastUpdated\":\"2015-10-01T10:00:00.000Z\"}," +
+            "{\"id\":\"dashboard2\",\"name\":\"Second\"}]}";
+
+    private StubServer server;
+    private HttpNetworkModule networkModule;
+
+    @Before
+    public void setUp() throws IOException {
+        server = new StubServer();
+        networkModule = new HttpNetworkModule(new Configuration(server.getUrl()), new AuthHandler() {
+            @Override
+            public UserCredentials getUserCredentials() {
+                return new UserCredentials("admin", "district");
+            }
+        }, 5000, 5000);
+    }
+
+    @After
+    public void tearDown() {
+        server.shutdown();
+    }
+
+    @Test
+    public void requestsShouldBeAuthenticatedAndAcceptGzip() {
+        server.respond("/api/system/info", 200, "{\"version\":\"2.22\",\"revision\":42}");
+
+        SystemInfo systemInfo = networkModule.getSystemInfoApiClient().getSystemInfo();
+
+        assertEquals("2.22", systemInfo.getVersion());
+        StubServer.RecordedRequest request = server.getLastRequest();
+        assertEquals("GET", request.getMethod());
+        assertEquals("Basic YWRtaW46ZGlzdHJpY3Q=", request.getHeader("Authorization"));
+        assertEquals("gzip", request.getHeader("Accept-Encoding"));
+    }
+
+    @Test
+    public void dashboardsShouldBeRequestedWithProjectionAndFilter() throws IOException {
+        server.respond("/api/dashboards", 200, DASHBOARDS);
+        DateTime lastUpdated = new DateTime(2015, 10, 1, 0, 0, DateTimeZone.UTC);
+
+        List<Dashboard> dashboards = networkModule.getDashboardApiClient()
+                .getBasicDashboards(lastUpdated);
+
+        assertEquals(2, dashboards.size());
+        assertEquals("dashboard1", dashboards.get(0).getUId());
+        String query = URLDecoder.decode(server.getLastRequest().getQuery(), "UTF-8");
+        assertTrue(query.contains("fields=id,lastUpdated&"));
+        assertTrue(query.contains("filter=lastUpdated:gt:" + lastUpdated.toString()));
+        assertTrue(query.contains("paging=false"));
+    }
+
+    @Test
+    public void gzipResponsesShouldBeDecompressed() {
+        server.setGzip(true);
+        server.respond("/api/dashboards", 200, DASHBOARDS);
+
+        List<Dashboard> dashboards = networkModule.getDashboardApiClient().getFullDashboards(null);
+
+        assertEquals(2, dashboards.size());
+        assertEquals("Second", dashboards.get(1).getName());
+    }
+
+    @Test
+    public void httpErrorsShouldCarryErrorBody() {
+        server.respond("/api/me", 409, "{\"message\":\"conflict\"}");
+
+        try {
+            networkModule.getUserApiClient().getUserAccount();
+            fail("ApiException expected");
+        } catch (ApiException apiException) {
+            assertEquals(ApiException.Kind.HTTP, apiException.getKind());
+            assertEquals(409, apiException.getResponse().getStatus());
+            assertEquals("{\"message\":\"conflict\"}", new String(apiException.getErrorBody()));
+        }
+    }
+
+    @Test
+    public void streamedResponseWithoutBodyShouldFailWithApiException() {
+        AbsHttpApiClient apiClient = new AbsHttpApiClient(new HttpClient(new AuthHandler() {
+            @Override
+            public UserCredentials getUserCredentials() {
+                return new UserCredentials("admin", "district");
+            }
+        }), new Configuration(server.getUrl()), new ObjectMapper()) {
+            @Override
+            protected Response execute(HttpMethod method, String path, Object body, String... query) {
+                return Response.streamed(server.getUrl() + path, 200, "OK",
+                        Collections.<Header>emptyList(), null);
+            }
+        };
+
+        try {
+            apiClient.getChunks(Event.class, "events", 10, new IChunkConsumer<Event>() {
+                @Override
+                public void consume(List<Event> chunk) {
+                    fail("No chunks expected");
+                }
+            }, "/api/events");
+            fail("ApiException expected");
+        } catch (ApiException apiException) {
+            assertEquals(ApiException.Kind.CONVERSION, apiException.getKind());
+        }
+    }
+
+    @Test
+    public void eventsShouldBeStreamedInChunks() {
+        StringBuilder body = new StringBuilder("{\"events\":[");
+        for (int i = 0; i < 5; i++) {
+            body.append(i > 0 ? "," : "").append("{\"event\":\"event").append(i).append("\"}");
+        }
+        server.respond("/api/events", 200, body.append("]}").toString());
+
+        final List<Integer> chunkSizes = new ArrayList<>();
+        networkModule.getEventApiClient().getFullEvents("program", "orgUnit", 5, null, 2,
+                new IChunkConsumer<Event>() {
+                    @Override
+                    public void consume(List<Event> models) {
+                        chunkSizes.add(models.size());
+                    }
+                });
+
+        assertEquals(Arrays.asList(2, 2, 1), chunkSizes);
+        assertTrue(server.getLastRequest().getQuery().contains("orgUnit=orgUnit"));
+    }
+
+    @Test
+    public void eventsShouldBePostedInOneRequest() {
+        server.respond("/api/events", 200, "{\"status\":\"SUCCESS\",\"imported\":2," +
+                "\"importSummaries\":[{\"status\":\"SUCCESS\"},{\"status\":\"SUCCESS\"}]}");
+        Event first = new Event();
+        first.setUId("event1");
+        Event second = new Event();
+        second.setUId("event2");
+
+        ImportSummaries importSummaries = networkModule.getEventApiClient()
+                .postEvents(Arrays.asList(first, second));
+
+        assertEquals(2, importSummaries.getImportSummaries().size());
+        StubServer.RecordedRequest request = server.getLastRequest();
+        assertEquals("POST", request.getMethod());
+        assertTrue(request.getBody().startsWith("{\"events\":[{"));
+        assertTrue(request.getBody().contains("\"event\":\"event2\""));
+    }
+
+    @Test(timeout = 10000)
+    public void sequentialRequestsShouldReuseConnection() {
+        server.setGzip(true);
+        server.respond("/api/dashboards", 200, DASHBOARDS);
+
+        int requestCount = 200;
+        for (int i = 0; i < requestCount; i++) {
+            networkModule.getDashboardApiClient().getBasicDashboards(null);
+        }
+
+        assertEquals(requestCount, server.getRequests().size());
+        assertEquals(1, server.getConnectionCount());
+    }
+
+    @Test(timeout = 10000)
+    public void abandonedBodiesShouldBeDrainedOnlyUpToLimit() throws IOException {
+        StringBuilder largeBody = new StringBuilder();
+        while (largeBody.length() < 1024 * 1024) {
+            largeBody.append("{\"event\":\"event\"},");
+        }
+        server.respond("/api/small", 200, DASHBOARDS);
+        server.respond("/api/large", 200, largeBody.toString());
+        HttpClient httpClient = new HttpClient(new AuthHandler() {
+            @Override
+            public UserCredentials getUserCredentials() {
+                return null;
+            }
+        });
+
+        // small remainder is drained, so the connection is kept alive
+        readOneByteAndClose(httpClient, "/api/small");
+        readOneByteAndClose(httpClient, "/api/small");
+        assertEquals(1, server.getConnectionCount());
+
+        // large remainder is not downloaded, the connection is dropped instead
+        readOneByteAndClose(httpClient, "/api/large");
+        readOneByteAndClose(httpClient, "/api/small");
+        assertEquals(2, server.getConnectionCount());
+    }
+
+    private void readOneByteAndClose(HttpClient httpClient, String path) throws IOException {
+        Response response = httpClient.execute(new Request(HttpMethod.GET, server.getUrl() + path,
+                new ArrayList<Header>(), null));
+        InputStream inputStream = response.getResponseBody().byteStream();
+        try {
+            assertEquals('{', inputStream.read());
+        } finally {
+            inputStream.close();
+        }
+    }
+
+    @Test
+    public void eventPagesShouldBeRequestedInLastUpdatedOrder() throws IOException {
+        server.respond("/api/events", 200, "{\"pager\":{\"page\":1,\"pageCount\":1234," +
+                "\"total\":1234,\"pageSize\":1},\"events\":[{\"event\":\"event1\"}]}");
+
+        int count = networkModule.getEventApiClient().getEventCount("program", "orgUnit", null,
+                new DateTime(2016, 3, 1, 12, 0));
+        assertEquals(1234, count);
+        assertTrue(server.getLastRequest().getQuery().contains("totalPages=true"));
+        assertTrue(server.getLastRequest().getQuery().contains("lastUpdatedEndDate=2016-03-01"));
+
+        final List<Event> events = new ArrayList<>();
+        networkModule.getEventApiClient().getFullEventsPage("program", "orgUnit", null,
+                new DateTime(2016, 3, 1, 12, 0), 2, 500, 100,
+                new IChunkConsumer<Event>() {
+                    @Override
+                    public void consume(List<Event> models) {
+                        events.addAll(models);
+                    }
+                });
+
+        assertEquals(1, events.size());
+        String query = URLDecoder.decode(server.getLastRequest().getQuery(), "UTF-8");
+        assertTrue(query.contains("order=lastUpdated:asc"));
+        assertTrue(query.contains("page=2&pageSize=500"));
+        assertTrue(query.contains("lastUpdatedEndDate=2016-03-01"));
+    }
+}
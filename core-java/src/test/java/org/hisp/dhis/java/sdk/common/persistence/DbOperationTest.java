@@ -0,0 +1,102 @@
+/*
+ * Copyright (c) 2015, University of Oslo
+ *
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.hisp.dhis.java.sdk.common.persistence;
+
+import org.hisp.dhis.java.sdk.models.event.Event;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.InOrder;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+import static org.mockito.Matchers.anyCollectionOf;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+public class DbOperationTest {
+    private IStore<Event> eventStore;
+    private IStore<Event> otherEventStore;
+
+    @Before
+    @SuppressWarnings("unchecked")
+    public void setUp() {
+        eventStore = mock(IStore.class);
+        otherEventStore = mock(IStore.class);
+    }
+
+    @Test
+    public void consecutiveOperationsShouldBeCoalesced() {
+        Event first = new Event();
+        Event second = new Event();
+        Event third = new Event();
+
+        List<IDbOperation> operations = new ArrayList<>();
+        operations.add(DbOperation.with(eventStore).insert(first));
+        operations.add(DbOperation.with(eventStore).insert(second));
+        operations.add(DbOperation.with(eventStore).insert(third));
+
+        DbOperation.executeAll(operations);
+
+        verify(eventStore).insertAll(Arrays.asList(first, second, third));
+        verify(eventStore, never()).insert(first);
+    }
+
+    @Test
+    public void operationsShouldBeAppliedInOrder() {
+        Event first = new Event();
+        Event second = new Event();
+        Event third = new Event();
+        Event fourth = new Event();
+
+        List<IDbOperation> operations = new ArrayList<>();
+        operations.add(DbOperation.with(eventStore).save(first));
+        operations.add(DbOperation.with(eventStore).save(second));
+        operations.add(DbOperation.with(otherEventStore).delete(third));
+        operations.add(DbOperation.with(eventStore).save(fourth));
+
+        DbOperation.executeAll(operations);
+
+        InOrder inOrder = inOrder(eventStore, otherEventStore);
+        inOrder.verify(eventStore).saveAll(Arrays.asList(first, second));
+        inOrder.verify(otherEventStore).delete(third);
+        inOrder.verify(eventStore).save(fourth);
+        verify(otherEventStore, never()).deleteAll(anyCollectionOf(Event.class));
+    }
+
+    @Test
+    public void emptyCollectionShouldBeIgnored() {
+        DbOperation.executeAll(new ArrayList<IDbOperation>());
+        DbOperation.executeAll((Collection<IDbOperation>) null);
+    }
+}
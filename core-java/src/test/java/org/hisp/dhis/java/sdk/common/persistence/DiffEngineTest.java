@@ -0,0 +1,142 @@
+/*
+ * Copyright (c) 2015, University of Oslo
+ *
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.hisp.dhis.java.sdk.common.persistence;
+
+import org.hisp.dhis.java.sdk.common.ActionMap;
+import org.hisp.dhis.java.sdk.common.IStateStore;
+import org.hisp.dhis.java.sdk.models.common.state.Action;
+import org.hisp.dhis.java.sdk.models.constant.Constant;
+import org.joda.time.DateTime;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.mockito.Mockito.anyCollectionOf;
+import static org.mockito.Mockito.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class DiffEngineTest {
+    private static final DateTime OLD = new DateTime(2015, 1, 1, 0, 0);
+    private static final DateTime NEW = new DateTime(2016, 1, 1, 0, 0);
+
+    private IStore<Constant> constantStore;
+
+    @Before
+    @SuppressWarnings("unchecked")
+    public void setUp() {
+        constantStore = mock(IStore.class);
+    }
+
+    @Test
+    public void diffShouldDeleteUpdateAndInsertInGroups() {
+        Constant removed = constant(1, "a", OLD);
+        Constant persisted = constant(2, "b", OLD);
+        Constant unchanged = constant(3, "c", NEW);
+        Constant updated = constant(0, "b", NEW);
+        Constant sameVersion = constant(0, "c", NEW);
+        Constant inserted = constant(0, "d", NEW);
+
+        List<IDbOperation> operations = engine().diff(Arrays.asList(removed, persisted, unchanged),
+                Arrays.asList(inserted, updated, sameVersion));
+
+        assertEquals(3, operations.size());
+        assertOperation(operations.get(0), DbAction.DELETE, removed);
+        assertOperation(operations.get(1), DbAction.UPDATE, updated);
+        assertOperation(operations.get(2), DbAction.INSERT, inserted);
+        assertEquals(2, updated.getId());
+    }
+
+    @Test
+    public void diffSortedShouldMatchDiff() {
+        List<Constant> oldModels = Arrays.asList(constant(1, "a", OLD), constant(2, "b", OLD),
+                constant(3, "d", OLD));
+        List<Constant> newModels = Arrays.asList(constant(0, "b", NEW), constant(0, "c", NEW),
+                constant(0, "d", OLD), constant(0, "e", NEW));
+
+        List<IDbOperation> hashed = engine().diff(oldModels, newModels);
+        List<IDbOperation> merged = engine().diffSorted(oldModels, newModels);
+
+        assertEquals(hashed.size(), merged.size());
+        for (int i = 0; i < hashed.size(); i++) {
+            assertOperation(merged.get(i), hashed.get(i).getAction(), hashed.get(i).getModel());
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void diffSortedShouldRejectUnsortedInput() {
+        engine().diffSorted(Arrays.asList(constant(1, "b", OLD), constant(2, "a", OLD)),
+                Arrays.asList(constant(0, "c", NEW)));
+    }
+
+    @Test
+    public void deleteGuardShouldKeepLocallyChangedModels() {
+        Constant changedLocally = constant(1, "a", OLD);
+        Constant synced = constant(2, "b", OLD);
+        List<Constant> oldModels = Arrays.asList(changedLocally, synced);
+
+        ActionMap actionMap = new ActionMap();
+        actionMap.put(1, Action.TO_UPDATE);
+        actionMap.put(2, Action.SYNCED);
+        IStateStore stateStore = mock(IStateStore.class);
+        when(stateStore.queryActionsForModels(eq(Constant.class), anyCollectionOf(Constant.class)))
+                .thenReturn(actionMap);
+
+        List<IDbOperation> operations = engine()
+                .deleteGuard(DiffEngine.unlessChangedLocally(stateStore, Constant.class))
+                .diff(oldModels, null);
+
+        assertEquals(1, operations.size());
+        assertOperation(operations.get(0), DbAction.DELETE, synced);
+    }
+
+    private DiffEngine<Constant> engine() {
+        return DiffEngine.with(constantStore)
+                .key(DiffEngine.<Constant>byUid())
+                .version(DiffEngine.<Constant>byLastUpdated())
+                .keepIds();
+    }
+
+    private static Constant constant(long id, String uid, DateTime lastUpdated) {
+        Constant constant = new Constant();
+        constant.setId(id);
+        constant.setUId(uid);
+        constant.setLastUpdated(lastUpdated);
+        return constant;
+    }
+
+    private static void assertOperation(IDbOperation operation, DbAction action, Object model) {
+        assertEquals(action, operation.getAction());
+        assertSame(model, operation.getModel());
+    }
+}
@@ -0,0 +1,260 @@
+/*
+ * Copyright (c) 2015, University of Oslo
+ *
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.hisp.dhis.java.sdk.common.persistence.jdbc;
+
+import org.h2.jdbcx.JdbcDataSource;
+import org.hisp.dhis.java.sdk.common.ActionMap;
+import org.hisp.dhis.java.sdk.common.IStateStore;
+import org.hisp.dhis.java.sdk.common.persistence.DbAction;
+import org.hisp.dhis.java.sdk.common.persistence.DbOperation;
+import org.hisp.dhis.java.sdk.common.persistence.IDbOperation;
+import org.hisp.dhis.java.sdk.common.persistence.ITransactionManager;
+import org.hisp.dhis.java.sdk.event.IEventStore;
+import org.hisp.dhis.java.sdk.models.common.state.Action;
+import org.hisp.dhis.java.sdk.models.enrollment.Enrollment;
+import org.hisp.dhis.java.sdk.models.event.Event;
+import org.hisp.dhis.java.sdk.models.organisationunit.OrganisationUnit;
+import org.hisp.dhis.java.sdk.models.program.Program;
+import org.hisp.dhis.java.sdk.models.trackedentity.TrackedEntityDataValue;
+import org.hisp.dhis.java.sdk.trackedentity.ITrackedEntityDataValueStore;
+import org.hisp.dhis.java.sdk.utils.IModelUtils;
+import org.joda.time.DateTime;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.mock;
+
+public class JdbcPersistenceModuleTest {
+    private static final String organisationUnitUid = "aaaabbbb";
+    private static final String programUid = "ccccdddd";
+    private static final String enrollmentUid = "ffffffff";
+    private static int databaseCounter;
+
+    private JdbcPersistenceModule persistenceModule;
+    private ITransactionManager transactionManager;
+    private IEventStore eventStore;
+    private ITrackedEntityDataValueStore dataValueStore;
+    private IStateStore stateStore;
+
+    @Before
+    public void setUp() {
+        JdbcDataSource dataSource = new JdbcDataSource();
+        dataSource.setURL("jdbc:h2:mem:sdk" + (databaseCounter++) + ";DB_CLOSE_DELAY=-1");
+
+        persistenceModule = new JdbcPersistenceModule(mock(IModelUtils.class), dataSource);
+        transactionManager = persistenceModule.getTransactionManager();
+        eventStore = persistenceModule.getEventStore();
+        dataValueStore = persistenceModule.getTrackedEntityDataValueStore();
+        stateStore = persistenceModule.getStateStore();
+    }
+
+    @Test
+    public void testInsertAndQueryEvent() {
+        Event event = createEvent("Eg8cFa38");
+
+        assertTrue(eventStore.insert(event));
+        assertTrue(event.getId() > 0);
+        assertFalse(eventStore.insert(createEvent("Eg8cFa38")));
+
+        Event persistedEvent = eventStore.queryByUid("Eg8cFa38");
+        assertNotNull(persistedEvent);
+        assertEquals(event.getId(), persistedEvent.getId());
+        assertEquals(enrollmentUid, persistedEvent.getEnrollment().getUId());
+        assertTrue(event.getEventDate().isEqual(persistedEvent.getEventDate()));
+        assertEquals(1, eventStore.query(createOrganisationUnit(), createProgram()).size());
+        assertEquals(1, eventStore.query(createProgram()).size());
+
+        assertTrue(eventStore.delete(createEvent("Eg8cFa38")));
+        assertNull(eventStore.queryById(event.getId()));
+    }
+
+    @Test
+    public void testTransactionBatchesDataValues() {
+        Event event = createEvent("Eg8cFa38");
+        List<IDbOperation> operations = new ArrayList<>();
+        operations.add(DbOperation.with(eventStore).save(event));
+        for (int i = 0; i < 2500; i++) {
+            operations.add(DbOperation.with(dataValueStore).save(createDataValue(event, "de" + i, "1")));
+        }
+        transactionManager.transact(operations);
+        assertEquals(2500, dataValueStore.query(event).size());
+
+        // saving the same values again has to update existing rows
+        operations.clear();
+        for (int i = 0; i < 2500; i++) {
+            operations.add(DbOperation.with(dataValueStore).save(createDataValue(event, "de" + i, "2")));
+        }
+        transactionManager.transact(operations);
+
+        List<TrackedEntityDataValue> dataValues = dataValueStore.query(event);
+        assertEquals(2500, dataValues.size());
+        assertEquals("2", dataValues.get(0).getValue());
+        assertEquals(event.getUId(), dataValues.get(0).getEvent().getUId());
+    }
+
+    @Test
+    public void testBulkDataValueQuerySpansParameterChunks() {
+        List<Event> events = new ArrayList<>();
+        List<IDbOperation> operations = new ArrayList<>();
+        for (int i = 0; i < 1200; i++) {
+            Event event = createEvent("Eg8cFa" + i);
+            events.add(event);
+            operations.add(DbOperation.with(dataValueStore).save(createDataValue(event, "de", "1")));
+        }
+        operations.add(DbOperation.with(dataValueStore).save(createDataValue(createEvent("other"), "de", "1")));
+        transactionManager.transact(operations);
+
+        assertEquals(1200, dataValueStore.query(events).size());
+        assertEquals(1, dataValueStore.query(events.subList(0, 1)).size());
+    }
+
+    @Test
+    public void testTransactionIsRolledBackOnFailure() {
+        Event event = createEvent("Eg8cFa38");
+        List<IDbOperation> operations = Arrays.asList(
+                DbOperation.with(eventStore).insert(event),
+                new FailingOperation());
+
+        try {
+            transactionManager.transact(operations);
+            fail("Expected exception");
+        } catch (IllegalStateException e) {
+            // expected
+        }
+
+        assertNull(eventStore.queryByUid("Eg8cFa38"));
+    }
+
+    @Test
+    public void testQueryModelsWithActions() {
+        Event postedEvent = createEvent("Eg8cFa38");
+        Event syncedEvent = createEvent("Eg8cFa39");
+        eventStore.insert(postedEvent);
+        eventStore.insert(syncedEvent);
+        stateStore.saveActionForModel(postedEvent, Action.TO_POST);
+        stateStore.saveActionForModel(syncedEvent, Action.TO_POST);
+        stateStore.saveActionForModel(syncedEvent, Action.SYNCED);
+
+        List<Event> events = stateStore.queryModelsWithActions(Event.class, Action.TO_POST, Action.TO_UPDATE);
+        assertEquals(1, events.size());
+        assertEquals("Eg8cFa38", events.get(0).getUId());
+        assertEquals(Action.SYNCED, stateStore.queryActionForModel(syncedEvent));
+        assertEquals(2, stateStore.queryActionsForModel(Event.class).size());
+
+        assertTrue(stateStore.deleteActionForModel(postedEvent));
+        assertNull(stateStore.queryActionForModel(postedEvent));
+    }
+
+    @Test
+    public void testQueryModelsWithoutActions() {
+        Event postedEvent = createEvent("Eg8cFa38");
+        eventStore.insert(postedEvent);
+        stateStore.saveActionForModel(postedEvent, Action.TO_POST);
+
+        assertTrue(stateStore.queryModelsWithActions(Event.class).isEmpty());
+    }
+
+    @Test
+    public void testBulkStateLookups() {
+        Event postedEvent = createEvent("Eg8cFa38");
+        Event syncedEvent = createEvent("Eg8cFa39");
+        Event eventWithoutState = createEvent("Eg8cFa40");
+        eventStore.insert(postedEvent);
+        eventStore.insert(syncedEvent);
+        eventStore.insert(eventWithoutState);
+
+        assertEquals(2, stateStore.saveActionsForModels(Arrays.asList(postedEvent, syncedEvent), Action.TO_POST));
+        stateStore.saveActionsForModels(Arrays.asList(syncedEvent), Action.SYNCED);
+
+        ActionMap actionMap = stateStore.queryActionsForModels(Event.class,
+                Arrays.asList(postedEvent, syncedEvent, eventWithoutState));
+        assertEquals(2, actionMap.size());
+        assertEquals(Action.TO_POST, actionMap.get(postedEvent.getId()));
+        assertEquals(Action.SYNCED, actionMap.get(syncedEvent.getId()));
+        assertNull(actionMap.get(eventWithoutState.getId()));
+    }
+
+    private Event createEvent(String uid) {
+        Event event = new Event();
+        event.setUId(uid);
+        event.setOrganisationUnitId(organisationUnitUid);
+        event.setProgramId(programUid);
+        event.setEnrollmentUid(enrollmentUid);
+        event.setEventDate(new DateTime(2015, 1, 1, 10, 30, 30, 500));
+        return event;
+    }
+
+    private static TrackedEntityDataValue createDataValue(Event event, String dataElement, String value) {
+        TrackedEntityDataValue dataValue = new TrackedEntityDataValue();
+        dataValue.setEvent(event);
+        dataValue.setDataElement(dataElement);
+        dataValue.setValue(value);
+        return dataValue;
+    }
+
+    private static OrganisationUnit createOrganisationUnit() {
+        OrganisationUnit organisationUnit = new OrganisationUnit();
+        organisationUnit.setUId(organisationUnitUid);
+        return organisationUnit;
+    }
+
+    private static Program createProgram() {
+        Program program = new Program();
+        program.setUId(programUid);
+        return program;
+    }
+
+    private static class FailingOperation implements IDbOperation<Enrollment> {
+
+        @Override
+        public Enrollment getModel() {
+            return null;
+        }
+
+        @Override
+        public DbAction getAction() {
+            return DbAction.INSERT;
+        }
+
+        @Override
+        public void execute() {
+            throw new IllegalStateException();
+        }
+    }
+}
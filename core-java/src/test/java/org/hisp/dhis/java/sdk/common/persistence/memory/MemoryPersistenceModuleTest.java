@@ -0,0 +1,212 @@
+/*
+ * Copyright (c) 2015, University of Oslo
+ *
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.hisp.dhis.java.sdk.common.persistence.memory;
+
+import org.hisp.dhis.java.sdk.common.ActionMap;
+import org.hisp.dhis.java.sdk.common.IStateStore;
+import org.hisp.dhis.java.sdk.common.persistence.DbOperation;
+import org.hisp.dhis.java.sdk.common.persistence.IDbOperation;
+import org.hisp.dhis.java.sdk.enrollment.IEnrollmentStore;
+import org.hisp.dhis.java.sdk.event.IEventStore;
+import org.hisp.dhis.java.sdk.models.common.state.Action;
+import org.hisp.dhis.java.sdk.models.enrollment.Enrollment;
+import org.hisp.dhis.java.sdk.models.event.Event;
+import org.hisp.dhis.java.sdk.models.organisationunit.OrganisationUnit;
+import org.hisp.dhis.java.sdk.models.program.Program;
+import org.hisp.dhis.java.sdk.models.trackedentity.TrackedEntityInstance;
+import org.hisp.dhis.java.sdk.utils.IModelUtils;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+
+public class MemoryPersistenceModuleTest {
+    private static final String organisationUnitUid = "aaaabbbb";
+    private static final String programUid = "ccccdddd";
+    private static final String enrollmentUid = "ffffffff";
+    private static final String trackedEntityInstanceUid = "aaaaaaaa";
+
+    private MemoryPersistenceModule persistenceModule;
+    private IEventStore eventStore;
+    private IEnrollmentStore enrollmentStore;
+    private IStateStore stateStore;
+
+    private OrganisationUnit organisationUnit;
+    private Program program;
+    private Enrollment enrollment;
+    private TrackedEntityInstance trackedEntityInstance;
+
+    @Before
+    public void setUp() {
+        persistenceModule = new MemoryPersistenceModule(mock(IModelUtils.class));
+        eventStore = persistenceModule.getEventStore();
+        enrollmentStore = persistenceModule.getEnrollmentStore();
+        stateStore = persistenceModule.getStateStore();
+
+        organisationUnit = new OrganisationUnit();
+        organisationUnit.setUId(organisationUnitUid);
+
+        program = new Program();
+        program.setUId(programUid);
+
+        trackedEntityInstance = new TrackedEntityInstance();
+        trackedEntityInstance.setTrackedEntityInstanceUid(trackedEntityInstanceUid);
+
+        enrollment = new Enrollment();
+        enrollment.setUId(enrollmentUid);
+        enrollment.setProgram(programUid);
+        enrollment.setOrgUnit(organisationUnitUid);
+        enrollment.setTrackedEntityInstance(trackedEntityInstance);
+        enrollment.setStatus(Enrollment.ACTIVE);
+    }
+
+    @Test
+    public void testInsertAssignsIdAndIndexesUid() {
+        Event event = createEvent("Eg8cFa38");
+
+        assertTrue(eventStore.insert(event));
+        assertTrue(event.getId() > 0);
+        assertEquals(event, eventStore.queryById(event.getId()));
+        assertEquals(event, eventStore.queryByUid("Eg8cFa38"));
+        assertFalse(eventStore.insert(event));
+    }
+
+    @Test
+    public void testSecondaryIndexFollowsUpdates() {
+        Event event = createEvent("Eg8cFa38");
+        eventStore.insert(event);
+        assertEquals(1, eventStore.query(organisationUnit, program).size());
+        assertEquals(1, eventStore.query(program).size());
+        assertEquals(1, eventStore.query(enrollment).size());
+
+        event.setProgramId("eeeeffff");
+        eventStore.update(event);
+        assertTrue(eventStore.query(organisationUnit, program).isEmpty());
+        assertTrue(eventStore.query(program).isEmpty());
+
+        eventStore.delete(event);
+        assertTrue(eventStore.query(enrollment).isEmpty());
+        assertNull(eventStore.queryByUid("Eg8cFa38"));
+    }
+
+    @Test
+    public void testQueryActiveEnrollment() {
+        enrollmentStore.insert(enrollment);
+        assertEquals(enrollment, enrollmentStore.queryActiveEnrollment(
+                trackedEntityInstance, organisationUnit, program));
+
+        enrollment.setStatus(Enrollment.COMPLETED);
+        enrollmentStore.update(enrollment);
+        assertNull(enrollmentStore.queryActiveEnrollment(
+                trackedEntityInstance, organisationUnit, program));
+        assertEquals(1, enrollmentStore.query(trackedEntityInstance).size());
+    }
+
+    @Test
+    public void testQueryModelsWithActions() {
+        Event postedEvent = createEvent("Eg8cFa38");
+        Event syncedEvent = createEvent("Eg8cFa39");
+        eventStore.insert(postedEvent);
+        eventStore.insert(syncedEvent);
+        stateStore.saveActionForModel(postedEvent, Action.TO_POST);
+        stateStore.saveActionForModel(syncedEvent, Action.SYNCED);
+
+        List<Event> events = stateStore.queryModelsWithActions(Event.class, Action.TO_POST, Action.TO_UPDATE);
+        assertEquals(Arrays.asList(postedEvent), events);
+        assertEquals(Action.SYNCED, stateStore.queryActionForModel(syncedEvent));
+        assertEquals(2, stateStore.queryActionsForModel(Event.class).size());
+
+        stateStore.deleteActionForModel(postedEvent);
+        assertNull(stateStore.queryActionForModel(postedEvent));
+    }
+
+    @Test
+    public void testActionIndexFollowsStateChanges() {
+        Event event = createEvent("Eg8cFa38");
+        eventStore.insert(event);
+        stateStore.saveActionForModel(event, Action.TO_POST);
+
+        stateStore.saveActionForModel(event, Action.SYNCED);
+        assertTrue(stateStore.queryModelsWithActions(Event.class, Action.TO_POST).isEmpty());
+        assertEquals(Arrays.asList(event), stateStore.queryModelsWithActions(Event.class, Action.SYNCED));
+        assertEquals(Action.SYNCED, stateStore.queryActionsForModel(Event.class).get(event.getId()));
+
+        stateStore.deleteActionForModel(event);
+        assertTrue(stateStore.queryModelsWithActions(Event.class, Action.SYNCED).isEmpty());
+        assertTrue(stateStore.queryActionsForModel(Event.class).isEmpty());
+    }
+
+    @Test
+    public void testTransactionAppliesOperations() {
+        Event event = createEvent("Eg8cFa38");
+        List<IDbOperation> operations = Arrays.<IDbOperation>asList(
+                DbOperation.with(enrollmentStore).insert(enrollment),
+                DbOperation.with(eventStore).insert(event));
+
+        persistenceModule.getTransactionManager().transact(operations);
+        assertEquals(enrollment, enrollmentStore.queryByUid(enrollmentUid));
+        assertEquals(Arrays.asList(event), eventStore.query(enrollment));
+    }
+
+    @Test
+    public void testBulkStateLookups() {
+        Event postedEvent = createEvent("Eg8cFa38");
+        Event syncedEvent = createEvent("Eg8cFa39");
+        Event eventWithoutState = createEvent("Eg8cFa40");
+        eventStore.insert(postedEvent);
+        eventStore.insert(syncedEvent);
+        eventStore.insert(eventWithoutState);
+
+        assertEquals(2, stateStore.saveActionsForModels(Arrays.asList(postedEvent, syncedEvent), Action.TO_POST));
+        stateStore.saveActionsForModels(Arrays.asList(syncedEvent), Action.SYNCED);
+
+        ActionMap actionMap = stateStore.queryActionsForModels(Event.class,
+                Arrays.asList(postedEvent, syncedEvent, eventWithoutState));
+        assertEquals(2, actionMap.size());
+        assertEquals(Action.TO_POST, actionMap.get(postedEvent.getId()));
+        assertEquals(Action.SYNCED, actionMap.get(syncedEvent.getId()));
+        assertNull(actionMap.get(eventWithoutState.getId()));
+    }
+
+    private Event createEvent(String uid) {
+        Event event = new Event();
+        event.setUId(uid);
+        event.setOrganisationUnitId(organisationUnitUid);
+        event.setProgramId(programUid);
+        event.setEnrollment(enrollment);
+        return event;
+    }
+}
@@ -0,0 +1,168 @@
+/*
+ * Copyright (c) 2015, University of Oslo
+ *
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.hisp.dhis.java.sdk.common.preferences;
+
+import org.hisp.dhis.java.sdk.common.persistence.IDbOperation;
+import org.hisp.dhis.java.sdk.common.persistence.ITransactionManager;
+import org.joda.time.DateTime;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.InOrder;
+
+import java.util.ArrayList;
+import java.util.Collection;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.anyCollectionOf;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class WriteBehindLastUpdatedPreferencesTest {
+    private ILastUpdatedPreferences lastUpdatedPreferences;
+    private ITransactionManager transactionManager;
+    private WriteBehindLastUpdatedPreferences writeBehindPreferences;
+    private ITransactionManager boundTransactionManager;
+
+    @Before
+    public void setUp() {
+        lastUpdatedPreferences = mock(ILastUpdatedPreferences.class);
+        transactionManager = mock(ITransactionManager.class);
+        when(lastUpdatedPreferences.save(any(ResourceType.class), any(DateTime.class))).thenReturn(true);
+        when(lastUpdatedPreferences.save(any(ResourceType.class), any(DateTime.class), anyString())).thenReturn(true);
+
+        writeBehindPreferences = new WriteBehindLastUpdatedPreferences(lastUpdatedPreferences, 3);
+        boundTransactionManager = writeBehindPreferences.bind(transactionManager);
+    }
+
+    @Test
+    public void savedValuesShouldBeFlushedAfterNextCommit() {
+        DateTime lastUpdated = new DateTime();
+        Collection<IDbOperation> operations = new ArrayList<>();
+
+        writeBehindPreferences.save(ResourceType.DASHBOARDS, lastUpdated);
+        writeBehindPreferences.save(ResourceType.EVENTS, lastUpdated, "uid");
+
+        assertEquals(lastUpdated, writeBehindPreferences.get(ResourceType.DASHBOARDS));
+        assertEquals(lastUpdated, writeBehindPreferences.get(ResourceType.EVENTS, "uid"));
+        verify(lastUpdatedPreferences, never()).save(any(ResourceType.class), any(DateTime.class));
+        verify(lastUpdatedPreferences, never()).get(ResourceType.DASHBOARDS);
+
+        boundTransactionManager.transact(operations);
+
+        InOrder inOrder = inOrder(transactionManager, lastUpdatedPreferences);
+        inOrder.verify(transactionManager).transact(operations);
+        inOrder.verify(lastUpdatedPreferences).save(ResourceType.DASHBOARDS, lastUpdated);
+        inOrder.verify(lastUpdatedPreferences).save(ResourceType.EVENTS, lastUpdated, "uid");
+    }
+
+    @Test
+    public void valuesShouldNotBeFlushedWhenTransactionFails() {
+        doThrow(new IllegalStateException()).when(transactionManager)
+                .transact(anyCollectionOf(IDbOperation.class));
+        writeBehindPreferences.save(ResourceType.DASHBOARDS, new DateTime());
+
+        try {
+            boundTransactionManager.transact(new ArrayList<IDbOperation>());
+        } catch (IllegalStateException ignored) {
+            // expected
+        }
+
+        verify(lastUpdatedPreferences, never()).save(any(ResourceType.class), any(DateTime.class));
+    }
+
+    @Test
+    public void valuesShouldBeFlushedWhenDirtySetIsFull() {
+        DateTime lastUpdated = new DateTime();
+
+        writeBehindPreferences.save(ResourceType.EVENTS, lastUpdated, "a");
+        writeBehindPreferences.save(ResourceType.EVENTS, lastUpdated, "b");
+        verify(lastUpdatedPreferences, never()).save(any(ResourceType.class), any(DateTime.class), anyString());
+
+        writeBehindPreferences.save(ResourceType.EVENTS, lastUpdated, "c");
+        verify(lastUpdatedPreferences).save(ResourceType.EVENTS, lastUpdated, "a");
+        verify(lastUpdatedPreferences).save(ResourceType.EVENTS, lastUpdated, "b");
+        verify(lastUpdatedPreferences).save(ResourceType.EVENTS, lastUpdated, "c");
+    }
+
+    @Test
+    public void failedWritesShouldBeRetriedOnNextFlush() {
+        DateTime lastUpdated = new DateTime();
+        when(lastUpdatedPreferences.save(ResourceType.DASHBOARDS, lastUpdated)).thenReturn(false, true);
+
+        writeBehindPreferences.save(ResourceType.DASHBOARDS, lastUpdated);
+        writeBehindPreferences.flush();
+        writeBehindPreferences.flush();
+        writeBehindPreferences.flush();
+
+        verify(lastUpdatedPreferences, times(2)).save(ResourceType.DASHBOARDS, lastUpdated);
+        assertTrue(writeBehindPreferences.isSet(ResourceType.DASHBOARDS));
+    }
+
+    @Test
+    public void savedValuesShouldBeEvictedBeyondCacheLimit() {
+        DateTime lastUpdated = new DateTime();
+        WriteBehindLastUpdatedPreferences preferences =
+                new WriteBehindLastUpdatedPreferences(lastUpdatedPreferences, 2, 4);
+
+        for (int i = 0; i < 100; i++) {
+            preferences.save(ResourceType.EVENT, lastUpdated, "event" + i);
+        }
+        assertEquals(4, preferences.getCachedCount());
+
+        // evicted values are read through from underlying preferences
+        when(lastUpdatedPreferences.get(ResourceType.EVENT, "event0")).thenReturn(lastUpdated);
+        assertEquals(lastUpdated, preferences.get(ResourceType.EVENT, "event0"));
+        verify(lastUpdatedPreferences).get(ResourceType.EVENT, "event0");
+        assertEquals(4, preferences.getCachedCount());
+    }
+
+    @Test
+    public void unsavedValuesShouldNotBeEvicted() {
+        DateTime lastUpdated = new DateTime();
+        WriteBehindLastUpdatedPreferences preferences =
+                new WriteBehindLastUpdatedPreferences(lastUpdatedPreferences, 10, 2);
+
+        for (int i = 0; i < 5; i++) {
+            preferences.save(ResourceType.EVENT, lastUpdated, "event" + i);
+        }
+        assertEquals(5, preferences.getCachedCount());
+
+        preferences.flush();
+        assertEquals(2, preferences.getCachedCount());
+        verify(lastUpdatedPreferences).save(ResourceType.EVENT, lastUpdated, "event0");
+    }
+}
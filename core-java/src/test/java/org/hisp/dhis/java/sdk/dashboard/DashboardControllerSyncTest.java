@@ -0,0 +1,207 @@
+/*
+ * Copyright (c) 2015, University of Oslo
+ *
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.hisp.dhis.java.sdk.dashboard;
+
+import org.hisp.dhis.java.sdk.common.IStateStore;
+import org.hisp.dhis.java.sdk.common.persistence.memory.MemoryTransactionManager;
+import org.hisp.dhis.java.sdk.common.preferences.ILastUpdatedPreferences;
+import org.hisp.dhis.java.sdk.models.common.SystemInfo;
+import org.hisp.dhis.java.sdk.models.common.state.Action;
+import org.hisp.dhis.java.sdk.models.dashboard.Dashboard;
+import org.hisp.dhis.java.sdk.models.dashboard.DashboardContent;
+import org.hisp.dhis.java.sdk.models.dashboard.DashboardElement;
+import org.hisp.dhis.java.sdk.models.dashboard.DashboardItem;
+import org.hisp.dhis.java.sdk.systeminfo.ISystemInfoApiClient;
+import org.hisp.dhis.java.sdk.utils.ModelUtils;
+import org.joda.time.DateTime;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.CALLS_REAL_METHODS;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class DashboardControllerSyncTest {
+    private static final int DASHBOARDS = 500;
+    private static final int ITEMS = 5;
+    private static final int ELEMENTS = 5;
+    private static final DateTime LAST_UPDATED = new DateTime(2015, 1, 1, 0, 0);
+
+    private IDashboardStore dashboardStore;
+    private IDashboardItemStore dashboardItemStore;
+    private IDashboardElementStore dashboardElementStore;
+    private IStateStore stateStore;
+    private IDashboardApiClient dashboardApiClient;
+
+    private List<Dashboard> persistedDashboards;
+    private List<DashboardItem> persistedItems;
+    private List<DashboardElement> persistedElements;
+
+    private DashboardController dashboardController;
+
+    @Before
+    public void setUp() {
+        dashboardStore = mock(IDashboardStore.class);
+        dashboardItemStore = mock(IDashboardItemStore.class);
+        dashboardElementStore = mock(IDashboardElementStore.class);
+        stateStore = mock(IStateStore.class);
+        dashboardApiClient = mock(IDashboardApiClient.class);
+        ISystemInfoApiClient systemInfoApiClient = mock(ISystemInfoApiClient.class);
+
+        SystemInfo systemInfo = new SystemInfo();
+        systemInfo.setServerDate(new DateTime());
+        when(systemInfoApiClient.getSystemInfo()).thenReturn(systemInfo);
+
+        persistedDashboards = new ArrayList<>();
+        persistedItems = new ArrayList<>();
+        persistedElements = new ArrayList<>();
+        List<Dashboard> basicDashboards = new ArrayList<>();
+        for (int d = 0; d < DASHBOARDS; d++) {
+            Dashboard dashboard = dashboard(d + 1, "d" + d);
+            persistedDashboards.add(dashboard);
+            basicDashboards.add(dashboard(0, "d" + d));
+
+            for (int i = 0; i < ITEMS; i++) {
+                DashboardItem item = item(d * ITEMS + i + 1, "d" + d + "i" + i, dashboard);
+                persistedItems.add(item);
+
+                for (int e = 0; e < ELEMENTS; e++) {
+                    persistedElements.add(element(persistedElements.size() + 1,
+                            "d" + d + "i" + i + "e" + e, item));
+                }
+            }
+        }
+
+        when(stateStore.queryModelsWithActions(Dashboard.class, Action.SYNCED,
+                Action.TO_UPDATE, Action.TO_DELETE)).thenReturn(persistedDashboards);
+        when(stateStore.queryModelsWithActions(DashboardItem.class, Action.SYNCED,
+                Action.TO_UPDATE, Action.TO_DELETE)).thenReturn(persistedItems);
+        when(stateStore.queryModelsWithActions(DashboardElement.class, Action.SYNCED,
+                Action.TO_UPDATE, Action.TO_DELETE)).thenReturn(persistedElements);
+        when(dashboardApiClient.getBasicDashboards(null)).thenReturn(basicDashboards);
+        when(dashboardApiClient.getFullDashboards(any(DateTime.class))).thenReturn(new ArrayList<Dashboard>());
+        when(dashboardApiClient.getBasicDashboardItems(any(DateTime.class))).thenReturn(new ArrayList<DashboardItem>());
+
+        dashboardController = new DashboardController(dashboardStore, dashboardItemStore,
+                dashboardElementStore, mock(IDashboardItemContentStore.class), stateStore,
+                dashboardApiClient, systemInfoApiClient, mock(ILastUpdatedPreferences.class),
+                new MemoryTransactionManager(new ReentrantReadWriteLock()), mock(ModelUtils.class, CALLS_REAL_METHODS));
+    }
+
+    // 500 dashboards with 12500 elements are synced in about 100 ms; quadratic
+    // matching of elements took seconds, so the timeout leaves plenty of room
+    @Test(timeout = 5000)
+    public void syncShouldQueryPersistedModelsOnceRegardlessOfDashboardCount() {
+        dashboardController.sync();
+
+        verify(stateStore, times(1)).queryModelsWithActions(Dashboard.class,
+                Action.SYNCED, Action.TO_UPDATE, Action.TO_DELETE);
+        verify(stateStore, times(1)).queryModelsWithActions(DashboardItem.class,
+                Action.SYNCED, Action.TO_UPDATE, Action.TO_DELETE);
+        verify(stateStore, times(1)).queryModelsWithActions(DashboardElement.class,
+                Action.SYNCED, Action.TO_UPDATE, Action.TO_DELETE);
+        verify(dashboardElementStore, never()).insert(any(DashboardElement.class));
+        verify(dashboardElementStore, never()).delete(any(DashboardElement.class));
+        verify(dashboardElementStore, never()).insertAll(any(List.class));
+        verify(dashboardElementStore, never()).deleteAll(any(List.class));
+    }
+
+    @Test
+    public void syncShouldOnlyInsertAndDeleteChangedElements() {
+        // server sends one updated dashboard where the first element
+        // of the first item was replaced with a new one
+        Dashboard updatedDashboard = dashboard(0, "d0", LAST_UPDATED.plusDays(1));
+        List<DashboardItem> updatedItems = new ArrayList<>();
+        DashboardElement addedElement = null;
+        for (int i = 0; i < ITEMS; i++) {
+            DashboardItem item = item(0, "d0i" + i, updatedDashboard);
+            List<DashboardElement> elements = new ArrayList<>();
+            for (int e = i == 0 ? 1 : 0; e < ELEMENTS; e++) {
+                elements.add(element(0, "d0i" + i + "e" + e, item));
+            }
+            if (i == 0) {
+                addedElement = element(0, "d0i0new", item);
+                elements.add(addedElement);
+            }
+            item.setDashboardElements(elements);
+            updatedItems.add(item);
+        }
+        updatedDashboard.setDashboardItems(updatedItems);
+
+        List<Dashboard> updatedDashboards = new ArrayList<>();
+        updatedDashboards.add(updatedDashboard);
+        when(dashboardApiClient.getFullDashboards(any(DateTime.class))).thenReturn(updatedDashboards);
+
+        dashboardController.sync();
+
+        verify(dashboardElementStore, times(1)).insert(addedElement);
+        verify(dashboardElementStore, times(1)).delete(persistedElements.get(0));
+        verify(dashboardElementStore, never()).insertAll(any(List.class));
+        verify(dashboardElementStore, never()).deleteAll(any(List.class));
+    }
+
+    private static Dashboard dashboard(long id, String uid) {
+        return dashboard(id, uid, LAST_UPDATED);
+    }
+
+    private static Dashboard dashboard(long id, String uid, DateTime lastUpdated) {
+        Dashboard dashboard = new Dashboard();
+        dashboard.setId(id);
+        dashboard.setUId(uid);
+        dashboard.setLastUpdated(lastUpdated);
+        return dashboard;
+    }
+
+    private static DashboardItem item(long id, String uid, Dashboard dashboard) {
+        DashboardItem item = new DashboardItem();
+        item.setId(id);
+        item.setUId(uid);
+        item.setLastUpdated(LAST_UPDATED);
+        item.setType(DashboardContent.TYPE_REPORTS);
+        item.setDashboard(dashboard);
+        return item;
+    }
+
+    private static DashboardElement element(long id, String uid, DashboardItem item) {
+        DashboardElement element = new DashboardElement();
+        element.setId(id);
+        element.setUId(uid);
+        element.setLastUpdated(LAST_UPDATED);
+        element.setDashboardItem(item);
+        return element;
+    }
+}
@@ -28,6 +28,7 @@
 
 package org.hisp.dhis.java.sdk.dashboard;
 
+import org.hisp.dhis.java.sdk.common.ActionMap;
 import org.hisp.dhis.java.sdk.common.IStateStore;
 import org.hisp.dhis.java.sdk.models.common.state.Action;
 import org.hisp.dhis.java.sdk.models.dashboard.DashboardContent;
@@ -38,9 +39,7 @@ import org.junit.Before;
 import org.junit.Test;
 
 import java.util.Arrays;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
 
 import static org.junit.Assert.*;
 import static org.mockito.Mockito.*;
@@ -176,7 +175,7 @@ public class DashboardElementServiceTest {
         dashboardElementToDelete.setId(3L);
         dashboardElementToPost.setId(4L);
 
-        Map<Long, Action> actionMap = new HashMap<>();
+        ActionMap actionMap = new ActionMap();
         actionMap.put(dashboardElementSynced.getId(), Action.SYNCED);
         actionMap.put(dashboardElementToUpdate.getId(), Action.TO_UPDATE);
         actionMap.put(dashboardElementToDelete.getId(), Action.TO_DELETE);
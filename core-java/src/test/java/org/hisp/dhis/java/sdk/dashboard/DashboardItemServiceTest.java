@@ -28,6 +28,7 @@
 
 package org.hisp.dhis.java.sdk.dashboard;
 
+import org.hisp.dhis.java.sdk.common.ActionMap;
 import org.hisp.dhis.java.sdk.common.IStateStore;
 import org.hisp.dhis.java.sdk.models.common.state.Action;
 import org.hisp.dhis.java.sdk.models.dashboard.Dashboard;
@@ -38,9 +39,7 @@ import org.junit.Before;
 import org.junit.Test;
 
 import java.util.Arrays;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
 
 import static org.junit.Assert.*;
 import static org.mockito.Mockito.*;
@@ -90,7 +89,7 @@ public class DashboardItemServiceTest {
         dashboardItemToUpdate.setId(3L);
         dashboardItemToDelete.setId(4L);
 
-        Map<Long, Action> actionMap = new HashMap<>();
+        ActionMap actionMap = new ActionMap();
         actionMap.put(1L, Action.SYNCED);
         actionMap.put(2L, Action.TO_POST);
         actionMap.put(3L, Action.TO_UPDATE);
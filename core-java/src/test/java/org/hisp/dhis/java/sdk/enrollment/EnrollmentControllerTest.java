@@ -28,28 +28,38 @@
 package org.hisp.dhis.java.sdk.enrollment;
 
 
+import org.hisp.dhis.java.sdk.common.ActionMap;
 import org.hisp.dhis.java.sdk.common.IFailedItemStore;
 import org.hisp.dhis.java.sdk.common.IStateStore;
 import org.hisp.dhis.java.sdk.common.preferences.ILastUpdatedPreferences;
 import org.hisp.dhis.java.sdk.event.IEventStore;
+import org.hisp.dhis.java.sdk.models.common.faileditem.FailedItem;
+import org.hisp.dhis.java.sdk.models.common.importsummary.ImportSummaries;
+import org.hisp.dhis.java.sdk.models.common.importsummary.ImportSummary;
+import org.hisp.dhis.java.sdk.models.common.state.Action;
 import org.hisp.dhis.java.sdk.models.enrollment.Enrollment;
+import org.hisp.dhis.java.sdk.models.event.Event;
 import org.hisp.dhis.java.sdk.models.trackedentity.TrackedEntityInstance;
-import org.hisp.dhis.java.sdk.systeminfo.ISystemInfoApiClient;
+import org.hisp.dhis.java.sdk.systeminfo.IServerClock;
 import org.hisp.dhis.java.sdk.common.persistence.ITransactionManager;
 import org.hisp.dhis.java.sdk.event.IEventController;
 import org.hisp.dhis.java.sdk.utils.IModelUtils;
 import org.junit.Before;
 import org.junit.Test;
+import org.mockito.ArgumentCaptor;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
-import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.*;
 
 public class EnrollmentControllerTest {
 
     private IEnrollmentApiClient enrollmentApiClient;
-    private ISystemInfoApiClient systemInfoApiClient;
+    private IServerClock serverClock;
     private ILastUpdatedPreferences lastUpdatedPreferences;
     private ITransactionManager transactionManager;
 
@@ -64,7 +74,7 @@ public class EnrollmentControllerTest {
     @Before
     public void setUp() {
         enrollmentApiClient = mock(IEnrollmentApiClient.class);
-        systemInfoApiClient = mock(ISystemInfoApiClient.class);
+        serverClock = mock(IServerClock.class);
         lastUpdatedPreferences = mock(ILastUpdatedPreferences.class);
         transactionManager = mock(ITransactionManager.class);
         eventStore = mock(IEventStore.class);
@@ -74,7 +84,7 @@ public class EnrollmentControllerTest {
         enrollmentStore = mock(IEnrollmentStore.class);
         modelUtils = mock(IModelUtils.class);
 
-        enrollmentController = new EnrollmentController(enrollmentApiClient, systemInfoApiClient,
+        enrollmentController = new EnrollmentController(enrollmentApiClient, serverClock,
                 lastUpdatedPreferences, transactionManager, eventController, enrollmentStore,
                 eventStore, stateStore, failedItemStore, modelUtils);
     }
@@ -87,4 +97,91 @@ public class EnrollmentControllerTest {
 
         assertTrue(enrollmentsForTrackedEntityInstance.size() == 0);
     }
+
+    @Test
+    public void testSendEnrollmentChangesInBatchesHoldsBackUnsentTrackedEntityInstances() {
+        TrackedEntityInstance unsentTrackedEntityInstance = new TrackedEntityInstance();
+        unsentTrackedEntityInstance.setId(1);
+        TrackedEntityInstance syncedTrackedEntityInstance = new TrackedEntityInstance();
+        syncedTrackedEntityInstance.setId(2);
+
+        Enrollment blockedEnrollment = new Enrollment();
+        blockedEnrollment.setId(11);
+        blockedEnrollment.setTrackedEntityInstance(unsentTrackedEntityInstance);
+        Enrollment releasedEnrollment = new Enrollment();
+        releasedEnrollment.setId(12);
+        releasedEnrollment.setTrackedEntityInstance(syncedTrackedEntityInstance);
+        List<Enrollment> enrollments = Arrays.asList(blockedEnrollment, releasedEnrollment);
+
+        ActionMap enrollmentActions = new ActionMap();
+        enrollmentActions.put(11, Action.TO_POST);
+        enrollmentActions.put(12, Action.TO_POST);
+        ActionMap trackedEntityInstanceActions = new ActionMap();
+        trackedEntityInstanceActions.put(1, Action.TO_POST);
+        trackedEntityInstanceActions.put(2, Action.SYNCED);
+
+        ImportSummary success = new ImportSummary();
+        success.setStatus(ImportSummary.Status.SUCCESS);
+        ImportSummaries importSummaries = new ImportSummaries();
+        importSummaries.setImportSummaries(Arrays.asList(success));
+
+        Event event = new Event();
+        when(stateStore.queryActionsForModels(eq(Enrollment.class), anyCollectionOf(Enrollment.class)))
+                .thenReturn(enrollmentActions);
+        when(stateStore.queryActionsForModels(eq(TrackedEntityInstance.class), anyCollectionOf(TrackedEntityInstance.class)))
+                .thenReturn(trackedEntityInstanceActions);
+        when(enrollmentApiClient.postEnrollments(anyListOf(Enrollment.class))).thenReturn(importSummaries);
+        when(eventStore.query(blockedEnrollment)).thenReturn(new ArrayList<Event>());
+        when(eventStore.query(releasedEnrollment)).thenReturn(Arrays.asList(event));
+
+        enrollmentController.setPushBatchSize(10);
+        enrollmentController.sendEnrollmentChanges(enrollments);
+
+        verify(enrollmentApiClient, times(1)).postEnrollments(Arrays.asList(releasedEnrollment));
+        verify(enrollmentApiClient, never()).postEnrollment(any(Enrollment.class));
+        verify(stateStore).saveActionsForModels(Arrays.asList(releasedEnrollment), Action.SYNCED);
+        verify(eventController, times(1)).sendEventChanges(Arrays.asList(event));
+    }
+
+    @Test
+    public void testSendEnrollmentChangesInBatchesRecordsOnlyFailedSummaries() {
+        TrackedEntityInstance trackedEntityInstance = new TrackedEntityInstance();
+        trackedEntityInstance.setId(1);
+
+        Enrollment rejectedEnrollment = new Enrollment();
+        rejectedEnrollment.setId(11);
+        rejectedEnrollment.setTrackedEntityInstance(trackedEntityInstance);
+        Enrollment acceptedEnrollment = new Enrollment();
+        acceptedEnrollment.setId(12);
+        acceptedEnrollment.setTrackedEntityInstance(trackedEntityInstance);
+        List<Enrollment> enrollments = Arrays.asList(rejectedEnrollment, acceptedEnrollment);
+
+        ActionMap enrollmentActions = new ActionMap();
+        enrollmentActions.put(11, Action.TO_POST);
+        enrollmentActions.put(12, Action.TO_POST);
+        ActionMap trackedEntityInstanceActions = new ActionMap();
+        trackedEntityInstanceActions.put(1, Action.SYNCED);
+
+        ImportSummary error = new ImportSummary();
+        error.setStatus(ImportSummary.Status.ERROR);
+        ImportSummary success = new ImportSummary();
+        success.setStatus(ImportSummary.Status.SUCCESS);
+        ImportSummaries importSummaries = new ImportSummaries();
+        importSummaries.setImportSummaries(Arrays.asList(error, success));
+
+        when(stateStore.queryActionsForModels(eq(Enrollment.class), anyCollectionOf(Enrollment.class)))
+                .thenReturn(enrollmentActions);
+        when(stateStore.queryActionsForModels(eq(TrackedEntityInstance.class), anyCollectionOf(TrackedEntityInstance.class)))
+                .thenReturn(trackedEntityInstanceActions);
+        when(enrollmentApiClient.postEnrollments(anyListOf(Enrollment.class))).thenReturn(importSummaries);
+        when(eventStore.query(any(Enrollment.class))).thenReturn(new ArrayList<Event>());
+
+        enrollmentController.setPushBatchSize(10);
+        enrollmentController.sendEnrollmentChanges(enrollments);
+
+        ArgumentCaptor<FailedItem> failedItem = ArgumentCaptor.forClass(FailedItem.class);
+        verify(failedItemStore, times(1)).save(failedItem.capture());
+        assertEquals(11, failedItem.getValue().getItemId());
+        verify(stateStore).saveActionsForModels(Arrays.asList(acceptedEnrollment), Action.SYNCED);
+    }
 }
@@ -1,13 +1,21 @@
 package org.hisp.dhis.java.sdk.event;
 
 
+import org.hisp.dhis.java.sdk.common.ActionMap;
+import org.hisp.dhis.java.sdk.common.controllers.TrackerPushPlanner;
 import org.hisp.dhis.java.sdk.common.IFailedItemStore;
 import org.hisp.dhis.java.sdk.common.IStateStore;
+import org.hisp.dhis.java.sdk.common.network.ApiException;
+import org.hisp.dhis.java.sdk.common.network.IChunkConsumer;
+import org.hisp.dhis.java.sdk.common.persistence.DbAction;
+import org.hisp.dhis.java.sdk.common.persistence.IDbOperation;
 import org.hisp.dhis.java.sdk.common.persistence.ITransactionManager;
 import org.hisp.dhis.java.sdk.common.preferences.ILastUpdatedPreferences;
 import org.hisp.dhis.java.sdk.common.preferences.ResourceType;
 import org.hisp.dhis.java.sdk.enrollment.EnrollmentController;
-import org.hisp.dhis.java.sdk.models.common.SystemInfo;
+import org.hisp.dhis.java.sdk.models.common.faileditem.FailedItem;
+import org.hisp.dhis.java.sdk.models.common.importsummary.ImportSummaries;
+import org.hisp.dhis.java.sdk.models.common.importsummary.ImportSummary;
 import org.hisp.dhis.java.sdk.models.common.state.Action;
 import org.hisp.dhis.java.sdk.models.enrollment.Enrollment;
 import org.hisp.dhis.java.sdk.models.event.Event;
@@ -17,17 +25,31 @@ import org.hisp.dhis.java.sdk.models.trackedentity.TrackedEntityDataValue;
 import org.hisp.dhis.java.sdk.models.trackedentity.TrackedEntityInstance;
 import org.hisp.dhis.java.sdk.organisationunit.IOrganisationUnitStore;
 import org.hisp.dhis.java.sdk.program.IProgramStore;
-import org.hisp.dhis.java.sdk.systeminfo.ISystemInfoApiClient;
+import org.hisp.dhis.java.sdk.systeminfo.IServerClock;
 import org.hisp.dhis.java.sdk.trackedentity.ITrackedEntityDataValueStore;
 import org.hisp.dhis.java.sdk.utils.IModelUtils;
 import org.joda.time.DateTime;
 import org.junit.Before;
 import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
-
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 import static org.mockito.Mockito.*;
 
 public class EventControllerTest {
@@ -35,7 +57,7 @@ public class EventControllerTest {
 
     private EventController eventController;
     private IEventApiClient eventApiClientMock;
-    private ISystemInfoApiClient systemInfoApiClientMock;
+    private IServerClock serverClockMock;
     private ILastUpdatedPreferences lastUpdatedPreferencesMock;
     private IStateStore stateStoreMock;
     private ITransactionManager transactionManagerMock;
@@ -48,7 +70,6 @@ public class EventControllerTest {
 
     private DateTime lastUpdated;
     private DateTime serverDateTime;
-    private SystemInfo systemInfo;
     private Enrollment enrollment;
     private Program program;
     private OrganisationUnit organisationUnit;
@@ -71,7 +92,7 @@ public class EventControllerTest {
     public void setUp() {
 
         eventApiClientMock = mock(IEventApiClient.class);
-        systemInfoApiClientMock = mock(ISystemInfoApiClient.class);
+        serverClockMock = mock(IServerClock.class);
         lastUpdatedPreferencesMock = mock(ILastUpdatedPreferences.class);
         stateStoreMock = mock(IStateStore.class);
         transactionManagerMock = mock(ITransactionManager.class);
@@ -100,9 +121,7 @@ public class EventControllerTest {
         dataValue = new TrackedEntityDataValue();
 
         lastUpdated = new DateTime(2015, 5, 1, 1, 1);
-        systemInfo = new SystemInfo();
         serverDateTime = new DateTime();
-        systemInfo.setServerDate(serverDateTime);
 
         basicEvent = new Event();
         basicEvent.setUId(EVENT_UID);
@@ -114,11 +133,11 @@ public class EventControllerTest {
         fullEvent.setTrackedEntityDataValues(Arrays.asList(dataValue));
 
         when(lastUpdatedPreferencesMock.get(ResourceType.EVENTS, ENROLLMENT_UID)).thenReturn(lastUpdated);
-        when(systemInfoApiClientMock.getSystemInfo()).thenReturn(systemInfo);
+        when(serverClockMock.getServerDate()).thenReturn(serverDateTime);
         when(eventApiClientMock.getBasicEvents(program.getUId(), enrollment.getStatus(), trackedEntityInstance.getTrackedEntityInstanceUid(), null)).thenReturn(Arrays.asList(basicEvent));
         when(eventApiClientMock.getFullEvents(program.getUId(), enrollment.getStatus(), trackedEntityInstance.getTrackedEntityInstanceUid(), lastUpdated)).thenReturn(Arrays.asList(basicEvent));
 
-        eventController = new EventController(eventApiClientMock, systemInfoApiClientMock, lastUpdatedPreferencesMock,
+        eventController = new EventController(eventApiClientMock, serverClockMock, lastUpdatedPreferencesMock,
                 transactionManagerMock, stateStoreMock, eventStoreMock, trackedEntityDataValueStoreMock,
                 organisationUnitStoreMock, programStoreMock, failedItemStoreMock, modelUtilsMock);
     }
@@ -189,11 +208,349 @@ public class EventControllerTest {
 
         when(stateStoreMock.queryModelsWithActions(Event.class, Action.TO_POST)).thenReturn(Arrays.asList(eventToPost));
         when(stateStoreMock.queryModelsWithActions(Event.class, Action.TO_UPDATE)).thenReturn(Arrays.asList(eventToUpdate));
-        when(stateStoreMock.queryActionForModel(enrollment)).thenReturn(Action.TO_POST);
-        when(stateStoreMock.queryActionForModel(enrollmentToUpdate)).thenReturn(Action.TO_UPDATE);
+        ActionMap enrollmentActionMap = new ActionMap();
+        enrollmentActionMap.put(enrollment.getId(), Action.TO_POST);
+        when(stateStoreMock.queryActionsForModels(eq(Event.class), anyCollectionOf(Event.class)))
+                .thenReturn(new ActionMap());
+        when(stateStoreMock.queryActionsForModels(eq(Enrollment.class), anyCollectionOf(Enrollment.class)))
+                .thenReturn(enrollmentActionMap);
 
         eventController.sync();
 
     }
 
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testSendEventChangesReconcilesTimestampsInChunks() {
+        List<Event> events = new ArrayList<>();
+        ActionMap actionMap = new ActionMap();
+        for (int i = 1; i <= 250; i++) {
+            Event event = new Event();
+            event.setId(i);
+            event.setUId("event" + i);
+            event.setTrackedEntityDataValues(new ArrayList<TrackedEntityDataValue>());
+            events.add(event);
+            actionMap.put(i, Action.TO_UPDATE);
+        }
+
+        final ImportSummary success = new ImportSummary();
+        success.setStatus(ImportSummary.Status.SUCCESS);
+        Event updatedEvent = new Event();
+        updatedEvent.setUId("event250");
+        updatedEvent.setLastUpdated(serverDateTime);
+
+        when(stateStoreMock.queryActionsForModels(eq(Event.class), anyCollectionOf(Event.class)))
+                .thenReturn(actionMap);
+        when(stateStoreMock.queryActionsForModels(eq(Enrollment.class), anyCollectionOf(Enrollment.class)))
+                .thenReturn(new ActionMap());
+        when(eventApiClientMock.putEvents(anyListOf(Event.class))).thenAnswer(new Answer<ImportSummaries>() {
+            @Override
+            public ImportSummaries answer(InvocationOnMock invocation) throws Throwable {
+                ImportSummaries importSummaries = new ImportSummaries();
+                importSummaries.setImportSummaries(Collections.nCopies(
+                        ((List<Event>) invocation.getArguments()[0]).size(), success));
+                return importSummaries;
+            }
+        });
+        when(eventApiClientMock.getEventTimestamps(anySetOf(String.class))).thenReturn(Arrays.asList(updatedEvent));
+
+        eventController.setPushBatchSize(250);
+        eventController.sendEventChanges(events);
+
+        // uids of all pushed events do not fit into one query string
+        ArgumentCaptor<Set> captor = ArgumentCaptor.forClass(Set.class);
+        verify(eventApiClientMock, times(3)).getEventTimestamps(captor.capture());
+        Set<String> requestedUids = new HashSet<>();
+        for (Set uids : captor.getAllValues()) {
+            assertTrue(uids.size() <= TrackerPushPlanner.MAX_TIMESTAMP_UIDS);
+            requestedUids.addAll(uids);
+        }
+        assertEquals(250, requestedUids.size());
+        assertEquals(serverDateTime, events.get(249).getLastUpdated());
+    }
+
+    @Test
+    public void testSendEventChangesInBatches() {
+        List<Event> events = new ArrayList<>();
+        ActionMap actionMap = new ActionMap();
+        for (int i = 1; i <= 3; i++) {
+            Event event = new Event();
+            event.setId(i);
+            event.setTrackedEntityDataValues(new ArrayList<TrackedEntityDataValue>());
+            events.add(event);
+            actionMap.put(i, Action.TO_POST);
+        }
+
+        ImportSummary success = new ImportSummary();
+        success.setStatus(ImportSummary.Status.SUCCESS);
+        success.setReference(EVENT_UID);
+        ImportSummary error = new ImportSummary();
+        error.setStatus(ImportSummary.Status.ERROR);
+
+        ImportSummaries firstBatch = new ImportSummaries();
+        firstBatch.setImportSummaries(Arrays.asList(success, error));
+        ImportSummaries secondBatch = new ImportSummaries();
+        secondBatch.setImportSummaries(Arrays.asList(success));
+
+        when(stateStoreMock.queryActionsForModels(eq(Event.class), anyCollectionOf(Event.class)))
+                .thenReturn(actionMap);
+        when(stateStoreMock.queryActionsForModels(eq(Enrollment.class), anyCollectionOf(Enrollment.class)))
+                .thenReturn(new ActionMap());
+        when(eventApiClientMock.postEvents(anyListOf(Event.class))).thenReturn(firstBatch, secondBatch);
+
+        eventController.setPushBatchSize(2);
+        eventController.sendEventChanges(events);
+
+        verify(eventApiClientMock, times(2)).postEvents(anyListOf(Event.class));
+        verify(eventApiClientMock, never()).postEvent(any(Event.class));
+        verify(stateStoreMock).saveActionsForModels(Arrays.asList(events.get(0)), Action.SYNCED);
+        verify(stateStoreMock).saveActionsForModels(Arrays.asList(events.get(2)), Action.SYNCED);
+        verify(failedItemStoreMock, times(1)).save(any(FailedItem.class));
+        assertEquals(EVENT_UID, events.get(0).getUId());
+
+        // timestamps of all pushed events are fetched with one request
+        verify(eventApiClientMock, times(1)).getEventTimestamps(Collections.singleton(EVENT_UID));
+        verify(eventApiClientMock, never()).getBasicEvent(anyString(), any(DateTime.class));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testSyncWithOrgUnitProgramPersistsStreamedEventsInChunks() {
+        dataValue.setDataElement("dataElementUid");
+        Event persistedEvent = new Event();
+        persistedEvent.setId(7);
+        persistedEvent.setUId(EVENT_UID);
+        persistedEvent.setLastUpdated(lastUpdated);
+        Event removedEvent = new Event();
+        removedEvent.setId(8);
+        removedEvent.setUId("removedEvent");
+        final Event newEvent = new Event();
+        newEvent.setUId("newEvent");
+        newEvent.setLastUpdated(new DateTime());
+
+        when(organisationUnitStoreMock.queryByUid(ORGANISATIONUNIT_UID)).thenReturn(organisationUnit);
+        when(programStoreMock.queryByUid(PROGRAM_UID)).thenReturn(program);
+        when(eventStoreMock.query(organisationUnit, program)).thenReturn(Arrays.asList(persistedEvent, removedEvent));
+        when(stateStoreMock.queryActionsForModels(eq(Event.class), anyCollectionOf(Event.class))).thenReturn(new ActionMap());
+        doAnswer(new Answer<Void>() {
+            @Override
+            public Void answer(InvocationOnMock invocation) throws Throwable {
+                IChunkConsumer<Event> consumer = (IChunkConsumer<Event>) invocation.getArguments()[5];
+                consumer.consume(new ArrayList<>(Arrays.asList(fullEvent)));
+                consumer.consume(new ArrayList<>(Arrays.asList(newEvent)));
+                return null;
+            }
+        }).when(eventApiClientMock).getFullEvents(eq(PROGRAM_UID), eq(ORGANISATIONUNIT_UID), eq(100),
+                any(DateTime.class), eq(1), any(IChunkConsumer.class));
+
+        eventController.setDownloadChunkSize(1);
+        eventController.sync(ORGANISATIONUNIT_UID, PROGRAM_UID, 100, serverDateTime);
+
+        ArgumentCaptor<Collection> captor = ArgumentCaptor.forClass(Collection.class);
+        verify(transactionManagerMock, times(3)).transact(captor.capture());
+        List<Collection> transactions = captor.getAllValues();
+
+        // first chunk updates persisted event and inserts its data value
+        List<IDbOperation> firstChunk = new ArrayList<>(transactions.get(0));
+        assertEquals(2, firstChunk.size());
+        assertEquals(DbAction.UPDATE, firstChunk.get(0).getAction());
+        assertEquals(fullEvent, firstChunk.get(0).getModel());
+        assertEquals(7, fullEvent.getId());
+        assertEquals(DbAction.INSERT, firstChunk.get(1).getAction());
+
+        List<IDbOperation> secondChunk = new ArrayList<>(transactions.get(1));
+        assertEquals(1, secondChunk.size());
+        assertEquals(DbAction.INSERT, secondChunk.get(0).getAction());
+        assertEquals(newEvent, secondChunk.get(0).getModel());
+
+        // events which were not received are deleted at the end
+        List<IDbOperation> deletions = new ArrayList<>(transactions.get(2));
+        assertEquals(1, deletions.size());
+        assertEquals(DbAction.DELETE, deletions.get(0).getAction());
+        assertEquals(removedEvent, deletions.get(0).getModel());
+
+        verify(lastUpdatedPreferencesMock).save(ResourceType.EVENTS, serverDateTime, ORGANISATIONUNIT_UID + PROGRAM_UID);
+    }
+
+    @Test(timeout = 10000)
+    public void testSyncAllPersistsPagesAndMovesCheckpointOverCompletedPrefix() {
+        final DateTime firstLastUpdated = new DateTime(2015, 6, 1, 0, 0);
+        final CountDownLatch laterPagesDone = new CountDownLatch(2);
+        Event removedEvent = new Event();
+        removedEvent.setId(8);
+        removedEvent.setUId("removedEvent");
+
+        when(organisationUnitStoreMock.queryByUid(ORGANISATIONUNIT_UID)).thenReturn(organisationUnit);
+        when(programStoreMock.queryByUid(PROGRAM_UID)).thenReturn(program);
+        when(eventStoreMock.query(organisationUnit, program)).thenReturn(Arrays.asList(removedEvent));
+        when(stateStoreMock.queryActionsForModels(eq(Event.class), anyCollectionOf(Event.class))).thenReturn(new ActionMap());
+        when(eventApiClientMock.getEventCount(PROGRAM_UID, ORGANISATIONUNIT_UID, null, serverDateTime)).thenReturn(5);
+        doAnswer(new Answer<Void>() {
+            @Override
+            @SuppressWarnings("unchecked")
+            public Void answer(InvocationOnMock invocation) throws Throwable {
+                int page = (Integer) invocation.getArguments()[4];
+                // first page arrives last, so checkpoint has to wait for it
+                if (page == 1) {
+                    laterPagesDone.await();
+                }
+                List<Event> events = new ArrayList<>();
+                for (int i = (page - 1) * 2; i < Math.min(page * 2, 5); i++) {
+                    Event event = new Event();
+                    event.setUId("event" + i);
+                    event.setLastUpdated(firstLastUpdated.plusMinutes(i));
+                    events.add(event);
+                }
+                ((IChunkConsumer<Event>) invocation.getArguments()[7]).consume(events);
+                if (page != 1) {
+                    laterPagesDone.countDown();
+                }
+                return null;
+            }
+        }).when(eventApiClientMock).getFullEventsPage(eq(PROGRAM_UID), eq(ORGANISATIONUNIT_UID),
+                any(DateTime.class), eq(serverDateTime), anyInt(), eq(2), anyInt(), any(IChunkConsumer.class));
+
+        ExecutorService executorService = Executors.newFixedThreadPool(3);
+        try {
+            eventController.setDownloadPageSize(2);
+            eventController.syncAll(ORGANISATIONUNIT_UID, PROGRAM_UID, serverDateTime, executorService, 3);
+        } finally {
+            executorService.shutdownNow();
+        }
+
+        ArgumentCaptor<Collection> captor = ArgumentCaptor.forClass(Collection.class);
+        verify(transactionManagerMock, times(4)).transact(captor.capture());
+        int inserted = 0;
+        for (Collection operations : captor.getAllValues().subList(0, 3)) {
+            inserted += operations.size();
+        }
+        assertEquals(5, inserted);
+
+        // events which were not received are deleted, as the whole history was downloaded
+        List<IDbOperation> deletions = new ArrayList<IDbOperation>(captor.getAllValues().get(3));
+        assertEquals(1, deletions.size());
+        assertEquals(removedEvent, deletions.get(0).getModel());
+
+        String extraIdentifier = ORGANISATIONUNIT_UID + PROGRAM_UID;
+        verify(lastUpdatedPreferencesMock, times(1)).save(ResourceType.EVENTS,
+                firstLastUpdated.plusMinutes(4).minusMillis(1), extraIdentifier);
+        verify(lastUpdatedPreferencesMock, never()).save(ResourceType.EVENTS,
+                firstLastUpdated.plusMinutes(3).minusMillis(1), extraIdentifier);
+        verify(lastUpdatedPreferencesMock).save(ResourceType.EVENTS, serverDateTime, extraIdentifier);
+    }
+
+    @Test(timeout = 10000)
+    public void testSyncAllKeepsCheckpointOfPersistedPagesWhenPageFails() {
+        final DateTime firstLastUpdated = new DateTime(2015, 6, 1, 0, 0);
+        when(stateStoreMock.queryActionsForModels(eq(Event.class), anyCollectionOf(Event.class))).thenReturn(new ActionMap());
+        when(eventApiClientMock.getEventCount(PROGRAM_UID, ORGANISATIONUNIT_UID, lastUpdated, serverDateTime)).thenReturn(4);
+        when(lastUpdatedPreferencesMock.get(ResourceType.EVENTS, ORGANISATIONUNIT_UID + PROGRAM_UID)).thenReturn(lastUpdated);
+        doAnswer(new Answer<Void>() {
+            @Override
+            @SuppressWarnings("unchecked")
+            public Void answer(InvocationOnMock invocation) throws Throwable {
+                if ((Integer) invocation.getArguments()[4] == 2) {
+                    throw ApiException.unexpectedError(null, new RuntimeException("offline"));
+                }
+                Event event = new Event();
+                event.setUId("event");
+                event.setLastUpdated(firstLastUpdated);
+                ((IChunkConsumer<Event>) invocation.getArguments()[7]).consume(
+                        new ArrayList<>(Arrays.asList(event)));
+                return null;
+            }
+        }).when(eventApiClientMock).getFullEventsPage(eq(PROGRAM_UID), eq(ORGANISATIONUNIT_UID),
+                eq(lastUpdated), eq(serverDateTime), anyInt(), eq(2), anyInt(), any(IChunkConsumer.class));
+
+        ExecutorService executorService = Executors.newSingleThreadExecutor();
+        try {
+            eventController.setDownloadPageSize(2);
+            eventController.syncAll(ORGANISATIONUNIT_UID, PROGRAM_UID, serverDateTime, executorService, 1);
+            fail("ApiException expected");
+        } catch (ApiException apiException) {
+            assertEquals("offline", apiException.getMessage());
+        } finally {
+            executorService.shutdownNow();
+        }
+
+        String extraIdentifier = ORGANISATIONUNIT_UID + PROGRAM_UID;
+        verify(lastUpdatedPreferencesMock).save(ResourceType.EVENTS,
+                firstLastUpdated.minusMillis(1), extraIdentifier);
+        verify(lastUpdatedPreferencesMock, never()).save(ResourceType.EVENTS, serverDateTime, extraIdentifier);
+    }
+
+    @Test(timeout = 10000)
+    public void testSyncAllRestartsFromPreviousCheckpointWhenEventsDropOutDuringDownload() {
+        final DateTime firstLastUpdated = new DateTime(2015, 6, 1, 0, 0);
+        when(stateStoreMock.queryActionsForModels(eq(Event.class), anyCollectionOf(Event.class))).thenReturn(new ActionMap());
+        when(eventApiClientMock.getEventCount(PROGRAM_UID, ORGANISATIONUNIT_UID, lastUpdated, serverDateTime)).thenReturn(4);
+        when(lastUpdatedPreferencesMock.get(ResourceType.EVENTS, ORGANISATIONUNIT_UID + PROGRAM_UID)).thenReturn(lastUpdated);
+        doAnswer(new Answer<Void>() {
+            @Override
+            @SuppressWarnings("unchecked")
+            public Void answer(InvocationOnMock invocation) throws Throwable {
+                int page = (Integer) invocation.getArguments()[4];
+                // one event of the first page was deleted before second page was requested,
+                // so the event which was third moved to the first page and was never received
+                List<Event> events = new ArrayList<>();
+                for (int i = page == 1 ? 0 : 3; i < (page == 1 ? 2 : 4); i++) {
+                    Event event = new Event();
+                    event.setUId("event" + i);
+                    event.setLastUpdated(firstLastUpdated.plusMinutes(i));
+                    events.add(event);
+                }
+                ((IChunkConsumer<Event>) invocation.getArguments()[7]).consume(events);
+                return null;
+            }
+        }).when(eventApiClientMock).getFullEventsPage(eq(PROGRAM_UID), eq(ORGANISATIONUNIT_UID),
+                eq(lastUpdated), eq(serverDateTime), anyInt(), eq(2), anyInt(), any(IChunkConsumer.class));
+
+        ExecutorService executorService = Executors.newSingleThreadExecutor();
+        try {
+            eventController.setDownloadPageSize(2);
+            eventController.syncAll(ORGANISATIONUNIT_UID, PROGRAM_UID, serverDateTime, executorService, 1);
+        } finally {
+            executorService.shutdownNow();
+        }
+
+        String extraIdentifier = ORGANISATIONUNIT_UID + PROGRAM_UID;
+        InOrder inOrder = inOrder(lastUpdatedPreferencesMock);
+        inOrder.verify(lastUpdatedPreferencesMock).save(ResourceType.EVENTS,
+                firstLastUpdated.plusMinutes(3).minusMillis(1), extraIdentifier);
+        inOrder.verify(lastUpdatedPreferencesMock).save(ResourceType.EVENTS, lastUpdated, extraIdentifier);
+        verify(lastUpdatedPreferencesMock, never()).save(ResourceType.EVENTS, serverDateTime, extraIdentifier);
+    }
+
+    @Test(timeout = 10000)
+    public void testSyncAllWithoutServerDateUsesServerClock() {
+        when(stateStoreMock.queryActionsForModels(eq(Event.class), anyCollectionOf(Event.class))).thenReturn(new ActionMap());
+        when(eventApiClientMock.getEventCount(PROGRAM_UID, ORGANISATIONUNIT_UID, lastUpdated, serverDateTime)).thenReturn(1);
+        when(lastUpdatedPreferencesMock.get(ResourceType.EVENTS, ORGANISATIONUNIT_UID + PROGRAM_UID)).thenReturn(lastUpdated);
+        doAnswer(new Answer<Void>() {
+            @Override
+            @SuppressWarnings("unchecked")
+            public Void answer(InvocationOnMock invocation) throws Throwable {
+                Event event = new Event();
+                event.setUId("event");
+                event.setLastUpdated(lastUpdated.plusMinutes(1));
+                ((IChunkConsumer<Event>) invocation.getArguments()[7]).consume(
+                        new ArrayList<>(Arrays.asList(event)));
+                return null;
+            }
+        }).when(eventApiClientMock).getFullEventsPage(eq(PROGRAM_UID), eq(ORGANISATIONUNIT_UID),
+                eq(lastUpdated), eq(serverDateTime), anyInt(), eq(2), anyInt(), any(IChunkConsumer.class));
+
+        ExecutorService executorService = Executors.newSingleThreadExecutor();
+        try {
+            eventController.setDownloadPageSize(2);
+            eventController.syncAll(ORGANISATIONUNIT_UID, PROGRAM_UID, null, executorService, 1);
+        } finally {
+            executorService.shutdownNow();
+        }
+
+        verify(serverClockMock, times(1)).getServerDate();
+        verify(lastUpdatedPreferencesMock).save(ResourceType.EVENT, serverDateTime, "event");
+        verify(lastUpdatedPreferencesMock, never()).save(eq(ResourceType.EVENT), isNull(DateTime.class), anyString());
+        verify(lastUpdatedPreferencesMock).save(ResourceType.EVENTS, serverDateTime, ORGANISATIONUNIT_UID + PROGRAM_UID);
+    }
 }
@@ -0,0 +1,256 @@
+/*
+ * Copyright (c) 2015, University of Oslo
+ *
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.hisp.dhis.java.sdk.program;
+
+import org.hisp.dhis.java.sdk.common.persistence.memory.MemoryPersistenceModule;
+import org.hisp.dhis.java.sdk.event.IEventStore;
+import org.hisp.dhis.java.sdk.models.constant.Constant;
+import org.hisp.dhis.java.sdk.models.enrollment.Enrollment;
+import org.hisp.dhis.java.sdk.models.event.Event;
+import org.hisp.dhis.java.sdk.models.program.ProgramIndicator;
+import org.hisp.dhis.java.sdk.models.trackedentity.TrackedEntityAttributeValue;
+import org.hisp.dhis.java.sdk.models.trackedentity.TrackedEntityDataValue;
+import org.hisp.dhis.java.sdk.trackedentity.ITrackedEntityDataValueStore;
+import org.hisp.dhis.java.sdk.utils.IModelUtils;
+import org.joda.time.DateTime;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+
+public class CompiledProgramIndicatorTest {
+    private static final double DELTA = 1e-9;
+
+    private List<Constant> constants;
+    private List<Event> events;
+
+    @Before
+    public void setUp() {
+        Constant factor = new Constant();
+        factor.setUId("constantFactor");
+        factor.setValue(2.0);
+        constants = Collections.singletonList(factor);
+
+        events = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            // every fourth event lacks a weight, every fifth belongs to another stage
+            events.add(i % 4 == 0 ?
+                    event(i % 5 == 0 ? "stageB" : "stageA", "height", String.valueOf(150 + i)) :
+                    event(i % 5 == 0 ? "stageB" : "stageA", "weight", String.valueOf(i), "height", String.valueOf(150 + i)));
+        }
+    }
+
+    private static Event event(String programStage, String... dataValues) {
+        Event event = new Event();
+        event.setProgramStageId(programStage);
+
+        List<TrackedEntityDataValue> values = new ArrayList<>();
+        for (int i = 0; i < dataValues.length; i += 2) {
+            TrackedEntityDataValue dataValue = new TrackedEntityDataValue();
+            dataValue.setDataElement(dataValues[i]);
+            dataValue.setValue(dataValues[i + 1]);
+            values.add(dataValue);
+        }
+        event.setTrackedEntityDataValues(values);
+        return event;
+    }
+
+    private CompiledProgramIndicator compile(String expression) {
+        ProgramIndicator programIndicator = new ProgramIndicator();
+        programIndicator.setUId("indicatorUid");
+        programIndicator.setExpression(expression);
+        return CompiledProgramIndicator.compile(programIndicator, constants);
+    }
+
+    /**
+     * The columnar kernel has to agree with evaluating the events one by one.
+     */
+    private void assertAggregateMatchesRows(CompiledProgramIndicator indicator) {
+        long count = 0;
+        double sum = 0.0;
+        double max = Double.NEGATIVE_INFINITY;
+        for (Event event : events) {
+            Double value = indicator.evaluate(event);
+            if (value != null && !value.isNaN()) {
+                count++;
+                sum += value;
+                max = Math.max(max, value);
+            }
+        }
+
+        IndicatorAggregate aggregate = indicator.aggregate(events);
+        assertEquals(count, aggregate.getCount());
+        assertEquals(sum, aggregate.getSum(), DELTA);
+        assertEquals(max, aggregate.getMax(), DELTA);
+    }
+
+    @Test
+    public void testEvaluateShouldComputeTheExpressionForOneEvent() {
+        CompiledProgramIndicator indicator = compile("#{stageA.weight} * C{constantFactor} + #{height}");
+
+        assertEquals(170.0, indicator.evaluate(event("stageA", "weight", "10", "height", "150")), DELTA);
+        assertEquals(150.0, indicator.evaluate(event("stageB", "weight", "10", "height", "150")), DELTA);
+        assertNull(compile("#{weight}").evaluate(event("stageA", "height", "150")));
+    }
+
+    @Test
+    public void testNumericIndicatorsShouldAggregateOverColumns() {
+        CompiledProgramIndicator weight = compile("#{stageA.weight}");
+        assertTrue(weight.isColumnar());
+        assertAggregateMatchesRows(weight);
+        assertEquals(60, weight.aggregate(events).getCount());
+
+        CompiledProgramIndicator bmi = compile("#{weight} / (#{height} / 100) / (#{height} / 100)");
+        assertTrue(bmi.isColumnar());
+        assertAggregateMatchesRows(bmi);
+
+        CompiledProgramIndicator heavy = compile("d2:hasValue(#{weight}) && #{weight} > 50 || V{value_count} < 1");
+        assertTrue(heavy.isColumnar());
+        assertAggregateMatchesRows(heavy);
+        assertEquals(100, heavy.aggregate(events).getCount());
+        assertEquals(37 + 25, heavy.aggregate(events).getSum(), DELTA);
+    }
+
+    @Test
+    public void testNonNumericValuesShouldBeEvaluatedLikeRows() {
+        events = Arrays.asList(event("stageA", "weight", "abc"), event("stageA", "weight", "4"),
+                event("stageA", "height", "150"));
+
+        CompiledProgramIndicator plusOne = compile("#{weight} + 1");
+        assertTrue(plusOne.isColumnar());
+        assertAggregateMatchesRows(plusOne);
+        assertEquals(2, plusOne.aggregate(events).getCount());
+        assertEquals(6.0, plusOne.aggregate(events).getSum(), DELTA);
+
+        assertAggregateMatchesRows(compile("d2:hasValue(#{weight})"));
+        assertAggregateMatchesRows(compile("d2:zing(#{weight})"));
+        assertAggregateMatchesRows(compile("V{value_count}"));
+        assertAggregateMatchesRows(compile("V{zero_pos_value_count} + #{height}"));
+    }
+
+    @Test
+    public void testColumnsReadFromStoreShouldMatchAttachedValues() {
+        MemoryPersistenceModule persistenceModule = new MemoryPersistenceModule(mock(IModelUtils.class));
+        IEventStore eventStore = persistenceModule.getEventStore();
+        ITrackedEntityDataValueStore dataValueStore = persistenceModule.getTrackedEntityDataValueStore();
+        events.set(7, event("stageA", "weight", "heavy", "height", "170"));
+        for (int i = 0; i < events.size(); i++) {
+            Event event = events.get(i);
+            event.setUId("event" + i);
+            eventStore.insert(event);
+            for (TrackedEntityDataValue dataValue : event.getTrackedEntityDataValues()) {
+                dataValue.setEvent(event);
+                dataValueStore.insert(dataValue);
+            }
+        }
+
+        CompiledProgramIndicator bmi = compile("#{weight} / (#{height} / 100) / (#{height} / 100)");
+        IndicatorAggregate expected = bmi.aggregate(events);
+        IndicatorAggregate aggregate = bmi.aggregate(EventColumns.build(events, dataValueStore, bmi.getColumnKeys()));
+
+        assertAggregateMatchesRows(bmi);
+        assertEquals(expected.getCount(), aggregate.getCount());
+        assertEquals(expected.getSum(), aggregate.getSum(), DELTA);
+    }
+
+    @Test
+    public void testColumnsShouldBeSharedBetweenIndicators() {
+        CompiledProgramIndicator weight = compile("#{weight}");
+        CompiledProgramIndicator doubled = compile("#{weight} * C{constantFactor}");
+
+        List<String> columnKeys = new ArrayList<>(weight.getColumnKeys());
+        columnKeys.addAll(doubled.getColumnKeys());
+        EventColumns columns = EventColumns.build(events, columnKeys);
+
+        IndicatorAggregate weightAggregate = weight.aggregate(columns);
+        IndicatorAggregate doubledAggregate = doubled.aggregate(columns);
+        assertEquals(75, weightAggregate.getCount());
+        assertEquals(2 * weightAggregate.getSum(), doubledAggregate.getSum(), DELTA);
+        // arithmetic reads missing values as zero, so every event has a doubled value
+        assertEquals(100, doubledAggregate.getCount());
+    }
+
+    @Test
+    public void testTextAndAttributeIndicatorsShouldFallBackToRows() {
+        CompiledProgramIndicator indicator = compile("d2:length(#{weight}) + A{attributeAge}");
+        assertFalse(indicator.isColumnar());
+        assertAggregateMatchesRows(indicator);
+    }
+
+    @Test
+    public void testEvaluateForEnrollmentShouldUseLatestValuesAndAttributes() {
+        TrackedEntityAttributeValue age = new TrackedEntityAttributeValue();
+        age.setTrackedEntityAttributeUId("attributeAge");
+        age.setValue("30");
+        Enrollment enrollment = new Enrollment();
+        enrollment.setTrackedEntityAttributeValues(Collections.singletonList(age));
+
+        CompiledProgramIndicator indicator = compile("#{stageA.weight} + #{stageB.weight} + A{attributeAge}");
+        Double value = indicator.evaluate(enrollment, Arrays.asList(
+                event("stageA", "weight", "10"), event("stageB", "weight", "20"), event("stageA", "weight", "15")));
+
+        assertEquals(65.0, value, DELTA);
+    }
+
+    @Test
+    public void testDateIndicatorsShouldCountDaysSinceRootDate() {
+        ProgramIndicator programIndicator = new ProgramIndicator();
+        programIndicator.setExpression("#{stageA.deliveryDate}");
+        programIndicator.setValueType(ProgramIndicator.VALUE_TYPE_DATE);
+        programIndicator.setRootDate(ProgramIndicator.ENROLLMENT_DATE);
+        CompiledProgramIndicator indicator = CompiledProgramIndicator.compile(programIndicator, constants);
+
+        Enrollment enrollment = new Enrollment();
+        enrollment.setDateOfEnrollment(new DateTime(2015, 1, 1, 0, 0));
+        Event event = event("stageA", "deliveryDate", "2015-01-31");
+        event.setEnrollment(enrollment);
+
+        assertFalse(indicator.isColumnar());
+        assertEquals(30.0, indicator.evaluate(event), DELTA);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testUnknownConstantShouldFailToCompile() {
+        compile("#{weight} * C{unknown}");
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testRowWiseIndicatorShouldRejectColumns() {
+        compile("d2:length(#{weight})").aggregate(EventColumns.build(events, Collections.<String>emptyList()));
+    }
+}
@@ -0,0 +1,206 @@
+/*
+ * Copyright (c) 2015, University of Oslo
+ *
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.hisp.dhis.java.sdk.program;
+
+import org.hisp.dhis.java.sdk.models.constant.Constant;
+import org.hisp.dhis.java.sdk.models.enrollment.Enrollment;
+import org.hisp.dhis.java.sdk.models.event.Event;
+import org.hisp.dhis.java.sdk.models.program.ProgramRule;
+import org.hisp.dhis.java.sdk.models.program.ProgramRuleAction;
+import org.hisp.dhis.java.sdk.models.program.ProgramRuleVariable;
+import org.hisp.dhis.java.sdk.models.trackedentity.TrackedEntityAttributeValue;
+import org.hisp.dhis.java.sdk.models.trackedentity.TrackedEntityDataValue;
+import org.joda.time.DateTime;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class CompiledProgramRulesTest {
+    private List<ProgramRule> programRules;
+    private List<ProgramRuleAction> programRuleActions;
+    private List<ProgramRuleVariable> programRuleVariables;
+    private List<Constant> constants;
+
+    @Before
+    public void setUp() {
+        programRules = new ArrayList<>();
+        programRuleActions = new ArrayList<>();
+        programRuleVariables = Arrays.asList(
+                variable("weight", "dataElementWeight", null),
+                variable("height", "dataElementHeight", null),
+                variable("gender", null, "attributeGender"));
+
+        Constant maxWeight = new Constant();
+        maxWeight.setUId("constantMaxWeight");
+        maxWeight.setValue(200.0);
+        constants = Collections.singletonList(maxWeight);
+    }
+
+    private static ProgramRuleVariable variable(String name, String dataElement, String attribute) {
+        ProgramRuleVariable programRuleVariable = new ProgramRuleVariable();
+        programRuleVariable.setName(name);
+        programRuleVariable.setDataElement(dataElement);
+        programRuleVariable.setTrackedEntityAttribute(attribute);
+        return programRuleVariable;
+    }
+
+    private ProgramRule rule(String uid, String condition, String type, String target) {
+        ProgramRule programRule = new ProgramRule();
+        programRule.setUId(uid);
+        programRule.setCondition(condition);
+        programRules.add(programRule);
+
+        ProgramRuleAction programRuleAction = new ProgramRuleAction();
+        programRuleAction.setUId(uid + "Action");
+        programRuleAction.setProgramRule(uid);
+        programRuleAction.setProgramRuleActionType(type);
+        if (ProgramRuleAction.TYPE_HIDESECTION.equals(type)) {
+            programRuleAction.setProgramStageSection(target);
+        } else {
+            programRuleAction.setDataElement(target);
+        }
+        programRuleAction.setContent(uid + " fired");
+        programRuleActions.add(programRuleAction);
+        return programRule;
+    }
+
+    private static Event event(String programStage, String... dataValues) {
+        Event event = new Event();
+        event.setUId("eventUid");
+        event.setProgramStageId(programStage);
+        event.setEventDate(new DateTime(2015, 10, 1, 12, 0));
+
+        List<TrackedEntityDataValue> values = new ArrayList<>();
+        for (int i = 0; i < dataValues.length; i += 2) {
+            TrackedEntityDataValue dataValue = new TrackedEntityDataValue();
+            dataValue.setDataElement(dataValues[i]);
+            dataValue.setValue(dataValues[i + 1]);
+            values.add(dataValue);
+        }
+        event.setTrackedEntityDataValues(values);
+        return event;
+    }
+
+    private CompiledProgramRules compile() {
+        return CompiledProgramRules.compile(programRules, programRuleActions, programRuleVariables, constants);
+    }
+
+    @Test
+    public void testEvaluateShouldReturnEffectsOfRulesWhoseConditionHolds() {
+        rule("ruleTooHeavy", "#{weight} > C{constantMaxWeight}", ProgramRuleAction.TYPE_SHOWERROR, "dataElementWeight");
+        rule("ruleNoHeight", "!d2:hasValue('height')", ProgramRuleAction.TYPE_HIDEFIELD, "dataElementBmi");
+        rule("ruleLight", "#{weight} < 50", ProgramRuleAction.TYPE_SHOWWARNING, "dataElementWeight");
+
+        CompiledProgramRules rules = compile();
+        assertEquals(3, rules.size());
+
+        List<RuleEffect> effects = rules.evaluate(event("stage", "dataElementWeight", "250"));
+        assertEquals(2, effects.size());
+        assertEquals("ruleTooHeavy", effects.get(0).getProgramRule());
+        assertEquals(ProgramRuleAction.TYPE_SHOWERROR, effects.get(0).getActionType());
+        assertEquals("dataElementWeight", effects.get(0).getDataElement());
+        assertEquals("ruleTooHeavy fired", effects.get(0).getContent());
+        assertEquals(ProgramRuleAction.TYPE_HIDEFIELD, effects.get(1).getActionType());
+        assertEquals("dataElementBmi", effects.get(1).getDataElement());
+
+        effects = rules.evaluate(event("stage", "dataElementWeight", "40", "dataElementHeight", "150"));
+        assertEquals(1, effects.size());
+        assertEquals("ruleLight", effects.get(0).getProgramRule());
+    }
+
+    @Test
+    public void testEvaluateShouldResolveAttributesAndProgramVariables() {
+        rule("ruleFemale", "A{gender} == 'female' && V{event_date} >= V{incident_date}",
+                ProgramRuleAction.TYPE_HIDESECTION, "sectionPregnancy");
+        rule("ruleCount", "V{value_count} == 3", ProgramRuleAction.TYPE_SHOWWARNING, "dataElementWeight");
+
+        TrackedEntityAttributeValue gender = new TrackedEntityAttributeValue();
+        gender.setTrackedEntityAttributeUId("attributeGender");
+        gender.setValue("female");
+        Enrollment enrollment = new Enrollment();
+        enrollment.setDateOfIncident(new DateTime(2015, 9, 1, 0, 0));
+        enrollment.setTrackedEntityAttributeValues(Collections.singletonList(gender));
+
+        Event event = event("stage", "dataElementWeight", "70", "dataElementHeight", "170");
+        event.setEnrollment(enrollment);
+
+        List<RuleEffect> effects = compile().evaluate(event);
+        assertEquals(2, effects.size());
+        assertEquals("sectionPregnancy", effects.get(0).getProgramStageSection());
+        assertEquals("ruleCount", effects.get(1).getProgramRule());
+    }
+
+    @Test
+    public void testRulesShouldOnlyApplyToTheirProgramStage() {
+        rule("ruleStage", "true", ProgramRuleAction.TYPE_SHOWWARNING, "dataElementWeight").setProgramStage("stageA");
+
+        CompiledProgramRules rules = compile();
+        assertEquals(1, rules.evaluate(event("stageA")).size());
+        assertEquals(0, rules.evaluate(event("stageB")).size());
+    }
+
+    @Test
+    public void testInvalidConditionsShouldBeReportedAndSkipped() {
+        rule("ruleUnknownVariable", "#{unknown} > 1", ProgramRuleAction.TYPE_SHOWERROR, "dataElementWeight");
+        rule("ruleMalformed", "#{weight} >", ProgramRuleAction.TYPE_SHOWERROR, "dataElementWeight");
+        rule("ruleValid", "#{weight} > 1", ProgramRuleAction.TYPE_SHOWERROR, "dataElementWeight");
+        rule("ruleUnsupportedAction", "#{weight} > 1", "ASSIGN", "dataElementWeight");
+
+        CompiledProgramRules rules = compile();
+        assertEquals(1, rules.size());
+        assertEquals(2, rules.getCompileErrors().size());
+        assertTrue(rules.getCompileErrors().containsKey("ruleUnknownVariable"));
+        assertTrue(rules.getCompileErrors().containsKey("ruleMalformed"));
+        assertEquals(1, rules.evaluate(event("stage", "dataElementWeight", "2")).size());
+    }
+
+    @Test
+    public void testRulesWhichCanNeverFireShouldBeDropped() {
+        rule("ruleImpossible", "C{constantMaxWeight} < 100 && #{weight} > 1",
+                ProgramRuleAction.TYPE_SHOWERROR, "dataElementWeight");
+        rule("ruleAlways", "C{constantMaxWeight} > 100 || #{weight} > 1",
+                ProgramRuleAction.TYPE_SHOWWARNING, "dataElementWeight");
+
+        CompiledProgramRules rules = compile();
+        assertEquals(1, rules.size());
+        assertEquals(Collections.singletonList("ruleImpossible"), rules.getDroppedRules());
+        assertTrue(rules.getCompileErrors().isEmpty());
+
+        List<RuleEffect> effects = rules.evaluate(event("stage"));
+        assertEquals(1, effects.size());
+        assertEquals("ruleAlways", effects.get(0).getProgramRule());
+    }
+}
@@ -0,0 +1,185 @@
+/*
+ * Copyright (c) 2015, University of Oslo
+ *
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.hisp.dhis.java.sdk.program;
+
+import org.hisp.dhis.java.sdk.common.network.IChunkConsumer;
+import org.hisp.dhis.java.sdk.common.persistence.memory.MemoryPersistenceModule;
+import org.hisp.dhis.java.sdk.event.IEventStore;
+import org.hisp.dhis.java.sdk.models.event.Event;
+import org.hisp.dhis.java.sdk.models.program.Program;
+import org.hisp.dhis.java.sdk.models.program.ProgramRule;
+import org.hisp.dhis.java.sdk.models.program.ProgramRuleAction;
+import org.hisp.dhis.java.sdk.models.program.ProgramRuleVariable;
+import org.hisp.dhis.java.sdk.models.trackedentity.TrackedEntityDataValue;
+import org.hisp.dhis.java.sdk.trackedentity.ITrackedEntityDataValueStore;
+import org.hisp.dhis.java.sdk.utils.IModelUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+
+public class ProgramRuleBatchEvaluatorTest {
+    private static final int EVENT_COUNT = 1000;
+
+    private ForkJoinPool forkJoinPool;
+    private IEventStore eventStore;
+    private ITrackedEntityDataValueStore dataValueStore;
+    private Program program;
+    private CompiledProgramRules programRules;
+    private ProgramRuleBatchEvaluator batchEvaluator;
+
+    @Before
+    public void setUp() {
+        forkJoinPool = new ForkJoinPool(4);
+        MemoryPersistenceModule persistenceModule = new MemoryPersistenceModule(mock(IModelUtils.class));
+        eventStore = persistenceModule.getEventStore();
+        dataValueStore = persistenceModule.getTrackedEntityDataValueStore();
+
+        program = new Program();
+        program.setUId("programUid");
+
+        // every tenth event is too heavy
+        for (int i = 0; i < EVENT_COUNT; i++) {
+            Event event = new Event();
+            event.setUId("event" + i);
+            event.setProgramId(program.getUId());
+            event.setProgramStageId("stage");
+            eventStore.insert(event);
+
+            TrackedEntityDataValue dataValue = new TrackedEntityDataValue();
+            dataValue.setEvent(event);
+            dataValue.setDataElement("weightDataElement");
+            dataValue.setValue(i % 10 == 0 ? "250" : "70");
+            dataValueStore.insert(dataValue);
+        }
+
+        ProgramRuleVariable weight = new ProgramRuleVariable();
+        weight.setName("weight");
+        weight.setDataElement("weightDataElement");
+
+        programRules = CompiledProgramRules.compile(Arrays.asList(
+                        rule("ruleTooHeavy", "#{weight} > 200"),
+                        rule("ruleHasWeight", "d2:hasValue('weight')")),
+                Arrays.asList(
+                        action("ruleTooHeavy", ProgramRuleAction.TYPE_SHOWERROR),
+                        action("ruleHasWeight", ProgramRuleAction.TYPE_SHOWWARNING)),
+                Collections.singletonList(weight), null);
+
+        batchEvaluator = new ProgramRuleBatchEvaluator(eventStore, dataValueStore, forkJoinPool);
+        batchEvaluator.setBatchSize(16);
+    }
+
+    @After
+    public void tearDown() {
+        forkJoinPool.shutdown();
+    }
+
+    private static ProgramRule rule(String uid, String condition) {
+        ProgramRule programRule = new ProgramRule();
+        programRule.setUId(uid);
+        programRule.setCondition(condition);
+        return programRule;
+    }
+
+    private static ProgramRuleAction action(String programRule, String type) {
+        ProgramRuleAction programRuleAction = new ProgramRuleAction();
+        programRuleAction.setProgramRule(programRule);
+        programRuleAction.setProgramRuleActionType(type);
+        programRuleAction.setDataElement("weightDataElement");
+        return programRuleAction;
+    }
+
+    private static final class CollectingConsumer implements IChunkConsumer<RuleViolation> {
+        private final List<RuleViolation> violations = new ArrayList<>();
+        private int chunks;
+
+        @Override
+        public synchronized void consume(List<RuleViolation> models) {
+            violations.addAll(models);
+            chunks++;
+        }
+    }
+
+    @Test
+    public void testEvaluateShouldStreamShowErrorViolationsOfAllEvents() {
+        CollectingConsumer consumer = new CollectingConsumer();
+
+        BatchEvaluationReport report = batchEvaluator.evaluate(programRules, program, consumer);
+
+        assertEquals(EVENT_COUNT / 10, consumer.violations.size());
+        assertTrue(consumer.chunks > 1);
+        Set<String> events = new HashSet<>();
+        for (RuleViolation violation : consumer.violations) {
+            assertEquals("ruleTooHeavy", violation.getProgramRule());
+            events.add(violation.getEvent());
+        }
+        assertEquals(EVENT_COUNT / 10, events.size());
+        assertTrue(events.contains("event0"));
+        assertTrue(events.contains("event990"));
+
+        // the warning rule cannot raise a violation, so it is never evaluated
+        assertEquals(EVENT_COUNT, report.getEventCount());
+        assertEquals(EVENT_COUNT, report.getRuleEvaluationCount());
+        assertEquals(EVENT_COUNT / 10, report.getViolationCount());
+        assertTrue(report.getEventsPerSecond() > 0.0);
+    }
+
+    @Test
+    public void testEvaluateShouldHonourSelectedActionTypes() {
+        CollectingConsumer consumer = new CollectingConsumer();
+        batchEvaluator.setActionTypes(ProgramRuleAction.TYPE_SHOWERROR, ProgramRuleAction.TYPE_SHOWWARNING);
+
+        BatchEvaluationReport report = batchEvaluator.evaluate(programRules, program, consumer);
+
+        assertEquals(2 * EVENT_COUNT, report.getRuleEvaluationCount());
+        assertEquals(EVENT_COUNT + EVENT_COUNT / 10, consumer.violations.size());
+    }
+
+    @Test
+    public void testEvaluateWithoutEventsShouldReportNothing() {
+        CollectingConsumer consumer = new CollectingConsumer();
+
+        BatchEvaluationReport report = batchEvaluator.evaluate(programRules,
+                new ArrayList<Event>(), consumer);
+
+        assertEquals(0, report.getEventCount());
+        assertEquals(0, consumer.chunks);
+    }
+}
@@ -0,0 +1,156 @@
+/*
+ * Copyright (c) 2015, University of Oslo
+ *
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.hisp.dhis.java.sdk.program;
+
+import org.hisp.dhis.java.sdk.models.event.Event;
+import org.hisp.dhis.java.sdk.models.program.ProgramRule;
+import org.hisp.dhis.java.sdk.models.program.ProgramRuleAction;
+import org.hisp.dhis.java.sdk.models.program.ProgramRuleVariable;
+import org.hisp.dhis.java.sdk.models.trackedentity.TrackedEntityDataValue;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ProgramRuleSessionTest {
+    private List<ProgramRule> programRules;
+    private List<ProgramRuleAction> programRuleActions;
+    private List<ProgramRuleVariable> programRuleVariables;
+
+    @Before
+    public void setUp() {
+        programRules = new ArrayList<>();
+        programRuleActions = new ArrayList<>();
+        programRuleVariables = new ArrayList<>();
+
+        for (String name : new String[]{"weight", "height", "age"}) {
+            ProgramRuleVariable programRuleVariable = new ProgramRuleVariable();
+            programRuleVariable.setName(name);
+            programRuleVariable.setDataElement(name + "DataElement");
+            programRuleVariables.add(programRuleVariable);
+        }
+    }
+
+    private ProgramRule rule(String uid, String condition) {
+        ProgramRule programRule = new ProgramRule();
+        programRule.setUId(uid);
+        programRule.setCondition(condition);
+        programRules.add(programRule);
+
+        ProgramRuleAction programRuleAction = new ProgramRuleAction();
+        programRuleAction.setProgramRule(uid);
+        programRuleAction.setProgramRuleActionType(ProgramRuleAction.TYPE_SHOWWARNING);
+        programRuleActions.add(programRuleAction);
+        return programRule;
+    }
+
+    private ProgramRuleSession newSession(String dataElement, String value) {
+        TrackedEntityDataValue dataValue = new TrackedEntityDataValue();
+        dataValue.setDataElement(dataElement);
+        dataValue.setValue(value);
+
+        Event event = new Event();
+        event.setProgramStageId("stage");
+        event.setTrackedEntityDataValues(Collections.singletonList(dataValue));
+
+        return CompiledProgramRules.compile(programRules, programRuleActions, programRuleVariables,
+                null).newSession(event);
+    }
+
+    @Test
+    public void testSetDataValueShouldOnlyReevaluateDependentRules() {
+        rule("ruleHeavy", "#{weight} > 100");
+        rule("ruleLight", "#{weight} < 10 && #{height} > 0");
+        rule("ruleTall", "#{height} > 200");
+        rule("ruleOld", "#{age} > 90");
+
+        ProgramRuleSession session = newSession("weightDataElement", "50");
+        assertEquals(4, session.getEvaluationCount());
+        assertEquals(0, session.getEffects().size());
+
+        assertTrue(session.setDataValue("weightDataElement", "150"));
+        assertEquals(2, session.getEvaluationCount());
+        assertEquals(1, session.getEffects().size());
+        assertEquals("ruleHeavy", session.getEffects().get(0).getProgramRule());
+
+        assertTrue(session.setDataValue("heightDataElement", "250"));
+        assertEquals(2, session.getEvaluationCount());
+        assertEquals(2, session.getEffects().size());
+        assertEquals("ruleTall", session.getEffects().get(1).getProgramRule());
+
+        assertFalse(session.setDataValue("ageDataElement", "40"));
+        assertEquals(1, session.getEvaluationCount());
+    }
+
+    @Test
+    public void testUnchangedOrUnknownValuesShouldNotEvaluateRules() {
+        rule("ruleHeavy", "#{weight} > 100");
+
+        ProgramRuleSession session = newSession("weightDataElement", "150");
+        assertEquals(1, session.getEffects().size());
+
+        assertFalse(session.setDataValue("weightDataElement", "150"));
+        assertEquals(0, session.getEvaluationCount());
+        assertFalse(session.setDataValue("unknownDataElement", "1"));
+        assertEquals(0, session.getEvaluationCount());
+    }
+
+    @Test
+    public void testValueCountRulesShouldFollowAnyValueChange() {
+        rule("ruleComplete", "V{value_count} == 3");
+        rule("ruleHeavy", "#{weight} > 100");
+
+        ProgramRuleSession session = newSession("weightDataElement", "50");
+        assertFalse(session.setDataValue("heightDataElement", "180"));
+        assertEquals(1, session.getEvaluationCount());
+
+        assertTrue(session.setDataValue("ageDataElement", "30"));
+        assertEquals("ruleComplete", session.getEffects().get(0).getProgramRule());
+
+        assertTrue(session.setDataValue("ageDataElement", ""));
+        assertEquals(0, session.getEffects().size());
+    }
+
+    @Test
+    public void testRulesOfOtherStagesShouldNeverBeEvaluated() {
+        rule("ruleOtherStage", "#{weight} > 100").setProgramStage("otherStage");
+
+        ProgramRuleSession session = newSession("weightDataElement", "150");
+        assertEquals(0, session.getEvaluationCount());
+        assertFalse(session.setDataValue("weightDataElement", "200"));
+        assertEquals(0, session.getEvaluationCount());
+        assertEquals(0, session.getEffects().size());
+    }
+}
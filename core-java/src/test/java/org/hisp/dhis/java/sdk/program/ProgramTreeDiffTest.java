@@ -0,0 +1,211 @@
+/*
+ * Copyright (c) 2015, University of Oslo
+ *
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.hisp.dhis.java.sdk.program;
+
+import org.h2.jdbcx.JdbcDataSource;
+import org.hisp.dhis.java.sdk.common.persistence.DbAction;
+import org.hisp.dhis.java.sdk.common.persistence.IDbOperation;
+import org.hisp.dhis.java.sdk.common.persistence.IPersistenceModule;
+import org.hisp.dhis.java.sdk.common.persistence.jdbc.JdbcPersistenceModule;
+import org.hisp.dhis.java.sdk.common.persistence.memory.MemoryPersistenceModule;
+import org.hisp.dhis.java.sdk.models.program.Program;
+import org.hisp.dhis.java.sdk.models.program.ProgramIndicator;
+import org.hisp.dhis.java.sdk.models.program.ProgramStage;
+import org.hisp.dhis.java.sdk.models.program.ProgramStageDataElement;
+import org.hisp.dhis.java.sdk.models.program.ProgramStageSection;
+import org.hisp.dhis.java.sdk.models.program.ProgramTrackedEntityAttribute;
+import org.hisp.dhis.java.sdk.utils.IModelUtils;
+import org.joda.time.DateTime;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+
+public class ProgramTreeDiffTest {
+    private static final DateTime LAST_UPDATED = new DateTime(2015, 1, 1, 0, 0);
+    private static final int STAGES = 40;
+    private static final int DATA_ELEMENTS = 50;
+    private static int databaseCounter;
+
+    private IPersistenceModule persistenceModule;
+    private ProgramTreeDiff programTreeDiff;
+
+    @Before
+    public void setUp() {
+        useStores(new MemoryPersistenceModule(mock(IModelUtils.class)));
+    }
+
+    @Test
+    public void unchangedProgramTreeShouldProduceNoOperations() {
+        Program persistedProgram = persist(program());
+
+        List<IDbOperation> operations = programTreeDiff.diff(persistedProgram, program());
+
+        assertTrue(operations.isEmpty());
+    }
+
+    @Test
+    public void onlyChangedNodesShouldBeWritten() {
+        Program persistedProgram = persist(program());
+
+        Program updatedProgram = program();
+        ProgramStage changedStage = updatedProgram.getProgramStages().get(3);
+        changedStage.setLastUpdated(LAST_UPDATED.plusDays(1));
+        ProgramStageDataElement changedPsde = changedStage.getProgramStageSections().get(0)
+                .getProgramStageDataElements().get(7);
+        changedPsde.setCompulsory(true);
+        ProgramStageSection lastSection = updatedProgram.getProgramStages().get(STAGES - 1)
+                .getProgramStageSections().get(0);
+        lastSection.setProgramIndicators(new ArrayList<ProgramIndicator>());
+        ProgramTrackedEntityAttribute addedPtea = ptea("newAttribute");
+        updatedProgram.getProgramTrackedEntityAttributes().add(addedPtea);
+
+        List<IDbOperation> operations = programTreeDiff.diff(persistedProgram, updatedProgram);
+
+        assertEquals(4, operations.size());
+        assertEquals(DbAction.DELETE, operations.get(0).getAction());
+        assertEquals("indicator" + (STAGES - 1), ((ProgramIndicator) operations.get(0).getModel()).getUId());
+        assertOperation(operations.get(1), DbAction.INSERT, addedPtea);
+        assertOperation(operations.get(2), DbAction.UPDATE, changedStage);
+        assertOperation(operations.get(3), DbAction.UPDATE, changedPsde);
+        assertEquals(persistenceModule.getProgramStageStore().queryByUid("stage3").getId(), changedStage.getId());
+    }
+
+    @Test
+    public void newProgramShouldInsertWholeTree() {
+        List<IDbOperation> operations = programTreeDiff.diff(null, program());
+
+        // attributes, stages, sections, data elements and indicators
+        assertEquals(2 + STAGES * (2 + DATA_ELEMENTS + 1), operations.size());
+        for (IDbOperation operation : operations) {
+            assertEquals(DbAction.INSERT, operation.getAction());
+        }
+    }
+
+    @Test
+    public void programTreeStoredInDatabaseShouldBeDiffedNodeByNode() {
+        JdbcDataSource dataSource = new JdbcDataSource();
+        dataSource.setURL("jdbc:h2:mem:programTreeDiff" + (databaseCounter++) + ";DB_CLOSE_DELAY=-1");
+        useStores(new JdbcPersistenceModule(mock(IModelUtils.class), dataSource));
+        Program persistedProgram = persist(program());
+
+        assertTrue(programTreeDiff.diff(persistedProgram, program()).isEmpty());
+
+        Program updatedProgram = program();
+        updatedProgram.getProgramStages().remove(STAGES - 1);
+        List<IDbOperation> operations = programTreeDiff.diff(persistedProgram, updatedProgram);
+
+        // data elements, indicator, section and stage of removed stage
+        assertEquals(DATA_ELEMENTS + 3, operations.size());
+        for (IDbOperation operation : operations) {
+            assertEquals(DbAction.DELETE, operation.getAction());
+        }
+        persistenceModule.getTransactionManager().transact(operations);
+        assertEquals(STAGES - 1, persistenceModule.getProgramStageStore().query(persistedProgram).size());
+        assertTrue(programTreeDiff.diff(persistedProgram, program()).size() > 0);
+    }
+
+    private void useStores(IPersistenceModule persistenceModule) {
+        this.persistenceModule = persistenceModule;
+        programTreeDiff = new ProgramTreeDiff(persistenceModule.getProgramTrackedEntityAttributeStore(),
+                persistenceModule.getProgramStageStore(), persistenceModule.getProgramStageSectionStore(),
+                persistenceModule.getProgramStageDataElementStore(), persistenceModule.getProgramIndicatorStore());
+    }
+
+    /**
+     * Stores given program with its whole tree, and returns program as read back from store.
+     */
+    private Program persist(Program program) {
+        persistenceModule.getProgramStore().insert(program);
+        persistenceModule.getTransactionManager().transact(programTreeDiff.diff(null, program));
+        return persistenceModule.getProgramStore().queryByUid(program.getUId());
+    }
+
+    private static Program program() {
+        Program program = new Program();
+        program.setUId("program");
+        program.setLastUpdated(LAST_UPDATED);
+        program.setProgramTrackedEntityAttributes(new ArrayList<>(Arrays.asList(
+                ptea("firstAttribute"), ptea("secondAttribute"))));
+
+        List<ProgramStage> programStages = new ArrayList<>();
+        for (int s = 0; s < STAGES; s++) {
+            ProgramStage programStage = new ProgramStage();
+            programStage.setUId("stage" + s);
+            programStage.setLastUpdated(LAST_UPDATED);
+
+            ProgramStageSection section = new ProgramStageSection();
+            section.setUId("section" + s);
+            section.setLastUpdated(LAST_UPDATED);
+            section.setProgramStageDataElements(psdes(programStage));
+
+            ProgramIndicator indicator = new ProgramIndicator();
+            indicator.setUId("indicator" + s);
+            indicator.setLastUpdated(LAST_UPDATED);
+            section.setProgramIndicators(new ArrayList<>(Arrays.asList(indicator)));
+
+            // server lists data elements of stage separately from those of its sections
+            programStage.setProgramStageSections(Arrays.asList(section));
+            programStage.setProgramStageDataElements(psdes(programStage));
+            programStages.add(programStage);
+        }
+        program.setProgramStages(programStages);
+        return program;
+    }
+
+    private static List<ProgramStageDataElement> psdes(ProgramStage programStage) {
+        List<ProgramStageDataElement> psdes = new ArrayList<>();
+        for (int d = 0; d < DATA_ELEMENTS; d++) {
+            ProgramStageDataElement psde = new ProgramStageDataElement();
+            psde.setProgramStage(programStage.getUId());
+            psde.setDataElement("dataElement" + d);
+            psde.setSortOrder(d);
+            psdes.add(psde);
+        }
+        return psdes;
+    }
+
+    private static ProgramTrackedEntityAttribute ptea(String trackedEntityAttribute) {
+        ProgramTrackedEntityAttribute ptea = new ProgramTrackedEntityAttribute();
+        ptea.setTrackedEntityAttribute(trackedEntityAttribute);
+        return ptea;
+    }
+
+    private static void assertOperation(IDbOperation operation, DbAction action, Object model) {
+        assertEquals(action, operation.getAction());
+        assertSame(model, operation.getModel());
+    }
+}
@@ -0,0 +1,125 @@
+/*
+ * Copyright (c) 2015, University of Oslo
+ *
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.hisp.dhis.java.sdk.systeminfo;
+
+import org.hisp.dhis.java.sdk.models.common.SystemInfo;
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class ServerClockTest {
+    private static final long MAX_AGE = 60 * 1000;
+    private static final long MAX_DRIFT = 1000;
+    private static final long SERVER_OFFSET = 3 * 60 * 60 * 1000;
+
+    private ISystemInfoApiClient systemInfoApiClient;
+    private FakeLocalClock localClock;
+    private ServerClock serverClock;
+
+    @Before
+    public void setUp() {
+        localClock = new FakeLocalClock();
+        systemInfoApiClient = mock(ISystemInfoApiClient.class);
+        SystemInfo systemInfo = new SystemInfo();
+        systemInfo.setVersion("2.22");
+        systemInfo.setServerDate(new DateTime(localClock.wallMillis + SERVER_OFFSET, DateTimeZone.UTC));
+        when(systemInfoApiClient.getSystemInfo()).thenReturn(systemInfo);
+
+        serverClock = new ServerClock(systemInfoApiClient, MAX_AGE, MAX_DRIFT, localClock);
+    }
+
+    @Test
+    public void serverDateShouldFollowLocalClockWithinMaxAge() {
+        assertEquals(localClock.wallMillis + SERVER_OFFSET, serverClock.getServerDate().getMillis());
+
+        localClock.advance(30 * 1000);
+        SystemInfo systemInfo = serverClock.getSystemInfo();
+
+        assertEquals(localClock.wallMillis + SERVER_OFFSET, systemInfo.getServerDate().getMillis());
+        assertEquals("2.22", systemInfo.getVersion());
+        assertNotSame(systemInfo, serverClock.getSystemInfo());
+        verify(systemInfoApiClient, times(1)).getSystemInfo();
+    }
+
+    @Test
+    public void offsetShouldBeMeasuredAgainWhenExpired() {
+        serverClock.getServerDate();
+        localClock.advance(MAX_AGE + 1);
+        serverClock.getServerDate();
+
+        verify(systemInfoApiClient, times(2)).getSystemInfo();
+    }
+
+    @Test
+    public void offsetShouldBeMeasuredAgainWhenLocalClockDrifts() {
+        serverClock.getServerDate();
+        // wall clock jumps (device time changed) while monotonic time stands still
+        localClock.wallMillis += 10 * MAX_DRIFT;
+        serverClock.getServerDate();
+
+        verify(systemInfoApiClient, times(2)).getSystemInfo();
+    }
+
+    @Test
+    public void offsetShouldBeMeasuredAgainWhenInvalidated() {
+        serverClock.getServerDate();
+        serverClock.invalidate();
+        serverClock.getServerDate();
+
+        verify(systemInfoApiClient, times(2)).getSystemInfo();
+    }
+
+    private static class FakeLocalClock implements ServerClock.ILocalClock {
+        long wallMillis = 1000000000000L;
+        long nanos = 0;
+
+        void advance(long millis) {
+            wallMillis += millis;
+            nanos += millis * 1000 * 1000;
+        }
+
+        @Override
+        public long currentTimeMillis() {
+            return wallMillis;
+        }
+
+        @Override
+        public long nanoTime() {
+            return nanos;
+        }
+    }
+}
@@ -27,31 +27,40 @@
  */
 package org.hisp.dhis.java.sdk.trackedentity;
 
+import org.hisp.dhis.java.sdk.common.ActionMap;
 import org.hisp.dhis.java.sdk.common.IFailedItemStore;
 import org.hisp.dhis.java.sdk.common.IStateStore;
 import org.hisp.dhis.java.sdk.common.network.ApiException;
 import org.hisp.dhis.java.sdk.common.network.Response;
+import org.hisp.dhis.java.sdk.common.persistence.IDbOperation;
 import org.hisp.dhis.java.sdk.common.persistence.ITransactionManager;
 import org.hisp.dhis.java.sdk.common.preferences.ILastUpdatedPreferences;
+import org.hisp.dhis.java.sdk.common.preferences.ResourceType;
 import org.hisp.dhis.java.sdk.enrollment.IEnrollmentController;
 import org.hisp.dhis.java.sdk.enrollment.IEnrollmentStore;
+import org.hisp.dhis.java.sdk.models.common.faileditem.FailedItem;
 import org.hisp.dhis.java.sdk.models.common.faileditem.FailedItemType;
+import org.hisp.dhis.java.sdk.models.common.importsummary.ImportSummaries;
 import org.hisp.dhis.java.sdk.models.common.importsummary.ImportSummary;
 import org.hisp.dhis.java.sdk.models.common.state.Action;
 import org.hisp.dhis.java.sdk.models.enrollment.Enrollment;
 import org.hisp.dhis.java.sdk.models.trackedentity.TrackedEntityInstance;
 import org.hisp.dhis.java.sdk.relationship.IRelationshipStore;
-import org.hisp.dhis.java.sdk.systeminfo.ISystemInfoApiClient;
+import org.hisp.dhis.java.sdk.systeminfo.IServerClock;
 import org.joda.time.DateTime;
 import org.junit.Before;
 import org.junit.Test;
 
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
-import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.mockito.Mockito.*;
 import static org.powermock.api.mockito.PowerMockito.doNothing;
@@ -65,7 +74,7 @@ public class TrackedEntityInstanceControllerTest {
     private IStateStore stateStore;
     private ITrackedEntityInstanceStore trackedEntityInstanceStore;
     private TrackedEntityInstanceController trackedEntityInstanceController;
-    private ISystemInfoApiClient systemInfoApiClient;
+    private IServerClock serverClock;
     private ILastUpdatedPreferences lastUpdatedPreferences;
     private ITransactionManager transactionManager;
     private IEnrollmentController enrollmentController;
@@ -82,7 +91,7 @@ public class TrackedEntityInstanceControllerTest {
         trackedEntityInstanceApiClient = mock(ITrackedEntityInstanceApiClient.class);
         stateStore = mock(IStateStore.class);
         trackedEntityInstanceStore = mock(ITrackedEntityInstanceStore.class);
-        systemInfoApiClient = mock(ISystemInfoApiClient.class);
+        serverClock = mock(IServerClock.class);
         lastUpdatedPreferences = mock(ILastUpdatedPreferences.class);
         transactionManager = mock(ITransactionManager.class);
         enrollmentController = mock(IEnrollmentController.class);
@@ -91,7 +100,7 @@ public class TrackedEntityInstanceControllerTest {
         trackedEntityAttributeValueStore = mock(ITrackedEntityAttributeValueStore.class);
         enrollmentStore = mock(IEnrollmentStore.class);
         trackedEntityInstanceController = spy(new TrackedEntityInstanceController(trackedEntityInstanceApiClient,
-                systemInfoApiClient, trackedEntityInstanceStore, lastUpdatedPreferences, transactionManager,
+                serverClock, trackedEntityInstanceStore, lastUpdatedPreferences, transactionManager,
                 enrollmentController, stateStore, failedItemStore, relationshipStore, trackedEntityAttributeValueStore,
                 enrollmentStore));
 
@@ -154,12 +163,11 @@ public class TrackedEntityInstanceControllerTest {
     public void testHandleImportSummaryWithSuccessImportSummary() {
         ImportSummary importSummary = new ImportSummary();
         importSummary.setStatus(ImportSummary.Status.SUCCESS);
-        doNothing().when(trackedEntityInstanceController).updateTrackedEntityInstanceTimestamp(trackedEntityInstance);
 
         trackedEntityInstanceController.handleImportSummary(trackedEntityInstance, importSummary);
 
         verify(stateStore, times(1)).saveActionForModel(trackedEntityInstance, Action.SYNCED);
-        verify(trackedEntityInstanceController, times(1)).updateTrackedEntityInstanceTimestamp(trackedEntityInstance);
+        verify(trackedEntityInstanceApiClient, never()).getFullTrackedEntityInstance(anyString(), any(DateTime.class));
         verify(trackedEntityInstanceController, times(1)).clearFailedItem(FailedItemType.TRACKED_ENTITY_INSTANCE,
                 failedItemStore, TRACKED_ENTITY_INSTANCE_ID);
     }
@@ -168,14 +176,13 @@ public class TrackedEntityInstanceControllerTest {
     public void testHandleImportSummaryWithOkImportSummary() {
         ImportSummary importSummary = new ImportSummary();
         importSummary.setStatus(ImportSummary.Status.OK);
-        doNothing().when(trackedEntityInstanceController).updateTrackedEntityInstanceTimestamp(trackedEntityInstance);
         doNothing().when(trackedEntityInstanceController).clearFailedItem(FailedItemType.TRACKED_ENTITY_INSTANCE,
                 failedItemStore, TRACKED_ENTITY_INSTANCE_ID);
 
         trackedEntityInstanceController.handleImportSummary(trackedEntityInstance, importSummary);
 
         verify(stateStore, times(1)).saveActionForModel(trackedEntityInstance, Action.SYNCED);
-        verify(trackedEntityInstanceController, times(1)).updateTrackedEntityInstanceTimestamp(trackedEntityInstance);
+        verify(trackedEntityInstanceApiClient, never()).getFullTrackedEntityInstance(anyString(), any(DateTime.class));
         verify(trackedEntityInstanceController, times(1)).clearFailedItem(FailedItemType.TRACKED_ENTITY_INSTANCE,
                 failedItemStore, TRACKED_ENTITY_INSTANCE_ID);
     }
@@ -194,32 +201,106 @@ public class TrackedEntityInstanceControllerTest {
     }
 
     @Test
-    public void testUpdateTrackedEntityInstanceTimestamp() {
+    public void testReconcileTimestamps() {
+        trackedEntityInstance.setTrackedEntityInstanceUid("uid");
         TrackedEntityInstance updatedTrackedEntityInstance = new TrackedEntityInstance();
+        updatedTrackedEntityInstance.setTrackedEntityInstanceUid("uid");
         DateTime created = new DateTime();
         DateTime lastUpdated = new DateTime();
         updatedTrackedEntityInstance.setCreated(created);
         updatedTrackedEntityInstance.setLastUpdated(lastUpdated);
-        when(trackedEntityInstanceApiClient.getFullTrackedEntityInstance
-                (trackedEntityInstance.getTrackedEntityInstanceUid(), null)).thenReturn(updatedTrackedEntityInstance);
+        when(trackedEntityInstanceApiClient.getTrackedEntityInstanceTimestamps(Collections.singleton("uid")))
+                .thenReturn(Arrays.asList(updatedTrackedEntityInstance));
 
-        trackedEntityInstanceController.updateTrackedEntityInstanceTimestamp(trackedEntityInstance);
+        ImportSummary importSummary = new ImportSummary();
+        importSummary.setStatus(ImportSummary.Status.SUCCESS);
+        trackedEntityInstanceController.handleImportSummary(trackedEntityInstance, importSummary);
+        trackedEntityInstanceController.reconcileTimestamps();
+        trackedEntityInstanceController.reconcileTimestamps();
 
-        verify(trackedEntityInstanceApiClient, times(1)).getFullTrackedEntityInstance(trackedEntityInstance.getTrackedEntityInstanceUid(), null);
+        verify(trackedEntityInstanceApiClient, times(1)).getTrackedEntityInstanceTimestamps(Collections.singleton("uid"));
         assertEquals(created, trackedEntityInstance.getCreated());
         assertEquals(lastUpdated, trackedEntityInstance.getLastUpdated());
-        verify(trackedEntityInstanceStore, times(1)).save(trackedEntityInstance);
+        verify(transactionManager, times(1)).transact(anyCollectionOf(IDbOperation.class));
     }
 
     @Test
-    public void testUpdateTrackedEntityInstanceTimestampWithApiException() {
+    public void testReconcileTimestampsWithApiException() {
+        trackedEntityInstance.setTrackedEntityInstanceUid("uid");
         Response response = new Response("", 200, "", new ArrayList<>(), null);
         ApiException apiException = ApiException.httpError("", response);
-        when(trackedEntityInstanceApiClient.getFullTrackedEntityInstance(trackedEntityInstance.
-                getTrackedEntityInstanceUid(), null)).thenThrow(apiException);
-        trackedEntityInstanceController.updateTrackedEntityInstanceTimestamp(trackedEntityInstance);
+        when(trackedEntityInstanceApiClient.getTrackedEntityInstanceTimestamps(Collections.singleton("uid")))
+                .thenThrow(apiException);
+
+        ImportSummary importSummary = new ImportSummary();
+        importSummary.setStatus(ImportSummary.Status.SUCCESS);
+        trackedEntityInstanceController.handleImportSummary(trackedEntityInstance, importSummary);
+        trackedEntityInstanceController.reconcileTimestamps();
+
         assertNotNull(trackedEntityInstance.getLastUpdated());
-        verify(trackedEntityInstanceStore).save(trackedEntityInstance);
+        verify(transactionManager, times(1)).transact(anyCollectionOf(IDbOperation.class));
+    }
+
+    @Test
+    public void testPutTrackedEntityInstanceReconcilesTimestamps() {
+        trackedEntityInstance.setTrackedEntityInstanceUid("uid");
+        TrackedEntityInstance updatedTrackedEntityInstance = new TrackedEntityInstance();
+        updatedTrackedEntityInstance.setTrackedEntityInstanceUid("uid");
+        DateTime lastUpdated = new DateTime();
+        updatedTrackedEntityInstance.setLastUpdated(lastUpdated);
+        ImportSummary importSummary = new ImportSummary();
+        importSummary.setStatus(ImportSummary.Status.SUCCESS);
+        when(trackedEntityInstanceApiClient.putTrackedEntityInstance(trackedEntityInstance)).thenReturn(importSummary);
+        when(trackedEntityInstanceApiClient.getTrackedEntityInstanceTimestamps(Collections.singleton("uid")))
+                .thenReturn(Arrays.asList(updatedTrackedEntityInstance));
+
+        trackedEntityInstanceController.putTrackedEntityInstance(trackedEntityInstance);
+        trackedEntityInstanceController.reconcileTimestamps();
+
+        verify(trackedEntityInstanceApiClient, times(1)).getTrackedEntityInstanceTimestamps(Collections.singleton("uid"));
+        assertEquals(lastUpdated, trackedEntityInstance.getLastUpdated());
+    }
+
+    @Test
+    public void testSendTrackedEntityInstancesChangesReconcilesTimestampsOnce() {
+        TrackedEntityInstance trackedEntityInstance1 = new TrackedEntityInstance();
+        trackedEntityInstance1.setId(1);
+        trackedEntityInstance1.setTrackedEntityInstanceUid("a");
+        TrackedEntityInstance trackedEntityInstance2 = new TrackedEntityInstance();
+        trackedEntityInstance2.setId(2);
+        trackedEntityInstance2.setTrackedEntityInstanceUid("b");
+        List<TrackedEntityInstance> trackedEntityInstanceList = Arrays.asList(trackedEntityInstance1, trackedEntityInstance2);
+
+        ActionMap actionMap = new ActionMap();
+        actionMap.put(1L, Action.TO_UPDATE);
+        actionMap.put(2L, Action.TO_UPDATE);
+        ImportSummary importSummary = new ImportSummary();
+        importSummary.setStatus(ImportSummary.Status.SUCCESS);
+        when(stateStore.queryActionsForModels(TrackedEntityInstance.class, trackedEntityInstanceList)).thenReturn(actionMap);
+        when(trackedEntityInstanceApiClient.putTrackedEntityInstance(any(TrackedEntityInstance.class))).thenReturn(importSummary);
+
+        trackedEntityInstanceController.sendTrackedEntityInstancesChanges(trackedEntityInstanceList, false);
+
+        verify(trackedEntityInstanceApiClient, times(2)).putTrackedEntityInstance(any(TrackedEntityInstance.class));
+        verify(trackedEntityInstanceApiClient, times(1)).getTrackedEntityInstanceTimestamps(anySetOf(String.class));
+        verify(trackedEntityInstanceApiClient).getTrackedEntityInstanceTimestamps(new HashSet<>(Arrays.asList("a", "b")));
+    }
+
+    @Test
+    @SuppressWarnings("deprecation")
+    public void testUpdateTrackedEntityInstanceTimestamp() {
+        trackedEntityInstance.setTrackedEntityInstanceUid("uid");
+        TrackedEntityInstance updatedTrackedEntityInstance = new TrackedEntityInstance();
+        updatedTrackedEntityInstance.setTrackedEntityInstanceUid("uid");
+        DateTime created = new DateTime();
+        updatedTrackedEntityInstance.setCreated(created);
+        when(trackedEntityInstanceApiClient.getTrackedEntityInstanceTimestamps(Collections.singleton("uid")))
+                .thenReturn(Arrays.asList(updatedTrackedEntityInstance));
+
+        trackedEntityInstanceController.updateTrackedEntityInstanceTimestamp(trackedEntityInstance);
+
+        assertEquals(created, trackedEntityInstance.getCreated());
+        verify(transactionManager, times(1)).transact(anyCollectionOf(IDbOperation.class));
     }
 
     @Test
@@ -278,11 +359,11 @@ public class TrackedEntityInstanceControllerTest {
         trackedEntityInstanceList.add(trackedEntityInstance1);
         trackedEntityInstanceList.add(trackedEntityInstance2);
 
-        Map<Long, Action> actionMap = new HashMap<>();
-        actionMap.put(new Long(1), Action.TO_POST);
-        actionMap.put(new Long(2), Action.TO_POST);
+        ActionMap actionMap = new ActionMap();
+        actionMap.put(1L, Action.TO_POST);
+        actionMap.put(2L, Action.TO_POST);
 
-        when(stateStore.queryActionsForModel(TrackedEntityInstance.class)).thenReturn(actionMap);
+        when(stateStore.queryActionsForModels(TrackedEntityInstance.class, trackedEntityInstanceList)).thenReturn(actionMap);
         doNothing().when(trackedEntityInstanceController).sendTrackedEntityInstanceChanges(any(), any(), anyBoolean());
 
         trackedEntityInstanceController.sendTrackedEntityInstancesChanges(trackedEntityInstanceList, true);
@@ -301,11 +382,11 @@ public class TrackedEntityInstanceControllerTest {
         trackedEntityInstanceList.add(trackedEntityInstance1);
         trackedEntityInstanceList.add(trackedEntityInstance2);
 
-        Map<Long, Action> actionMap = new HashMap<>();
-        actionMap.put(new Long(1), Action.TO_POST);
-        actionMap.put(new Long(2), Action.TO_POST);
+        ActionMap actionMap = new ActionMap();
+        actionMap.put(1L, Action.TO_POST);
+        actionMap.put(2L, Action.TO_POST);
 
-        when(stateStore.queryActionsForModel(TrackedEntityInstance.class)).thenReturn(actionMap);
+        when(stateStore.queryActionsForModels(TrackedEntityInstance.class, trackedEntityInstanceList)).thenReturn(actionMap);
         doNothing().when(trackedEntityInstanceController).sendTrackedEntityInstanceChanges(any(), any(), anyBoolean());
 
         trackedEntityInstanceController.sendTrackedEntityInstancesChanges(trackedEntityInstanceList, false);
@@ -314,4 +395,82 @@ public class TrackedEntityInstanceControllerTest {
         verify(trackedEntityInstanceController).sendTrackedEntityInstanceChanges(trackedEntityInstance2, Action.TO_POST, false);
     }
 
+    @Test
+    public void testSendTrackedEntityInstancesChangesInBatches() {
+        TrackedEntityInstance trackedEntityInstance1 = new TrackedEntityInstance();
+        trackedEntityInstance1.setId(1);
+        TrackedEntityInstance trackedEntityInstance2 = new TrackedEntityInstance();
+        trackedEntityInstance2.setId(2);
+        List<TrackedEntityInstance> trackedEntityInstanceList = Arrays.asList(trackedEntityInstance1, trackedEntityInstance2);
+
+        ActionMap actionMap = new ActionMap();
+        actionMap.put(1L, Action.TO_POST);
+        actionMap.put(2L, Action.TO_POST);
+
+        ImportSummary success = new ImportSummary();
+        success.setStatus(ImportSummary.Status.SUCCESS);
+        success.setReference("serverUid");
+        ImportSummary error = new ImportSummary();
+        error.setStatus(ImportSummary.Status.ERROR);
+        ImportSummaries importSummaries = new ImportSummaries();
+        importSummaries.setImportSummaries(Arrays.asList(success, error));
+
+        Enrollment enrollment1 = new Enrollment();
+        Enrollment enrollment2 = new Enrollment();
+
+        when(stateStore.queryActionsForModels(TrackedEntityInstance.class, trackedEntityInstanceList)).thenReturn(actionMap);
+        when(trackedEntityInstanceApiClient.postTrackedEntityInstances(anyListOf(TrackedEntityInstance.class)))
+                .thenReturn(importSummaries);
+        when(enrollmentStore.query(trackedEntityInstance1)).thenReturn(Arrays.asList(enrollment1));
+        when(enrollmentStore.query(trackedEntityInstance2)).thenReturn(Arrays.asList(enrollment2));
+
+        trackedEntityInstanceController.setPushBatchSize(2);
+        trackedEntityInstanceController.sendTrackedEntityInstancesChanges(trackedEntityInstanceList, true);
+
+        verify(trackedEntityInstanceApiClient, times(1)).postTrackedEntityInstances(trackedEntityInstanceList);
+        verify(trackedEntityInstanceApiClient, never()).postTrackedEntityInstance(any(TrackedEntityInstance.class));
+        verify(stateStore).saveActionsForModels(Arrays.asList(trackedEntityInstance1), Action.SYNCED);
+        verify(failedItemStore, times(1)).save(any(FailedItem.class));
+        verify(enrollmentController, times(1)).sendEnrollmentChanges(Arrays.asList(enrollment1, enrollment2));
+        assertEquals("serverUid", trackedEntityInstance1.getTrackedEntityInstanceUid());
+    }
+
+    @Test
+    public void testSyncTrackedEntityInstancesConcurrently() {
+        DateTime serverDate = new DateTime();
+        when(serverClock.getServerDate()).thenReturn(serverDate);
+
+        List<TrackedEntityInstance> trackedEntityInstanceList = new ArrayList<>();
+        for (String uid : Arrays.asList("a", "b", "c")) {
+            TrackedEntityInstance basicTrackedEntityInstance = new TrackedEntityInstance();
+            basicTrackedEntityInstance.setTrackedEntityInstanceUid(uid);
+            trackedEntityInstanceList.add(basicTrackedEntityInstance);
+
+            TrackedEntityInstance fullTrackedEntityInstance = new TrackedEntityInstance();
+            fullTrackedEntityInstance.setTrackedEntityInstanceUid(uid);
+            when(trackedEntityInstanceApiClient.getFullTrackedEntityInstance(uid, null))
+                    .thenReturn(fullTrackedEntityInstance);
+        }
+        Response response = new Response("", 500, "", new ArrayList<>(), null);
+        when(trackedEntityInstanceApiClient.getFullTrackedEntityInstance("b", null))
+                .thenThrow(ApiException.httpError("", response));
+
+        ExecutorService executorService = Executors.newFixedThreadPool(2);
+        try {
+            trackedEntityInstanceController.sync(trackedEntityInstanceList, false, executorService, 2);
+
+            // executor belongs to the caller and is left running
+            assertFalse(executorService.isShutdown());
+        } finally {
+            executorService.shutdownNow();
+        }
+
+        // one server date is used for the whole download, and failed instance does not stop the others
+        verify(serverClock, times(1)).getServerDate();
+        verify(trackedEntityInstanceStore, times(2)).insert(any(TrackedEntityInstance.class));
+        verify(lastUpdatedPreferences).save(ResourceType.TRACKED_ENTITY_INSTANCE, serverDate, "a");
+        verify(lastUpdatedPreferences).save(ResourceType.TRACKED_ENTITY_INSTANCE, serverDate, "c");
+        verify(lastUpdatedPreferences, never()).save(ResourceType.TRACKED_ENTITY_INSTANCE, serverDate, "b");
+    }
+
 }
@@ -159,7 +159,8 @@ public final class Event implements Serializable, IdentifiableObject {
 
     @JsonProperty("trackedEntityInstance")
     public String getTrackedEntityInstanceUid() {
-        return trackedEntityInstance.getTrackedEntityInstanceUid();
+        return trackedEntityInstance != null ?
+                trackedEntityInstance.getTrackedEntityInstanceUid() : null;
     }
 
     @JsonProperty("trackedEntityInstance")
@@ -178,7 +179,8 @@ public final class Event implements Serializable, IdentifiableObject {
 
     @JsonProperty("enrollment")
     public String getEnrollmentUid() {
-        return enrollment.getUId();
+        return enrollment != null ?
+                enrollment.getUId() : null;
     }
 
     @JsonProperty("enrollment")
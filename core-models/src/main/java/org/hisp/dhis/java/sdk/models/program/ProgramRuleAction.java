@@ -52,6 +52,9 @@ public final class ProgramRuleAction extends BaseIdentifiableObject {
     @JsonProperty("programRuleActionType")
     private String programRuleActionType;
 
+    @JsonProperty("content")
+    private String content;
+
     @JsonProperty("externalAccess")
     private boolean externalAccess;
 
@@ -102,6 +105,14 @@ public final class ProgramRuleAction extends BaseIdentifiableObject {
         this.programRuleActionType = programRuleActionType;
     }
 
+    public String getContent() {
+        return content;
+    }
+
+    public void setContent(String content) {
+        this.content = content;
+    }
+
     public boolean isExternalAccess() {
         return externalAccess;
     }
@@ -40,6 +40,8 @@ public final class ProgramRuleVariable extends BaseIdentifiableObject {
 
     private String dataElement;
 
+    private String trackedEntityAttribute;
+
     @JsonProperty("programRuleVariableSourceType")
     private String sourceType;
 
@@ -58,6 +60,11 @@ public final class ProgramRuleVariable extends BaseIdentifiableObject {
         this.dataElement = (String) dataElement.get("id");
     }
 
+    @JsonProperty("trackedEntityAttribute")
+    public void setTrackedEntityAttribute(Map<String, Object> trackedEntityAttribute) {
+        this.trackedEntityAttribute = (String) trackedEntityAttribute.get("id");
+    }
+
     public String getDataElement() {
         return dataElement;
     }
@@ -66,6 +73,14 @@ public final class ProgramRuleVariable extends BaseIdentifiableObject {
         this.dataElement = dataElement;
     }
 
+    public String getTrackedEntityAttribute() {
+        return trackedEntityAttribute;
+    }
+
+    public void setTrackedEntityAttribute(String trackedEntityAttribute) {
+        this.trackedEntityAttribute = trackedEntityAttribute;
+    }
+
     public String getSourceType() {
         return sourceType;
     }